@@ -0,0 +1,68 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One render frame's worth of audio-buffer work: write 800 new frames (60 fps at 48 kHz) and read
+ * back an FFT window. {@link RollingAudioBuffer} converts the whole window from shorts on every
+ * read; {@link FloatAudioBuffer} converts only the 800 new frames and bulk-copies the window.
+ * {@code toMono} and {@code toMonoScalar} time that conversion of the new frames alone, with and
+ * without the Vector API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AudioBufferReadBenchmark {
+
+    private static final int FRAMES_PER_RENDER = 800;
+
+    @Param({"2048", "8192", "32768"})
+    public int window;
+
+    @Param({"MONO_BLEND", "LEFT"})
+    public ChannelMode mode;
+
+    private final byte[] chunk = new byte[FRAMES_PER_RENDER * 4];
+    private final float[] mono = new float[FRAMES_PER_RENDER];
+    private float[] dest;
+    private RollingAudioBuffer rolling;
+    private FloatAudioBuffer floats;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) (i * 31);
+        }
+        dest = new float[window];
+        rolling = new RollingAudioBuffer(window * 4);
+        floats = new FloatAudioBuffer(window * 4, mode);
+    }
+
+    @Benchmark
+    public float[] rollingAudioBuffer() {
+        rolling.write(chunk, 0, chunk.length);
+        rolling.readSamples(dest, window, mode);
+        return dest;
+    }
+
+    @Benchmark
+    public float[] floatAudioBuffer() {
+        floats.write(chunk, 0, chunk.length);
+        floats.readSamples(dest, window);
+        return dest;
+    }
+
+    @Benchmark
+    public float[] toMono() {
+        mode.toMono(chunk, 0, FRAMES_PER_RENDER, mono, 0);
+        return mono;
+    }
+
+    @Benchmark
+    public float[] toMonoScalar() {
+        mode.toMonoScalar(chunk, 0, FRAMES_PER_RENDER, mono, 0);
+        return mono;
+    }
+}
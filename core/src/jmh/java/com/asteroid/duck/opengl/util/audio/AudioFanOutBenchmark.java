@@ -0,0 +1,82 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capture-thread cost of handing one {@link AudioReader#CHUNK_SIZE} chunk to N sinks: today's
+ * serial {@code for (sink : sinks) sink.write(...)} loop versus a single publish into an
+ * {@link AudioRing} whose consumers run on their own threads.
+ *
+ * <p>Each sink does the work of a {@link RollingAudioBuffer} write plus a configurable amount of
+ * busy work, standing in for heavier sinks such as an FFT or disk writer.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AudioFanOutBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int sinkCount;
+
+    /** Busy-work iterations per sink write; 0 = a plain ring-buffer copy. */
+    @Param({"0", "256"})
+    public int sinkWork;
+
+    private final byte[] chunk = new byte[AudioReader.CHUNK_SIZE];
+    private List<AudioSink> sinks;
+    private AudioRing ring;
+
+    /** A ring-buffer sink that also burns a fixed number of cycles per write. */
+    static final class WorkingSink implements AudioSink {
+        private final RollingAudioBuffer buffer = new RollingAudioBuffer(4096);
+        private final int work;
+        long sink;
+
+        WorkingSink(int work) {
+            this.work = work;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            buffer.write(data, offset, length);
+            long acc = sink;
+            for (int i = 0; i < work; i++) {
+                acc = acc * 31 + data[offset + (i & (length - 1))];
+            }
+            sink = acc;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) i;
+        }
+        sinks = new ArrayList<>(sinkCount);
+        for (int i = 0; i < sinkCount; i++) {
+            sinks.add(new WorkingSink(sinkWork));
+        }
+        ring = AudioRing.fanOut(sinks);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ring.close();
+    }
+
+    @Benchmark
+    public void serialLoop() {
+        for (AudioSink sink : sinks) {
+            sink.write(chunk, 0, chunk.length);
+        }
+    }
+
+    @Benchmark
+    public void ringPublish() {
+        ring.write(chunk, 0, chunk.length);
+    }
+}
@@ -0,0 +1,74 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.audio.file.MappedFileDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of draining 10 ms of audio (480 frames at 48 kHz) from a line into two sinks, as a
+ * function of the {@link AudioReader} chunk cap. {@code maxChunkFrames = 16} is the historic
+ * fixed {@link AudioReader#CHUNK_SIZE}; larger caps batch the same audio into fewer reads and
+ * sink dispatches.
+ *
+ * <p>The PCM is generated once by a {@link SimulatedDataSource}, written to a temporary file and
+ * replayed from a {@link MappedFileDataSource} at max speed, so every invocation reads identical
+ * input and the benchmark measures read and dispatch overhead rather than waveform synthesis.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AudioReaderBatchingBenchmark {
+
+    private static final int FRAMES = 480;
+
+    @Param({"16", "64", "128", "480"})
+    public int maxChunkFrames;
+
+    private AudioReader reader;
+    private MappedFileDataSource source;
+    private Path file;
+
+    @Setup
+    public void setup() throws LineUnavailableException, IOException {
+        SimulatedDataSource simulated = SimulatedDataSource.deterministic(LineAcquirer.getSampledWaveformData());
+        simulated.open(LineAcquirer.IDEAL, FRAMES * 4);
+        simulated.start();
+        byte[] pcm = new byte[FRAMES * 4];
+        int read = simulated.read(pcm, 0, pcm.length);
+        if (read != pcm.length) {
+            throw new IllegalStateException("Simulated source produced " + read + " bytes");
+        }
+        file = Files.createTempFile("audio-reader-batching", ".pcm");
+        Files.write(file, pcm);
+        source = MappedFileDataSource.raw(file, LineAcquirer.IDEAL, null, MappedFileDataSource.MAX_SPEED, false);
+        source.open(LineAcquirer.IDEAL, pcm.length);
+        source.start();
+        reader = new AudioReader(
+                List.of(new RollingAudioBuffer(4096), new RollingAudioBuffer(4096)),
+                WaitStrategy.busySpin(), maxChunkFrames);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        source.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int drainTenMillis() {
+        source.rewind();
+        int total = 0;
+        int read;
+        while ((read = reader.pump(source)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,104 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mixing 10 ms of {@link LineAcquirer#IDEAL} audio from N inputs with a
+ * {@link MixingDataSource}.
+ *
+ * <p>{@link #pullAndMix} drives every input's pull by hand on the benchmark thread, so the score
+ * is the whole per-block cost — decode into each ring, mix, encode — without thread hand-offs.
+ * The inputs replay a pre-rendered buffer so no synthesis is measured. {@link #mixKernel} is the
+ * gain-and-sum loop on its own.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MixingBenchmark {
+    private static final int FRAMES = 480;
+
+    @Param({"2", "4", "8"})
+    public int inputs;
+
+    private MixingDataSource mixer;
+    private byte[] output;
+    private float[][] kernelInputs;
+    private float[] kernelOutput;
+
+    /** A line that always has a full buffer of the same PCM available. */
+    static final class ReplaySource implements AudioDataSource {
+        private final byte[] pcm;
+        private boolean open;
+        private boolean running;
+
+        ReplaySource(byte[] pcm) {
+            this.pcm = pcm;
+        }
+
+        @Override public String getName() { return "replay"; }
+        @Override public void open(AudioFormat format, int bufferSize) { open = true; }
+        @Override public boolean isOpen() { return open; }
+        @Override public void start() { running = true; }
+        @Override public int available() { return running ? pcm.length : 0; }
+        @Override public int read(byte[] array, int start, int length) {
+            int n = Math.min(length, pcm.length);
+            System.arraycopy(pcm, 0, array, start, n);
+            return n;
+        }
+        @Override public void stop() { running = false; }
+        @Override public void close() { open = false; }
+        @Override public boolean isRunning() { return running; }
+    }
+
+    @Setup
+    public void setup() throws LineUnavailableException {
+        float[] samples = new float[FRAMES * 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) (0.5 * Math.sin(i * 0.01));
+        }
+        byte[] pcm = new byte[FRAMES * 4];
+        PcmEncoding.S16_LE.encode(samples, 0, samples.length, pcm, 0, 2);
+
+        List<AudioDataSource> sources = new ArrayList<>(inputs);
+        float[] gains = new float[inputs];
+        kernelInputs = new float[inputs][];
+        for (int i = 0; i < inputs; i++) {
+            sources.add(new ReplaySource(pcm));
+            gains[i] = 1.0f / inputs;
+            kernelInputs[i] = samples.clone();
+        }
+        mixer = new MixingDataSource(sources, gains, WaitStrategy.busySpin(), false);
+        mixer.open(LineAcquirer.IDEAL, pcm.length);
+        mixer.start();
+        output = new byte[pcm.length];
+        kernelOutput = new float[samples.length];
+    }
+
+    @TearDown
+    public void tearDown() {
+        mixer.close();
+    }
+
+    @Benchmark
+    public int pullAndMix() {
+        for (int i = 0; i < inputs; i++) {
+            mixer.getInput(i).pull();
+        }
+        return mixer.read(output, 0, output.length);
+    }
+
+    @Benchmark
+    public float[] mixKernel() {
+        float gain = 1.0f / inputs;
+        for (int i = 0; i < inputs; i++) {
+            MixingDataSource.addInput(kernelInputs[i], 0, gain, kernelOutput, 0, kernelOutput.length, i == 0);
+        }
+        return kernelOutput;
+    }
+}
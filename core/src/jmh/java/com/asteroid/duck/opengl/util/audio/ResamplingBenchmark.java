@@ -0,0 +1,47 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capture-thread cost of resampling 10 ms of 16-bit stereo to {@link LineAcquirer#IDEAL} with a
+ * {@link ResamplingSink}, for the common device rates and two filter lengths.
+ *
+ * <p>The downstream sink only consumes the output, so the score is the resampler alone. The
+ * quality each filter length buys is asserted in {@code ResamplingSinkTest}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResamplingBenchmark {
+
+    @Param({"44100", "96000"})
+    public int inputRate;
+
+    @Param({"32", "64"})
+    public int taps;
+
+    private byte[] chunk;
+    private ResamplingSink resampler;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        int frames = inputRate / 100;
+        float[] samples = new float[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            samples[2 * i] = (float) (0.5 * Math.sin(2 * Math.PI * 440 * i / inputRate));
+            samples[2 * i + 1] = (float) (0.5 * Math.sin(2 * Math.PI * 660 * i / inputRate));
+        }
+        chunk = new byte[frames * 4];
+        PcmEncoding.S16_LE.encode(samples, 0, samples.length, chunk, 0, 2);
+        resampler = new ResamplingSink(PcmEncoding.S16_LE.format(inputRate, 2), LineAcquirer.IDEAL,
+                (data, offset, length) -> blackhole.consume(data), taps);
+    }
+
+    @Benchmark
+    public void resampleTenMillis() {
+        resampler.write(chunk, 0, chunk.length);
+    }
+}
@@ -0,0 +1,170 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.audio.file.MappedFileDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of moving one chunk from a mapped file into a native ring — a stand-in for the mapped
+ * PBO of {@link PboAudioSink} — through {@link AudioReader}, by the {@code byte[]} contract and
+ * by the {@link SegmentAudioSink} contract.
+ *
+ * <ul>
+ *   <li>{@code array}: the file is copied into the reader's heap chunk, then from the chunk into
+ *       the ring: two copies.</li>
+ *   <li>{@code segment}: the file lends its mapping and the ring copies from it: one copy.</li>
+ * </ul>
+ *
+ * <p>Besides the time per chunk, the {@code bytesCopied} counter reports the bytes copied per
+ * chunk, as counted by the source, the reader and the sink.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SegmentSinkBenchmark {
+
+    private static final int FILE_FRAMES = 2400;
+
+    @Param({"array", "segment"})
+    public String contract;
+
+    @Param({"128", "480", "2400"})
+    public int chunkFrames;
+
+    private Path file;
+    private MappedFileDataSource mapped;
+    private AudioDataSource source;
+    private NativeRing ring;
+    private AudioReader reader;
+
+    /** Bytes copied per chunk, reported alongside the time. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Copies {
+        public long bytesCopied;
+    }
+
+    /** A ring of native memory, written the way {@link PboAudioSink} writes its mapping. */
+    static final class NativeRing implements SegmentAudioSink {
+        private final ByteBuffer buffer;
+        private final MemorySegment memory;
+        private long written;
+        long copied;
+
+        NativeRing(int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+            this.memory = MemorySegment.ofBuffer(buffer);
+        }
+
+        /** The {@code byte[]} contract: two bulk puts into the direct buffer. */
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            int head = (int) (written % buffer.capacity());
+            int first = Math.min(length, buffer.capacity() - head);
+            buffer.put(head, data, offset, first);
+            buffer.put(0, data, offset + first, length - first);
+            written += length;
+            copied += length;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length, long captureNanos) {
+            write(data, offset, length);
+        }
+
+        /** The segment contract: two segment copies into the same memory. */
+        @Override
+        public void write(MemorySegment chunk, long captureNanos) {
+            long length = chunk.byteSize();
+            int head = (int) (written % buffer.capacity());
+            long first = Math.min(length, buffer.capacity() - head);
+            MemorySegment.copy(chunk, 0, memory, head, first);
+            MemorySegment.copy(chunk, first, memory, 0, length - first);
+            written += length;
+            copied += length;
+        }
+    }
+
+    /** A line that can only copy, as a Java Sound line does, counting what it copies. */
+    static final class CopyingSource implements AudioDataSource {
+        private final AudioDataSource delegate;
+        long copied;
+
+        CopyingSource(AudioDataSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override public String getName() { return delegate.getName(); }
+        @Override public void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
+            delegate.open(format, bufferSize);
+        }
+        @Override public boolean isOpen() { return delegate.isOpen(); }
+        @Override public void start() { delegate.start(); }
+        @Override public int available() { return delegate.available(); }
+        @Override public int read(byte[] array, int start, int length) {
+            int read = delegate.read(array, start, length);
+            copied += read;
+            return read;
+        }
+        @Override public void stop() { delegate.stop(); }
+        @Override public void close() { delegate.close(); }
+        @Override public boolean isRunning() { return delegate.isRunning(); }
+    }
+
+    @Setup
+    public void setup() throws LineUnavailableException, IOException {
+        SimulatedDataSource simulated = SimulatedDataSource.deterministic(LineAcquirer.getSampledWaveformData());
+        simulated.open(LineAcquirer.IDEAL, FILE_FRAMES * 4);
+        simulated.start();
+        byte[] pcm = new byte[FILE_FRAMES * 4];
+        int read = simulated.read(pcm, 0, pcm.length);
+        if (read != pcm.length) {
+            throw new IllegalStateException("Simulated source produced " + read + " bytes");
+        }
+        file = Files.createTempFile("segment-sink", ".pcm");
+        Files.write(file, pcm);
+        mapped = MappedFileDataSource.raw(file, LineAcquirer.IDEAL, null, MappedFileDataSource.MAX_SPEED, false);
+        mapped.open(LineAcquirer.IDEAL, pcm.length);
+        mapped.start();
+
+        ring = new NativeRing(1 << 16);
+        if (contract.equals("segment")) {
+            source = mapped;
+            reader = new AudioReader(List.of(ring), WaitStrategy.busySpin(), chunkFrames);
+        } else {
+            source = new CopyingSource(mapped);
+            AudioSink arraySink = ring::write; // hides the segment contract from the reader
+            reader = new AudioReader(List.of(arraySink), WaitStrategy.busySpin(), chunkFrames);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mapped.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int oneChunk(Copies copies) {
+        mapped.rewind();
+        long before = copied();
+        int read = reader.pump(source);
+        copies.bytesCopied = copied() - before;
+        return read;
+    }
+
+    private long copied() {
+        long fromSource = source instanceof CopyingSource copying ? copying.copied : 0;
+        return fromSource + reader.getCopiedBytes() + ring.copied;
+    }
+}
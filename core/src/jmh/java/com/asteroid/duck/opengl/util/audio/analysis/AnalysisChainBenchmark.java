@@ -0,0 +1,54 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.simulated.CompositeWaveform;
+import com.asteroid.duck.opengl.util.audio.simulated.Note;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.util.concurrent.TimeUnit;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+
+/**
+ * The chain {@code FrequencyProcessorSoakTest} drives, timed: one 60 fps frame of deterministic
+ * simulated audio read, written and analysed through a {@link FrequencyProcessor} and
+ * {@link BeatDetector}. An hour of audio is 216 000 frames, so an hour soaks in under a minute
+ * while this stays under about 275 µs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalysisChainBenchmark {
+
+    private static final int FRAMES_PER_PROCESS = (int) IDEAL.getSampleRate() / 60;
+
+    private SimulatedDataSource source;
+    private FrequencyProcessor processor;
+    private BeatDetector beats;
+    private byte[] pcm;
+
+    @Setup
+    public void setup() throws LineUnavailableException {
+        CompositeWaveform music = new CompositeWaveform(2);
+        music.add(LineAcquirer.getSampledWaveformData());
+        music.add(new Note(new Waveform(55).amplify(8000), 0.5, "1000"));
+        source = SimulatedDataSource.deterministic(music);
+        source.open(IDEAL, FRAMES_PER_PROCESS * IDEAL.getFrameSize());
+        source.start();
+        processor = new FrequencyProcessor(1024, 128, IDEAL.getSampleRate(), 20f, 20_000f, -80f, 0f);
+        beats = new BeatDetector(processor);
+        processor.addSink(beats);
+        pcm = new byte[FRAMES_PER_PROCESS * IDEAL.getFrameSize()];
+    }
+
+    @Benchmark
+    public float videoFrame() {
+        int read = source.read(pcm, 0, pcm.length);
+        processor.write(pcm, 0, read);
+        processor.process();
+        return beats.getBeatStrength("bass");
+    }
+}
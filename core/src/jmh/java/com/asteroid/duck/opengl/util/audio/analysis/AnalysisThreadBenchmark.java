@@ -0,0 +1,56 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render-thread cost of one {@link FrequencyProcessor#process()} per frame, with the FFT done in
+ * the call ({@code inline}) or on the analysis thread at 120 Hz ({@code thread}), where the call
+ * only picks up the newest published spectrum. The difference is the frame time reclaimed.
+ *
+ * <p>Each invocation first writes one 60 fps frame of audio (800 frames at 48 kHz), as the
+ * capture thread would, so there is always something new to analyse.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalysisThreadBenchmark {
+
+    private static final int FRAMES_PER_RENDER = 800;
+
+    @Param({"inline", "thread"})
+    public String analysis;
+
+    @Param({"1024", "4096"})
+    public int fftSize;
+
+    private final byte[] chunk = new byte[FRAMES_PER_RENDER * 4];
+    private final long[] spectra = new long[1];
+    private FrequencyProcessor processor;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) (i * 31);
+        }
+        processor = new FrequencyProcessor(fftSize, 128, 48_000f, 20f, 20_000f, -80f, 0f);
+        processor.addSink(magnitudes -> spectra[0]++);
+        processor.write(chunk, 0, chunk.length);
+        if (analysis.equals("thread")) {
+            processor.startAnalysisThread(120);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.stopAnalysisThread();
+    }
+
+    @Benchmark
+    public long renderFrame() {
+        processor.write(chunk, 0, chunk.length);
+        processor.process();
+        return processor.getSpectrumVersion();
+    }
+}
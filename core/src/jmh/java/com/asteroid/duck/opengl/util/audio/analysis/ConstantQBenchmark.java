@@ -0,0 +1,51 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a {@link ConstantQTransform} frame from 55 Hz to 14 kHz by bins per octave:
+ * {@code applyKernels} is the sparse kernels alone, against a ready FFT output, and
+ * {@code process} adds the FFT. The transform's {@code toString()} gives each configuration's
+ * kernel footprint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConstantQBenchmark {
+
+    @Param({"12", "24", "48"})
+    public int binsPerOctave;
+
+    private ConstantQTransform transform;
+    private float[] samples;
+    private float[] spectrum;
+    private float[] output;
+
+    @Setup
+    public void setup() {
+        transform = new ConstantQTransform(48_000f, 55f, 14_080f, binsPerOctave, -80f, 0f);
+        Random random = new Random(3);
+        samples = new float[transform.getFftSize()];
+        spectrum = new float[transform.getFftSize()];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) random.nextGaussian() * 0.1f;
+            spectrum[i] = (float) random.nextGaussian();
+        }
+        output = new float[transform.getNumBins()];
+    }
+
+    @Benchmark
+    public float[] applyKernels() {
+        transform.applyKernels(spectrum, output);
+        return output;
+    }
+
+    @Benchmark
+    public float[] process() {
+        transform.process(samples, output);
+        return output;
+    }
+}
@@ -0,0 +1,41 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of {@link MelFilterbank#apply}: {@value MelFilterbank#DEFAULT_FILTERS} mel filters
+ * and {@value MelFilterbank#DEFAULT_COEFFICIENTS} MFCCs from a spectrum of {@code numBins} bars,
+ * the per-frame cost an {@link MfccSink} adds to {@link FrequencyProcessor#process()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MelFilterbankBenchmark {
+
+    @Param({"64", "128", "512"})
+    public int numBins;
+
+    private MelFilterbank filterbank;
+    private float[] bars;
+    private final float[] mel = new float[MelFilterbank.DEFAULT_FILTERS];
+    private final float[] mfcc = new float[MelFilterbank.DEFAULT_COEFFICIENTS];
+
+    @Setup
+    public void setup() {
+        filterbank = new MelFilterbank(numBins, 20f, 20_000f, -80f, 0f);
+        Random random = new Random(7);
+        bars = new float[numBins];
+        for (int i = 0; i < numBins; i++) {
+            bars[i] = random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    public float[] melAndMfcc() {
+        filterbank.apply(bars, mel, mfcc);
+        return mfcc;
+    }
+}
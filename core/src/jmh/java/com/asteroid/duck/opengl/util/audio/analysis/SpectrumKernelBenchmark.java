@@ -0,0 +1,101 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link FFTProcessor}'s work after the FFT, turning one {@code realForward} output into
+ * 128 bars, by kernel:
+ * <ul>
+ *   <li>{@code sqrt}: the original loop, a square root per FFT bin and a {@code log10} per bar</li>
+ *   <li>{@code scalar} / {@code vector}: squared-magnitude peaks with one {@code log10} per bar,
+ *       in plain loops or on the Vector API</li>
+ *   <li>{@code scalar-fastlog} / {@code vector-fastlog}: the same with the polynomial log</li>
+ * </ul>
+ * {@code process} is the whole call, window and FFT included, for scale ({@code sqrt} runs the
+ * scalar kernel there).
+ *
+ * <p>The vector kernels need the {@code jdk.incubator.vector} module, which the jmh task adds;
+ * without it they quietly measure the scalar one.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpectrumKernelBenchmark {
+
+    private static final int NUM_BINS = 128;
+    private static final float RATE = 48_000f;
+
+    @Param({"sqrt", "scalar", "scalar-fastlog", "vector", "vector-fastlog"})
+    public String kernel;
+
+    @Param({"1024", "2048", "4096", "8192", "16384"})
+    public int fftSize;
+
+    private FFTProcessor processor;
+    private SpectrumKernel spectrumKernel;
+    private boolean fastLog;
+    private float[] samples;
+    private float[] fft;
+    private final float[] output = new float[NUM_BINS];
+    private int[] binLow;
+    private int[] binHigh;
+
+    @Setup
+    public void setup() {
+        processor = new FFTProcessor(fftSize, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f, kernel.startsWith("vector"));
+        fastLog = kernel.endsWith("fastlog");
+        processor.setFastLog(fastLog);
+        spectrumKernel = processor.getKernel();
+        binLow = spectrumKernel.binLow;
+        binHigh = spectrumKernel.binHigh;
+
+        Random random = new Random(42);
+        samples = new float[fftSize];
+        fft = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            samples[i] = (float) (0.3 * Math.sin(2 * Math.PI * 440 * i / RATE) + 0.05 * random.nextGaussian());
+            fft[i] = (float) random.nextGaussian();
+        }
+    }
+
+    @Benchmark
+    public float[] postProcess() {
+        if (kernel.equals("sqrt")) {
+            sqrtPerBin();
+        } else {
+            spectrumKernel.toSpectrum(fft, output, fastLog);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public float[] process() {
+        processor.process(samples, output);
+        return output;
+    }
+
+    /** The loop the kernels replaced. */
+    private void sqrtPerBin() {
+        int nyquistBin = fftSize / 2;
+        for (int b = 0; b < NUM_BINS; b++) {
+            float peakMag = 0.0f;
+            for (int k = binLow[b]; k < binHigh[b]; k++) {
+                float re, im;
+                if (k == nyquistBin) {
+                    re = fft[1];
+                    im = 0.0f;
+                } else {
+                    re = fft[2 * k];
+                    im = fft[2 * k + 1];
+                }
+                float mag = (float) Math.sqrt(re * re + im * im) / fftSize;
+                if (mag > peakMag) peakMag = mag;
+            }
+            float dB = 20.0f * (float) Math.log10(Math.max(peakMag, 1e-10f));
+            output[b] = Math.max(0.0f, Math.min(1.0f, (dB + 80f) / 80f));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-channel spectra of a stereo window, 128 bars each: two {@link FFTProcessor} calls
+ * ({@code twoRealTransforms}) against one {@link StereoFFTProcessor} call
+ * ({@code oneComplexTransform}), and the same with the mid spectrum as well
+ * ({@code threeRealTransforms} against {@code oneComplexTransformWithMid}). The difference is the
+ * saving of packing both channels into one complex FFT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StereoFFTBenchmark {
+
+    private static final int NUM_BINS = 128;
+
+    @Param({"1024", "4096", "16384"})
+    public int fftSize;
+
+    private FFTProcessor mono;
+    private StereoFFTProcessor stereo;
+    private float[] left;
+    private float[] right;
+    private float[] blend;
+    private final float[] leftOut = new float[NUM_BINS];
+    private final float[] rightOut = new float[NUM_BINS];
+    private final float[] midOut = new float[NUM_BINS];
+
+    @Setup
+    public void setup() {
+        mono = new FFTProcessor(fftSize, NUM_BINS, 48_000f, 20f, 20_000f, -80f, 0f);
+        stereo = new StereoFFTProcessor(fftSize, NUM_BINS, 48_000f, 20f, 20_000f, -80f, 0f);
+        Random random = new Random(7);
+        left = new float[fftSize];
+        right = new float[fftSize];
+        blend = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            left[i] = (float) random.nextGaussian() * 0.2f;
+            right[i] = (float) random.nextGaussian() * 0.2f;
+            blend[i] = (left[i] + right[i]) / 2;
+        }
+    }
+
+    @Benchmark
+    public float[] twoRealTransforms() {
+        mono.process(left, leftOut);
+        mono.process(right, rightOut);
+        return rightOut;
+    }
+
+    @Benchmark
+    public float[] oneComplexTransform() {
+        stereo.process(left, right, leftOut, rightOut);
+        return rightOut;
+    }
+
+    @Benchmark
+    public float[] threeRealTransforms() {
+        mono.process(left, leftOut);
+        mono.process(right, rightOut);
+        // the blend is made by the capture thread in FrequencyProcessor, so not counted here
+        mono.process(blend, midOut);
+        return midOut;
+    }
+
+    @Benchmark
+    public float[] oneComplexTransformWithMid() {
+        stereo.process(left, right, leftOut, rightOut, midOut);
+        return midOut;
+    }
+}
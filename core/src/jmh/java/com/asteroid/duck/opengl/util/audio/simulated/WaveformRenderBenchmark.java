@@ -0,0 +1,63 @@
+package com.asteroid.duck.opengl.util.audio.simulated;
+
+import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of synthesising 10 ms of stereo audio (480 frames at 48 kHz) one {@link StereoDataSource#sample}
+ * call per frame versus one {@link StereoDataSource#renderBlock} call.
+ *
+ * <p>Run with the GC profiler ({@code profilers = ['gc']} in {@code core/build.gradle}) to see the
+ * allocation difference: {@code gc.alloc.rate.norm} for {@code renderBlock} should be 0 B/op,
+ * while {@code perSample} allocates several arrays per frame.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WaveformRenderBenchmark {
+
+    private static final int FRAMES = 480;
+    private static final double SAMPLE_PERIOD = 1.0 / 48000;
+
+    @Param({"sweep", "chord"})
+    public String source;
+
+    private StereoDataSource subject;
+    private final float[] left = new float[FRAMES];
+    private final float[] right = new float[FRAMES];
+    private double t0;
+
+    @Setup
+    public void setup() {
+        if ("sweep".equals(source)) {
+            subject = LineAcquirer.getSampledWaveformData();
+        } else {
+            CompositeWaveform chord = new CompositeWaveform(3);
+            chord.add(Waveform.MIDDLE_C.amplify(30));
+            chord.add(new Note(Waveform.MIDDLE_C.transpose(4).amplify(30), new StaticStereoPositioner(-0.5), 0.25, "1101"));
+            chord.add(new Note(Waveform.MIDDLE_C.transpose(7).amplify(30), OscillatingStereoPositioner.fullScale(1.0), 0.5, ""));
+            subject = chord;
+        }
+    }
+
+    @Benchmark
+    public float perSample() {
+        double time = t0;
+        float sum = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            double[] sample = subject.sample(time + i * SAMPLE_PERIOD);
+            sum += (float) (sample[0] + sample[1]);
+        }
+        t0 += FRAMES * SAMPLE_PERIOD;
+        return sum;
+    }
+
+    @Benchmark
+    public float renderBlock() {
+        subject.renderBlock(t0, SAMPLE_PERIOD, left, right, FRAMES);
+        t0 += FRAMES * SAMPLE_PERIOD;
+        return left[FRAMES - 1] + right[FRAMES - 1];
+    }
+}
@@ -1,5 +1,6 @@
 package com.asteroid.duck.opengl.util;
 
+import com.asteroid.duck.opengl.util.audio.AudioLatency;
 import com.asteroid.duck.opengl.util.events.ResizeListener;
 import com.asteroid.duck.opengl.util.keys.*;
 import com.asteroid.duck.opengl.util.resources.manager.ResourceManager;
@@ -38,6 +39,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.imageio.ImageIO;
 
@@ -82,6 +84,12 @@ public abstract class GLWindow implements RenderContext {
 
 	private final ClockImpl clock = new ClockImpl(TimeSource.glfwGetTimeInstance());
 	private Double desiredUpdatePeriod = null;
+	/** Set by {@link #requestFrame()} to cut short the frame-rate cap sleep. */
+	private volatile boolean frameRequested = false;
+	/** The thread running {@link #displayLoop()}, so {@link #requestFrame()} can wake it. */
+	private volatile Thread loopThread = null;
+	/** Records audio capture-to-swap latency each frame when set; render thread only. */
+	private AudioLatency audioLatency = null;
 
 	/** Non-null when a screenshot has been requested; cleared after the capture executes. */
 	private volatile Path pendingCapture = null;
@@ -237,6 +245,15 @@ public abstract class GLWindow implements RenderContext {
 		this.clearScreen = clearScreen;
 	}
 
+	public AudioLatency getAudioLatency() {
+		return audioLatency;
+	}
+
+	@Override
+	public void setAudioLatency(AudioLatency audioLatency) {
+		this.audioLatency = audioLatency;
+	}
+
 	@Override
 	public Clock getClock() {
 		return clock;
@@ -252,6 +269,15 @@ public abstract class GLWindow implements RenderContext {
 		this.desiredUpdatePeriod = period;
 	}
 
+	@Override
+	public void requestFrame() {
+		frameRequested = true;
+		Thread thread = loopThread;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
 	/**
 	 * GLFW key callback: translates a raw key event into a {@link KeyCombination} and dispatches
 	 * it to the {@link KeyRegistry}. Only {@code GLFW_PRESS} events are forwarded; held and
@@ -310,7 +336,8 @@ public abstract class GLWindow implements RenderContext {
 	 * {@link #printInstructions()} once, then enters the frame loop until the window closes.
 	 *
 	 * <p>Each frame: polls events, optionally clears the screen, calls {@link #render()},
-	 * processes any pending screenshot capture, and swaps buffers. On exit, calls
+	 * processes any pending screenshot capture, and swaps buffers, then passes the render and swap
+	 * times to the {@link #setAudioLatency audio latency recorder} if one is set. On exit, calls
 	 * {@link #dispose()} and tears down GLFW.</p>
 	 *
 	 * @throws IOException if {@link #init()} or {@link #render()} throws
@@ -319,6 +346,7 @@ public abstract class GLWindow implements RenderContext {
 		// initialize
 		// ---------------
 		clock.reset();
+		loopThread = Thread.currentThread();
 		init();
 		registerKeys();
 		printInstructions();
@@ -337,11 +365,13 @@ public abstract class GLWindow implements RenderContext {
 			// render
 			// ---------------------
 			render();
+			long renderedNanos = System.nanoTime();
 
 			// frame rate cap
 			if (desiredUpdatePeriod != null && desiredUpdatePeriod > lastUpdatePeriod) {
 				sleep(desiredUpdatePeriod - lastUpdatePeriod);
 			}
+			frameRequested = false;
 
 			// capture before swap so the image matches exactly what hits the screen
 			Path capture = pendingCapture;
@@ -368,6 +398,9 @@ public abstract class GLWindow implements RenderContext {
 			}
 
 			glfwSwapBuffers(windowHandle);
+			if (audioLatency != null) {
+				audioLatency.frame(renderedNanos, System.nanoTime());
+			}
             windowClosing |= glfwWindowShouldClose(windowHandle);
 		}
 
@@ -539,13 +572,17 @@ public abstract class GLWindow implements RenderContext {
 		}
 	}
 
+	/** Sleep out the frame-rate cap, returning early if {@link #requestFrame()} is called. */
 	private void sleep(double seconds) {
 		long ms = (long) (seconds * 1000.0);
 		if (ms > 10) {
-			try {
-				Thread.sleep(ms);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
+			long deadline = System.nanoTime() + ms * 1_000_000L;
+			long remaining;
+			while (!frameRequested && (remaining = deadline - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(this, remaining);
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
 			}
 		}
 	}
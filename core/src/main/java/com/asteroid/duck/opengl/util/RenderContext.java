@@ -1,5 +1,6 @@
 package com.asteroid.duck.opengl.util;
 
+import com.asteroid.duck.opengl.util.audio.AudioLatency;
 import com.asteroid.duck.opengl.util.events.ResizeListener;
 import com.asteroid.duck.opengl.util.keys.KeyRegistry;
 import com.asteroid.duck.opengl.util.resources.manager.ResourceManager;
@@ -131,6 +132,15 @@ public interface RenderContext {
 		}
 	}
 
+	/**
+	 * Ask the render loop to start its next frame now rather than sleeping out the rest of the
+	 * frame-rate cap, e.g. when a throttled visualiser hears sound again. Contexts without a
+	 * frame-rate cap ignore this.
+	 *
+	 * <p>Safe to call from any thread.</p>
+	 */
+	default void requestFrame() { }
+
 	/**
 	 * The orthographic projection matrix sized to the current GL viewport (framebuffer pixels).
 	 * Origin is at top-left (0,0); axes extend right and down to viewport width/height.
@@ -199,4 +209,14 @@ public interface RenderContext {
 	 * No-op if no recording is active.
 	 */
 	default void stopRecording() { }
+
+	/**
+	 * Record the age of the audio behind every displayed frame, from capture to buffer swap.
+	 * Replaces any recorder set before; {@code null} stops recording. Contexts without a render
+	 * loop ignore this.
+	 *
+	 * @param latency the recorder to feed once per frame after the buffer swap
+	 * @see AudioLatency
+	 */
+	default void setAudioLatency(AudioLatency latency) { }
 }
@@ -3,6 +3,7 @@ package com.asteroid.duck.opengl.util.audio;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.TargetDataLine;
+import java.lang.foreign.MemorySegment;
 
 /**
  * Our interface into an underlying (possibly simulated) audio data source
@@ -47,6 +48,21 @@ public interface AudioDataSource {
 	 * @return number of bytes actually read
 	 */
 	int read(byte[] array, int start, int length);
+
+	/**
+	 * Read by lending the bytes from the source's own memory instead of copying them, for sources
+	 * whose audio already sits in memory, such as a mapped file. The bytes are consumed as by
+	 * {@link #read}; the view is read-only and only valid until the next read. A source may lend
+	 * fewer bytes than are available, e.g. at the end of a mapping. Sources that can only copy,
+	 * such as a Java Sound line, return {@code null} and are read with {@link #read}.
+	 *
+	 * @param length maximum number of bytes to read
+	 * @return a view of whole frames, empty if nothing is available, or {@code null} if the
+	 *         source cannot lend its memory
+	 */
+	default MemorySegment readSegment(int length) {
+		return null;
+	}
 	/**
 	 * Stop the data source (can be restarted)
 	 */
@@ -64,4 +80,14 @@ public interface AudioDataSource {
      * @return {@code true} if the source is currently capturing and delivering data
      */
 	boolean isRunning();
+
+	/**
+	 * How many times the source has discarded captured audio because it was not read in time.
+	 * Sources that cannot tell report {@code 0}.
+	 *
+	 * @return overruns detected since the source was created
+	 */
+	default long getOverruns() {
+		return 0;
+	}
 }
@@ -0,0 +1,101 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.stats.Stats;
+import com.asteroid.duck.opengl.util.stats.StatsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how old the audio behind each displayed frame is, from capture to the buffer swap
+ * that puts it on screen.
+ *
+ * <p>Every frame the render loop calls {@link #frame} with the time rendering finished and the
+ * time the buffers were swapped. The audio's capture and processing times come from a
+ * {@link CaptureTimestamped} source — typically the
+ * {@link com.asteroid.duck.opengl.util.audio.analysis.FrequencyProcessor} or
+ * {@link PboAudioSink} the visualisers draw from. Each stage is recorded, in microseconds, in a
+ * {@link StatsFactory#histogram histogram}:</p>
+ * <ul>
+ *   <li>{@code "Audio: Latency capture-analysis us"} — capture to FFT or texture upload;</li>
+ *   <li>{@code "Audio: Latency analysis-render us"} — from there to the end of rendering;</li>
+ *   <li>{@code "Audio: Latency render-swap us"} — frame cap sleep, screenshot capture and swap;</li>
+ *   <li>{@code "Audio: Latency capture-swap us"} — the whole path.</li>
+ * </ul>
+ * The first two are skipped for a source with no processing step. Percentiles of all four are
+ * logged at {@code INFO} every {@link #DEFAULT_LOG_INTERVAL_NANOS logging interval}.
+ *
+ * <p>Render thread only.</p>
+ */
+public class AudioLatency {
+    private static final Logger LOG = LoggerFactory.getLogger(AudioLatency.class);
+
+    /** Default time between log lines: ten seconds. */
+    public static final long DEFAULT_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final CaptureTimestamped source;
+    private final Stats captureToAnalysis;
+    private final Stats analysisToRender;
+    private final Stats renderToSwap;
+    private final Stats captureToSwap;
+    private final long logIntervalNanos;
+    private long nextLog = CaptureTimestamped.NONE;
+
+    /**
+     * Record the latency of the audio held by {@code source} into the shared histograms, logging
+     * every {@link #DEFAULT_LOG_INTERVAL_NANOS}.
+     *
+     * @param source what the visualisers draw from
+     */
+    public AudioLatency(CaptureTimestamped source) {
+        this(source,
+                StatsFactory.histogram("Audio: Latency capture-analysis us"),
+                StatsFactory.histogram("Audio: Latency analysis-render us"),
+                StatsFactory.histogram("Audio: Latency render-swap us"),
+                StatsFactory.histogram("Audio: Latency capture-swap us"),
+                DEFAULT_LOG_INTERVAL_NANOS);
+    }
+
+    AudioLatency(CaptureTimestamped source, Stats captureToAnalysis, Stats analysisToRender,
+                 Stats renderToSwap, Stats captureToSwap, long logIntervalNanos) {
+        this.source = source;
+        this.captureToAnalysis = captureToAnalysis;
+        this.analysisToRender = analysisToRender;
+        this.renderToSwap = renderToSwap;
+        this.captureToSwap = captureToSwap;
+        this.logIntervalNanos = logIntervalNanos;
+    }
+
+    /**
+     * Record one displayed frame. Frames drawn before any audio has been captured are ignored.
+     *
+     * @param renderedNanos {@link System#nanoTime()} when rendering finished
+     * @param swappedNanos  {@link System#nanoTime()} when the buffer swap returned
+     */
+    public void frame(long renderedNanos, long swappedNanos) {
+        long captured = source.getCaptureNanos();
+        if (captured == CaptureTimestamped.NONE) {
+            return;
+        }
+        long processed = source.getProcessedNanos();
+        if (processed != CaptureTimestamped.NONE) {
+            captureToAnalysis.add(micros(processed - captured));
+            analysisToRender.add(micros(renderedNanos - processed));
+        }
+        renderToSwap.add(micros(swappedNanos - renderedNanos));
+        captureToSwap.add(micros(swappedNanos - captured));
+
+        if (nextLog == CaptureTimestamped.NONE) {
+            nextLog = swappedNanos + logIntervalNanos;
+        } else if (swappedNanos - nextLog >= 0) {
+            nextLog = swappedNanos + logIntervalNanos;
+            LOG.info("Audio latency us: capture-analysis {}, analysis-render {}, render-swap {}, capture-swap {}",
+                    captureToAnalysis, analysisToRender, renderToSwap, captureToSwap);
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -5,8 +5,16 @@ import com.asteroid.duck.opengl.util.stats.StatsFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.LineUnavailableException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
 
@@ -15,9 +23,44 @@ import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
  * or more {@link AudioSink} instances.
  *
  * <p>The reader runs a tight poll loop: it calls {@link AudioDataSource#available()} and, when data
- * is ready, reads up to {@value #CHUNK_SIZE} bytes and forwards them to every registered sink.
- * The loop yields the thread when nothing is available so the audio source can refill its internal
- * buffer without busy-spinning at 100 % CPU.</p>
+ * is ready, reads everything available — up to a cap of {@code maxChunkFrames} frames
+ * (default {@value #DEFAULT_MAX_CHUNK_FRAMES}) — and forwards it to every registered sink as one
+ * contiguous block. A busy system therefore makes a few large dispatches rather than thousands of
+ * {@value #CHUNK_SIZE}-byte ones, while a lightly loaded one still forwards each frame as soon as
+ * it is read.
+ * When nothing is available the loop hands over to its {@link WaitStrategy} so the audio source can
+ * refill its internal buffer; the default {@link #DEFAULT_WAIT_STRATEGY} parks with a backoff capped
+ * well below the line buffer duration instead of busy-spinning at 100 % CPU.</p>
+ *
+ * <h2>Statistics</h2>
+ * Every dispatch records its size in frames in the {@code "Audio: Chunk frames"} histogram
+ * (throughput per dispatch) and the audio that was waiting in the line when it was read, in
+ * microseconds, in the {@code "Audio: Latency us"} histogram.
+ * Each time the loop wakes to find data after waiting, the time spent waiting is recorded in
+ * {@code "Audio: Idle [strategy]"} and the age of the oldest unread frame (available bytes at the
+ * stream's byte rate) in {@code "Audio: Wake latency [strategy]"}, both in microseconds.
+ * {@link #getCpuTime()} reports the CPU consumed by the reader thread.
+ * After each read the line's {@link AudioDataSource#getOverruns() overrun count} is checked; new
+ * overruns are logged and counted in {@link #getOverruns()}. A {@link TargetLineSource} also
+ * adapts its capture buffer to them, starting from {@link #LINE_BUFFER_SIZE}.
+ *
+ * <p>Each dispatch is stamped with the {@link System#nanoTime()} at which its newest frame was
+ * captured — the time of the read less the duration of the bytes still queued in the line — and
+ * passed to {@link AudioSink#write(byte[], int, int, long)}, so sinks implementing
+ * {@link CaptureTimestamped} can report how old the audio they hold is.</p>
+ *
+ * <h2>Segment sinks</h2>
+ * Sinks implementing {@link SegmentAudioSink} are given each chunk as a {@link MemorySegment}
+ * instead of an array. A line that can lend its own memory ({@link AudioDataSource#readSegment},
+ * e.g. a mapped file) is read without any copy, and segment sinks consume the lent bytes
+ * directly; the chunk is copied to the reader's heap array only if a plain {@code byte[]} sink
+ * also needs it, once for all of them, counted in {@link #getCopiedBytes()}. Other lines are read
+ * into the heap array as before and segment sinks get a view of it.
+ *
+ * <p>Lines are opened in the reader's capture format — {@link LineAcquirer#IDEAL} unless another
+ * is given at construction — and the bytes are passed to the sinks exactly as the line delivers
+ * them, so a 24-bit or float line is captured at native depth with no conversion pass. Sinks
+ * that decode the PCM must be built for the same format, e.g. a {@link PcmRingBuffer}.</p>
  *
  * <p>A line is injected at any time via {@link #setLine}. Replacing the line atomically stops and
  * closes the old one before opening and starting the new one, so the reader always sees a running
@@ -31,34 +74,204 @@ public class AudioReader implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(AudioReader.class);
 
     /**
-     * Size of the {@link javax.sound.sampled.TargetDataLine} internal capture buffer in bytes.
-     * Set to 128 stereo frames (≈ 2.7 ms at 48 kHz) — small enough to keep end-to-end latency
-     * low while giving the OS enough room to avoid dropouts between reader iterations.
+     * Size of the {@link javax.sound.sampled.TargetDataLine} internal capture buffer in bytes
+     * that lines are opened with. Set to 128 stereo frames (≈ 2.7 ms at 48 kHz) — small enough to
+     * keep end-to-end latency low while giving the OS enough room to avoid dropouts between
+     * reader iterations. A {@link TargetLineSource} grows it from here if the line overruns.
      */
     public static final int LINE_BUFFER_SIZE = 128 * 2 * 2; // 512 bytes
 
     /**
-     * Number of bytes read from the line in a single iteration.
-     * Set to 16 stereo frames (≈ 0.33 ms at 48 kHz). Keeping this small reduces the time
-     * between audio capture and the data appearing in the sink, which matters for visualisers
-     * that need to stay in sync with playback.
+     * The historic fixed number of bytes read from the line in a single iteration: 16 stereo
+     * frames (≈ 0.33 ms at 48 kHz). Pass {@code CHUNK_SIZE / 4} as {@code maxChunkFrames} to
+     * reproduce the fixed-size behaviour.
      */
     public static final int CHUNK_SIZE = 16 * 2 * 2; // 64 bytes
 
-    private final Stats chunkSize = StatsFactory.stats("Audio: Chunk Size");
-    private final Stats available = StatsFactory.stats("Audio: Available");
-    private final byte[] audioChunk = new byte[CHUNK_SIZE];
+    /**
+     * Default cap on a single read, in stereo frames: the whole {@link #LINE_BUFFER_SIZE}
+     * (≈ 2.7 ms at 48 kHz), so one read can always drain the line and batching never adds
+     * latency beyond what the line already buffers.
+     */
+    public static final int DEFAULT_MAX_CHUNK_FRAMES = LINE_BUFFER_SIZE / 4;
+
+    /**
+     * Spin briefly, then park from 50 µs up to 1 ms — under half the ≈ 2.7 ms
+     * {@link #LINE_BUFFER_SIZE}, so the line cannot overrun while the reader sleeps.
+     */
+    public static final WaitStrategy DEFAULT_WAIT_STRATEGY =
+            WaitStrategy.parking(Duration.ofNanos(50_000), Duration.ofMillis(1));
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Stats chunkFrames = StatsFactory.histogram("Audio: Chunk frames");
+    private final Stats latency = StatsFactory.histogram("Audio: Latency us");
+    private final AudioFormat format;
+    private final int frameSize;
+    private final long bytesPerSecond;
+    private final byte[] audioChunk;
+    /** {@code audioChunk} as a heap segment, sliced for segment sinks. */
+    private final MemorySegment chunkSegment;
     private final List<AudioSink> sinks;
     private AudioDataSource mLine = null;
     private volatile boolean running = true;
+    private volatile WaitStrategy waitStrategy;
+    private volatile Thread readerThread;
+    private Stats idleTime;
+    private Stats wakeLatency;
+    private int lastAvailable;
+    private long framesRead;
+    private long dispatches;
+    private long copiedBytes;
+    /** The line last pumped and its overrun count when last checked; reader thread only. */
+    private AudioDataSource pumped;
+    private long seenOverruns;
+    private long overruns;
 
     /**
-     * Create a reader that will fan captured audio to all given sinks.
+     * Create a reader that will fan captured audio to all given sinks, waiting with the
+     * {@link #DEFAULT_WAIT_STRATEGY}.
      *
      * @param sinks the list of sinks to receive every PCM chunk; must not be {@code null} or empty
      */
     public AudioReader(List<AudioSink> sinks) {
+        this(sinks, DEFAULT_WAIT_STRATEGY);
+    }
+
+    /**
+     * Create a reader that will fan captured audio to all given sinks.
+     *
+     * @param sinks        the list of sinks to receive every PCM chunk; must not be {@code null} or empty
+     * @param waitStrategy how to wait when the line has nothing available
+     */
+    public AudioReader(List<AudioSink> sinks, WaitStrategy waitStrategy) {
+        this(sinks, waitStrategy, DEFAULT_MAX_CHUNK_FRAMES);
+    }
+
+    /**
+     * Create a reader with an explicit cap on the size of each read.
+     *
+     * @param sinks          the list of sinks to receive every PCM chunk; must not be {@code null} or empty
+     * @param waitStrategy   how to wait when the line has nothing available
+     * @param maxChunkFrames most frames read and dispatched in one go; bounds the audio
+     *                       duration a single sink call covers
+     */
+    public AudioReader(List<AudioSink> sinks, WaitStrategy waitStrategy, int maxChunkFrames) {
+        this(sinks, waitStrategy, maxChunkFrames, IDEAL);
+    }
+
+    /**
+     * Create a reader that opens lines in the given capture format.
+     *
+     * @param sinks          the list of sinks to receive every PCM chunk; must not be {@code null} or empty
+     * @param waitStrategy   how to wait when the line has nothing available
+     * @param maxChunkFrames most frames read and dispatched in one go; bounds the audio
+     *                       duration a single sink call covers
+     * @param format         the format lines are opened with and sinks receive
+     */
+    public AudioReader(List<AudioSink> sinks, WaitStrategy waitStrategy, int maxChunkFrames, AudioFormat format) {
+        if (maxChunkFrames <= 0) {
+            throw new IllegalArgumentException("maxChunkFrames must be positive: " + maxChunkFrames);
+        }
         this.sinks = sinks;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy");
+        this.format = Objects.requireNonNull(format, "format");
+        this.frameSize = format.getFrameSize();
+        this.bytesPerSecond = (long) (format.getFrameRate() * frameSize);
+        this.audioChunk = new byte[maxChunkFrames * frameSize];
+        this.chunkSegment = MemorySegment.ofArray(audioChunk);
+        bindStats(waitStrategy);
+    }
+
+    /**
+     * Most frames this reader reads and dispatches in one go.
+     *
+     * @return the cap passed at construction
+     */
+    public int getMaxChunkFrames() {
+        return audioChunk.length / frameSize;
+    }
+
+    /**
+     * The format lines are opened with; every chunk passed to the sinks is in this format.
+     *
+     * @return the capture format
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Total frames read and dispatched to the sinks.
+     *
+     * @return frames since the reader was created; read on the reader thread or after it stops
+     */
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    /**
+     * Total number of blocks dispatched to the sinks; {@code getFramesRead() / getDispatches()}
+     * is the mean batch size.
+     *
+     * @return dispatches since the reader was created; read on the reader thread or after it stops
+     */
+    public long getDispatches() {
+        return dispatches;
+    }
+
+    /**
+     * Bytes copied from lines' lent memory into the heap chunk for {@code byte[]} sinks. Zero
+     * when every sink consumes segments or no line lends its memory.
+     *
+     * @return bytes copied since the reader was created; read on the reader thread or after it stops
+     */
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    /**
+     * Overruns reported by the lines this reader has read from.
+     *
+     * @return overruns seen since the reader was created; read on the reader thread or after it stops
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * The strategy used when the line has nothing available.
+     *
+     * @return the current wait strategy
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Replace the wait strategy; takes effect on the next idle iteration.
+     *
+     * @param waitStrategy the new strategy
+     */
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        WaitStrategy old = this.waitStrategy;
+        bindStats(Objects.requireNonNull(waitStrategy, "waitStrategy"));
+        this.waitStrategy = waitStrategy;
+        old.signalAll();
+    }
+
+    /**
+     * CPU time consumed so far by the thread executing {@link #run()}.
+     *
+     * @return CPU time in nanoseconds, or {@code -1} if the reader is not running or the JVM
+     *         does not support thread CPU time measurement
+     */
+    public long getCpuTime() {
+        Thread thread = readerThread;
+        if (thread == null || !THREADS.isThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return THREADS.getThreadCpuTime(thread.threadId());
     }
 
     /**
@@ -80,25 +293,32 @@ public class AudioReader implements Runnable {
      */
     public void setRunning(boolean running) {
         this.running = running;
+        waitStrategy.signalAll();
     }
 
     public void run() {
+        readerThread = Thread.currentThread();
         AudioDataSource line = null;
+        int idleCount = 0;
+        long idleStart = 0;
         try {
             while (running) {
                 line = waitForLine();
-                int avail = line.available();
-                if (avail <= 0) {
-                    Thread.yield();
+                int read = pump(line);
+                if (read <= 0) {
+                    if (idleCount == 0) {
+                        idleStart = System.nanoTime();
+                    }
+                    waitStrategy.idle(idleCount);
+                    if (idleCount < Integer.MAX_VALUE) {
+                        idleCount++;
+                    }
                     continue;
                 }
-                available.add(avail);
-                int toRead = Math.min(avail, CHUNK_SIZE);
-                int read = line.read(audioChunk, 0, toRead);
-                chunkSize.add(read);
-
-                for (AudioSink sink : sinks) {
-                    sink.write(audioChunk, 0, read);
+                if (idleCount > 0) {
+                    idleTime.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - idleStart));
+                    wakeLatency.add(lastAvailable * 1_000_000L / bytesPerSecond);
+                    idleCount = 0;
                 }
             }
             if (line != null) {
@@ -108,7 +328,67 @@ public class AudioReader implements Runnable {
         } catch (InterruptedException e) {
             LOG.error("Audio reader thread, stopping.", e);
         }
-        LOG.debug("Audio reader stopped. chunk={}, available={}", chunkSize, available);
+        LOG.debug("Audio reader stopped. chunkFrames={}, latency={}, wait={}, cpu={} ms",
+                chunkFrames, latency, waitStrategy, TimeUnit.NANOSECONDS.toMillis(getCpuTime()));
+        readerThread = null;
+    }
+
+    /**
+     * Read whatever whole frames the line has available, up to the chunk cap, and dispatch them
+     * to every sink as one block.
+     *
+     * @param line the line to read from
+     * @return bytes read and dispatched; {@code 0} if less than one frame was available
+     */
+    int pump(AudioDataSource line) {
+        if (line != pumped) {
+            pumped = line;
+            seenOverruns = line.getOverruns();
+        }
+        int avail = line.available();
+        if (avail < frameSize) {
+            return 0;
+        }
+        lastAvailable = avail;
+        latency.add(avail * 1_000_000L / bytesPerSecond);
+        int toRead = Math.min(avail, audioChunk.length);
+        toRead -= toRead % frameSize;
+        MemorySegment lent = line.readSegment(toRead);
+        int read = lent != null ? (int) lent.byteSize() : line.read(audioChunk, 0, toRead);
+        if (read <= 0) {
+            return 0;
+        }
+        // the newest frame read left the line as long ago as the bytes still queued behind it take to play
+        long captureNanos = System.nanoTime() - (avail - read) * 1_000_000_000L / bytesPerSecond;
+        chunkFrames.add(read / frameSize);
+        framesRead += read / frameSize;
+        dispatches++;
+        MemorySegment segment = lent != null ? lent : chunkSegment.asSlice(0, read);
+        boolean inHeap = lent == null;
+        for (AudioSink sink : sinks) {
+            if (sink instanceof SegmentAudioSink segmentSink) {
+                segmentSink.write(segment, captureNanos);
+                continue;
+            }
+            if (!inHeap) {
+                MemorySegment.copy(lent, ValueLayout.JAVA_BYTE, 0, audioChunk, 0, read);
+                copiedBytes += read;
+                inHeap = true;
+            }
+            sink.write(audioChunk, 0, read, captureNanos);
+        }
+        long lineOverruns = line.getOverruns();
+        if (lineOverruns > seenOverruns) {
+            overruns += lineOverruns - seenOverruns;
+            seenOverruns = lineOverruns;
+            LOG.warn("{} overran; {} overrun(s) so far", line.getName(), overruns);
+        }
+        return read;
+    }
+
+    private void bindStats(WaitStrategy strategy) {
+        idleTime    = StatsFactory.stats("Audio: Idle [" + strategy + "]");
+        wakeLatency = StatsFactory.stats("Audio: Wake latency [" + strategy + "]");
     }
 
     /**
@@ -131,7 +411,8 @@ public class AudioReader implements Runnable {
 
     /**
      * Replace the active audio source. If a previous line is open it is stopped and closed first.
-     * The new line is opened with {@link #LINE_BUFFER_SIZE} and started before being made active.
+     * The new line is opened in the capture format with room for as many frames as
+     * {@link #LINE_BUFFER_SIZE} holds at {@link LineAcquirer#IDEAL}, and started before being made active.
      * Passing {@code null} suspends capture until a new line is provided.
      *
      * @param line the new audio data source to capture from, or {@code null} to pause capture
@@ -145,7 +426,7 @@ public class AudioReader implements Runnable {
             if (line != null) {
                 try {
                     if (!line.isOpen()) {
-                        line.open(IDEAL, LINE_BUFFER_SIZE);
+                        line.open(format, LINE_BUFFER_SIZE / IDEAL.getFrameSize() * frameSize);
                     }
                     if (!line.isRunning()) {
                         line.start();
@@ -157,6 +438,7 @@ public class AudioReader implements Runnable {
             }
             this.mLine = line;
             notifyAll();
+            waitStrategy.signalAll();
         }
     }
 }
@@ -0,0 +1,306 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.stats.Stats;
+import com.asteroid.duck.opengl.util.stats.StatsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer, multi-consumer ring that decouples the {@link AudioReader} capture thread from
+ * slow {@link AudioSink}s.
+ *
+ * <p>The reader publishes each PCM chunk once by calling {@link #write}. Every sink registered via
+ * {@link #addConsumer} is driven by its own {@link Consumer} thread, which follows the ring on its
+ * own cursor and calls {@link AudioSink#write} on the sink. A sink that takes too long therefore
+ * only delays itself — the capture thread and all the other sinks carry on.</p>
+ *
+ * <h2>Overrun</h2>
+ * The producer never waits for consumers. If a consumer falls more than {@code slotCount - 1}
+ * chunks behind, the slots it has not yet read are overwritten; the consumer detects this, skips
+ * forward to the newest chunk and counts the chunks it lost in {@link Consumer#getOverruns()}.
+ *
+ * <p>The capture stamp given to {@link #write(byte[], int, int, long)} is kept with each slot
+ * and passed on with it, so a {@link CaptureTimestamped} sink behind the ring reports the same
+ * latency it would if the reader fed it directly, plus the time spent queued here.</p>
+ *
+ * <h2>Typical wiring</h2>
+ * <pre>{@code
+ * AudioRing ring = AudioRing.fanOut(List.of(freqProc, displayProc));
+ * AudioReader audioReader = new AudioReader(List.of(ring));
+ * // ... start audioReader thread, call setLine() ...
+ * ring.close(); // at shutdown
+ * }</pre>
+ *
+ * <h2>Thread safety</h2>
+ * {@link #write} must only be called from one thread. Slot contents are plain arrays guarded by
+ * the {@code volatile} {@link #cursor}: consumers snapshot the cursor, copy the slot, then re-read
+ * the cursor to confirm the producer did not lap them during the copy (a seqlock-style check).
+ */
+public class AudioRing implements AudioSink, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(AudioRing.class);
+
+    /** Default number of slots; at least 1024 × 16 frames ≈ 340 ms of 48 kHz stereo audio. */
+    public static final int DEFAULT_SLOT_COUNT = 1024;
+
+    /** How an idle consumer waits for the producer: park from 50 µs (≈ 2 frames at 48 kHz) up to 1 ms. */
+    public static final WaitStrategy DEFAULT_WAIT_STRATEGY =
+            WaitStrategy.parking(Duration.ofNanos(50_000), Duration.ofMillis(1));
+
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final long[] captureNanos;
+    private final int mask;
+    private final int slotSize;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+
+    /** Sequence number of the most recently published slot; {@code -1} before the first write. */
+    private volatile long cursor = -1;
+
+    /**
+     * Create an empty ring with no consumers.
+     *
+     * @param slotCount number of chunks the ring can hold; must be a power of two
+     * @param slotSize  maximum bytes per slot; larger writes are split over several slots.
+     *                  Must be a positive multiple of 4 (one stereo frame)
+     */
+    public AudioRing(int slotCount, int slotSize) {
+        if (slotCount < 2 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("slotCount must be a power of two >= 2: " + slotCount);
+        }
+        if (slotSize <= 0 || slotSize % 4 != 0) {
+            throw new IllegalArgumentException("slotSize must be a positive multiple of 4: " + slotSize);
+        }
+        this.slots    = new byte[slotCount][slotSize];
+        this.lengths  = new int[slotCount];
+        this.captureNanos = new long[slotCount];
+        this.mask     = slotCount - 1;
+        this.slotSize = slotSize;
+    }
+
+    /**
+     * Create a ring with {@link #DEFAULT_SLOT_COUNT} slots, each large enough for one
+     * {@link AudioReader#DEFAULT_MAX_CHUNK_FRAMES} block, and start one consumer thread for each sink.
+     *
+     * @param sinks the sinks to fan audio out to
+     * @return the started ring; register it as the only sink of an {@link AudioReader}
+     */
+    public static AudioRing fanOut(List<AudioSink> sinks) {
+        AudioRing ring = new AudioRing(DEFAULT_SLOT_COUNT, AudioReader.DEFAULT_MAX_CHUNK_FRAMES * 4);
+        for (AudioSink sink : sinks) {
+            ring.addConsumer(sink, sink.getClass().getSimpleName()).start();
+        }
+        return ring;
+    }
+
+    /**
+     * Publish a chunk of PCM bytes to all consumers. Never blocks.
+     * Must only be called from the single producer (capture) thread.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        write(data, offset, length, CaptureTimestamped.NONE);
+    }
+
+    /**
+     * Publish a chunk of PCM bytes and its capture stamp to all consumers. If the chunk is split
+     * over several slots, each carries the stamp of the whole chunk.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length, long captureNanos) {
+        while (length > 0) {
+            int n = Math.min(length, slotSize);
+            long next = cursor + 1;
+            int index = (int) next & mask;
+            System.arraycopy(data, offset, slots[index], 0, n);
+            lengths[index] = n;
+            this.captureNanos[index] = captureNanos;
+            cursor = next; // volatile write publishes the slot
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Register a sink to be fed from this ring, waiting with the {@link #DEFAULT_WAIT_STRATEGY}.
+     *
+     * @param sink the sink to drive
+     * @param name used for the consumer thread name and its stats
+     * @return the new consumer
+     * @see #addConsumer(AudioSink, String, WaitStrategy)
+     */
+    public Consumer addConsumer(AudioSink sink, String name) {
+        return addConsumer(sink, name, DEFAULT_WAIT_STRATEGY);
+    }
+
+    /**
+     * Register a sink to be fed from this ring. The returned consumer starts at the next chunk
+     * published and does not run until {@link Consumer#start()} is called.
+     *
+     * @param sink         the sink to drive
+     * @param name         used for the consumer thread name and its stats
+     * @param waitStrategy how the consumer waits when it has caught up with the producer
+     * @return the new consumer
+     */
+    public Consumer addConsumer(AudioSink sink, String name, WaitStrategy waitStrategy) {
+        Consumer consumer = new Consumer(sink, name, waitStrategy, cursor + 1);
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    /**
+     * The consumers registered on this ring, in registration order.
+     *
+     * @return an unmodifiable snapshot of the consumers
+     */
+    public List<Consumer> getConsumers() {
+        return List.copyOf(consumers);
+    }
+
+    /** Number of chunks the ring can hold before a consumer is overrun. */
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /** Sequence number of the most recently published chunk; {@code -1} if nothing published yet. */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /** Stop all consumer threads and wait for them to exit. */
+    @Override
+    public void close() {
+        for (Consumer consumer : consumers) {
+            consumer.stop();
+        }
+    }
+
+    /**
+     * Follows an {@link AudioRing} on its own cursor and thread, forwarding every chunk to one
+     * {@link AudioSink}.
+     */
+    public final class Consumer implements Runnable {
+        private final AudioSink sink;
+        private final String name;
+        private final WaitStrategy waitStrategy;
+        private final byte[] chunk = new byte[slotSize];
+        private final Stats lag;
+        private volatile long sequence;
+        private volatile long overruns;
+        private volatile boolean running;
+        private Thread thread;
+
+        private Consumer(AudioSink sink, String name, WaitStrategy waitStrategy, long sequence) {
+            this.sink = sink;
+            this.name = name;
+            this.waitStrategy = waitStrategy;
+            this.sequence = sequence;
+            this.lag = StatsFactory.stats("Audio: Ring lag [" + name + "]");
+        }
+
+        /**
+         * Start a daemon thread running this consumer.
+         *
+         * @return this consumer
+         */
+        public synchronized Consumer start() {
+            if (thread == null) {
+                running = true;
+                thread = new Thread(this, "audio-ring-" + name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return this;
+        }
+
+        /** Stop the consumer thread after its current chunk and wait for it to exit. */
+        public synchronized void stop() {
+            running = false;
+            if (thread != null) {
+                waitStrategy.signalAll();
+                LockSupport.unpark(thread);
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                thread = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            try {
+                while (running) {
+                    if (poll()) {
+                        idleCount = 0;
+                    } else {
+                        waitStrategy.idle(idleCount);
+                        if (idleCount < Integer.MAX_VALUE) {
+                            idleCount++;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOG.error("Audio ring consumer {} interrupted, stopping.", name, e);
+            }
+            LOG.debug("Audio ring consumer {} stopped. lag={}, overruns={}", name, lag, overruns);
+        }
+
+        /**
+         * Deliver at most one chunk to the sink on the calling thread.
+         *
+         * @return {@code true} if a chunk was delivered or an overrun was skipped,
+         *         {@code false} if the consumer is up to date
+         */
+        boolean poll() {
+            long seq = sequence;
+            long available = cursor;
+            if (seq > available) {
+                return false;
+            }
+            lag.add(available - seq);
+            int index = (int) seq & mask;
+            int length = lengths[index];
+            long captured = captureNanos[index];
+            System.arraycopy(slots[index], 0, chunk, 0, length);
+            VarHandle.loadLoadFence();
+            // the producer starts overwriting slot 'seq' while publishing seq + slotCount - 1
+            long latest = cursor;
+            if (latest - seq >= slots.length - 1) {
+                overruns += latest - seq;
+                sequence = latest;
+                return true;
+            }
+            sink.write(chunk, 0, length, captured);
+            sequence = seq + 1;
+            return true;
+        }
+
+        /** Sink this consumer feeds. */
+        public AudioSink getSink() {
+            return sink;
+        }
+
+        /** Number of chunks published but not yet delivered to the sink. */
+        public long getLag() {
+            return Math.max(0, cursor + 1 - sequence);
+        }
+
+        /** Total number of chunks this consumer has lost because the producer lapped it. */
+        public long getOverruns() {
+            return overruns;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": lag=" + lag + ", overruns=" + overruns;
+        }
+    }
+}
@@ -1,23 +1,43 @@
 package com.asteroid.duck.opengl.util.audio;
 
 /**
- * Receives raw interleaved 16-bit stereo PCM bytes from a capture source.
+ * Receives raw interleaved PCM bytes from a capture source.
  *
  * <p>Implementations must be callable from a background audio thread while the GL render
  * thread may be reading from the same underlying store. See {@link PboAudioSink} and
  * {@link com.asteroid.duck.opengl.util.audio.RollingAudioBuffer} for the two concrete
- * strategies (GPU-mapped PBO vs. heap ring buffer).</p>
+ * strategies (GPU-mapped PBO vs. heap ring buffer), and {@link PcmRingBuffer} for formats other
+ * than 16-bit stereo.</p>
  */
 public interface AudioSink {
     /**
      * Write a chunk of raw PCM bytes into this sink's ring buffer.
      *
-     * <p>The data is interleaved little-endian 16-bit stereo: four bytes per stereo frame
-     * in the order {@code [L_lo, L_hi, R_lo, R_hi]}. The length is always a multiple of 4.</p>
+     * <p>The data is in the capture format of the {@link AudioReader} feeding this sink. By
+     * default that is {@link LineAcquirer#IDEAL}: interleaved little-endian 16-bit stereo, four
+     * bytes per stereo frame in the order {@code [L_lo, L_hi, R_lo, R_hi]}. The length is always
+     * a whole number of frames.</p>
      *
      * @param data   buffer containing the PCM bytes
      * @param offset index of the first byte to consume within {@code data}
-     * @param length number of bytes to consume; always a multiple of 4 (one stereo frame = 4 bytes)
+     * @param length number of bytes to consume; always a multiple of the frame size
      */
     void write(byte[] data, int offset, int length);
+
+    /**
+     * Write a chunk of raw PCM bytes together with the time it was captured.
+     *
+     * <p>{@link AudioReader} calls this form. Sinks that report how stale their contents are
+     * (see {@link CaptureTimestamped}) override it to keep the stamp, and decorators such as
+     * {@link AudioRing} pass it on; every other sink ignores the stamp.</p>
+     *
+     * @param data         buffer containing the PCM bytes
+     * @param offset       index of the first byte to consume within {@code data}
+     * @param length       number of bytes to consume; always a multiple of the frame size
+     * @param captureNanos {@link System#nanoTime()} at which the newest frame of the chunk was
+     *                     captured, or {@link CaptureTimestamped#NONE} if unknown
+     */
+    default void write(byte[] data, int offset, int length, long captureNanos) {
+        write(data, offset, length);
+    }
 }
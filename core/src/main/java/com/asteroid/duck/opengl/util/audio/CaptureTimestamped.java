@@ -0,0 +1,33 @@
+package com.asteroid.duck.opengl.util.audio;
+
+/**
+ * Something holding audio whose capture time is known, so the age of what is drawn can be
+ * measured.
+ *
+ * <p>All times are {@link System#nanoTime()} values. The stamp originates in
+ * {@link AudioReader}, which estimates when the newest frame of each chunk left the line from the
+ * bytes still queued behind it, and travels with the chunk through
+ * {@link AudioSink#write(byte[], int, int, long)}. {@link AudioLatency} turns these stamps into
+ * per-frame latency statistics.</p>
+ */
+public interface CaptureTimestamped {
+    /** Stamp meaning "nothing captured yet" or "not known". */
+    long NONE = Long.MIN_VALUE;
+
+    /**
+     * When the newest audio this object currently exposes was captured.
+     *
+     * @return a {@link System#nanoTime()} value, or {@link #NONE} if nothing has been written
+     */
+    long getCaptureNanos();
+
+    /**
+     * When the audio stamped {@link #getCaptureNanos()} was last processed for display: analysed,
+     * for example, or uploaded to the GPU. Pure buffers have no such step.
+     *
+     * @return a {@link System#nanoTime()} value, or {@link #NONE} if there is no processing step
+     */
+    default long getProcessedNanos() {
+        return NONE;
+    }
+}
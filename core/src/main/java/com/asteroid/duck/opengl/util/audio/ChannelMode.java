@@ -1,19 +1,124 @@
 package com.asteroid.duck.opengl.util.audio;
 
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
 /**
  * Selects which channel(s) of a stereo PCM stream to use when producing a mono output value.
  *
  * <p>Used by {@link RollingAudioBuffer#readSamples} and related methods to control whether the
  * visualiser tracks the left channel, the right channel, or a blended average of both.</p>
+ *
+ * <p>Each mode also provides a bulk {@link #toMono} conversion from raw 16-bit little-endian
+ * stereo bytes. With {@code --add-modules jdk.incubator.vector} on the command line it runs on the
+ * Vector API, a whole vector of frames at a time (see {@code VectorMonoConverter}); otherwise, and
+ * for the frames left over, in per-mode loops that are branch-free and read each short with a
+ * byte-array view {@link VarHandle}. Both give identical floats.</p>
  */
 public enum ChannelMode {
     /** Use only the left channel sample as the output value. */
-    LEFT,
+    LEFT {
+        @Override
+        void toMonoScalar(byte[] pcm, int offset, int frames, float[] dest, int destPos) {
+            for (int i = 0; i < frames; i++) {
+                dest[destPos + i] = left(pcm, offset + i * 4) * SCALE;
+            }
+        }
+    },
     /** Use only the right channel sample as the output value. */
-    RIGHT,
+    RIGHT {
+        @Override
+        void toMonoScalar(byte[] pcm, int offset, int frames, float[] dest, int destPos) {
+            for (int i = 0; i < frames; i++) {
+                dest[destPos + i] = right(pcm, offset + i * 4) * SCALE;
+            }
+        }
+    },
     /**
      * Average the left and right channel samples into a single mono value.
      * Useful when the stereo image does not matter and you want the overall signal level.
      */
-    MONO_BLEND
+    MONO_BLEND {
+        @Override
+        void toMonoScalar(byte[] pcm, int offset, int frames, float[] dest, int destPos) {
+            for (int i = 0; i < frames; i++) {
+                int frame = offset + i * 4;
+                dest[destPos + i] = (left(pcm, frame) + right(pcm, frame)) * HALF_SCALE;
+            }
+        }
+    };
+
+    private static final VarHandle SHORT_LE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final float SCALE = 1.0f / Short.MAX_VALUE;
+    private static final float HALF_SCALE = SCALE / 2.0f;
+    /** The Vector API conversion, or {@code null} to use the scalar loops throughout. */
+    private static final BulkConverter VECTOR = loadVector();
+
+    /**
+     * Convert whole stereo frames of 16-bit little-endian PCM to normalised mono floats.
+     *
+     * @param pcm     interleaved {@code [L_lo, L_hi, R_lo, R_hi]} frames
+     * @param offset  byte index of the first frame in {@code pcm}
+     * @param frames  number of stereo frames to convert
+     * @param dest    destination array
+     * @param destPos index in {@code dest} for the first converted sample
+     */
+    public void toMono(byte[] pcm, int offset, int frames, float[] dest, int destPos) {
+        int done = VECTOR == null
+                ? 0
+                : VECTOR.toMono(this, pcm, offset, frames, dest, destPos, this == MONO_BLEND ? HALF_SCALE : SCALE);
+        toMonoScalar(pcm, offset + done * 4, frames - done, dest, destPos + done);
+    }
+
+    /** As {@link #toMono}, always in scalar loops; for the tail of a vector conversion, and for comparing the two. */
+    abstract void toMonoScalar(byte[] pcm, int offset, int frames, float[] dest, int destPos);
+
+    /**
+     * Whether {@link #toMono} runs on the Vector API.
+     *
+     * @return true if {@code jdk.incubator.vector} was available and usable
+     */
+    public static boolean isVectorised() {
+        return VECTOR != null;
+    }
+
+    /**
+     * A leading run of frames converted in bulk; implemented by {@code VectorMonoConverter}, which
+     * is compiled apart from the rest of the library because it needs {@code jdk.incubator.vector}.
+     */
+    interface BulkConverter {
+        /**
+         * Convert as many whole vectors of frames as fit.
+         *
+         * @param scale factor from the channel sum to the normalised sample
+         * @return the number of frames converted; the caller converts the rest
+         */
+        int toMono(ChannelMode mode, byte[] pcm, int offset, int frames, float[] dest, int destPos, float scale);
+    }
+
+    private static BulkConverter loadVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (BulkConverter) Class.forName(ChannelMode.class.getPackageName() + ".VectorMonoConverter")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LoggerFactory.getLogger(ChannelMode.class)
+                    .warn("Vector API present but unusable; converting PCM in scalar loops", e);
+            return null;
+        }
+    }
+
+    private static int left(byte[] pcm, int frame) {
+        return (short) SHORT_LE.get(pcm, frame);
+    }
+
+    private static int right(byte[] pcm, int frame) {
+        return (short) SHORT_LE.get(pcm, frame + 2);
+    }
 }
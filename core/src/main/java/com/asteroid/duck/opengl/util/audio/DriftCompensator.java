@@ -0,0 +1,137 @@
+package com.asteroid.duck.opengl.util.audio;
+
+/**
+ * Keeps a render-thread reader a fixed distance behind a capture line whose sample clock drifts
+ * against the render {@link com.asteroid.duck.opengl.util.timer.Clock}.
+ *
+ * <p>A reader that simply takes the newest window each frame inherits every irregularity of the
+ * capture thread, and one that advances by {@code elapsed × nominal rate} slowly falls behind or
+ * runs ahead of the device — 200 ppm is a second's worth of audio every 83 minutes — until its
+ * ring overruns and it jumps. This class instead advances a fractional <em>playhead</em> at the
+ * nominal rate scaled by a {@link #getStep() step} near 1, and steers that step with a
+ * critically-damped proportional-integral loop so the playhead stays {@code latencyFrames}
+ * behind the frames actually received. The integral term converges on the relative rate error
+ * of the two clocks ({@link #getDriftPpm()}); the proportional term absorbs delivery jitter. The
+ * step is limited to ±{@value #MAX_CORRECTION}, so corrections are an inaudible, invisible
+ * fractional resample rather than a skip.</p>
+ *
+ * <p>If the gap ever leaves the range {@code [0, 2 × latencyFrames]} — the line stalled, the
+ * render loop paused, or the stream restarted — the playhead snaps back to the target and
+ * {@link #getResyncs()} counts it.</p>
+ *
+ * <p>Not thread-safe: call {@link #update} from the thread that reads at the playhead.</p>
+ */
+public class DriftCompensator {
+    /** Natural frequency of the steering loop, in Hz: slow enough to ignore per-frame jitter. */
+    static final double NATURAL_HZ = 0.01;
+    /** Largest correction applied to the step, as a fraction of the nominal rate. */
+    public static final double MAX_CORRECTION = 2e-3;
+
+    private static final double OMEGA = 2 * Math.PI * NATURAL_HZ;
+    private static final double KP = 2 * OMEGA;
+    private static final double KI = OMEGA * OMEGA;
+
+    private final double nominalRate;
+    private final int latencyFrames;
+
+    private boolean started;
+    private double lastSeconds;
+    private double playhead;
+    private double integral;
+    private double step = 1;
+    private long resyncs;
+
+    /**
+     * @param nominalRate   the line's nominal sample rate in frames per second
+     * @param latencyFrames how far behind the newest frame received the playhead is held; must
+     *                      cover the largest chunk the capture thread delivers at once
+     */
+    public DriftCompensator(float nominalRate, int latencyFrames) {
+        if (nominalRate <= 0 || latencyFrames <= 0) {
+            throw new IllegalArgumentException("Rate and latency must be positive: " + nominalRate + ", " + latencyFrames);
+        }
+        this.nominalRate = nominalRate;
+        this.latencyFrames = latencyFrames;
+    }
+
+    /**
+     * Advance the playhead to a new render time and steer it towards the frames received.
+     *
+     * @param framesReceived total frames the line has delivered so far
+     * @param renderSeconds  the render clock now; must not run backwards
+     * @return the new playhead, in frames
+     */
+    public double update(long framesReceived, double renderSeconds) {
+        double target = framesReceived - latencyFrames;
+        if (!started) {
+            started = true;
+            lastSeconds = renderSeconds;
+            playhead = target;
+            return playhead;
+        }
+        double dt = renderSeconds - lastSeconds;
+        lastSeconds = renderSeconds;
+        playhead += dt * nominalRate * step;
+        double error = target - playhead;
+        if (Math.abs(error) > latencyFrames) {
+            playhead = target;
+            resyncs++;
+            return playhead;
+        }
+        double seconds = error / nominalRate;
+        integral = clamp(integral + KI * seconds * dt);
+        step = 1 + clamp(integral + KP * seconds);
+        return playhead;
+    }
+
+    private static double clamp(double correction) {
+        return Math.max(-MAX_CORRECTION, Math.min(MAX_CORRECTION, correction));
+    }
+
+    /**
+     * Stream position the reader should treat as "now", in fractional frames counted as
+     * {@code framesReceived} is.
+     *
+     * @return the playhead after the last {@link #update}
+     */
+    public double getPlayhead() {
+        return playhead;
+    }
+
+    /**
+     * Frames to advance per nominal frame; also the spacing at which to resample a window read at
+     * the playhead so its pitch matches the render clock.
+     *
+     * @return the current step, within {@value #MAX_CORRECTION} of 1
+     */
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * Estimated rate of the capture clock relative to the render clock.
+     *
+     * @return parts per million; positive when the line runs fast
+     */
+    public double getDriftPpm() {
+        return integral * 1e6;
+    }
+
+    /**
+     * How many times the gap left its range and the playhead was snapped back.
+     *
+     * @return the resync count
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * The target distance behind the newest frame received.
+     *
+     * @return the latency passed at construction, in frames
+     */
+    public int getLatencyFrames() {
+        return latencyFrames;
+    }
+}
@@ -0,0 +1,209 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import java.util.Arrays;
+
+/**
+ * A ring buffer of normalised mono float samples, converted from 16-bit little-endian stereo PCM
+ * as it is written.
+ *
+ * <p>Where {@link RollingAudioBuffer} defers conversion to read time — and so re-converts the
+ * whole read window on every read — this variant converts each frame exactly once, on the
+ * capture thread, using its fixed {@link ChannelMode}. A read is then one or two
+ * {@link System#arraycopy} calls regardless of window size, which suits consumers such as
+ * {@link com.asteroid.duck.opengl.util.audio.analysis.FrequencyProcessor} that read an FFT-sized
+ * window every frame but only receive a few hundred new frames in between.</p>
+ *
+ * <p>Besides the newest window, {@link #readSamples(float[], int, double, double)} reads a window
+ * ending at any fractional position in the stream with a fractional step between samples, so a
+ * {@link DriftCompensator} can steer a reader that runs on the render clock smoothly through
+ * audio arriving on the device clock.</p>
+ *
+ * <p>Thread-safe for a single writer and single reader: the running frame count {@code written}
+ * is {@code volatile}, so the reader snapshots it once before reading and is guaranteed to see
+ * all samples written before that snapshot.</p>
+ */
+public class FloatAudioBuffer implements AudioSink, CaptureTimestamped {
+
+    /** Mono samples in [−1, 1]. */
+    private final float[] samples;
+
+    private final ChannelMode mode;
+
+    /** Frames ever written; frame {@code n} is stored at {@code samples[n % capacity]}. */
+    private volatile long written;
+
+    /** Capture time of the newest sample written. */
+    private volatile long captureNanos = NONE;
+
+    /**
+     * Create a ring buffer holding the given number of mono samples.
+     *
+     * @param capacity number of samples (one per stereo frame) this buffer can hold; should
+     *                 comfortably exceed the largest read so the writer does not overwrite
+     *                 samples while they are being copied out
+     * @param mode     which channel(s) of each stereo frame to keep
+     */
+    public FloatAudioBuffer(int capacity, ChannelMode mode) {
+        this.samples = new float[capacity];
+        this.mode = mode;
+    }
+
+    /**
+     * Convert and store raw PCM bytes. Only the new frames are converted; wrap-around is handled
+     * with two conversion passes.
+     */
+    @Override
+    public void write(byte[] chunk, int offset, int length) {
+        int capacity = samples.length;
+        int frames = length / 4;
+        long total = written + frames;
+        if (frames > capacity) {
+            // only the newest 'capacity' frames can survive
+            offset += (frames - capacity) * 4;
+            frames = capacity;
+        }
+        int pos = (int) ((total - frames) % capacity);
+        int firstPart = Math.min(frames, capacity - pos);
+        mode.toMono(chunk, offset, firstPart, samples, pos);
+        if (firstPart < frames) {
+            mode.toMono(chunk, offset + firstPart * 4, frames - firstPart, samples, 0);
+        }
+        written = total; // volatile write after data is visible
+    }
+
+    /** As {@link #write(byte[], int, int)}, also recording when the newest frame was captured. */
+    @Override
+    public void write(byte[] chunk, int offset, int length, long captureNanos) {
+        write(chunk, offset, length);
+        this.captureNanos = captureNanos;
+    }
+
+    @Override
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /**
+     * Copy the most recent {@code count} samples into {@code dest[0..count-1]}, oldest first.
+     *
+     * @param dest  destination array; must have length >= count
+     * @param count number of samples; clamped to buffer capacity if larger
+     */
+    public void readSamples(float[] dest, int count) {
+        int capacity = samples.length;
+        int pos = (int) (written % capacity); // volatile snapshot — establishes happens-before with write
+        int clamped = Math.min(count, capacity);
+        int start = pos - clamped;
+        if (start >= 0) {
+            System.arraycopy(samples, start, dest, 0, clamped);
+        } else {
+            int tail = -start;
+            System.arraycopy(samples, capacity - tail, dest, 0, tail);
+            System.arraycopy(samples, 0, dest, tail, clamped - tail);
+        }
+    }
+
+    /**
+     * Copy the {@code count} samples that end just before stream position {@code end} into
+     * {@code dest[0..count-1]}, oldest first: the window a streaming analysis takes at a hop
+     * boundary, regardless of how far the writer has got since. The writer overwrites the oldest
+     * frames first, so a window should stay at least one write clear of them.
+     *
+     * @param dest  destination array; must have length >= count
+     * @param count number of samples
+     * @param end   stream position just after the last sample, in frames
+     * @throws IllegalArgumentException if the window has not been written yet or has already
+     *                                  been overwritten
+     */
+    public void readSamples(float[] dest, int count, long end) {
+        if (!tryReadSamples(dest, count, end)) {
+            throw new IllegalArgumentException("Window of " + count + " ending at " + end
+                    + " is not held; " + written + " frames written into " + samples.length);
+        }
+    }
+
+    /**
+     * As {@link #readSamples(float[], int, long)}, but reporting a window that is not held rather
+     * than throwing: for a reader racing the writer, which cannot know a window is still held
+     * until it has copied it. A window the writer has overwritten by the end of the copy counts as
+     * not held, so {@code dest} is only meaningful when this returns {@code true}; as there, keep
+     * at least one write clear of the oldest frames, which a write in progress may have reached.
+     *
+     * @param dest  destination array; must have length >= count
+     * @param count number of samples
+     * @param end   stream position just after the last sample, in frames
+     * @return {@code true} if {@code dest} holds the window, {@code false} if it had not been
+     *         written yet or was overwritten before or while it was copied
+     */
+    public boolean tryReadSamples(float[] dest, int count, long end) {
+        long total = written; // volatile snapshot
+        int capacity = samples.length;
+        if (end > total || end - count < total - capacity || count > end) {
+            return false;
+        }
+        int start = (int) ((end - count) % capacity);
+        int first = Math.min(count, capacity - start);
+        System.arraycopy(samples, start, dest, 0, first);
+        System.arraycopy(samples, 0, dest, first, count - first);
+        // re-read: any write published during the copy may have overwritten the window's start
+        return end - count >= written - capacity;
+    }
+
+    /**
+     * Resample {@code count} samples ending at a fractional stream position: {@code dest[i]} is
+     * the signal at frame {@code end - (count - 1 - i) * step}, linearly interpolated between the
+     * two nearest stored frames. Positions are counted as in {@link #getFramesWritten()};
+     * positions newer than the newest frame, or older than the oldest still held, read that
+     * frame instead.
+     *
+     * @param dest  destination array; must have length >= count
+     * @param count number of samples
+     * @param end   stream position of the last sample, in frames
+     * @param step  frames between consecutive samples; 1 reads at the capture rate
+     */
+    public void readSamples(float[] dest, int count, double end, double step) {
+        long total = written; // volatile snapshot
+        int capacity = samples.length;
+        if (total == 0) {
+            Arrays.fill(dest, 0, count, 0f);
+            return;
+        }
+        double oldest = Math.max(0, total - capacity);
+        double newest = total - 1;
+        for (int i = 0; i < count; i++) {
+            double position = Math.min(newest, Math.max(oldest, end - (count - 1 - i) * step));
+            long index = (long) position;
+            float fraction = (float) (position - index);
+            float a = samples[(int) (index % capacity)];
+            float b = samples[(int) (Math.min(index + 1, total - 1) % capacity)];
+            dest[i] = a + fraction * (b - a);
+        }
+    }
+
+    /**
+     * Frames written since the buffer was created, including any that no longer fit.
+     *
+     * @return the running frame count; the newest frame is at position {@code count - 1}
+     */
+    public long getFramesWritten() {
+        return written;
+    }
+
+    /**
+     * The channel selection applied as frames are written.
+     *
+     * @return the mode passed at construction
+     */
+    public ChannelMode getChannelMode() {
+        return mode;
+    }
+
+    /**
+     * Number of samples this buffer can hold.
+     *
+     * @return the capacity passed at construction
+     */
+    public int getCapacity() {
+        return samples.length;
+    }
+}
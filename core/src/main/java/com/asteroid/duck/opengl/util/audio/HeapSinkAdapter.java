@@ -0,0 +1,49 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Feeds segments to a {@code byte[]} {@link AudioSink}; see {@link SegmentAudioSink#adapt}.
+ *
+ * <p>Not thread-safe: like any sink, write from a single capture thread.</p>
+ */
+final class HeapSinkAdapter implements SegmentAudioSink {
+    private final AudioSink sink;
+    private byte[] scratch = new byte[0];
+    private long copiedBytes;
+
+    HeapSinkAdapter(AudioSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void write(MemorySegment chunk, long captureNanos) {
+        int length = Math.toIntExact(chunk.byteSize());
+        if (!chunk.isNative() && chunk.heapBase().orElse(null) instanceof byte[] array) {
+            // a heap segment's address is its offset into the array
+            sink.write(array, Math.toIntExact(chunk.address()), length, captureNanos);
+            return;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        MemorySegment.copy(chunk, ValueLayout.JAVA_BYTE, 0, scratch, 0, length);
+        copiedBytes += length;
+        sink.write(scratch, 0, length, captureNanos);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length, long captureNanos) {
+        sink.write(data, offset, length, captureNanos);
+    }
+
+    /**
+     * Bytes copied to the heap because the segment was not backed by a {@code byte[]}.
+     *
+     * @return bytes copied since the adapter was created
+     */
+    long getCopiedBytes() {
+        return copiedBytes;
+    }
+}
@@ -1,12 +1,16 @@
 package com.asteroid.duck.opengl.util.audio;
 
 import com.asteroid.duck.opengl.util.RenderContext;
+import com.asteroid.duck.opengl.util.audio.file.MappedFileDataSource;
 import com.asteroid.duck.opengl.util.audio.simulated.*;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sound.sampled.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -18,8 +22,10 @@ import java.util.stream.Stream;
  * <p>On {@link #init}, all available mixers are scanned for lines that match the desired
  * {@link javax.sound.sampled.AudioFormat}. If the system property {@code simulate.audio=true} is
  * set, a synthetic stereo oscillator is prepended so the rest of the pipeline works without a
- * physical input device. The selected source can be cycled at runtime via {@link #next()} and
- * {@link #previous()}.</p>
+ * physical input device. Recorded WAV files listed in the system property {@code audio.files}
+ * (separated by {@link File#pathSeparator}) are offered next, as looping real-time
+ * {@link MappedFileDataSource}s. The selected source can be cycled at runtime via {@link #next()}
+ * and {@link #previous()}.</p>
  */
 public class LineAcquirer {
   private static final Logger LOG = LoggerFactory.getLogger(LineAcquirer.class);
@@ -33,8 +39,10 @@ public class LineAcquirer {
   /**
    * Discover available audio sources and prepare them for use.
    *
-   * <p>If {@code simulate.audio=true} a synthetic source is added first. Then all Java Sound
-   * mixers supporting {@code ideal} as a capture format are opened and registered.</p>
+   * <p>If {@code simulate.audio=true} a synthetic source is added first, then any files named in
+   * {@code audio.files}. Then all Java Sound mixers supporting {@code ideal} as a capture format
+   * are opened and registered. A file that cannot be read is logged and skipped; a file whose
+   * format differs from the reader's capture format will fail when the reader opens it.</p>
    *
    * @param ctx   the render context (unused beyond providing access to the timer for simulation)
    * @param ideal the desired capture format; matching lines must support this format
@@ -45,6 +53,15 @@ public class LineAcquirer {
       StereoDataSource audio = getSampledWaveformData();
       sources.add(new SimulatedDataSource(ctx.getClock(), audio));
     }
+    String files = System.getProperty("audio.files", "");
+    for (String file : files.split(File.pathSeparator)) {
+      if (file.isBlank()) continue;
+      try {
+        sources.add(MappedFileDataSource.wav(Path.of(file.trim()), ctx.getClock(), 1.0, true));
+      } catch (IOException e) {
+        LOG.error("Cannot play audio file: {}", file, e);
+      }
+    }
     List<MixerLine> mixerLines = allLinesMatching(ideal).toList();
     mixerLines.stream().map(MixerLine::getTargetDataLine)
             .filter(Optional::isPresent)
@@ -55,6 +72,16 @@ public class LineAcquirer {
     }
   }
 
+  /**
+   * Offer an additional source, e.g. a {@link MappedFileDataSource}, after those found by
+   * {@link #init}.
+   *
+   * @param source the source to add to the cycle
+   */
+  public void addSource(AudioDataSource source) {
+    sources.add(source);
+  }
+
   /**
    * Returns the currently selected audio source.
    *
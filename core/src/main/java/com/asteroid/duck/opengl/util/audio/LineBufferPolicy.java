@@ -0,0 +1,89 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * Limits within which a {@link TargetLineSource} adapts the size of its line's capture buffer.
+ *
+ * <p>The buffer doubles, up to {@code maxFrames}, each time the line overruns, and halves, down
+ * to {@code minFrames}, after a {@code calm} period of capture with no overrun. Small buffers keep
+ * capture latency low; the doubling buys headroom quickly when GC pauses or render load stop the
+ * reader from keeping up.</p>
+ *
+ * @param minFrames smallest buffer, in frames; also the smallest size a line is opened with
+ * @param maxFrames largest buffer, in frames
+ * @param calm      overrun-free capture, in audio time, before the buffer is halved, or
+ *                  {@link #NEVER} to never halve it
+ */
+public record LineBufferPolicy(int minFrames, int maxFrames, Duration calm) {
+    /**
+     * From {@link AudioReader#LINE_BUFFER_SIZE} (≈ 2.7 ms at 48 kHz) up to 16 times that
+     * (≈ 43 ms), shrinking after a minute without an overrun.
+     */
+    public static final LineBufferPolicy DEFAULT = new LineBufferPolicy(
+            AudioReader.LINE_BUFFER_SIZE / 4, 16 * AudioReader.LINE_BUFFER_SIZE / 4, Duration.ofMinutes(1));
+
+    /** A calm period that never ends: the buffer grows after overruns but is never halved. */
+    public static final Duration NEVER = ChronoUnit.FOREVER.getDuration();
+
+    /** A fixed buffer: the line is opened with the requested size clamped to {@code frames}. */
+    public static LineBufferPolicy fixed(int frames) {
+        return new LineBufferPolicy(frames, frames, NEVER);
+    }
+
+    public LineBufferPolicy {
+        Objects.requireNonNull(calm, "calm");
+        if (minFrames <= 0 || maxFrames < minFrames) {
+            throw new IllegalArgumentException("Bad buffer limits: " + minFrames + " to " + maxFrames + " frames");
+        }
+        if (calm.isNegative() || calm.isZero()) {
+            throw new IllegalArgumentException("Calm period must be positive: " + calm);
+        }
+    }
+
+    /**
+     * @param frames a requested buffer size
+     * @return the size within the limits
+     */
+    public int clamp(int frames) {
+        return Math.max(minFrames, Math.min(maxFrames, frames));
+    }
+
+    /**
+     * @param frames the current buffer size
+     * @return the size to use after an overrun
+     */
+    public int grow(int frames) {
+        return clamp(frames * 2);
+    }
+
+    /**
+     * @param frames the current buffer size
+     * @return the size to use after a calm period
+     */
+    public int shrink(int frames) {
+        return shrinks() ? clamp(frames / 2) : clamp(frames);
+    }
+
+    /**
+     * @return whether the buffer is ever halved: {@code false} if the calm period is
+     *         {@link #NEVER}
+     */
+    public boolean shrinks() {
+        return !NEVER.equals(calm);
+    }
+
+    /**
+     * @param sampleRate the line's frame rate
+     * @return the calm period in frames at that rate; {@link Long#MAX_VALUE} if it is
+     *         {@link #NEVER}
+     */
+    public long calmFrames(float sampleRate) {
+        if (!shrinks()) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (calm.toNanos() / 1e9 * sampleRate);
+    }
+}
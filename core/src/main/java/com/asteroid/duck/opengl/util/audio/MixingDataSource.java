@@ -0,0 +1,473 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link AudioDataSource} that mixes several sources into one stream, so an
+ * {@link AudioReader} can visualise two capture lines together, or a live line over a simulated
+ * click track.
+ *
+ * <pre>{@code
+ * MixingDataSource mix = new MixingDataSource(List.of(line, clickTrack), 0.8f, 0.2f);
+ * audioReader.setLine(mix);
+ * }</pre>
+ *
+ * <h2>Pulling</h2>
+ * Every input is opened in the mixer's format and drained by its own thread, which decodes what
+ * it reads into a per-input float ring. An input whose line stalls therefore never delays the
+ * others' reads; each thread waits with a {@link WaitStrategy} when its line is empty.
+ *
+ * <h2>Alignment</h2>
+ * Inputs are aligned by sample count: output frame {@code n} is the gain-weighted sum of frame
+ * {@code n} of every input since the mixer was opened. {@link #available()} is normally what
+ * every input can supply. If one input falls more than {@value #MAX_SKEW_BUFFERS} line buffers
+ * behind the fullest, the mixer stops waiting for it: its missing frames are mixed as silence and
+ * counted in {@link #getSilencedFrames()}, and the same number of its frames are discarded when
+ * they do arrive, so it rejoins in step. Until it has caught up it contributes whatever it has
+ * and the others are not held back.
+ *
+ * <h2>Mixing</h2>
+ * {@link #read} sums contiguous runs of interleaved floats — one {@code out[i] = g * in[i]} pass
+ * for the first input, one {@code out[i] += g * in[i]} pass for each other — which the JIT
+ * vectorises, then encodes once with {@link PcmEncoding}, clamping at full scale. All buffers are
+ * allocated by {@link #open}; neither the pull threads nor {@link #read} allocate.
+ *
+ * <p>Gains may be changed from any thread with {@link #setGain} and apply from the next read.
+ * Everything else follows the usual {@link AudioDataSource} contract: one thread opens, starts,
+ * reads and closes the mixer.</p>
+ */
+public class MixingDataSource implements AudioDataSource {
+    private static final Logger LOG = LoggerFactory.getLogger(MixingDataSource.class);
+
+    /** Wait strategy of the pull threads: bounded well below a typical line buffer. */
+    public static final WaitStrategy DEFAULT_WAIT_STRATEGY =
+            WaitStrategy.parking(Duration.ofNanos(50_000), Duration.ofMillis(1));
+
+    /** Line buffers a lagging input may fall behind the fullest before it is mixed as silence. */
+    static final int MAX_SKEW_BUFFERS = 4;
+
+    private final Input[] inputs;
+    private final WaitStrategy waitStrategy;
+    private final boolean threaded;
+    /** Replaced, never modified, by {@link #setGain}. */
+    private volatile float[] gains;
+
+    private AudioFormat format;
+    private PcmEncoding encoding;
+    private int channels;
+    private int frameSize;
+    private int limitFrames;
+    private int maxSkewFrames;
+    /** One read of interleaved mixed samples. */
+    private float[] mix;
+    private boolean running;
+    private long framesMixed;
+    private long silencedFrames;
+
+    /**
+     * Mix sources at equal gains of {@code 1 / sources.size()}, so the mix cannot clip.
+     *
+     * @param sources the sources to mix; opened, started and closed with the mixer
+     */
+    public MixingDataSource(List<? extends AudioDataSource> sources) {
+        this(sources, equalGains(sources.size()));
+    }
+
+    /**
+     * Mix sources with the given gains.
+     *
+     * @param sources the sources to mix; opened, started and closed with the mixer
+     * @param gains   linear gain of each source, in the same order
+     * @throws IllegalArgumentException if there are no sources or the counts differ
+     */
+    public MixingDataSource(List<? extends AudioDataSource> sources, float... gains) {
+        this(sources, gains, DEFAULT_WAIT_STRATEGY, true);
+    }
+
+    /**
+     * @param threaded {@code false} to start no pull threads, so a test or benchmark can drive
+     *                 each input with {@link Input#pull()} on its own thread
+     */
+    MixingDataSource(List<? extends AudioDataSource> sources, float[] gains, WaitStrategy waitStrategy, boolean threaded) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to mix");
+        }
+        if (gains.length != sources.size()) {
+            throw new IllegalArgumentException(gains.length + " gains for " + sources.size() + " sources");
+        }
+        this.inputs = new Input[sources.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = new Input(sources.get(i), i);
+        }
+        this.gains = gains.clone();
+        this.waitStrategy = waitStrategy;
+        this.threaded = threaded;
+    }
+
+    private static float[] equalGains(int count) {
+        float[] gains = new float[count];
+        Arrays.fill(gains, 1.0f / Math.max(1, count));
+        return gains;
+    }
+
+    @Override
+    public String getName() {
+        return Arrays.stream(inputs).map(input -> input.source.getName())
+                .collect(Collectors.joining(" + ", "Mix of ", ""));
+    }
+
+    /**
+     * Change the gain of one input from the next {@link #read}. Safe to call from any thread.
+     *
+     * @param input index of the source in the list given at construction
+     * @param gain  linear gain
+     */
+    public synchronized void setGain(int input, float gain) {
+        float[] next = gains.clone();
+        next[input] = gain;
+        gains = next;
+    }
+
+    /**
+     * The gain of one input.
+     *
+     * @param input index of the source in the list given at construction
+     * @return linear gain
+     */
+    public float getGain(int input) {
+        return gains[input];
+    }
+
+    /**
+     * Open every input in {@code format} with the same buffer size, and size the mixer's buffers
+     * from it.
+     *
+     * @throws LineUnavailableException if the format is not PCM that {@link PcmEncoding} supports,
+     *                                  or any input cannot be opened; inputs already opened are
+     *                                  closed again
+     */
+    @Override
+    public void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
+        PcmEncoding encoding;
+        try {
+            encoding = PcmEncoding.of(format);
+        } catch (IllegalArgumentException e) {
+            throw new LineUnavailableException("Not recognised format: " + format);
+        }
+        int frameSize = format.getFrameSize();
+        int limitFrames = bufferSize / frameSize;
+        if (limitFrames <= 0) {
+            throw new LineUnavailableException("Buffer smaller than one frame: " + bufferSize);
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            try {
+                inputs[i].source.open(format, bufferSize);
+            } catch (LineUnavailableException | RuntimeException e) {
+                for (int j = 0; j < i; j++) {
+                    inputs[j].source.close();
+                }
+                throw e;
+            }
+        }
+        this.format = format;
+        this.encoding = encoding;
+        this.channels = format.getChannels();
+        this.frameSize = frameSize;
+        this.limitFrames = limitFrames;
+        this.maxSkewFrames = MAX_SKEW_BUFFERS * limitFrames;
+        this.mix = new float[limitFrames * channels];
+        for (Input input : inputs) {
+            input.allocate(2 * maxSkewFrames, limitFrames);
+        }
+        this.framesMixed = 0;
+        this.silencedFrames = 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return format != null;
+    }
+
+    /** Start every input and, unless constructed otherwise, its pull thread. */
+    @Override
+    public void start() {
+        if (format == null || running) {
+            return;
+        }
+        for (Input input : inputs) {
+            input.source.start();
+        }
+        running = true;
+        if (threaded) {
+            for (Input input : inputs) {
+                input.startThread();
+            }
+        }
+    }
+
+    @Override
+    public int available() {
+        if (!running) {
+            return 0;
+        }
+        return mixable(limitFrames) * frameSize;
+    }
+
+    /**
+     * Frames the next read can mix: what every input in step holds, unless an input has fallen
+     * too far behind, in which case what the fullest input holds. Inputs still owing frames
+     * from an earlier shortfall are not waited for.
+     */
+    private int mixable(int max) {
+        long least = Long.MAX_VALUE;
+        long most = 0;
+        for (Input input : inputs) {
+            long held = Math.max(0, input.written - input.consumed - input.owed);
+            if (input.owed == 0) {
+                least = Math.min(least, held);
+            }
+            most = Math.max(most, held);
+        }
+        long frames = most > maxSkewFrames || least == Long.MAX_VALUE ? most : least;
+        return (int) Math.min(frames, max);
+    }
+
+    @Override
+    public int read(byte[] array, int start, int length) {
+        if (!running) {
+            return 0;
+        }
+        int frames = mixable(Math.min(limitFrames, length / frameSize));
+        if (frames <= 0) {
+            return 0;
+        }
+        float[] gains = this.gains;
+        int samples = frames * channels;
+        for (int i = 0; i < inputs.length; i++) {
+            Input input = inputs[i];
+            long written = input.written; // volatile snapshot: every sample before it is in the ring
+            long consumed = input.consumed;
+            if (input.owed > 0) {
+                // drop what arrived for frames already mixed as silence
+                long drop = Math.min(input.owed, written - consumed);
+                consumed += drop;
+                input.owed -= drop;
+            }
+            int have = (int) Math.min(written - consumed, frames);
+            int capacity = input.capacity;
+            int pos = (int) (consumed % capacity);
+            int first = Math.min(have, capacity - pos);
+            addInput(input.ring, pos * channels, gains[i], mix, 0, first * channels, i == 0);
+            addInput(input.ring, 0, gains[i], mix, first * channels, (have - first) * channels, i == 0);
+            if (have < frames) {
+                if (i == 0) {
+                    Arrays.fill(mix, have * channels, samples, 0f);
+                }
+                if (input.owed == 0) {
+                    LOG.debug("Mixing {} as silence: {} frames behind", input.source.getName(), frames - have);
+                }
+                input.owed += frames - have;
+                silencedFrames += frames - have;
+            }
+            input.consumed = consumed + have; // volatile write frees the ring space for the puller
+        }
+        encoding.encode(mix, 0, samples, array, start, encoding.bytesPerSample());
+        framesMixed += frames;
+        return frames * frameSize;
+    }
+
+    /**
+     * The mixing kernel: {@code dst[dstPos + i] = gain * src[srcPos + i]} for the first input,
+     * {@code +=} for the others. Kept to one flat loop over primitive arrays so the JIT can
+     * vectorise it.
+     */
+    static void addInput(float[] src, int srcPos, float gain, float[] dst, int dstPos, int count, boolean first) {
+        if (first) {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] = gain * src[srcPos + i];
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] += gain * src[srcPos + i];
+            }
+        }
+    }
+
+    /** Stop the pull threads, then every input. Buffered audio is kept for a restart. */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Input input : inputs) {
+            input.stopThread();
+        }
+        for (Input input : inputs) {
+            input.source.stop();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        for (Input input : inputs) {
+            input.source.close();
+        }
+        format = null;
+        encoding = null;
+        mix = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Frames produced since the mixer was opened.
+     *
+     * @return the output sample counter
+     */
+    public long getFramesMixed() {
+        return framesMixed;
+    }
+
+    /**
+     * Input frames mixed as silence because their source had fallen too far behind, summed over
+     * every input since the mixer was opened.
+     *
+     * @return silenced frame count
+     */
+    public long getSilencedFrames() {
+        return silencedFrames;
+    }
+
+    /** Overruns summed over every input. */
+    @Override
+    public long getOverruns() {
+        long sum = 0;
+        for (Input input : inputs) {
+            sum += input.source.getOverruns();
+        }
+        return sum;
+    }
+
+    /**
+     * One input and the ring its pull thread fills.
+     *
+     * @param index position in the list given at construction
+     * @return the input
+     */
+    Input getInput(int index) {
+        return inputs[index];
+    }
+
+    /** One mixed source: its decoded float ring and the thread that fills it. */
+    final class Input implements Runnable {
+        final AudioDataSource source;
+        private final int index;
+
+        /** Interleaved samples, {@link #capacity} frames. */
+        float[] ring;
+        int capacity;
+        private byte[] chunk;
+
+        /** Frames decoded into the ring; written by the puller only. */
+        volatile long written;
+        /** Frames the mixer has taken from the ring; written by the mixer only. */
+        volatile long consumed;
+        /** Frames mixed as silence that are still to be discarded; mixer only. */
+        long owed;
+
+        private volatile boolean pulling;
+        private Thread thread;
+
+        Input(AudioDataSource source, int index) {
+            this.source = source;
+            this.index = index;
+        }
+
+        void allocate(int capacityFrames, int chunkFrames) {
+            ring = new float[capacityFrames * channels];
+            capacity = capacityFrames;
+            chunk = new byte[chunkFrames * frameSize];
+            written = 0;
+            consumed = 0;
+            owed = 0;
+        }
+
+        /**
+         * Read whatever whole frames the source has, up to the space in the ring, and decode them
+         * into it.
+         *
+         * @return frames added to the ring
+         */
+        int pull() {
+            long w = written;
+            int space = (int) (capacity - (w - consumed));
+            int frames = Math.min(Math.min(source.available() / frameSize, space), chunk.length / frameSize);
+            if (frames <= 0) {
+                return 0;
+            }
+            int read = source.read(chunk, 0, frames * frameSize) / frameSize;
+            if (read <= 0) {
+                return 0;
+            }
+            int stride = encoding.bytesPerSample();
+            int pos = (int) (w % capacity);
+            int first = Math.min(read, capacity - pos);
+            encoding.decode(chunk, 0, stride, ring, pos * channels, first * channels);
+            encoding.decode(chunk, first * frameSize, stride, ring, 0, (read - first) * channels);
+            written = w + read; // volatile write after the samples are in the ring
+            return read;
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            try {
+                while (pulling) {
+                    if (pull() > 0) {
+                        idleCount = 0;
+                    } else {
+                        waitStrategy.idle(idleCount);
+                        if (idleCount < Integer.MAX_VALUE) {
+                            idleCount++;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOG.error("Mixer input {} interrupted, stopping.", source.getName(), e);
+            }
+        }
+
+        void startThread() {
+            pulling = true;
+            thread = new Thread(this, "mix-input-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stopThread() {
+            pulling = false;
+            if (thread != null) {
+                waitStrategy.signalAll();
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                thread = null;
+            }
+        }
+    }
+}
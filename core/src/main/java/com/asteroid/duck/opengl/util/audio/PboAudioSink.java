@@ -1,7 +1,11 @@
 package com.asteroid.duck.opengl.util.audio;
 
 import com.asteroid.duck.opengl.util.RenderContext;
+import com.asteroid.duck.opengl.util.stats.Stats;
+import com.asteroid.duck.opengl.util.stats.StatsFactory;
+import com.asteroid.duck.opengl.util.timer.Clock;
 
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -15,6 +19,12 @@ import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
 import static org.lwjgl.opengl.GL30.GL_RG;
 import static org.lwjgl.opengl.GL30.glMapBufferRange;
 import static org.lwjgl.opengl.GL31.GL_RG16_SNORM;
+import static org.lwjgl.opengl.GL32.GL_SYNC_FLUSH_COMMANDS_BIT;
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.GL_TIMEOUT_EXPIRED;
+import static org.lwjgl.opengl.GL32.glClientWaitSync;
+import static org.lwjgl.opengl.GL32.glDeleteSync;
+import static org.lwjgl.opengl.GL32.glFenceSync;
 import static org.lwjgl.opengl.GL44.*;
 
 /**
@@ -34,26 +44,92 @@ import static org.lwjgl.opengl.GL44.*;
  * <p>Disposal is registered with the {@link com.asteroid.duck.opengl.util.resources.manager.ResourceManager}
  * at creation time, so GL resources are cleaned up automatically at shutdown.</p>
  *
+ * <h2>Incremental upload</h2>
+ * {@link #upload()} copies only the bytes written since the previous upload into the texture:
+ * one {@code glTexSubImage1D} for a contiguous range, two when the range wraps past the end of
+ * the ring, and the whole ring if the writer has lapped it since the last frame. A frame with no
+ * new audio issues no GL calls at all. Each upload is followed by a {@code glFenceSync}, and the
+ * next upload waits on that fence before issuing its copy. The GPU reads the mapping
+ * asynchronously, so the fence bounds the copies in flight to one frame's range; as long as the
+ * ring holds more than two frames of audio, the capture thread can never reach bytes the GPU has
+ * yet to copy. Bytes uploaded per frame are recorded in the {@code "Audio: PBO upload bytes"}
+ * histogram and time spent waiting on the fence, in microseconds, in
+ * {@code "Audio: PBO fence wait us"}.
+ *
+ * <h2>Clock drift</h2>
+ * By default {@link #getHead()} is the write head, which moves in whatever steps the capture
+ * thread delivers and drifts against the render clock with the device's sample clock. After
+ * {@link #enableDriftCompensation(Clock, float, int)} it is instead a {@link DriftCompensator}
+ * playhead, advanced on each {@link #upload()} from the render clock and held a fixed latency
+ * behind the write head, so the visualised window scrolls at an even pace and never laps. The
+ * head is a whole texel, so the compensator's fractional step is not applied on the GPU; the
+ * playhead is rounded, which moves it by at most half a frame.
+ *
+ * <h2>Latency</h2>
+ * Writes made through {@link #write(byte[], int, int, long)} carry a capture stamp. Each upload
+ * that copies new audio records the stamp of the newest frame it covers and the time it was
+ * issued, so {@link #getCaptureNanos()} describes what the texture (and the texel before
+ * {@link #getHead()}) holds as of this frame and {@link #getProcessedNanos()} when it got there.
+ *
+ * <h2>Segments</h2>
+ * As a {@link SegmentAudioSink} the sink copies each chunk into the mapping with a single
+ * {@link MemorySegment#copy}, so audio an {@link AudioReader} lends straight from a mapped file
+ * reaches the PBO without passing through a heap array. Array writes take the same path through
+ * a heap view of the array.
+ *
  * <h2>Thread safety</h2>
  * {@link #write} is called from the audio thread; {@link #upload} and {@link #getHead} are called
  * from the GL/render thread. The PBO is mapped with {@code GL_MAP_COHERENT_BIT}, so writes are
- * visible to the GPU without an explicit flush. {@code head} is {@code volatile}.
+ * visible to the GPU without an explicit flush. The running byte count {@code written} is
+ * {@code volatile} and advanced only after the bytes are in the mapping, so an upload never
+ * covers a range the writer is still filling.
  */
-public class PboAudioSink implements AudioSink {
+public class PboAudioSink implements SegmentAudioSink, CaptureTimestamped {
+
+    /** Bytes per texel: 2 channels × 2 bytes per short. */
+    private static final int BYTES_PER_FRAME = 4;
+
+    /** Longest {@link #upload} waits for the previous frame's copy before uploading anyway. */
+    static final long FENCE_TIMEOUT_NANOS = 2_000_000L;
+
+    private final Stats uploadBytes = StatsFactory.histogram("Audio: PBO upload bytes");
+    private final Stats fenceWait = StatsFactory.histogram("Audio: PBO fence wait us");
 
     private final int pboId;
     private final int textureId;
-    private final ByteBuffer mapped;
+    /** The persistently mapped PBO. */
+    private final MemorySegment mapped;
     private final int byteSize;
-    private final int stereoFrames;
-    private volatile int head;
+    /** Total bytes ever written; the write head is this modulo {@code byteSize}. */
+    private volatile long written;
+
+    // GL thread only
+    /** Value of {@code written} covered by the last upload. */
+    private long uploaded;
+
+    /** Capture time of the newest frame written; published after {@code written}. */
+    private volatile long captureNanos = NONE;
+    /** Capture time of the newest frame covered by the last upload, and when it was issued. */
+    private long uploadedCaptureNanos = NONE;
+    private long uploadedNanos = NONE;
+    /** Fence following the last upload, or 0. */
+    private long fence;
+    /** Offset/length pairs, in bytes, of the ranges to upload. */
+    private final int[] ranges = new int[4];
+
+    /** Render clock and steering loop when drift compensation is on; GL thread only. */
+    private Clock renderClock;
+    private DriftCompensator drift;
+    private int head;
 
     private PboAudioSink(int pboId, int textureId, ByteBuffer mapped, int stereoFrames) {
         this.pboId        = pboId;
         this.textureId    = textureId;
-        this.mapped       = mapped;
-        this.byteSize     = stereoFrames * 4; // 2 channels × 2 bytes per short
-        this.stereoFrames = stereoFrames;
+        this.mapped       = MemorySegment.ofBuffer(mapped);
+        this.byteSize     = stereoFrames * BYTES_PER_FRAME;
+        // buffer storage starts undefined: clear it and let the first upload fill the whole texture
+        this.mapped.asSlice(0, byteSize).fill((byte) 0);
+        this.uploaded = -byteSize;
     }
 
     /**
@@ -75,7 +151,7 @@ public class PboAudioSink implements AudioSink {
 
         int pboId = glGenBuffers();
         glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pboId);
-        int byteSize = stereoFrames * 4;
+        int byteSize = stereoFrames * BYTES_PER_FRAME;
         int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
         glBufferStorage(GL_PIXEL_UNPACK_BUFFER, byteSize, flags);
         ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, byteSize, flags);
@@ -89,32 +165,126 @@ public class PboAudioSink implements AudioSink {
     /**
      * Write raw PCM bytes into the PBO ring buffer.
      * Called on the audio thread; safe to call concurrently with {@link #upload} and {@link #getHead}.
+     * If more than the ring's capacity is written only the newest bytes are kept.
      */
     @Override
     public void write(byte[] chunk, int offset, int length) {
-        mapped.position(head);
-        if (head + length > byteSize) {
-            int firstPart = byteSize - head;
-            mapped.put(chunk, offset, firstPart);
-            mapped.position(0);
-            mapped.put(chunk, offset + firstPart, length - firstPart);
-            head = length - firstPart;
-        } else {
-            mapped.put(chunk, offset, length);
-            head = (head + length) % byteSize;
+        write(MemorySegment.ofArray(chunk).asSlice(offset, length));
+    }
+
+    /** As {@link #write(byte[], int, int)}, also recording when the newest frame was captured. */
+    @Override
+    public void write(byte[] chunk, int offset, int length, long captureNanos) {
+        write(MemorySegment.ofArray(chunk).asSlice(offset, length), captureNanos);
+    }
+
+    /**
+     * Copy a chunk into the PBO ring buffer and record when its newest frame was captured.
+     * Called on the audio thread, as {@link #write(byte[], int, int)} is.
+     */
+    @Override
+    public void write(MemorySegment chunk, long captureNanos) {
+        write(chunk);
+        this.captureNanos = captureNanos;
+    }
+
+    private void write(MemorySegment chunk) {
+        long total = written;
+        long offset = 0;
+        long length = chunk.byteSize();
+        if (length > byteSize) {
+            offset = length - byteSize;
+            total += offset;
+            length = byteSize;
         }
+        int head = (int) (total % byteSize);
+        long firstPart = Math.min(length, byteSize - head);
+        MemorySegment.copy(chunk, offset, mapped, head, firstPart);
+        MemorySegment.copy(chunk, offset + firstPart, mapped, 0, length - firstPart);
+        written = total + length; // volatile write after the bytes are in the mapping
     }
 
     /**
-     * Copy the PBO contents into the audio texture.
+     * Copy the bytes written since the last call from the PBO into the audio texture.
      * Must be called once per frame on the GL thread, before any visualiser draws from the texture.
      */
     public void upload() {
+        long captured = captureNanos; // read first, so the range uploaded is at least this new
+        long target = written; // volatile snapshot: every byte before it is in the mapping
+        if (drift != null) {
+            double playhead = drift.update(target / BYTES_PER_FRAME, renderClock.elapsed());
+            head = (int) Math.floorMod(Math.round(playhead), (long) (byteSize / BYTES_PER_FRAME));
+        }
+        int count = dirtyRanges(uploaded, target, byteSize, ranges);
+        if (count == 0) {
+            uploadBytes.add(0);
+            return;
+        }
+        awaitPreviousUpload();
         glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pboId);
         glBindTexture(GL_TEXTURE_1D, textureId);
-        glTexSubImage1D(GL_TEXTURE_1D, 0, 0, stereoFrames, GL_RG, GL_SHORT, 0L);
+        int bytes = 0;
+        for (int i = 0; i < count; i++) {
+            int offset = ranges[2 * i];
+            int length = ranges[2 * i + 1];
+            glTexSubImage1D(GL_TEXTURE_1D, 0, offset / BYTES_PER_FRAME, length / BYTES_PER_FRAME, GL_RG, GL_SHORT, (long) offset);
+            bytes += length;
+        }
+        fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
         glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
         glBindTexture(GL_TEXTURE_1D, 0);
+        uploaded = target;
+        uploadedCaptureNanos = captured;
+        uploadedNanos = System.nanoTime();
+        uploadBytes.add(bytes);
+    }
+
+    /** Wait, up to {@link #FENCE_TIMEOUT_NANOS}, for the GPU to finish the previous upload's copy. */
+    private void awaitPreviousUpload() {
+        if (fence == 0) {
+            return;
+        }
+        if (glClientWaitSync(fence, 0, 0) == GL_TIMEOUT_EXPIRED) {
+            long start = System.nanoTime();
+            glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT_NANOS);
+            fenceWait.add((System.nanoTime() - start) / 1000);
+        } else {
+            fenceWait.add(0);
+        }
+        glDeleteSync(fence);
+        fence = 0;
+    }
+
+    /**
+     * The byte ranges of a ring of {@code capacity} bytes written between two running totals.
+     *
+     * @param from   running total at the last upload
+     * @param to     running total now
+     * @param ranges receives offset/length pairs; must hold four entries
+     * @return the number of ranges: 0 if nothing was written, 2 if the range wraps, otherwise 1
+     *         (the whole ring if the writer has lapped it)
+     */
+    static int dirtyRanges(long from, long to, int capacity, int[] ranges) {
+        long dirty = to - from;
+        if (dirty <= 0) {
+            return 0;
+        }
+        if (dirty >= capacity) {
+            ranges[0] = 0;
+            ranges[1] = capacity;
+            return 1;
+        }
+        int start = (int) Math.floorMod(from, (long) capacity);
+        int end = start + (int) dirty;
+        ranges[0] = start;
+        if (end <= capacity) {
+            ranges[1] = (int) dirty;
+            return 1;
+        }
+        ranges[1] = capacity - start;
+        ranges[2] = 0;
+        ranges[3] = end - capacity;
+        return 2;
     }
 
     /**
@@ -130,16 +300,70 @@ public class PboAudioSink implements AudioSink {
     /**
      * Current write-head position in <em>stereo frames</em> (texels); pass to the
      * {@code uHead} shader uniform. Shaders sample the audio texture with
-     * {@code texelFetch}, so the index must be in texel units, not bytes.
+     * {@code texelFetch}, so the index must be in texel units, not bytes. With drift compensation
+     * enabled this is the compensator's playhead as of the last {@link #upload()}.
      *
      * @return the write-head position as a texel index in [0, stereoFrames)
      */
     public int getHead() {
-        return head / 4;
+        if (drift != null) {
+            return head;
+        }
+        return (int) (written % byteSize) / BYTES_PER_FRAME;
+    }
+
+    /**
+     * Report a {@link DriftCompensator} playhead from {@link #getHead()} instead of the write
+     * head. Call on the GL thread.
+     *
+     * @param clock         the clock driving the render loop
+     * @param sampleRate    the capture line's nominal rate in frames per second
+     * @param latencyFrames how far behind the write head the playhead is held; must exceed the
+     *                      largest chunk the capture thread writes at once, and leave room in
+     *                      the ring for the window the visualiser draws
+     * @return the compensator, for its drift estimate
+     * @throws IllegalArgumentException if the latency does not fit in the ring
+     */
+    public DriftCompensator enableDriftCompensation(Clock clock, float sampleRate, int latencyFrames) {
+        if (latencyFrames >= byteSize / BYTES_PER_FRAME) {
+            throw new IllegalArgumentException("Latency " + latencyFrames + " does not fit in a "
+                    + byteSize / BYTES_PER_FRAME + " frame ring");
+        }
+        this.renderClock = clock;
+        this.drift = new DriftCompensator(sampleRate, latencyFrames);
+        return drift;
     }
 
-    /** Release the PBO and texture. Called automatically via the ResourceManager at shutdown. */
+    /**
+     * Frames written since the sink was created.
+     *
+     * @return the running frame count
+     */
+    public long getFramesWritten() {
+        return written / BYTES_PER_FRAME;
+    }
+
+    /** Capture time of the newest frame copied into the texture by {@link #upload}. GL thread only. */
+    @Override
+    public long getCaptureNanos() {
+        return uploadedCaptureNanos;
+    }
+
+    /** When the last {@link #upload} that copied new audio was issued. GL thread only. */
+    @Override
+    public long getProcessedNanos() {
+        return uploadedNanos;
+    }
+
+    /**
+     * Release the PBO, texture and any pending fence. Called automatically via the ResourceManager
+     * at shutdown.
+     */
     public void dispose() {
+        if (fence != 0) {
+            glDeleteSync(fence);
+            fence = 0;
+        }
         glDeleteBuffers(pboId);
         glDeleteTextures(textureId);
     }
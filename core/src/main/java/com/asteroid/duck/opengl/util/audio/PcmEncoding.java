@@ -0,0 +1,263 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import javax.sound.sampled.AudioFormat;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The sample encodings a capture line can deliver, each with its own branch-free bulk converter
+ * between raw PCM bytes and normalised floats.
+ *
+ * <p>Integer encodings are scaled by {@code 2^(bits-1)}, so the most negative code maps to exactly
+ * {@code -1.0} and every 16- and 24-bit code survives a decode/encode round trip unchanged (a
+ * float has a 24-bit mantissa). 32-bit integer samples are rounded to the nearest float on
+ * decode. Float encodings pass values through untouched.</p>
+ *
+ * <p>The bulk methods take a byte {@code stride} so one channel can be picked out of an
+ * interleaved frame without first de-interleaving it: pass the frame size to walk one channel,
+ * or the sample size to walk every sample.</p>
+ *
+ * @see PcmRingBuffer
+ */
+public enum PcmEncoding {
+    /** Signed 16-bit little-endian, the {@link LineAcquirer#IDEAL} encoding. */
+    S16_LE(2) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] = (short) SHORT_LE.get(src, offset + i * stride) * SCALE_16;
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                SHORT_LE.set(dst, offset + i * stride, (short) quantise(src[srcPos + i], 1 << 15));
+            }
+        }
+    },
+    /** Signed 16-bit big-endian. */
+    S16_BE(2) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] = (short) SHORT_BE.get(src, offset + i * stride) * SCALE_16;
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                SHORT_BE.set(dst, offset + i * stride, (short) quantise(src[srcPos + i], 1 << 15));
+            }
+        }
+    },
+    /** Signed 24-bit little-endian, packed in three bytes. */
+    S24_LE(3) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                int p = offset + i * stride;
+                int v = (src[p] & 0xFF) | ((src[p + 1] & 0xFF) << 8) | (src[p + 2] << 16);
+                dst[dstPos + i] = v * SCALE_24;
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                int p = offset + i * stride;
+                int v = quantise(src[srcPos + i], 1 << 23);
+                dst[p]     = (byte) v;
+                dst[p + 1] = (byte) (v >> 8);
+                dst[p + 2] = (byte) (v >> 16);
+            }
+        }
+    },
+    /** Signed 24-bit big-endian, packed in three bytes. */
+    S24_BE(3) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                int p = offset + i * stride;
+                int v = (src[p] << 16) | ((src[p + 1] & 0xFF) << 8) | (src[p + 2] & 0xFF);
+                dst[dstPos + i] = v * SCALE_24;
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                int p = offset + i * stride;
+                int v = quantise(src[srcPos + i], 1 << 23);
+                dst[p]     = (byte) (v >> 16);
+                dst[p + 1] = (byte) (v >> 8);
+                dst[p + 2] = (byte) v;
+            }
+        }
+    },
+    /** Signed 32-bit little-endian. */
+    S32_LE(4) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] = (int) INT_LE.get(src, offset + i * stride) * SCALE_32;
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                INT_LE.set(dst, offset + i * stride, quantise32(src[srcPos + i]));
+            }
+        }
+    },
+    /** Signed 32-bit big-endian. */
+    S32_BE(4) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] = (int) INT_BE.get(src, offset + i * stride) * SCALE_32;
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                INT_BE.set(dst, offset + i * stride, quantise32(src[srcPos + i]));
+            }
+        }
+    },
+    /** IEEE 754 single precision, little-endian. */
+    F32_LE(4) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] = (float) FLOAT_LE.get(src, offset + i * stride);
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                FLOAT_LE.set(dst, offset + i * stride, src[srcPos + i]);
+            }
+        }
+    },
+    /** IEEE 754 single precision, big-endian. */
+    F32_BE(4) {
+        @Override
+        public void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count) {
+            for (int i = 0; i < count; i++) {
+                dst[dstPos + i] = (float) FLOAT_BE.get(src, offset + i * stride);
+            }
+        }
+
+        @Override
+        public void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride) {
+            for (int i = 0; i < count; i++) {
+                FLOAT_BE.set(dst, offset + i * stride, src[srcPos + i]);
+            }
+        }
+    };
+
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE   = MethodHandles.byteArrayViewVarHandle(int[].class,   ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE   = MethodHandles.byteArrayViewVarHandle(int[].class,   ByteOrder.BIG_ENDIAN);
+    private static final VarHandle FLOAT_LE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle FLOAT_BE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final float SCALE_16 = 1.0f / (1 << 15);
+    private static final float SCALE_24 = 1.0f / (1 << 23);
+    private static final float SCALE_32 = 1.0f / (1L << 31);
+
+    private final int bytesPerSample;
+
+    PcmEncoding(int bytesPerSample) {
+        this.bytesPerSample = bytesPerSample;
+    }
+
+    /**
+     * Size of one sample of one channel.
+     *
+     * @return bytes per sample
+     */
+    public int bytesPerSample() {
+        return bytesPerSample;
+    }
+
+    /**
+     * Decode {@code count} samples, {@code stride} bytes apart, into normalised floats.
+     *
+     * @param src    raw PCM bytes
+     * @param offset byte index of the first sample
+     * @param stride bytes between consecutive samples read
+     * @param dst    destination array
+     * @param dstPos index in {@code dst} for the first sample
+     * @param count  number of samples to decode
+     */
+    public abstract void decode(byte[] src, int offset, int stride, float[] dst, int dstPos, int count);
+
+    /**
+     * Encode {@code count} normalised floats into samples {@code stride} bytes apart. Integer
+     * encodings clamp values outside [−1, 1).
+     *
+     * @param src    samples to encode
+     * @param srcPos index in {@code src} of the first sample
+     * @param count  number of samples to encode
+     * @param dst    destination PCM bytes
+     * @param offset byte index for the first encoded sample
+     * @param stride bytes between consecutive samples written
+     */
+    public abstract void encode(float[] src, int srcPos, int count, byte[] dst, int offset, int stride);
+
+    /**
+     * The encoding that matches a Java Sound format.
+     *
+     * @param format the line format
+     * @return the matching encoding
+     * @throws IllegalArgumentException if the format is not signed 16/24/32-bit or 32-bit float PCM
+     */
+    public static PcmEncoding of(AudioFormat format) {
+        boolean bigEndian = format.isBigEndian();
+        int bits = format.getSampleSizeInBits();
+        AudioFormat.Encoding encoding = format.getEncoding();
+        if (AudioFormat.Encoding.PCM_SIGNED.equals(encoding)) {
+            switch (bits) {
+                case 16: return bigEndian ? S16_BE : S16_LE;
+                case 24: return bigEndian ? S24_BE : S24_LE;
+                case 32: return bigEndian ? S32_BE : S32_LE;
+                default: break;
+            }
+        } else if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding) && bits == 32) {
+            return bigEndian ? F32_BE : F32_LE;
+        }
+        throw new IllegalArgumentException("Unsupported PCM format: " + format);
+    }
+
+    /**
+     * A Java Sound format using this encoding.
+     *
+     * @param sampleRate frames per second
+     * @param channels   number of interleaved channels
+     * @return the format
+     */
+    public AudioFormat format(float sampleRate, int channels) {
+        boolean bigEndian = name().endsWith("_BE");
+        int bits = bytesPerSample * 8;
+        AudioFormat.Encoding encoding = name().startsWith("F")
+                ? AudioFormat.Encoding.PCM_FLOAT : AudioFormat.Encoding.PCM_SIGNED;
+        return new AudioFormat(encoding, sampleRate, bits, channels, bytesPerSample * channels, sampleRate, bigEndian);
+    }
+
+    private static int quantise(float value, int fullScale) {
+        return Math.max(-fullScale, Math.min(fullScale - 1, Math.round(value * fullScale)));
+    }
+
+    private static int quantise32(float value) {
+        // Math.round(float) saturates at Integer.MIN/MAX_VALUE, which is the clamp we want
+        return Math.round(value * (float) (1L << 31));
+    }
+}
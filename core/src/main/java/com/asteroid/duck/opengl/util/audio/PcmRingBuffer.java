@@ -0,0 +1,183 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * A ring buffer of raw PCM bytes in any format {@link PcmEncoding} supports — 16-, 24- or 32-bit
+ * signed integer or 32-bit float, either byte order, any number of channels.
+ *
+ * <p>This is the format-generic counterpart of {@link RollingAudioBuffer}. Bytes are stored
+ * exactly as the line delivered them, so capture stays at native depth and the write path is a
+ * plain copy. Conversion happens on read, where the buffer's {@link PcmEncoding} decodes straight
+ * from the interleaved bytes with one specialised loop per format; a single channel is read by
+ * striding over whole frames rather than de-interleaving first.</p>
+ *
+ * <p>Thread-safe for a single writer and single reader: {@code writePos} is {@code volatile},
+ * so the reader snapshots it once before reading and is guaranteed to see all bytes written
+ * before that snapshot.</p>
+ */
+public class PcmRingBuffer implements AudioSink {
+
+    private final AudioFormat format;
+    private final PcmEncoding encoding;
+    private final int channels;
+    private final int sampleSize;
+    private final int frameSize;
+
+    /** Raw interleaved frames in the line's own encoding. */
+    private final byte[] data;
+
+    /** Per-channel scratch for {@link #readMono}; only touched by the reader. */
+    private final float[] scratch;
+
+    /** Write position in bytes; always advances in whole frames. */
+    private volatile int writePos;
+
+    /**
+     * Create a ring buffer holding the given number of frames of the given format.
+     *
+     * @param format        the PCM layout that will be written; see {@link PcmEncoding#of}
+     * @param frameCapacity number of frames this buffer can hold
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    public PcmRingBuffer(AudioFormat format, int frameCapacity) {
+        this.format = format;
+        this.encoding = PcmEncoding.of(format);
+        this.channels = format.getChannels();
+        this.sampleSize = encoding.bytesPerSample();
+        this.frameSize = sampleSize * channels;
+        if (format.getFrameSize() != frameSize) {
+            throw new IllegalArgumentException("Padded frames are not supported: " + format);
+        }
+        this.data = new byte[frameCapacity * frameSize];
+        this.scratch = new float[frameCapacity];
+    }
+
+    /**
+     * Write raw PCM bytes into the ring buffer. If more than the capacity is written only the
+     * newest frames are kept.
+     */
+    @Override
+    public void write(byte[] chunk, int offset, int length) {
+        int capacity = data.length;
+        if (length > capacity) {
+            offset += length - capacity;
+            length = capacity;
+        }
+        int pos = writePos;
+        int firstPart = Math.min(length, capacity - pos);
+        System.arraycopy(chunk, offset, data, pos, firstPart);
+        if (firstPart < length) {
+            System.arraycopy(chunk, offset + firstPart, data, 0, length - firstPart);
+        }
+        writePos = (pos + length) % capacity; // volatile write after data is visible
+    }
+
+    /**
+     * Read the most recent {@code count} samples of one channel into {@code dest[0..count-1]},
+     * oldest first.
+     *
+     * @param channel channel index in [0, channels)
+     * @param dest    destination array; must have length >= count
+     * @param count   number of frames; clamped to buffer capacity if larger
+     */
+    public void readChannel(int channel, float[] dest, int count) {
+        if (channel < 0 || channel >= channels) {
+            throw new IndexOutOfBoundsException("channel " + channel + " of " + channels);
+        }
+        int pos = writePos; // volatile snapshot — establishes happens-before with write
+        decodeChannel(pos, channel, dest, Math.min(count, getFrameCapacity()));
+    }
+
+    /**
+     * Read the most recent {@code count} frames as the mean of all channels into
+     * {@code dest[0..count-1]}, oldest first.
+     *
+     * @param dest  destination array; must have length >= count
+     * @param count number of frames; clamped to buffer capacity if larger
+     */
+    public void readMono(float[] dest, int count) {
+        int pos = writePos; // volatile snapshot
+        int clamped = Math.min(count, getFrameCapacity());
+        decodeChannel(pos, 0, dest, clamped);
+        if (channels == 1) {
+            return;
+        }
+        for (int c = 1; c < channels; c++) {
+            decodeChannel(pos, c, scratch, clamped);
+            for (int i = 0; i < clamped; i++) {
+                dest[i] += scratch[i];
+            }
+        }
+        float scale = 1.0f / channels;
+        for (int i = 0; i < clamped; i++) {
+            dest[i] *= scale;
+        }
+    }
+
+    /**
+     * Read the most recent {@code frames} frames, all channels interleaved, into
+     * {@code dest[0..frames*channels-1]}, oldest first.
+     *
+     * @param dest   destination array; must have length >= frames × channels
+     * @param frames number of frames; clamped to buffer capacity if larger
+     */
+    public void readFrames(float[] dest, int frames) {
+        int pos = writePos; // volatile snapshot
+        int clamped = Math.min(frames, getFrameCapacity());
+        int start = startByte(pos, clamped);
+        int first = Math.min(clamped, (data.length - start) / frameSize);
+        encoding.decode(data, start, sampleSize, dest, 0, first * channels);
+        encoding.decode(data, 0, sampleSize, dest, first * channels, (clamped - first) * channels);
+    }
+
+    private void decodeChannel(int pos, int channel, float[] dest, int frames) {
+        int start = startByte(pos, frames);
+        int first = Math.min(frames, (data.length - start) / frameSize);
+        int channelOffset = channel * sampleSize;
+        encoding.decode(data, start + channelOffset, frameSize, dest, 0, first);
+        encoding.decode(data, channelOffset, frameSize, dest, first, frames - first);
+    }
+
+    /** Byte index of the oldest of the newest {@code frames} frames. */
+    private int startByte(int pos, int frames) {
+        int start = pos - frames * frameSize;
+        return start < 0 ? start + data.length : start;
+    }
+
+    /**
+     * The PCM layout this buffer stores.
+     *
+     * @return the format passed at construction
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * The converter used on read.
+     *
+     * @return the encoding of {@link #getFormat()}
+     */
+    public PcmEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Number of interleaved channels per frame.
+     *
+     * @return the channel count of {@link #getFormat()}
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Number of frames this buffer can hold.
+     *
+     * @return the capacity passed at construction
+     */
+    public int getFrameCapacity() {
+        return data.length / frameSize;
+    }
+}
@@ -0,0 +1,328 @@
+package com.asteroid.duck.opengl.util.audio;
+
+/**
+ * A multi-level min/max decimation of a mono signal, so minutes of waveform history can be drawn
+ * at screen resolution from a few thousand values instead of millions of samples.
+ *
+ * <p>Level 0 holds the minimum and maximum of every block of {@code block} samples; each level
+ * above combines {@code factor} consecutive entries of the one below, so an entry at level
+ * {@code L} spans {@code block × factor^L} samples. Every level keeps its newest {@code width}
+ * entries in a ring, so with the defaults — 64-sample blocks, a factor of 4, six levels and 1 024
+ * entries — level 0 covers the last 1.4 s at 48 kHz and level 5 the last 23 minutes, in 12 288
+ * float pairs altogether.</p>
+ *
+ * <p>The pyramid is updated incrementally as samples arrive: each sample touches only the
+ * running block of level 0, and a completed entry folds into the running entry of the level
+ * above, so the amortised cost is one comparison pair per sample plus {@code 1 / (factor − 1)}
+ * of an entry per block. Samples arrive either as 16-bit stereo PCM through {@link AudioSink},
+ * mixed down by a {@link ChannelMode}, or as floats through {@link #add}.</p>
+ *
+ * <h2>Drawing a span</h2>
+ * {@link #levelFor(long, int)} picks the coarsest level with at least one entry per pixel for a
+ * span; that level then has between {@code pixels} and {@code factor × pixels} entries in the
+ * span, whatever its length, which {@link #read} copies out — or a
+ * {@link PeakPyramidTextures} uploads to a 1-D texture per level — for the renderer to draw one
+ * vertical min-to-max line per pixel. {@link #minMax(long, long, float[])} answers a single span
+ * exactly from the coarsest entries that tile it.
+ *
+ * <h2>Thread safety</h2>
+ * One writer and any number of readers. The sample count is {@code volatile} and published after
+ * every level has been updated, and each level's entry count derives from it, so a reader that
+ * snapshots {@link #getSamples()} sees every entry up to that point. As in any ring, entries
+ * older than {@code width} may be overwritten while a reader copies them.
+ */
+public class PeakPyramid implements AudioSink {
+    public static final int DEFAULT_BLOCK = 64;
+    public static final int DEFAULT_FACTOR = 4;
+    public static final int DEFAULT_LEVELS = 6;
+    public static final int DEFAULT_WIDTH = 1024;
+
+    private final ChannelMode mode;
+    private final int factor;
+    private final int width;
+    /** Samples per entry at each level. */
+    private final long[] blockSizes;
+    /** Per level, {@code width} interleaved min/max pairs; entry {@code n} is at {@code 2 × (n % width)}. */
+    private final float[][] entries;
+    /** The running, incomplete entry of each level; writer only. */
+    private final float[] runningMin;
+    private final float[] runningMax;
+    private final long[] runningCount;
+    /** Completed entries at each level; writer only. */
+    private final long[] completed;
+    private final float[] scratch = new float[1024];
+    private long samples;
+    private volatile long published;
+
+    /** A pyramid with the default shape, mixing stereo input with {@link ChannelMode#MONO_BLEND}. */
+    public PeakPyramid() {
+        this(DEFAULT_BLOCK, DEFAULT_FACTOR, DEFAULT_LEVELS, DEFAULT_WIDTH, ChannelMode.MONO_BLEND);
+    }
+
+    /**
+     * @param block  samples per level-0 entry
+     * @param factor entries of one level combined into an entry of the next; at least 2
+     * @param levels number of levels
+     * @param width  entries kept per level
+     * @param mode   how PCM written through {@link AudioSink} is mixed to mono
+     */
+    public PeakPyramid(int block, int factor, int levels, int width, ChannelMode mode) {
+        if (block <= 0 || factor < 2 || levels <= 0 || width <= 0) {
+            throw new IllegalArgumentException("Bad pyramid shape: block " + block + ", factor " + factor
+                    + ", levels " + levels + ", width " + width);
+        }
+        this.mode = mode;
+        this.factor = factor;
+        this.width = width;
+        this.blockSizes = new long[levels];
+        this.entries = new float[levels][2 * width];
+        this.runningMin = new float[levels];
+        this.runningMax = new float[levels];
+        this.runningCount = new long[levels];
+        this.completed = new long[levels];
+        long size = block;
+        for (int level = 0; level < levels; level++) {
+            blockSizes[level] = size;
+            size = Math.multiplyExact(size, factor);
+            resetRunning(level);
+        }
+    }
+
+    /** Mix 16-bit stereo frames to mono and add them. */
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        int frames = length / 4;
+        while (frames > 0) {
+            int n = Math.min(frames, scratch.length);
+            mode.toMono(data, offset, n, scratch, 0);
+            accumulate(scratch, 0, n);
+            offset += n * 4;
+            frames -= n;
+        }
+        published = samples;
+    }
+
+    /**
+     * Add mono samples.
+     *
+     * @param data   samples, normally in [−1, 1]
+     * @param offset index of the first sample
+     * @param count  number of samples
+     */
+    public void add(float[] data, int offset, int count) {
+        accumulate(data, offset, count);
+        published = samples;
+    }
+
+    private void accumulate(float[] data, int offset, int count) {
+        long block = blockSizes[0];
+        int end = offset + count;
+        float min = runningMin[0];
+        float max = runningMax[0];
+        long filled = runningCount[0];
+        for (int i = offset; i < end; ) {
+            int run = (int) Math.min(end - i, block - filled);
+            for (int j = i; j < i + run; j++) {
+                float value = data[j];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            i += run;
+            filled += run;
+            if (filled == block) {
+                push(0, min, max);
+                min = Float.POSITIVE_INFINITY;
+                max = Float.NEGATIVE_INFINITY;
+                filled = 0;
+            }
+        }
+        runningMin[0] = min;
+        runningMax[0] = max;
+        runningCount[0] = filled;
+        samples += count;
+    }
+
+    /** Complete an entry at {@code level} and fold it into the running entry above. */
+    private void push(int level, float min, float max) {
+        int slot = 2 * (int) (completed[level] % width);
+        entries[level][slot] = min;
+        entries[level][slot + 1] = max;
+        completed[level]++;
+        int up = level + 1;
+        if (up < blockSizes.length) {
+            runningMin[up] = Math.min(runningMin[up], min);
+            runningMax[up] = Math.max(runningMax[up], max);
+            if (++runningCount[up] == factor) {
+                float upMin = runningMin[up];
+                float upMax = runningMax[up];
+                resetRunning(up);
+                push(up, upMin, upMax);
+            }
+        }
+    }
+
+    private void resetRunning(int level) {
+        runningMin[level] = Float.POSITIVE_INFINITY;
+        runningMax[level] = Float.NEGATIVE_INFINITY;
+        runningCount[level] = 0;
+    }
+
+    /**
+     * Samples added so far.
+     *
+     * @return the sample count, including those in incomplete entries
+     */
+    public long getSamples() {
+        return published;
+    }
+
+    /**
+     * Completed entries at a level as of {@link #getSamples()}.
+     *
+     * @param level the level
+     * @return entries ever completed; the newest {@link #getWidth()} of them are held
+     */
+    public long getEntries(int level) {
+        return published / blockSizes[level];
+    }
+
+    /**
+     * @param level the level
+     * @return samples spanned by one entry at that level
+     */
+    public long getBlockSize(int level) {
+        return blockSizes[level];
+    }
+
+    /** @return the number of levels */
+    public int getLevels() {
+        return blockSizes.length;
+    }
+
+    /** @return entries held per level */
+    public int getWidth() {
+        return width;
+    }
+
+    /** @return entries of one level combined into one of the next */
+    public int getFactor() {
+        return factor;
+    }
+
+    /**
+     * The coarsest level that still has at least one entry per pixel for a span.
+     *
+     * @param spanSamples the span to draw, in samples
+     * @param pixels      the pixels it is drawn across
+     * @return a level in [0, levels); level 0 if even that has fewer entries than pixels
+     */
+    public int levelFor(long spanSamples, int pixels) {
+        int level = 0;
+        while (level + 1 < blockSizes.length && blockSizes[level + 1] * pixels <= spanSamples) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Copy held entries of one level as interleaved min/max pairs, oldest first.
+     *
+     * @param level   the level
+     * @param from    index of the first entry, counted as {@link #getEntries(int)} is
+     * @param count   number of entries
+     * @param dest    receives {@code 2 × count} floats
+     * @param destPos index in {@code dest} of the first minimum
+     * @throws IllegalArgumentException if the entries are not all held
+     */
+    public void read(int level, long from, int count, float[] dest, int destPos) {
+        checkHeld(level, from, from + count, getEntries(level));
+        float[] ring = entries[level];
+        int start = (int) (from % width);
+        int first = Math.min(count, width - start);
+        System.arraycopy(ring, 2 * start, dest, destPos, 2 * first);
+        System.arraycopy(ring, 0, dest, destPos + 2 * first, 2 * (count - first));
+    }
+
+    /**
+     * The minimum and maximum over a run of held entries of one level.
+     *
+     * @param level the level
+     * @param from  index of the first entry
+     * @param to    index after the last entry; greater than {@code from}
+     * @param out   receives the minimum at 0 and the maximum at 1
+     * @throws IllegalArgumentException if the entries are not all held
+     */
+    public void minMax(int level, long from, long to, float[] out) {
+        if (to <= from) {
+            throw new IllegalArgumentException("Empty range: " + from + " to " + to);
+        }
+        checkHeld(level, from, to, getEntries(level));
+        float[] ring = entries[level];
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (long i = from; i < to; i++) {
+            int slot = 2 * (int) (i % width);
+            min = Math.min(min, ring[slot]);
+            max = Math.max(max, ring[slot + 1]);
+        }
+        out[0] = min;
+        out[1] = max;
+    }
+
+    /**
+     * The minimum and maximum over a span of samples, from the coarsest held entries that tile
+     * it exactly.
+     *
+     * @param from first sample; a multiple of the level-0 block size
+     * @param to   sample after the last; greater than {@code from}
+     * @param out  receives the minimum at 0 and the maximum at 1
+     * @throws IllegalArgumentException if the span cannot be tiled by held, completed entries
+     */
+    public void minMax(long from, long to, float[] out) {
+        if (to <= from) {
+            throw new IllegalArgumentException("Empty range: " + from + " to " + to);
+        }
+        long total = published;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (long position = from; position < to; ) {
+            int level = -1;
+            for (int l = blockSizes.length - 1; l >= 0 && level < 0; l--) {
+                long size = blockSizes[l];
+                long index = position / size;
+                if (position % size == 0 && position + size <= to && position + size <= total
+                        && index >= total / size - width) {
+                    level = l;
+                }
+            }
+            if (level < 0) {
+                throw new IllegalArgumentException("Span " + from + " to " + to + " is not held at sample " + position);
+            }
+            int slot = 2 * (int) (position / blockSizes[level] % width);
+            min = Math.min(min, entries[level][slot]);
+            max = Math.max(max, entries[level][slot + 1]);
+            position += blockSizes[level];
+        }
+        out[0] = min;
+        out[1] = max;
+    }
+
+    /**
+     * Copy ring slots of one level verbatim, whether or not they hold completed entries.
+     *
+     * @param level the level
+     * @param slot  first slot, in [0, width)
+     * @param count slots to copy; {@code slot + count <= width}
+     * @param dest  receives {@code 2 × count} floats from index 0
+     */
+    void copySlots(int level, int slot, int count, float[] dest) {
+        System.arraycopy(entries[level], 2 * slot, dest, 0, 2 * count);
+    }
+
+    private void checkHeld(int level, long from, long to, long available) {
+        if (from < Math.max(0, available - width) || to > available) {
+            throw new IllegalArgumentException("Level " + level + " entries " + from + " to " + to
+                    + " are not held; have " + Math.max(0, available - width) + " to " + available);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.RenderContext;
+import com.asteroid.duck.opengl.util.stats.Stats;
+import com.asteroid.duck.opengl.util.stats.StatsFactory;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.GL_RG;
+import static org.lwjgl.opengl.GL30.GL_RG32F;
+
+/**
+ * One 1-D {@code GL_RG32F} texture per {@link PeakPyramid} level (R = minimum, G = maximum),
+ * kept up to date incrementally.
+ *
+ * <p>Each texture is the level's ring: texel {@code n % width} holds entry {@code n}, and
+ * {@link #getHead(int)} is the texel of the oldest entry, so a shader reads entry {@code i}
+ * back from the newest with {@code texelFetch(uPeaks, (head - 1 - i + width) % width, 0)}. To
+ * draw a span at {@code pixels} columns, pick the level with {@link PeakPyramid#levelFor}, bind its
+ * texture and draw one vertical line per entry; whatever the span, that is between
+ * {@code pixels} and {@code factor × pixels} texels.</p>
+ *
+ * <p>{@link #upload()} copies only the entries completed since the previous upload, split at
+ * the ring's end as {@link PboAudioSink} does, so a frame costs a few texels per level rather
+ * than the history they summarise. Texels uploaded per frame are recorded in the
+ * {@code "Audio: Peak pyramid upload texels"} histogram.</p>
+ *
+ * <p>Create and use on the GL thread; the pyramid may be written concurrently.</p>
+ */
+public class PeakPyramidTextures {
+    private final Stats uploadTexels = StatsFactory.histogram("Audio: Peak pyramid upload texels");
+
+    private final PeakPyramid pyramid;
+    private final int[] textureIds;
+    /** Entries of each level covered by the last upload. */
+    private final long[] uploaded;
+    private final float[] copy;
+    private final FloatBuffer staging;
+    private final int[] ranges = new int[4];
+
+    private PeakPyramidTextures(PeakPyramid pyramid, int[] textureIds) {
+        this.pyramid = pyramid;
+        this.textureIds = textureIds;
+        this.uploaded = new long[textureIds.length];
+        this.copy = new float[2 * pyramid.getWidth()];
+        this.staging = BufferUtils.createFloatBuffer(2 * pyramid.getWidth());
+        // texture storage starts undefined: let the first upload fill every texel
+        Arrays.fill(uploaded, -pyramid.getWidth());
+    }
+
+    /**
+     * Allocate a texture for each level of a pyramid.
+     *
+     * @param pyramid the pyramid to mirror
+     * @param ctx     render context used to register the dispose callback
+     * @return the textures, filled on the first {@link #upload()}
+     */
+    public static PeakPyramidTextures create(PeakPyramid pyramid, RenderContext ctx) {
+        int[] textureIds = new int[pyramid.getLevels()];
+        for (int level = 0; level < textureIds.length; level++) {
+            int textureId = glGenTextures();
+            glBindTexture(GL_TEXTURE_1D, textureId);
+            glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_S, GL_REPEAT);
+            glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+            glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+            glTexImage1D(GL_TEXTURE_1D, 0, GL_RG32F, pyramid.getWidth(), 0, GL_RG, GL_FLOAT, (FloatBuffer) null);
+            textureIds[level] = textureId;
+        }
+        glBindTexture(GL_TEXTURE_1D, 0);
+        PeakPyramidTextures textures = new PeakPyramidTextures(pyramid, textureIds);
+        ctx.getResourceManager().register(textures::dispose);
+        return textures;
+    }
+
+    /** Copy every entry completed since the last call into its level's texture. GL thread only. */
+    public void upload() {
+        long samples = pyramid.getSamples(); // one snapshot, so every level describes the same audio
+        int width = pyramid.getWidth();
+        int texels = 0;
+        for (int level = 0; level < textureIds.length; level++) {
+            long target = samples / pyramid.getBlockSize(level);
+            int count = PboAudioSink.dirtyRanges(uploaded[level], target, width, ranges);
+            if (count == 0) {
+                continue;
+            }
+            glBindTexture(GL_TEXTURE_1D, textureIds[level]);
+            for (int i = 0; i < count; i++) {
+                int slot = ranges[2 * i];
+                int length = ranges[2 * i + 1];
+                pyramid.copySlots(level, slot, length, copy);
+                staging.clear();
+                staging.put(copy, 0, 2 * length).flip();
+                glTexSubImage1D(GL_TEXTURE_1D, 0, slot, length, GL_RG, GL_FLOAT, staging);
+                texels += length;
+            }
+            uploaded[level] = target;
+        }
+        glBindTexture(GL_TEXTURE_1D, 0);
+        uploadTexels.add(texels);
+    }
+
+    /**
+     * @param level the pyramid level
+     * @return the GL name of that level's texture
+     */
+    public int getTextureId(int level) {
+        return textureIds[level];
+    }
+
+    /**
+     * The texel the next entry of a level will be written to, which is also its oldest entry
+     * once the ring is full; pass to the shader with the level's texture.
+     *
+     * @param level the pyramid level
+     * @return a texel index in [0, width)
+     */
+    public int getHead(int level) {
+        return (int) Math.floorMod(uploaded[level], (long) pyramid.getWidth());
+    }
+
+    /**
+     * @param level the pyramid level
+     * @return entries of that level the texture holds as of the last {@link #upload()}
+     */
+    public long getEntries(int level) {
+        return Math.max(0, uploaded[level]);
+    }
+
+    /**
+     * The pyramid these textures mirror.
+     *
+     * @return the pyramid passed at creation
+     */
+    public PeakPyramid getPyramid() {
+        return pyramid;
+    }
+
+    /** Release the textures. Called automatically via the ResourceManager at shutdown. */
+    public void dispose() {
+        for (int level = 0; level < textureIds.length; level++) {
+            if (textureIds[level] != 0) {
+                glDeleteTextures(textureIds[level]);
+                textureIds[level] = 0;
+            }
+        }
+    }
+}
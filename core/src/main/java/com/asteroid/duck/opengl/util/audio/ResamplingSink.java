@@ -0,0 +1,322 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * An {@link AudioSink} decorator that converts the sample rate of the PCM passing through it, so
+ * a line that only offers 44.1 kHz or 96 kHz can feed sinks built for {@link LineAcquirer#IDEAL}.
+ *
+ * <p>Place it between an {@link AudioReader} opened in the device's own format and the sinks
+ * that expect the pipeline format (use an {@link AudioRing} as the downstream sink to reach
+ * several):</p>
+ * <pre>{@code
+ * AudioFormat device = PcmEncoding.S16_LE.format(44100f, 2);
+ * AudioSink resampler = new ResamplingSink(device, LineAcquirer.IDEAL, downstream);
+ * new AudioReader(List.of(resampler), AudioReader.DEFAULT_WAIT_STRATEGY, frames, device);
+ * }</pre>
+ *
+ * <h2>Filter</h2>
+ * The rate ratio is reduced to {@code up / down} (160/147 for 44.1 → 48 kHz, 1/2 for 96 → 48 kHz)
+ * and a Kaiser-windowed sinc low-pass, cut off at {@value #PASSBAND} of the lower of the two
+ * Nyquist frequencies, is designed once at construction. It is stored split into its
+ * {@code up} polyphase branches of {@code taps} coefficients each, with a branch's coefficients
+ * normalised to unity gain so DC passes exactly. Each output frame is then one dot product of
+ * {@code taps} input samples with one branch; the branch and input step for the next output come
+ * from two more precomputed tables, so the inner loop has no division.
+ *
+ * <p>Input is decoded per channel with {@link PcmEncoding} into planar history buffers that carry
+ * the last {@code taps - 1} frames between writes, so output is independent of how the stream
+ * is chunked. All buffers are allocated up front; {@link #write} does not allocate. Not
+ * thread-safe: like every sink it is written by the single capture thread.</p>
+ *
+ * <p>A capture stamp passed to {@link #write(byte[], int, int, long)} is forwarded with the
+ * output, moved back by {@link #getDelaySeconds()}: the newest output frame describes input that
+ * much older than the newest frame written.</p>
+ */
+public class ResamplingSink implements AudioSink {
+
+    /** Default filter length per polyphase branch, in input frames. */
+    public static final int DEFAULT_TAPS = 64;
+
+    /** Input frames decoded and filtered per pass. */
+    static final int BLOCK_FRAMES = 1024;
+
+    /** Kaiser window shape; about 90 dB of stopband attenuation. */
+    static final double KAISER_BETA = 9.0;
+
+    /** Fraction of the lower Nyquist frequency at the centre of the transition band. */
+    static final double PASSBAND = 0.9;
+
+    /** Largest supported {@code up} factor, bounding the coefficient table. */
+    private static final int MAX_PHASES = 4096;
+
+    private final AudioSink downstream;
+    private final AudioFormat inputFormat;
+    private final AudioFormat outputFormat;
+    private final PcmEncoding inputEncoding;
+    private final PcmEncoding outputEncoding;
+    private final int channels;
+    private final int up;
+    private final int down;
+    private final int taps;
+    /** {@link #getDelaySeconds()} in nanoseconds. */
+    private final long delayNanos;
+
+    /** Branch {@code p} occupies {@code [p * taps, (p + 1) * taps)}, oldest input sample first. */
+    private final float[] coefficients;
+    /** Branch used after branch {@code p}. */
+    private final int[] nextPhase;
+    /** Input frames to advance after an output frame from branch {@code p}. */
+    private final int[] advance;
+
+    /** Per channel: {@code taps - 1} carried frames followed by up to {@link #BLOCK_FRAMES} new ones. */
+    private final float[][] history;
+    /** Per channel output of one pass. */
+    private final float[][] output;
+    private final byte[] encoded;
+
+    /** Branch for the next output frame. */
+    private int phase;
+    /** Index in {@link #history} of the newest input frame the next output frame uses. */
+    private int next;
+
+    /**
+     * Resample with {@link #DEFAULT_TAPS} taps per branch.
+     *
+     * @param input      the format written to this sink
+     * @param output     the format passed downstream; must have the same channel count
+     * @param downstream receives the resampled PCM
+     * @throws IllegalArgumentException if either format is unsupported or the rates are not
+     *                                  whole numbers of hertz
+     */
+    public ResamplingSink(AudioFormat input, AudioFormat output, AudioSink downstream) {
+        this(input, output, downstream, DEFAULT_TAPS);
+    }
+
+    /**
+     * Resample with a chosen filter length.
+     *
+     * @param input      the format written to this sink
+     * @param output     the format passed downstream; must have the same channel count
+     * @param downstream receives the resampled PCM
+     * @param taps       filter length per branch in input frames; longer is sharper and slower
+     * @throws IllegalArgumentException if either format is unsupported or the rates are not
+     *                                  whole numbers of hertz
+     */
+    public ResamplingSink(AudioFormat input, AudioFormat output, AudioSink downstream, int taps) {
+        if (input.getChannels() != output.getChannels()) {
+            throw new IllegalArgumentException("Channel count differs: " + input + " -> " + output);
+        }
+        if (taps < 2) {
+            throw new IllegalArgumentException("taps must be at least 2: " + taps);
+        }
+        this.downstream = downstream;
+        this.inputFormat = input;
+        this.outputFormat = output;
+        this.inputEncoding = PcmEncoding.of(input);
+        this.outputEncoding = PcmEncoding.of(output);
+        this.channels = input.getChannels();
+        this.taps = taps;
+
+        long inRate = wholeRate(input);
+        long outRate = wholeRate(output);
+        long gcd = gcd(inRate, outRate);
+        if (outRate / gcd > MAX_PHASES) {
+            throw new IllegalArgumentException("Ratio " + inRate + ":" + outRate + " needs too many phases");
+        }
+        this.up = (int) (outRate / gcd);
+        this.down = (int) (inRate / gcd);
+
+        this.coefficients = design(up, down, taps);
+        this.nextPhase = new int[up];
+        this.advance = new int[up];
+        for (int p = 0; p < up; p++) {
+            nextPhase[p] = (p + down) % up;
+            advance[p] = (p + down) / up;
+        }
+
+        int maxOutput = (int) (((long) BLOCK_FRAMES * up + down - 1) / down) + 1;
+        this.history = new float[channels][taps - 1 + BLOCK_FRAMES];
+        this.output = new float[channels][maxOutput];
+        this.encoded = new byte[maxOutput * output.getFrameSize()];
+        this.next = taps - 1;
+        this.delayNanos = Math.round(getDelaySeconds() * 1e9);
+    }
+
+    private static long wholeRate(AudioFormat format) {
+        float rate = format.getSampleRate();
+        if (rate <= 0 || rate != Math.rint(rate)) {
+            throw new IllegalArgumentException("Sample rate must be a whole number of hertz: " + format);
+        }
+        return (long) rate;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * The polyphase coefficient table for a rate change of {@code up / down}.
+     *
+     * <p>The prototype is a low-pass of {@code up * taps} points at {@code up} times the input
+     * rate. {@link StrictMath} is used so the table, and so the output, is identical on every
+     * platform.</p>
+     *
+     * @return {@code up} branches of {@code taps} coefficients, each applied oldest sample first
+     */
+    static float[] design(int up, int down, int taps) {
+        int length = up * taps;
+        double cutoff = PASSBAND * 0.5 / Math.max(up, down); // cycles per upsampled sample
+        double centre = (length - 1) / 2.0;
+        double norm = besselI0(KAISER_BETA);
+        double[] prototype = new double[length];
+        for (int i = 0; i < length; i++) {
+            double x = i - centre;
+            double sinc = x == 0 ? 2 * cutoff : StrictMath.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double r = x / (centre + 0.5);
+            prototype[i] = sinc * besselI0(KAISER_BETA * StrictMath.sqrt(1 - r * r)) / norm;
+        }
+
+        float[] table = new float[length];
+        for (int p = 0; p < up; p++) {
+            double sum = 0;
+            for (int j = 0; j < taps; j++) {
+                sum += prototype[j * up + p];
+            }
+            for (int t = 0; t < taps; t++) {
+                // tap t multiplies input n - (taps - 1) + t, i.e. prototype index j = taps - 1 - t
+                table[p * taps + t] = (float) (prototype[(taps - 1 - t) * up + p] / sum);
+            }
+        }
+        return table;
+    }
+
+    /** Zeroth-order modified Bessel function of the first kind, by its power series. */
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double halfX = x / 2;
+        for (int k = 1; term > sum * 1e-17; k++) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+        }
+        return sum;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        write(data, offset, length, CaptureTimestamped.NONE);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length, long captureNanos) {
+        long outputNanos = captureNanos == CaptureTimestamped.NONE ? captureNanos : captureNanos - delayNanos;
+        int frameSize = inputFormat.getFrameSize();
+        int sampleSize = inputEncoding.bytesPerSample();
+        int carry = taps - 1;
+        while (length >= frameSize) {
+            int frames = Math.min(length / frameSize, BLOCK_FRAMES);
+            for (int c = 0; c < channels; c++) {
+                inputEncoding.decode(data, offset + c * sampleSize, frameSize, history[c], carry, frames);
+            }
+            int produced = filter(carry + frames);
+            for (int c = 0; c < channels; c++) {
+                System.arraycopy(history[c], frames, history[c], 0, carry);
+            }
+            next -= frames;
+            emit(produced, outputNanos);
+            offset += frames * frameSize;
+            length -= frames * frameSize;
+        }
+    }
+
+    /** Produce every output frame whose newest input lies below {@code filled}. */
+    private int filter(int filled) {
+        float[] coefficients = this.coefficients;
+        int taps = this.taps;
+        int p = phase;
+        int n = next;
+        int produced = 0;
+        while (n < filled) {
+            int base = p * taps;
+            int start = n - (taps - 1);
+            for (int c = 0; c < channels; c++) {
+                float[] x = history[c];
+                float acc = 0;
+                for (int t = 0; t < taps; t++) {
+                    acc += coefficients[base + t] * x[start + t];
+                }
+                output[c][produced] = acc;
+            }
+            produced++;
+            n += advance[p];
+            p = nextPhase[p];
+        }
+        phase = p;
+        next = n;
+        return produced;
+    }
+
+    private void emit(int frames, long captureNanos) {
+        if (frames == 0) {
+            return;
+        }
+        int frameSize = outputFormat.getFrameSize();
+        int sampleSize = outputEncoding.bytesPerSample();
+        for (int c = 0; c < channels; c++) {
+            outputEncoding.encode(output[c], 0, frames, encoded, c * sampleSize, frameSize);
+        }
+        downstream.write(encoded, 0, frames * frameSize, captureNanos);
+    }
+
+    /**
+     * Delay the filter adds to the stream: an input event at time {@code t} appears in the output
+     * at {@code t + getDelaySeconds()}.
+     *
+     * @return group delay in seconds
+     */
+    public double getDelaySeconds() {
+        return (up * taps - 1) / 2.0 / ((double) up * inputFormat.getSampleRate());
+    }
+
+    /**
+     * The format written to this sink.
+     *
+     * @return the input format
+     */
+    public AudioFormat getInputFormat() {
+        return inputFormat;
+    }
+
+    /**
+     * The format passed downstream.
+     *
+     * @return the output format
+     */
+    public AudioFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Output frames per {@link #getDown()} input frames.
+     *
+     * @return the interpolation factor of the reduced rate ratio
+     */
+    public int getUp() {
+        return up;
+    }
+
+    /**
+     * Input frames per {@link #getUp()} output frames.
+     *
+     * @return the decimation factor of the reduced rate ratio
+     */
+    public int getDown() {
+        return down;
+    }
+}
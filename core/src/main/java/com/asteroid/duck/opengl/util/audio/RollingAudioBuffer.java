@@ -13,7 +13,7 @@ import java.nio.FloatBuffer;
  * so the reader snapshots it once before reading and is guaranteed to see all bytes written
  * before that snapshot.</p>
  */
-public class RollingAudioBuffer implements AudioSink {
+public class RollingAudioBuffer implements AudioSink, CaptureTimestamped {
 
     /**
      * Raw audio bytes: interleaved little-endian 16-bit stereo PCM.
@@ -24,6 +24,9 @@ public class RollingAudioBuffer implements AudioSink {
     /** Write position in bytes; always advances in multiples of 4 (one stereo frame). */
     private volatile int writePos;
 
+    /** Capture time of the newest frame written. */
+    private volatile long captureNanos = NONE;
+
     /**
      * Create a ring buffer large enough to hold the given number of stereo frames.
      *
@@ -53,6 +56,18 @@ public class RollingAudioBuffer implements AudioSink {
         writePos = (pos + length) % capacity; // volatile write after data is visible
     }
 
+    /** As {@link #write(byte[], int, int)}, also recording when the newest frame was captured. */
+    @Override
+    public void write(byte[] chunk, int offset, int length, long captureNanos) {
+        write(chunk, offset, length);
+        this.captureNanos = captureNanos;
+    }
+
+    @Override
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
     /**
      * Read the most recent {@code count} mono samples into {@code dest[0..count-1]}, oldest first.
      *
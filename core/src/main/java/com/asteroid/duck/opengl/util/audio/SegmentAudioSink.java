@@ -0,0 +1,54 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * An {@link AudioSink} that can consume a chunk straight from a {@link MemorySegment}, so audio
+ * that already sits in native memory — a mapped file, say — reaches native stores such as a
+ * mapped PBO or a direct I/O buffer in one copy, without a stop in a heap array.
+ *
+ * <p>{@link AudioReader} hands every sink implementing this interface the chunk as a segment:
+ * the source's own memory when the line can lend it (see
+ * {@link AudioDataSource#readSegment(int)}), otherwise a view of the reader's heap chunk. Plain
+ * {@code byte[]} sinks keep working alongside; the reader copies a lent chunk to the heap at most
+ * once per dispatch for all of them, and {@link #adapt(AudioSink)} wraps one for code that only
+ * deals in segments.</p>
+ *
+ * <p>The {@code byte[]} forms of {@link AudioSink} default to wrapping the array in a heap
+ * segment, so a sink need only implement {@link #write(MemorySegment, long)}.</p>
+ */
+public interface SegmentAudioSink extends AudioSink {
+    /**
+     * Consume a chunk of PCM in the capture format of the {@link AudioReader} feeding this sink.
+     *
+     * <p>The segment is only valid for the duration of the call, may be read-only and may be
+     * heap or native memory: copy out what must be kept.</p>
+     *
+     * @param chunk        the chunk; its size is always a whole number of frames
+     * @param captureNanos {@link System#nanoTime()} at which the newest frame of the chunk was
+     *                     captured, or {@link CaptureTimestamped#NONE} if unknown
+     */
+    void write(MemorySegment chunk, long captureNanos);
+
+    @Override
+    default void write(byte[] data, int offset, int length) {
+        write(data, offset, length, CaptureTimestamped.NONE);
+    }
+
+    @Override
+    default void write(byte[] data, int offset, int length, long captureNanos) {
+        write(MemorySegment.ofArray(data).asSlice(offset, length), captureNanos);
+    }
+
+    /**
+     * View a {@code byte[]} sink as a segment sink. Heap segments backed by a {@code byte[]} are
+     * passed through without copying; anything else is copied into a scratch array that grows to
+     * the largest chunk seen.
+     *
+     * @param sink the sink to adapt
+     * @return {@code sink} itself if it already consumes segments, otherwise an adapter
+     */
+    static SegmentAudioSink adapt(AudioSink sink) {
+        return sink instanceof SegmentAudioSink segmentSink ? segmentSink : new HeapSinkAdapter(sink);
+    }
+}
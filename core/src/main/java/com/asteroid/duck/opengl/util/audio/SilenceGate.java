@@ -0,0 +1,240 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.RenderContext;
+import com.asteroid.duck.opengl.util.stats.Stats;
+import com.asteroid.duck.opengl.util.stats.StatsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.time.Duration;
+
+/**
+ * A peak/RMS gate on the capture path that lets a visualiser idle while its input is silent, so
+ * it does not draw at full rate all night in front of an empty room.
+ *
+ * <p>Every chunk of 16-bit stereo PCM written to the gate is measured across both channels. A
+ * chunk is loud if its peak reaches the peak threshold or its RMS reaches the RMS threshold;
+ * otherwise its frames count towards the hold time. Once the input has been quiet for the whole
+ * hold time the gate goes idle, and the first loud chunk wakes it again. Both are decided on the
+ * capture thread and in audio time, so a simulated source gives the same transitions however
+ * fast it is read.</p>
+ *
+ * <h2>Idling</h2>
+ * <ul>
+ *   <li>{@link #apply(RenderContext)}, called once per frame, lowers the context's desired update
+ *       rate to the idle rate while the gate is idle and restores the previous rate when it
+ *       wakes.</li>
+ *   <li>A {@link com.asteroid.duck.opengl.util.audio.analysis.FrequencyProcessor} given the gate
+ *       skips its FFT while idle.</li>
+ *   <li>A long idle frame would delay the wake by up to one idle period, so the wake listener —
+ *       typically {@link RenderContext#requestFrame()} — is run as soon as sound returns, and the
+ *       next frame renders at the restored rate.</li>
+ * </ul>
+ * Time spent idle is added to the {@code "Audio: Silence idle ms"} statistic on each wake.
+ *
+ * <pre>{@code
+ * SilenceGate gate = new SilenceGate(48_000f);
+ * gate.setWakeListener(ctx::requestFrame);
+ * freqProc.setSilenceGate(gate);
+ * AudioReader audioReader = new AudioReader(List.of(gate, freqProc));
+ *
+ * // doRender():
+ * gate.apply(ctx);
+ * freqProc.process();
+ * }</pre>
+ *
+ * <p>{@link #write} runs on the capture thread and {@link #apply} on the render thread; the
+ * idle flag between them is {@code volatile}.</p>
+ */
+public class SilenceGate implements AudioSink {
+    private static final Logger LOG = LoggerFactory.getLogger(SilenceGate.class);
+
+    /** Peak level, in dBFS, below which a chunk may count as silent. */
+    public static final float DEFAULT_PEAK_DB = -50f;
+    /** RMS level, in dBFS, below which a chunk may count as silent. */
+    public static final float DEFAULT_RMS_DB = -60f;
+    /** How long the input must stay silent before the gate idles. */
+    public static final Duration DEFAULT_HOLD = Duration.ofSeconds(30);
+    /** Update rate while idle, in Hz. */
+    public static final double DEFAULT_IDLE_HZ = 2.0;
+
+    private static final VarHandle SHORT_LE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Stats idleMillis = StatsFactory.stats("Audio: Silence idle ms");
+    private final float sampleRate;
+    /** Thresholds in 16-bit sample units: the peak, and the square of the RMS. */
+    private final int peakThreshold;
+    private final double rmsThresholdSquared;
+    private final long holdFrames;
+    private final double idlePeriod;
+
+    /** Consecutive quiet frames; capture thread only. */
+    private long quietFrames;
+    /** Audio frames measured, as the clock for idle time; capture thread only. */
+    private long frames;
+    private long idleSince;
+    private volatile boolean idle;
+    private volatile long idles;
+    private volatile long wakes;
+    private volatile Runnable wakeListener;
+
+    /** The context's update period before idling, restored on wake; render thread only. */
+    private Double activePeriod;
+    private boolean throttled;
+
+    /**
+     * A gate with the default thresholds, hold time and idle rate.
+     *
+     * @param sampleRate capture sample rate in Hz
+     */
+    public SilenceGate(float sampleRate) {
+        this(sampleRate, DEFAULT_PEAK_DB, DEFAULT_RMS_DB, DEFAULT_HOLD, DEFAULT_IDLE_HZ);
+    }
+
+    /**
+     * @param sampleRate capture sample rate in Hz
+     * @param peakDb     peak level in dBFS at or above which a chunk is loud
+     * @param rmsDb      RMS level in dBFS at or above which a chunk is loud
+     * @param hold       how long the input must stay quiet before the gate idles
+     * @param idleHz     desired update rate while idle, in Hz
+     * @throws IllegalArgumentException if the rate, hold or idle rate is not positive
+     */
+    public SilenceGate(float sampleRate, float peakDb, float rmsDb, Duration hold, double idleHz) {
+        if (sampleRate <= 0 || hold.isNegative() || hold.isZero() || idleHz <= 0) {
+            throw new IllegalArgumentException("Bad silence gate: rate " + sampleRate + ", hold " + hold
+                    + ", idle rate " + idleHz);
+        }
+        this.sampleRate = sampleRate;
+        this.peakThreshold = (int) Math.ceil(Short.MAX_VALUE * Math.pow(10, peakDb / 20.0));
+        double rms = Short.MAX_VALUE * Math.pow(10, rmsDb / 20.0);
+        this.rmsThresholdSquared = rms * rms;
+        this.holdFrames = Math.round(hold.toNanos() / 1e9 * sampleRate);
+        this.idlePeriod = 1.0 / idleHz;
+    }
+
+    /** Measure a chunk of 16-bit stereo frames and update the idle state. */
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        int count = length / 4;
+        if (count == 0) {
+            return;
+        }
+        int peak = 0;
+        long sumOfSquares = 0;
+        for (int i = offset, end = offset + count * 4; i < end; i += 2) {
+            int sample = (short) SHORT_LE.get(data, i);
+            peak = Math.max(peak, Math.abs(sample));
+            sumOfSquares += (long) sample * sample;
+        }
+        frames += count;
+        if (peak >= peakThreshold || sumOfSquares >= rmsThresholdSquared * 2 * count) {
+            quietFrames = 0;
+            if (idle) {
+                wake();
+            }
+        } else {
+            quietFrames += count;
+            if (!idle && quietFrames >= holdFrames) {
+                idleSince = frames;
+                idles++;
+                idle = true;
+                LOG.info("Input silent for {} s: idling", holdFrames / sampleRate);
+            }
+        }
+    }
+
+    private void wake() {
+        idle = false;
+        wakes++;
+        idleMillis.add(Math.round((frames - idleSince) * 1000.0 / sampleRate));
+        Runnable listener = wakeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Throttle or restore a context's update rate to match the gate. Call on the render thread
+     * once per frame, before deciding what to draw.
+     *
+     * <p>On idling the context's desired update period is saved and lengthened to the idle
+     * period — unless it was already longer — and on waking the saved period, or {@code null}
+     * for uncapped, is put back.</p>
+     *
+     * @param ctx the context whose update rate to control
+     * @return whether the gate is idle
+     */
+    public boolean apply(RenderContext ctx) {
+        boolean quiet = idle;
+        if (quiet && !throttled) {
+            activePeriod = ctx.getDesiredUpdatePeriod();
+            if (activePeriod == null || activePeriod < idlePeriod) {
+                ctx.setDesiredUpdatePeriod(idlePeriod);
+            }
+            throttled = true;
+        } else if (!quiet && throttled) {
+            ctx.setDesiredUpdatePeriod(activePeriod);
+            throttled = false;
+        }
+        return quiet;
+    }
+
+    /**
+     * Whether the input has been silent for the hold time, as of the last chunk written.
+     *
+     * @return {@code true} while idle
+     */
+    public boolean isIdle() {
+        return idle;
+    }
+
+    /**
+     * Run a callback on the capture thread whenever the gate wakes, so a render loop sleeping
+     * out an idle frame can start the next one at once. Replaces any listener set before.
+     *
+     * @param listener the callback, typically {@link RenderContext#requestFrame()}; {@code null} for none
+     */
+    public void setWakeListener(Runnable listener) {
+        this.wakeListener = listener;
+    }
+
+    /**
+     * How many times the gate has gone idle.
+     *
+     * @return idle transitions since the gate was created
+     */
+    public long getIdles() {
+        return idles;
+    }
+
+    /**
+     * How many times the gate has woken from idle.
+     *
+     * @return wake transitions since the gate was created
+     */
+    public long getWakes() {
+        return wakes;
+    }
+
+    /**
+     * The quiet time after which the gate idles.
+     *
+     * @return the hold time in frames
+     */
+    public long getHoldFrames() {
+        return holdFrames;
+    }
+
+    /**
+     * The update period applied while idle.
+     *
+     * @return the idle period in seconds
+     */
+    public double getIdlePeriod() {
+        return idlePeriod;
+    }
+}
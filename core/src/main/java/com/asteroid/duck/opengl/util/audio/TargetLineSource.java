@@ -1,15 +1,81 @@
 package com.asteroid.duck.opengl.util.audio;
 
+import com.asteroid.duck.opengl.util.stats.Stats;
+import com.asteroid.duck.opengl.util.stats.StatsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.TargetDataLine;
 
+/**
+ * An {@link AudioDataSource} backed by a Java Sound {@link TargetDataLine}, with a capture buffer
+ * that adapts to how well the reader keeps up.
+ *
+ * <h2>Overruns</h2>
+ * A capture line whose buffer fills before it is read discards audio without telling anyone.
+ * Every {@link #read} therefore compares the frames the device has captured since the line was
+ * opened ({@link TargetDataLine#getLongFramePosition()}) with the frames read plus those still
+ * buffered; any shortfall was lost to an overrun. Each overrun adds the frames lost to the
+ * {@code "Audio: Line overrun frames"} statistic.
+ *
+ * <h2>Buffer sizing</h2>
+ * The line is opened with the requested buffer size clamped to a {@link LineBufferPolicy}. After
+ * an overrun the buffer is doubled, and after the policy's calm period without one it is halved,
+ * always within the policy's limits; each new size is added to {@code "Audio: Line buffer frames"}.
+ * A line cannot change its buffer while open, so a resize closes and reopens it — losing the few
+ * milliseconds that takes — and is deferred until a read has drained everything that was
+ * buffered, so no captured audio is discarded with the old buffer.
+ *
+ * <p>Not thread-safe beyond what {@link AudioReader} needs: reads and resizes happen on the
+ * reader thread.</p>
+ */
 public class TargetLineSource implements AudioDataSource {
+	private static final Logger LOG = LoggerFactory.getLogger(TargetLineSource.class);
+
+	private final Stats overrunFrames = StatsFactory.stats("Audio: Line overrun frames");
+	private final Stats bufferFrames = StatsFactory.stats("Audio: Line buffer frames");
 	private final String name;
 	private final TargetDataLine line;
+	private final LineBufferPolicy policy;
+
+	private AudioFormat format;
+	private int frameSize;
+	private long calmFrames;
+	/** Current buffer size in frames. */
+	private int size;
+	/** Size to reopen with once the line is drained, or 0. */
+	private int pendingSize;
+	/** Frames read and frames known lost since the line was last opened. */
+	private long framesRead;
+	private long framesLost;
+	private long framesSinceOverrun;
+	private long overruns;
+	private long lostFrames;
+	private long resizes;
+
+	/**
+	 * Wrap a line, adapting its buffer within {@link LineBufferPolicy#DEFAULT}.
+	 *
+	 * @param name display name
+	 * @param line the line to capture from; not yet open
+	 */
 	public TargetLineSource(String name, TargetDataLine line) {
+		this(name, line, LineBufferPolicy.DEFAULT);
+	}
+
+	/**
+	 * Wrap a line, adapting its buffer within the given limits.
+	 *
+	 * @param name   display name
+	 * @param line   the line to capture from; not yet open
+	 * @param policy buffer size limits
+	 */
+	public TargetLineSource(String name, TargetDataLine line, LineBufferPolicy policy) {
 		this.name = name;
 		this.line = line;
+		this.policy = policy;
 	}
 
 	@Override
@@ -22,14 +88,87 @@ public class TargetLineSource implements AudioDataSource {
 		return line.available();
 	}
 
+	/** Read from the line, accounting for any frames lost since the last read and resizing if due. */
 	@Override
 	public int read(byte[] array, int start, int limit) {
-		return line.read(array, start, limit);
+		// position first: the line can only have captured more by the time available() answers
+		long position = line.getLongFramePosition();
+		int buffered = line.available();
+		long lost = position - framesRead - buffered / frameSize;
+		if (lost > framesLost) {
+			overrun(lost - framesLost);
+			framesLost = lost;
+		}
+		int read = line.read(array, start, limit);
+		if (read > 0) {
+			framesRead += read / frameSize;
+			framesSinceOverrun += read / frameSize;
+			if (pendingSize == 0 && framesSinceOverrun >= calmFrames && policy.shrink(size) != size) {
+				pendingSize = policy.shrink(size);
+			}
+			if (pendingSize != 0 && read >= buffered) {
+				resize(pendingSize);
+			}
+		}
+		return read;
+	}
+
+	private void overrun(long frames) {
+		overruns++;
+		lostFrames += frames;
+		framesSinceOverrun = 0;
+		overrunFrames.add(frames);
+		int grown = policy.grow(size);
+		pendingSize = grown != size ? grown : 0;
+	}
+
+	private void resize(int frames) {
+		pendingSize = 0;
+		framesSinceOverrun = 0;
+		boolean running = line.isRunning();
+		line.stop();
+		line.close();
+		int old = size;
+		try {
+			openLine(frames);
+		} catch (LineUnavailableException e) {
+			LOG.error("Could not reopen {} with a {} frame buffer", name, frames, e);
+			try {
+				openLine(old);
+			} catch (LineUnavailableException again) {
+				LOG.error("Could not reopen {}", name, again);
+				return;
+			}
+		}
+		if (running) {
+			line.start();
+		}
+		// back on the old size, or the line rounded the new one to it: nothing was resized
+		if (size == old) {
+			return;
+		}
+		resizes++;
+		bufferFrames.add(size);
+		LOG.info("{} buffer resized from {} to {} frames after {} overrun(s)", name, old, size, overruns);
+	}
+
+	private void openLine(int frames) throws LineUnavailableException {
+		line.open(format, frames * frameSize);
+		// the line may round the size it was asked for
+		size = line.getBufferSize() / frameSize;
+		framesRead = 0;
+		framesLost = 0;
 	}
 
 	@Override
 	public void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
-		line.open(format, bufferSize);
+		this.format = format;
+		this.frameSize = format.getFrameSize();
+		this.calmFrames = policy.calmFrames(format.getFrameRate());
+		this.pendingSize = 0;
+		this.framesSinceOverrun = 0;
+		openLine(policy.clamp(bufferSize / frameSize));
+		bufferFrames.add(size);
 	}
 
 	@Override
@@ -56,4 +195,46 @@ public class TargetLineSource implements AudioDataSource {
 	public void close() {
 		line.close();
 	}
+
+	@Override
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * Frames the line discarded because its buffer was full.
+	 *
+	 * @return frames lost to overruns since this source was created
+	 */
+	public long getLostFrames() {
+		return lostFrames;
+	}
+
+	/**
+	 * The line's current capture buffer size.
+	 *
+	 * @return frames the line can buffer
+	 */
+	public int getBufferFrames() {
+		return size;
+	}
+
+	/**
+	 * How many times the line has been reopened with a new buffer size; a reopen that fell back
+	 * to the old size is not counted.
+	 *
+	 * @return resizes since this source was created
+	 */
+	public long getResizes() {
+		return resizes;
+	}
+
+	/**
+	 * The limits within which the buffer adapts.
+	 *
+	 * @return the policy passed at construction
+	 */
+	public LineBufferPolicy getPolicy() {
+		return policy;
+	}
 }
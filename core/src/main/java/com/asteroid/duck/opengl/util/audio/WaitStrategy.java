@@ -0,0 +1,169 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a polling audio thread waits when its source has nothing to read.
+ *
+ * <p>Used by {@link AudioReader} when {@link AudioDataSource#available()} returns {@code 0}, and
+ * by {@link AudioRing.Consumer} when it has caught up with the producer. The choice trades
+ * wake-up latency against CPU use:</p>
+ * <ul>
+ *   <li>{@link #busySpin()} — lowest latency, one core at 100 %.</li>
+ *   <li>{@link #yielding()} — the historic {@link AudioReader} behaviour; still keeps a core busy
+ *       when nothing else is runnable.</li>
+ *   <li>{@link #parking(Duration, Duration)} — spins briefly, then parks for exponentially longer
+ *       periods up to a cap. Latency is bounded by the cap.</li>
+ *   <li>{@link #timedBlocking(Duration)} — blocks on a monitor for a fixed period, or until
+ *       {@link #signalAll()} is called (e.g. when the reader's line is replaced).</li>
+ * </ul>
+ *
+ * <p>Strategies keep no per-thread state — the caller passes the number of consecutive idle
+ * iterations — so one instance can be shared between threads.</p>
+ */
+public interface WaitStrategy {
+
+    /**
+     * Wait once because there was nothing to read.
+     *
+     * @param idleCount number of consecutive calls since data was last available, starting at 0
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    void idle(int idleCount) throws InterruptedException;
+
+    /** Wake any threads blocked in {@link #idle}. A no-op for non-blocking strategies. */
+    default void signalAll() {}
+
+    /**
+     * Spin on the CPU without yielding.
+     *
+     * @return the busy-spin strategy
+     */
+    static WaitStrategy busySpin() {
+        return new WaitStrategy() {
+            @Override
+            public void idle(int idleCount) {
+                Thread.onSpinWait();
+            }
+
+            @Override
+            public String toString() {
+                return "busy-spin";
+            }
+        };
+    }
+
+    /**
+     * Call {@link Thread#yield()} on every idle iteration.
+     *
+     * @return the yielding strategy
+     */
+    static WaitStrategy yielding() {
+        return new WaitStrategy() {
+            @Override
+            public void idle(int idleCount) {
+                Thread.yield();
+            }
+
+            @Override
+            public String toString() {
+                return "yield";
+            }
+        };
+    }
+
+    /**
+     * Spin for a few iterations, then park for {@code min}, doubling on each further idle
+     * iteration up to {@code max}.
+     *
+     * @param min first park period
+     * @param max longest park period; bounds the wake-up latency
+     * @return the park-with-backoff strategy
+     */
+    static WaitStrategy parking(Duration min, Duration max) {
+        return new ParkingWaitStrategy(min.toNanos(), max.toNanos());
+    }
+
+    /**
+     * Block for up to {@code timeout} on a monitor that {@link #signalAll()} notifies.
+     *
+     * @param timeout longest time to block per idle iteration
+     * @return the timed-blocking strategy
+     */
+    static WaitStrategy timedBlocking(Duration timeout) {
+        return new TimedBlockingWaitStrategy(timeout.toNanos());
+    }
+
+    /** See {@link WaitStrategy#parking(Duration, Duration)}. */
+    final class ParkingWaitStrategy implements WaitStrategy {
+        /** Idle iterations spent spinning before the first park. */
+        static final int SPIN_TRIES = 16;
+
+        private final long minNanos;
+        private final long maxNanos;
+
+        private ParkingWaitStrategy(long minNanos, long maxNanos) {
+            if (minNanos <= 0 || maxNanos < minNanos) {
+                throw new IllegalArgumentException("Require 0 < min <= max: " + minNanos + ", " + maxNanos);
+            }
+            this.minNanos = minNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        @Override
+        public void idle(int idleCount) throws InterruptedException {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+                return;
+            }
+            int doublings = idleCount - SPIN_TRIES;
+            // shifting past the leading zeros would overflow, and we'd be way past max anyway
+            long nanos = doublings >= Long.numberOfLeadingZeros(minNanos) - 1 ? maxNanos
+                    : Math.min(maxNanos, minNanos << doublings);
+            LockSupport.parkNanos(nanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "park[" + TimeUnit.NANOSECONDS.toMicros(minNanos) + "-"
+                    + TimeUnit.NANOSECONDS.toMicros(maxNanos) + "us]";
+        }
+    }
+
+    /** See {@link WaitStrategy#timedBlocking(Duration)}. */
+    final class TimedBlockingWaitStrategy implements WaitStrategy {
+        private final long timeoutNanos;
+        private final Object monitor = new Object();
+
+        private TimedBlockingWaitStrategy(long timeoutNanos) {
+            if (timeoutNanos <= 0) {
+                throw new IllegalArgumentException("timeout must be positive: " + timeoutNanos);
+            }
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        @Override
+        public void idle(int idleCount) throws InterruptedException {
+            synchronized (monitor) {
+                TimeUnit.NANOSECONDS.timedWait(monitor, timeoutNanos);
+            }
+        }
+
+        @Override
+        public void signalAll() {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "block[" + TimeUnit.NANOSECONDS.toMicros(timeoutNanos) + "us]";
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+/**
+ * Layout and encoding shared by {@link AnalysisRecorder} and {@link AnalysisReplay}.
+ *
+ * <p>All fixed-width fields are big-endian, as written by {@link java.io.DataOutputStream}.</p>
+ * <pre>
+ * header   int    MAGIC
+ *          short  VERSION
+ *          int    numBins
+ *          int    keyInterval
+ *          int    bandCount
+ *          bandCount × { UTF name, float fMin, float fMax }
+ * frames   frameCount × {
+ *            varint     nanoseconds since the previous frame (0 for the first)
+ *            numBins ×  zig-zag varint: quantised magnitude − previous frame's
+ *            bandCount × zig-zag varint: quantised beat strength − previous frame's
+ *          }
+ * index    ceil(frameCount / keyInterval) × { long offset, long nanos } of each key frame
+ * trailer  int    frameCount
+ *          long   offset of the index
+ *          int    MAGIC
+ * </pre>
+ *
+ * <p>Every {@code keyInterval}-th frame is a key frame, delta-encoded against zero rather than
+ * the frame before, so a reader can start decoding at any key frame. Values in {@code [0, 1]}
+ * are quantised to 16 bits; most bins of a music spectrum then cost one or two bytes.</p>
+ */
+final class AnalysisLog {
+    /** {@code "DAL1"}: duck analysis log. */
+    static final int MAGIC = 0x44414C31;
+    static final short VERSION = 1;
+    static final int TRAILER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    static final int INDEX_ENTRY_SIZE = 2 * Long.BYTES;
+    /** Largest value a quantised sample can take. */
+    static final int LEVELS = 0xFFFF;
+    /** Longest encoding of an {@code int} delta of two quantised samples. */
+    static final int MAX_DELTA_BYTES = 3;
+    /** Longest encoding of a {@code long}. */
+    static final int MAX_VARLONG_BYTES = 10;
+
+    private AnalysisLog() {
+    }
+
+    /** Quantise a value in {@code [0, 1]} to {@code [0, LEVELS]}, clamping anything outside. */
+    static int quantise(float value) {
+        if (!(value > 0)) {
+            return 0; // also NaN
+        }
+        return value >= 1 ? LEVELS : Math.round(value * LEVELS);
+    }
+
+    static float dequantise(int level) {
+        return level / (float) LEVELS;
+    }
+
+    /** Append an unsigned LEB128 varint; returns the position after it. */
+    static int putVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /** Append a zig-zag varint, so small deltas of either sign take one byte. */
+    static int putDelta(byte[] buffer, int position, int delta) {
+        return putVarLong(buffer, position, ((delta << 1) ^ (delta >> 31)) & 0xFFFFFFFFL);
+    }
+
+    static int zigZagDecode(long encoded) {
+        return (int) (encoded >>> 1) ^ -(int) (encoded & 1);
+    }
+}
@@ -0,0 +1,199 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.timer.Clock;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link FrequencySink} that records every spectrum it is given, and optionally the beat
+ * strengths of a {@link BeatDetector}, to a compact binary log that {@link AnalysisReplay} plays
+ * back. Renderers can then be regression-tested and benchmarked against real analysis output
+ * without capturing audio or running an FFT.
+ *
+ * <p>Each frame is stored as the difference from the one before, with values quantised to 16
+ * bits and written as zig-zag varints, so a 128-bin spectrum of music takes around 160 bytes a
+ * frame rather than 512. A key frame every {@code keyInterval} frames, indexed at
+ * the end of the file, lets a replay seek without decoding from the start. See
+ * {@link AnalysisLog} for the layout.</p>
+ *
+ * <pre>{@code
+ * BeatDetector beats = new BeatDetector(freqProc);
+ * freqProc.addSink(beats);
+ * AnalysisRecorder recorder = new AnalysisRecorder(Path.of("set.dal"), freqProc, beats);
+ * freqProc.addSink(recorder); // after the detector, so its strengths are this frame's
+ * // ... render ...
+ * recorder.close();
+ * }</pre>
+ *
+ * <p>Like any {@link FrequencySink} it runs on the render thread. Writes are buffered; a failed
+ * write is thrown from {@link #onSpectrum} as an {@link UncheckedIOException}. The log is only
+ * complete once {@link #close()} has written the index.</p>
+ */
+public class AnalysisRecorder implements FrequencySink, Closeable {
+
+    /** Key frames are written once a second at 60 fps. */
+    public static final int DEFAULT_KEY_INTERVAL = 60;
+
+    private final DataOutputStream out;
+    private final int numBins;
+    private final BeatDetector beats;
+    private final int keyInterval;
+    private final Clock clock;
+
+    /** Quantised values of the previous frame: the bins, then the bands. */
+    private final int[] previous;
+    private final byte[] frame;
+    private final List<long[]> keyFrames = new ArrayList<>();
+    private long position;
+    private int frameCount;
+    /** Clock reading of the previous frame, and the recorded time of the frame: render thread only. */
+    private long lastNanos;
+    private long elapsedNanos;
+    private boolean closed;
+
+    /**
+     * Record the spectra of a processor and, if given, the strengths of a detector, stamped with
+     * {@link System#nanoTime()}.
+     *
+     * @param file      the log to create, replacing any existing file
+     * @param processor the processor this recorder will be registered with
+     * @param beats     a detector registered with the same processor before this recorder, or {@code null}
+     * @throws IOException if the file cannot be created
+     */
+    public AnalysisRecorder(Path file, FrequencyProcessor processor, BeatDetector beats) throws IOException {
+        this(file, processor.getNumBins(), beats, DEFAULT_KEY_INTERVAL, null);
+    }
+
+    /**
+     * Full constructor.
+     *
+     * @param file        the log to create, replacing any existing file
+     * @param numBins     length of the spectra that will be recorded
+     * @param beats       detector whose strengths to record with each spectrum, or {@code null}
+     * @param keyInterval frames between key frames; smaller seeks faster, larger is more compact
+     * @param clock       clock to stamp frames with, or {@code null} for {@link System#nanoTime()}
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if {@code numBins} or {@code keyInterval} is not positive
+     */
+    public AnalysisRecorder(Path file, int numBins, BeatDetector beats, int keyInterval, Clock clock)
+            throws IOException {
+        if (numBins <= 0 || keyInterval <= 0) {
+            throw new IllegalArgumentException("Bad analysis log: " + numBins + " bins, key interval " + keyInterval);
+        }
+        this.numBins = numBins;
+        this.beats = beats;
+        this.keyInterval = keyInterval;
+        this.clock = clock;
+        List<FrequencyBand> bands = beats == null ? List.of() : beats.getBands();
+        this.previous = new int[numBins + bands.size()];
+        this.frame = new byte[AnalysisLog.MAX_VARLONG_BYTES + previous.length * AnalysisLog.MAX_DELTA_BYTES];
+
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        try {
+            out.writeInt(AnalysisLog.MAGIC);
+            out.writeShort(AnalysisLog.VERSION);
+            out.writeInt(numBins);
+            out.writeInt(keyInterval);
+            out.writeInt(bands.size());
+            for (FrequencyBand band : bands) {
+                out.writeUTF(band.name());
+                out.writeFloat(band.fMin());
+                out.writeFloat(band.fMax());
+            }
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        this.position = out.size();
+    }
+
+    /**
+     * Append a frame: the spectrum and the detector's current strengths.
+     *
+     * @throws UncheckedIOException if the write fails
+     * @throws IllegalStateException if the recorder has been closed
+     */
+    @Override
+    public void onSpectrum(float[] magnitudes) {
+        if (closed) {
+            throw new IllegalStateException("Analysis recorder is closed");
+        }
+        long nanos = now();
+        // a clock that steps back records a zero interval rather than a negative one
+        long interval = frameCount == 0 ? 0 : Math.max(0, nanos - lastNanos);
+        lastNanos = frameCount == 0 ? nanos : Math.max(lastNanos, nanos);
+        elapsedNanos += interval;
+        boolean key = frameCount % keyInterval == 0;
+        if (key) {
+            keyFrames.add(new long[]{position, elapsedNanos});
+        }
+        int length = AnalysisLog.putVarLong(frame, 0, interval);
+        for (int i = 0; i < numBins; i++) {
+            length = putValue(i, AnalysisLog.quantise(magnitudes[i]), key, length);
+        }
+        for (int i = numBins; i < previous.length; i++) {
+            length = putValue(i, AnalysisLog.quantise(beats.getBeatStrength(i - numBins)), key, length);
+        }
+        try {
+            out.write(frame, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot record analysis frame " + frameCount, e);
+        }
+        position += length;
+        frameCount++;
+    }
+
+    private int putValue(int index, int level, boolean key, int position) {
+        int delta = key ? level : level - previous[index];
+        previous[index] = level;
+        return AnalysisLog.putDelta(frame, position, delta);
+    }
+
+    private long now() {
+        return clock == null ? System.nanoTime() : Math.round(clock.elapsed() * 1e9);
+    }
+
+    /**
+     * Frames recorded so far.
+     *
+     * @return the number of spectra written
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Size of the log so far, excluding the index written on close.
+     *
+     * @return bytes written, including any still buffered
+     */
+    public long getBytesWritten() {
+        return position;
+    }
+
+    /** Write the key-frame index and trailer and close the file. Idempotent. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (out) {
+            for (long[] keyFrame : keyFrames) {
+                out.writeLong(keyFrame[0]);
+                out.writeLong(keyFrame[1]);
+            }
+            out.writeInt(frameCount);
+            out.writeLong(position);
+            out.writeInt(AnalysisLog.MAGIC);
+        }
+    }
+}
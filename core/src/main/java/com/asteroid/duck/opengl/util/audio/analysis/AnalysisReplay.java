@@ -0,0 +1,435 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.timer.Clock;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays back a log written by {@link AnalysisRecorder}, feeding the recorded spectra to
+ * {@link FrequencySink}s — {@link com.asteroid.duck.opengl.util.wave.SpectrumAnalyser},
+ * {@link com.asteroid.duck.opengl.util.wave.RadialSpectrumAnalyser}, a {@link BeatDetector} —
+ * exactly as a {@link FrequencyProcessor} would, and answering the recorded beat strengths with
+ * the same accessors as {@link BeatDetector}. Render-side cost can then be profiled, and visual
+ * behaviour regression-tested, with no audio line and no FFT.
+ *
+ * <h2>Playback</h2>
+ * <ul>
+ *   <li>{@link #next()} steps one recorded frame per call, as fast as the caller goes.</li>
+ *   <li>{@link #play(Clock, double)} then {@link #process()} once per render frame follows the
+ *       recorded timing at any speed: each call shows the newest frame recorded at or before the
+ *       playhead, skipping frames when playing faster than the render loop, via the key-frame
+ *       index when the jump is long.</li>
+ *   <li>{@link #seek(int)} shows any frame directly, decoding forward from the key frame before
+ *       it.</li>
+ * </ul>
+ * Values come back quantised to 16 bits, within {@code 1 / 131 070} of what was recorded.
+ *
+ * <pre>{@code
+ * AnalysisReplay replay = new AnalysisReplay(Path.of("set.dal"));
+ * SpectrumAnalyser analyser = new SpectrumAnalyser(replay.getNumBins());
+ * replay.addSink(analyser);
+ * replay.play(ctx.getClock(), 1.0);
+ *
+ * // doRender():
+ * replay.process();
+ * analyser.doRender(ctx);
+ * float kick = replay.getBeatStrength("bass");
+ * }</pre>
+ *
+ * <p>The whole log is mapped read-only when opened. Not thread-safe: use it from the render thread
+ * like the processor it stands in for.</p>
+ */
+public class AnalysisReplay implements Closeable {
+
+    private final Path file;
+    private final int numBins;
+    private final int keyInterval;
+    private final List<FrequencyBand> bands;
+    private final int frameCount;
+    private final long[] keyOffsets;
+    private final long[] keyNanos;
+    private final List<FrequencySink> sinks = new ArrayList<>();
+
+    /** The log; released when collected, as {@link java.nio.MappedByteBuffer}s are. */
+    private ByteBuffer log;
+    /** Quantised values of the current frame: the bins, then the bands. */
+    private final int[] levels;
+    private final float[] magnitudes;
+    private final float[] strengths;
+
+    /** The frame last decoded, or −1 before the first; its time; where the next one starts. */
+    private int frame = -1;
+    private long frameNanos;
+    private int position;
+
+    /** Set by {@link #play}: the clock, its reading and the recorded time at the start, the speed. */
+    private Clock clock;
+    private double clockOrigin;
+    private long playOrigin;
+    private double speed;
+
+    /**
+     * Open a log for replay.
+     *
+     * @param file a log closed by {@link AnalysisRecorder#close()}
+     * @throws IOException if the file cannot be read, is not an analysis log, or was never closed
+     */
+    public AnalysisReplay(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Analysis log " + file + " is over 2 GiB");
+            }
+            this.log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (log.capacity() < AnalysisLog.TRAILER_SIZE + Integer.BYTES + Short.BYTES
+                || log.getInt(0) != AnalysisLog.MAGIC) {
+            throw new IOException(file + " is not an analysis log");
+        }
+        int trailer = log.capacity() - AnalysisLog.TRAILER_SIZE;
+        if (log.getInt(trailer + Integer.BYTES + Long.BYTES) != AnalysisLog.MAGIC) {
+            throw new IOException("Analysis log " + file + " was not closed");
+        }
+
+        ByteBuffer headerBytes = log.duplicate();
+        DataInputStream header = new DataInputStream(new ByteBufferInput(headerBytes));
+        header.readInt();
+        short version = header.readShort();
+        if (version != AnalysisLog.VERSION) {
+            throw new IOException("Analysis log " + file + " is version " + version);
+        }
+        this.numBins = header.readInt();
+        this.keyInterval = header.readInt();
+        int bandCount = header.readInt();
+        List<FrequencyBand> read = new ArrayList<>(bandCount);
+        for (int i = 0; i < bandCount; i++) {
+            read.add(new FrequencyBand(header.readUTF(), header.readFloat(), header.readFloat()));
+        }
+        this.bands = List.copyOf(read);
+        this.position = headerBytes.position();
+
+        this.frameCount = log.getInt(trailer);
+        int index = Math.toIntExact(log.getLong(trailer + Integer.BYTES));
+        int keys = (frameCount + keyInterval - 1) / keyInterval;
+        if (index < position || index + (long) keys * AnalysisLog.INDEX_ENTRY_SIZE != trailer) {
+            throw new IOException("Analysis log " + file + " has a corrupt index");
+        }
+        this.keyOffsets = new long[keys];
+        this.keyNanos = new long[keys];
+        for (int i = 0; i < keys; i++) {
+            keyOffsets[i] = log.getLong(index + i * AnalysisLog.INDEX_ENTRY_SIZE);
+            keyNanos[i] = log.getLong(index + i * AnalysisLog.INDEX_ENTRY_SIZE + Long.BYTES);
+        }
+
+        this.levels = new int[numBins + bandCount];
+        this.magnitudes = new float[numBins];
+        this.strengths = new float[bandCount];
+    }
+
+    // ── Playback ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Show the next recorded frame, whatever its time.
+     *
+     * @return {@code false}, notifying no sinks, once the last frame has been shown
+     */
+    public boolean next() {
+        if (frame + 1 >= frameCount) {
+            return false;
+        }
+        decodeNext();
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Show a frame, decoding forward from the key frame at or before it. Playback by
+     * {@link #process()} carries on from this frame's time.
+     *
+     * @param target frame index in {@code [0, getFrameCount())}
+     * @throws IndexOutOfBoundsException if there is no such frame
+     */
+    public void seek(int target) {
+        if (target < 0 || target >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + target + " of " + frameCount);
+        }
+        int key = target / keyInterval;
+        if (target < frame || key * keyInterval > frame + 1) {
+            jumpTo(key);
+        }
+        while (frame < target) {
+            decodeNext();
+        }
+        dispatch();
+        if (clock != null) {
+            play(clock, speed);
+        }
+    }
+
+    /** Go back to before the first frame, so {@link #next()} shows frame 0. */
+    public void rewind() {
+        jumpTo(0);
+        frameNanos = 0;
+        if (clock != null) {
+            play(clock, speed);
+        }
+    }
+
+    /**
+     * Start following a clock: each {@link #process()} from now on shows the frame recorded
+     * {@code speed} times the clock's elapsed time after the current one (or after the start).
+     *
+     * @param clock the render loop's clock
+     * @param speed recorded seconds per clock second, e.g. {@code 2.0} for double speed
+     * @throws IllegalArgumentException if {@code speed} is not positive
+     */
+    public void play(Clock clock, double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed " + speed);
+        }
+        this.clock = clock;
+        this.speed = speed;
+        this.clockOrigin = clock.elapsed();
+        this.playOrigin = frame < 0 ? 0 : frameNanos;
+    }
+
+    /**
+     * Catch up with the clock set by {@link #play}: decode to the newest frame recorded at or
+     * before the playhead and, if that is a new frame, pass it to every sink. Call once per render
+     * frame, where {@link FrequencyProcessor#process()} would be called.
+     *
+     * @return whether a new frame was shown
+     * @throws IllegalStateException if {@link #play} has not been called
+     */
+    public boolean process() {
+        if (clock == null) {
+            throw new IllegalStateException("Replay of " + file + " is not playing");
+        }
+        long playhead = playOrigin + Math.round((clock.elapsed() - clockOrigin) * speed * 1e9);
+        // the last key frame at or before the playhead, if it is beyond the next frame
+        int key = searchKey(playhead);
+        if (key >= 0 && key * keyInterval > frame + 1) {
+            jumpTo(key);
+        }
+        int shown = frame;
+        while (frame + 1 < frameCount && nextFrameNanos() <= playhead) {
+            decodeNext();
+        }
+        if (frame == shown) {
+            return false;
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Whether every frame has been shown.
+     *
+     * @return {@code true} once the last frame is current
+     */
+    public boolean isFinished() {
+        return frame + 1 >= frameCount;
+    }
+
+    private int searchKey(long nanos) {
+        int low = 0;
+        int high = keyNanos.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keyNanos[mid] <= nanos) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /** Position before key frame {@code key}, so the next decode reads it. */
+    private void jumpTo(int key) {
+        if (keyOffsets.length == 0) {
+            frame = -1;
+            return;
+        }
+        frame = key * keyInterval - 1;
+        position = (int) keyOffsets[key];
+    }
+
+    /** Time of the frame after the current one, without decoding it. */
+    private long nextFrameNanos() {
+        int next = frame + 1;
+        if (next % keyInterval == 0) {
+            return keyNanos[next / keyInterval];
+        }
+        int at = position;
+        long interval = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = log.get(at++);
+            interval |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return frameNanos + interval;
+            }
+        }
+    }
+
+    private void decodeNext() {
+        frame++;
+        boolean key = frame % keyInterval == 0;
+        long interval = readVarLong();
+        frameNanos = key ? keyNanos[frame / keyInterval] : frameNanos + interval;
+        for (int i = 0; i < levels.length; i++) {
+            int delta = AnalysisLog.zigZagDecode(readVarLong());
+            levels[i] = key ? delta : levels[i] + delta;
+        }
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = log.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private void dispatch() {
+        for (int i = 0; i < numBins; i++) {
+            magnitudes[i] = AnalysisLog.dequantise(levels[i]);
+        }
+        for (int i = 0; i < strengths.length; i++) {
+            strengths[i] = AnalysisLog.dequantise(levels[numBins + i]);
+        }
+        for (FrequencySink sink : sinks) {
+            sink.onSpectrum(magnitudes);
+        }
+    }
+
+    // ── Sinks ────────────────────────────────────────────────────────────────────
+
+    /** Register a sink to receive each frame shown, as with {@link FrequencyProcessor#addSink}. */
+    public void addSink(FrequencySink sink) {
+        sinks.add(sink);
+    }
+
+    /** Unregister a previously added sink. No-op if the sink was not registered. */
+    public void removeSink(FrequencySink sink) {
+        sinks.remove(sink);
+    }
+
+    // ── Recorded state ───────────────────────────────────────────────────────────
+
+    /**
+     * Beat strength recorded with the current frame for the band at {@code index}.
+     *
+     * @param index band index in [0, {@link #getBandCount()})
+     * @return beat strength in [0, 1]
+     */
+    public float getBeatStrength(int index) {
+        return strengths[index];
+    }
+
+    /**
+     * Beat strength recorded with the current frame for the named band.
+     *
+     * @param name band name as given in the recorded {@link FrequencyBand}
+     * @return beat strength in [0, 1]
+     * @throws IllegalArgumentException if no band with that name was recorded
+     */
+    public float getBeatStrength(String name) {
+        for (int i = 0; i < bands.size(); i++) {
+            if (bands.get(i).name().equals(name)) return strengths[i];
+        }
+        throw new IllegalArgumentException("No band named '" + name + "'");
+    }
+
+    /** Snapshot of the current frame's beat strengths in band order. */
+    public float[] getBeatStrengths() {
+        return strengths.clone();
+    }
+
+    /** The bands of the {@link BeatDetector} that was recorded; empty if none was. */
+    public List<FrequencyBand> getBands() {
+        return bands;
+    }
+
+    /** Number of recorded bands. */
+    public int getBandCount() {
+        return bands.size();
+    }
+
+    /** Length of each recorded spectrum. */
+    public int getNumBins() {
+        return numBins;
+    }
+
+    /** Number of frames in the log. */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Index of the frame last shown.
+     *
+     * @return the frame, or −1 before the first
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Recorded time of the frame last shown, relative to the first frame.
+     *
+     * @return nanoseconds after the first frame
+     */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /** Release the mapping; the replay cannot be used afterwards. */
+    @Override
+    public void close() {
+        log = null; // the mapping is released when collected
+    }
+
+    /** Reads the header through a {@link DataInputStream}. */
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
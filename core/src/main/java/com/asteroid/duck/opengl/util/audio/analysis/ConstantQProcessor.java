@@ -0,0 +1,133 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.AudioSink;
+import com.asteroid.duck.opengl.util.audio.CaptureTimestamped;
+import com.asteroid.duck.opengl.util.audio.ChannelMode;
+import com.asteroid.duck.opengl.util.audio.FloatAudioBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link FrequencyProcessor} alternative whose spectrum is a {@link ConstantQTransform}:
+ * musically spaced bins, a fixed number per octave, in place of peak-picked FFT bins. Receives
+ * PCM on the capture thread and, once per frame on the render thread, transforms the newest
+ * window and passes the levels to every registered {@link FrequencySink}.
+ *
+ * <p>{@link #getFMin()} and {@link #getFMax()} are the outer edges of the first and last bins, so
+ * sinks that assume log-spaced bars between them, such as {@link BeatDetector}, line up with the
+ * bins exactly:</p>
+ * <pre>{@code
+ * ConstantQProcessor cqt = new ConstantQProcessor(48_000f, 55f, 14_080f, 24, -80f, 0f);
+ * BeatDetector beats = new BeatDetector(cqt.getNumBins(), cqt.getFMin(), cqt.getFMax());
+ * cqt.addSink(beats);
+ * }</pre>
+ *
+ * <p>Threading is as for {@link FrequencyProcessor}: {@link #write} on the capture thread,
+ * everything else on the render thread.</p>
+ */
+public class ConstantQProcessor implements AudioSink, CaptureTimestamped {
+
+    private final FloatAudioBuffer audioBuffer;
+    private final ConstantQTransform transform;
+    private final float[] sampleBuffer;
+    private final float[] levels;
+    private final List<FrequencySink> sinks = new ArrayList<>();
+
+    /** Capture time of the newest sample in the window last analysed; render thread only. */
+    private long captureNanos = NONE;
+    /** When that window was analysed; render thread only. */
+    private long processedNanos = NONE;
+
+    /**
+     * Construct a processor with {@link ChannelMode#MONO_BLEND} channel mixing.
+     *
+     * @param sampleRate    capture sample rate in Hz
+     * @param fMin          centre of the first bin in Hz
+     * @param fMax          highest centre allowed in Hz
+     * @param binsPerOctave bins per octave, e.g. 12 for semitones
+     * @param dBFloor       dB level mapped to output 0.0
+     * @param dBCeiling     dB level mapped to output 1.0
+     */
+    public ConstantQProcessor(float sampleRate, float fMin, float fMax, int binsPerOctave,
+                              float dBFloor, float dBCeiling) {
+        this(new ConstantQTransform(sampleRate, fMin, fMax, binsPerOctave, dBFloor, dBCeiling), ChannelMode.MONO_BLEND);
+    }
+
+    /**
+     * Wrap a configured transform.
+     *
+     * @param transform   the transform to run each frame
+     * @param channelMode which channel(s) to use when converting stereo PCM to mono samples
+     */
+    public ConstantQProcessor(ConstantQTransform transform, ChannelMode channelMode) {
+        this.transform = transform;
+        int fftSize = transform.getFftSize();
+        this.audioBuffer = new FloatAudioBuffer(Math.max(fftSize * 2, FrequencyProcessor.MIN_BUFFER_FRAMES), channelMode);
+        this.sampleBuffer = new float[fftSize];
+        this.levels = new float[transform.getNumBins()];
+    }
+
+    // ── AudioSink ────────────────────────────────────────────────────────────────
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        audioBuffer.write(data, offset, length);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length, long captureNanos) {
+        audioBuffer.write(data, offset, length, captureNanos);
+    }
+
+    // ── Render-thread API ─────────────────────────────────────────────────────────
+
+    /**
+     * Transform the newest window and dispatch the levels to all registered sinks. Call once per
+     * frame on the render thread, as {@link FrequencyProcessor#process()}.
+     */
+    public void process() {
+        long captured = audioBuffer.getCaptureNanos();
+        audioBuffer.readSamples(sampleBuffer, sampleBuffer.length);
+        transform.process(sampleBuffer, levels);
+        captureNanos = captured;
+        processedNanos = System.nanoTime();
+        for (FrequencySink sink : sinks) {
+            sink.onSpectrum(levels);
+        }
+    }
+
+    /** Register a sink. Call on the render thread (or before the render loop starts). */
+    public void addSink(FrequencySink sink) {
+        sinks.add(sink);
+    }
+
+    /** Unregister a sink. No-op if it was not registered. */
+    public void removeSink(FrequencySink sink) {
+        sinks.remove(sink);
+    }
+
+    @Override
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    @Override
+    public long getProcessedNanos() {
+        return processedNanos;
+    }
+
+    /** The transform run each frame, for its bin frequencies and footprint. */
+    public ConstantQTransform getTransform() { return transform; }
+
+    // ── Parameter accessors ───────────────────────────────────────────────────────
+
+    /** Number of bins per {@link #process} call. */
+    public int getNumBins() { return transform.getNumBins(); }
+
+    /** Lower edge of the first bin in Hz. */
+    public float getFMin() { return transform.getLowerEdge(); }
+
+    /** Upper edge of the last bin in Hz. */
+    public float getFMax() { return transform.getUpperEdge(); }
+}
@@ -0,0 +1,255 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.jtransforms.fft.FloatFFT_1D;
+
+import java.util.Arrays;
+
+/**
+ * A constant-Q transform: bins spaced a fixed fraction of an octave apart, each as wide as that
+ * spacing, so the bass gets the frequency resolution that {@link FFTProcessor}'s peak-picking of
+ * linear FFT bins cannot give it, and the treble the time resolution.
+ *
+ * <h2>Sparse spectral kernels</h2>
+ * Bin {@code k} is centred on {@code fMin · 2^(k/b)} for {@code b} bins per octave; its temporal
+ * kernel is a Hann-windowed complex exponential at that frequency, {@code N_k = Q · fs / f_k}
+ * samples long with {@code Q = 1 / (2^(1/b) − 1)}, placed at the <em>end</em> of the frame so
+ * short treble kernels follow the newest audio. By Parseval, correlating a frame with each kernel
+ * is the same as multiplying its FFT by the kernel's spectrum (Brown &amp; Puckette, 1992). These
+ * spectra are computed once, at construction, and each kept only over the band of FFT bins where
+ * it exceeds {@code sparsity} times its peak. The kernels are stored contiguously, so every frame
+ * costs one real FFT of {@link #getFftSize()} and a short run of complex multiply-adds per bin.
+ *
+ * <p>Levels are normalised like {@link FFTProcessor}'s: a sine at a bin's centre reads the same
+ * dB in both, and the result is mapped to {@code [0, 1]} between {@code dBFloor} and
+ * {@code dBCeiling}.</p>
+ *
+ * <h2>Footprint</h2>
+ * The FFT size is the power of two that holds the longest (lowest) kernel; the kernel store
+ * grows with it and with the number of bins. At 48 kHz and the default sparsity:
+ * <table>
+ *   <caption>Kernel store by configuration ({@link #getKernelBytes()})</caption>
+ *   <tr><th>range</th><th>bins/octave</th><th>bins</th><th>FFT size</th><th>entries</th><th>kernel</th></tr>
+ *   <tr><td>55 Hz – 7 kHz</td><td>12</td><td>85</td><td>16384</td><td>14 099</td><td>111 KB</td></tr>
+ *   <tr><td>55 Hz – 14 kHz</td><td>12</td><td>97</td><td>16384</td><td>28 213</td><td>221 KB</td></tr>
+ *   <tr><td>27.5 Hz – 14 kHz</td><td>12</td><td>109</td><td>32768</td><td>56 532</td><td>443 KB</td></tr>
+ *   <tr><td>55 Hz – 14 kHz</td><td>24</td><td>193</td><td>32768</td><td>54 990</td><td>431 KB</td></tr>
+ *   <tr><td>27.5 Hz – 14 kHz</td><td>24</td><td>217</td><td>65536</td><td>110 186</td><td>863 KB</td></tr>
+ *   <tr><td>55 Hz – 14 kHz</td><td>48</td><td>385</td><td>65536</td><td>108 525</td><td>851 KB</td></tr>
+ * </table>
+ * The entries, and the multiply-adds per frame, scale with the FFT size, which doubles with each
+ * octave added at the bottom and with each doubling of bins per octave; an octave added at the
+ * top doubles them too, as the treble bins have the widest bands. The work buffer adds
+ * {@code 4 · fftSize} bytes.
+ *
+ * <p>Pre-allocates everything at construction; {@link #process} allocates nothing. Not
+ * thread-safe.</p>
+ */
+public class ConstantQTransform {
+
+    /** Kernel entries below this fraction of their peak (−40 dB) are dropped. */
+    public static final float DEFAULT_SPARSITY = 0.01f;
+
+    private final float sampleRate;
+    private final float fMin;
+    private final int binsPerOctave;
+    private final int numBins;
+    private final double q;
+    private final int fftSize;
+    private final float dBFloor;
+    private final float dBRange;
+
+    private final FloatFFT_1D fft;
+    private final float[] workBuffer;
+
+    /** First FFT bin of each kernel's band. */
+    private final int[] kernelStart;
+    /** Index of each kernel's first entry in {@link #kernel}; {@code numBins + 1} long. */
+    private final int[] kernelOffset;
+    /** {@code conj(K[j]) / N} for every kept entry, interleaved re, im, band after band. */
+    private final float[] kernel;
+
+    /**
+     * Construct a transform with the {@linkplain #DEFAULT_SPARSITY default sparsity}.
+     *
+     * @param sampleRate    audio sample rate in Hz
+     * @param fMin          centre of the first bin in Hz
+     * @param fMax          highest centre allowed in Hz; below the Nyquist frequency
+     * @param binsPerOctave bins per octave, e.g. 12 for semitones
+     * @param dBFloor       dB level mapped to output 0.0
+     * @param dBCeiling     dB level mapped to output 1.0
+     */
+    public ConstantQTransform(float sampleRate, float fMin, float fMax, int binsPerOctave,
+                              float dBFloor, float dBCeiling) {
+        this(sampleRate, fMin, fMax, binsPerOctave, dBFloor, dBCeiling, DEFAULT_SPARSITY);
+    }
+
+    /**
+     * Construct a transform.
+     *
+     * @param sampleRate    audio sample rate in Hz
+     * @param fMin          centre of the first bin in Hz
+     * @param fMax          highest centre allowed in Hz; below the Nyquist frequency
+     * @param binsPerOctave bins per octave, e.g. 12 for semitones
+     * @param dBFloor       dB level mapped to output 0.0
+     * @param dBCeiling     dB level mapped to output 1.0
+     * @param sparsity      fraction of its peak below which a kernel entry is dropped; smaller
+     *                      is more exact and slower
+     * @throws IllegalArgumentException if the range, resolution or sparsity is out of bounds
+     */
+    public ConstantQTransform(float sampleRate, float fMin, float fMax, int binsPerOctave,
+                              float dBFloor, float dBCeiling, float sparsity) {
+        if (!(fMin > 0) || !(fMax >= fMin) || !(fMax < sampleRate / 2)) {
+            throw new IllegalArgumentException("Range " + fMin + "–" + fMax + " Hz at " + sampleRate + " Hz");
+        }
+        if (binsPerOctave <= 0) {
+            throw new IllegalArgumentException("Bins per octave " + binsPerOctave);
+        }
+        if (!(sparsity >= 0 && sparsity < 1)) {
+            throw new IllegalArgumentException("Sparsity " + sparsity);
+        }
+        this.sampleRate = sampleRate;
+        this.fMin = fMin;
+        this.binsPerOctave = binsPerOctave;
+        this.numBins = (int) Math.floor(binsPerOctave * Math.log(fMax / fMin) / Math.log(2) + 1e-9) + 1;
+        this.q = 1 / (Math.pow(2, 1.0 / binsPerOctave) - 1);
+        this.fftSize = Integer.highestOneBit(kernelLength(0) - 1) << 1;
+        this.dBFloor = dBFloor;
+        this.dBRange = dBCeiling - dBFloor;
+        this.fft = new FloatFFT_1D(fftSize);
+        this.workBuffer = new float[fftSize];
+
+        // one complex FFT per bin; keep each spectrum's band above the threshold
+        this.kernelStart = new int[numBins];
+        this.kernelOffset = new int[numBins + 1];
+        float[][] bands = new float[numBins][];
+        FloatFFT_1D complexFft = new FloatFFT_1D(fftSize);
+        float[] temporal = new float[2 * fftSize];
+        int half = fftSize / 2;
+        for (int k = 0; k < numBins; k++) {
+            Arrays.fill(temporal, 0f);
+            int length = kernelLength(k);
+            int start = fftSize - length;
+            for (int n = 0; n < length; n++) {
+                double w = 0.5 * (1 - Math.cos(2 * Math.PI * n / length)) / length;
+                double phase = 2 * Math.PI * q * n / length;
+                temporal[2 * (start + n)] = (float) (w * Math.cos(phase));
+                temporal[2 * (start + n) + 1] = (float) (w * Math.sin(phase));
+            }
+            complexFft.complexForward(temporal);
+            double peak = 0;
+            for (int j = 1; j < half; j++) {
+                peak = Math.max(peak, Math.hypot(temporal[2 * j], temporal[2 * j + 1]));
+            }
+            double threshold = sparsity * peak;
+            int lo = 1;
+            while (Math.hypot(temporal[2 * lo], temporal[2 * lo + 1]) < threshold) {
+                lo++;
+            }
+            int hi = half - 1;
+            while (Math.hypot(temporal[2 * hi], temporal[2 * hi + 1]) < threshold) {
+                hi--;
+            }
+            float[] band = new float[2 * (hi - lo + 1)];
+            for (int j = lo; j <= hi; j++) {
+                band[2 * (j - lo)] = temporal[2 * j] / fftSize;
+                band[2 * (j - lo) + 1] = -temporal[2 * j + 1] / fftSize;
+            }
+            bands[k] = band;
+            kernelStart[k] = lo;
+            kernelOffset[k + 1] = kernelOffset[k] + band.length / 2;
+        }
+        this.kernel = new float[2 * kernelOffset[numBins]];
+        for (int k = 0; k < numBins; k++) {
+            System.arraycopy(bands[k], 0, kernel, 2 * kernelOffset[k], bands[k].length);
+        }
+    }
+
+    /** Samples in bin {@code k}'s temporal kernel. */
+    private int kernelLength(int k) {
+        return (int) Math.ceil(q * sampleRate / getBinFrequency(k));
+    }
+
+    /**
+     * Transform a frame and write normalised dB levels into {@code output}.
+     *
+     * @param samples input samples in [−1, 1], oldest first; length >= {@link #getFftSize()}
+     * @param output  destination of length {@link #getNumBins()}; values written in [0, 1]
+     */
+    public void process(float[] samples, float[] output) {
+        System.arraycopy(samples, 0, workBuffer, 0, fftSize);
+        fft.realForward(workBuffer);
+        applyKernels(workBuffer, output);
+    }
+
+    /** The per-frame work after the FFT: every sparse kernel against a {@code realForward} output. */
+    void applyKernels(float[] spectrum, float[] output) {
+        for (int k = 0; k < numBins; k++) {
+            float re = 0f;
+            float im = 0f;
+            int x = 2 * kernelStart[k];
+            for (int e = 2 * kernelOffset[k], end = 2 * kernelOffset[k + 1]; e < end; e += 2, x += 2) {
+                float xr = spectrum[x];
+                float xi = spectrum[x + 1];
+                float kr = kernel[e];
+                float ki = kernel[e + 1];
+                re += xr * kr - xi * ki;
+                im += xr * ki + xi * kr;
+            }
+            float dB = 10f * (float) Math.log10(Math.max(re * re + im * im, 1e-20f));
+            output[k] = Math.max(0f, Math.min(1f, (dB - dBFloor) / dBRange));
+        }
+    }
+
+    /**
+     * Centre frequency of a bin.
+     *
+     * @param bin bin index in [0, {@link #getNumBins()})
+     * @return {@code fMin · 2^(bin / binsPerOctave)} in Hz
+     */
+    public float getBinFrequency(int bin) {
+        return (float) (fMin * Math.pow(2, (double) bin / binsPerOctave));
+    }
+
+    /** Samples consumed per {@link #process} call: the power of two holding the longest kernel. */
+    public int getFftSize() { return fftSize; }
+
+    /** Number of output bins. */
+    public int getNumBins() { return numBins; }
+
+    /** Bins per octave, as passed at construction. */
+    public int getBinsPerOctave() { return binsPerOctave; }
+
+    /** Quality factor: a bin's centre frequency over its bandwidth. */
+    public double getQ() { return q; }
+
+    /** Centre of the first bin in Hz. */
+    public float getFMin() { return fMin; }
+
+    /** Centre of the last bin in Hz. */
+    public float getFMax() { return getBinFrequency(numBins - 1); }
+
+    /** Lower edge of the first bin in Hz, half a bin below its centre. */
+    public float getLowerEdge() { return (float) (fMin * Math.pow(2, -0.5 / binsPerOctave)); }
+
+    /** Upper edge of the last bin in Hz, half a bin above its centre. */
+    public float getUpperEdge() { return (float) (getFMax() * Math.pow(2, 0.5 / binsPerOctave)); }
+
+    /** Complex kernel entries kept: the multiply-adds per frame. */
+    public int getKernelEntries() { return kernelOffset[numBins]; }
+
+    /**
+     * Heap held by the kernels and their band tables, not counting the FFT's own tables.
+     *
+     * @return bytes
+     */
+    public long getKernelBytes() {
+        return 4L * (kernel.length + kernelStart.length + kernelOffset.length);
+    }
+
+    /** The geometry and kernel footprint, e.g. for a log line or a benchmark report. */
+    @Override
+    public String toString() {
+        return String.format("ConstantQTransform[%d bins at %d/octave from %.1f Hz, FFT %d, %d kernel entries, %d bytes]",
+                numBins, binsPerOctave, fMin, fftSize, getKernelEntries(), getKernelBytes());
+    }
+}
@@ -16,6 +16,12 @@ import org.jtransforms.fft.FloatFFT_1D;
  *       {@code dBFloor} and {@code dBCeiling}.</li>
  * </ol>
  *
+ * <p>Bars compare squared magnitudes and take one logarithm each, with no square roots (see
+ * {@link SpectrumKernel}). With {@code --add-modules jdk.incubator.vector} on the command line
+ * the window and the steps after the FFT run on the Vector API; otherwise in scalar loops.
+ * {@link #setFastLog(boolean)} swaps {@link Math#log10} for an approximation within
+ * {@code 1e-4} dB.</p>
+ *
  * <p>All expensive objects (FFT engine, Hann coefficients, bin-range mapping) are pre-computed
  * at construction time.  {@link #process} allocates nothing and is safe to call on the render
  * thread at 60 fps.</p>
@@ -26,6 +32,7 @@ public class FFTProcessor {
     private final int   numBins;
     private final float fMin;
     private final float fMax;
+    private final float sampleRate;
 
     /** Pre-computed Hann window coefficients, length == fftSize. */
     private final float[] window;
@@ -50,6 +57,10 @@ public class FFTProcessor {
 
     private final FloatFFT_1D fft;
 
+    private final SpectrumKernel kernel;
+
+    private volatile boolean fastLog;
+
     /**
      * Construct an FFT processor with the given parameters.
      *
@@ -63,10 +74,21 @@ public class FFTProcessor {
      */
     public FFTProcessor(int fftSize, int numBins, float sampleRate,
                         float fMin, float fMax, float dBFloor, float dBCeiling) {
+        this(fftSize, numBins, sampleRate, fMin, fMax, dBFloor, dBCeiling, true);
+    }
+
+    /**
+     * As the public constructor, choosing the kernel; for comparing the two.
+     *
+     * @param vectorise false to use scalar loops even if the Vector API is available
+     */
+    FFTProcessor(int fftSize, int numBins, float sampleRate,
+                 float fMin, float fMax, float dBFloor, float dBCeiling, boolean vectorise) {
         this.fftSize = fftSize;
         this.numBins = numBins;
         this.fMin    = fMin;
         this.fMax    = fMax;
+        this.sampleRate = sampleRate;
         this.dBFloor = dBFloor;
         this.dBRange = dBCeiling - dBFloor;
 
@@ -92,6 +114,7 @@ public class FFTProcessor {
             binLow[i]  = Math.min(lo, nyquistBin - 1);
             binHigh[i] = Math.min(hi, nyquistBin);
         }
+        this.kernel = SpectrumKernel.create(fftSize, binLow, binHigh, dBFloor, dBRange, vectorise);
     }
 
     /**
@@ -105,9 +128,7 @@ public class FFTProcessor {
      */
     public void process(float[] samples, float[] output) {
         // Apply Hann window to reduce spectral leakage
-        for (int i = 0; i < fftSize; i++) {
-            workBuffer[i] = samples[i] * window[i];
-        }
+        kernel.window(samples, window, workBuffer);
 
         // In-place real FFT.
         // JTransforms realForward output layout for even N:
@@ -117,26 +138,53 @@ public class FFTProcessor {
         //   workBuffer[2*k+1]= Im[k]    for k = 1 .. N/2-1
         fft.realForward(workBuffer);
 
-        int nyquistBin = fftSize / 2;
-        for (int b = 0; b < numBins; b++) {
-            float peakMag = 0.0f;
-            for (int k = binLow[b]; k < binHigh[b]; k++) {
-                float re, im;
-                if (k == nyquistBin) {
-                    re = workBuffer[1];
-                    im = 0.0f;
-                } else {
-                    re = workBuffer[2 * k];
-                    im = workBuffer[2 * k + 1];
-                }
-                float mag = (float) Math.sqrt(re * re + im * im) / fftSize;
-                if (mag > peakMag) peakMag = mag;
-            }
-            float dB = 20.0f * (float) Math.log10(Math.max(peakMag, 1e-10f));
-            output[b] = Math.max(0.0f, Math.min(1.0f, (dB - dBFloor) / dBRange));
-        }
+        kernel.toSpectrum(workBuffer, output, fastLog);
+    }
+
+    /**
+     * Use a polynomial {@code log2} instead of {@link Math#log10} for the dB mapping. Bars move
+     * by less than {@code 1e-4} dB, well under one step of an 8-bit texture for any sensible dB
+     * range.
+     *
+     * @param fastLog true for the approximation
+     */
+    public void setFastLog(boolean fastLog) {
+        this.fastLog = fastLog;
+    }
+
+    /**
+     * Whether the dB mapping uses the approximate logarithm.
+     *
+     * @return the value last passed to {@link #setFastLog(boolean)}; false by default
+     */
+    public boolean isFastLog() { return fastLog; }
+
+    /**
+     * Whether the window and post-processing run on the Vector API.
+     *
+     * @return true if {@code jdk.incubator.vector} was available
+     */
+    public boolean isVectorised() { return !(kernel instanceof ScalarSpectrumKernel); }
+
+    /**
+     * A processor with the same parameters, kernel choice and log mode, and buffers of its own,
+     * for analysing on another thread.
+     *
+     * @return a new, independent processor
+     */
+    FFTProcessor copy() {
+        FFTProcessor copy = new FFTProcessor(fftSize, numBins, sampleRate, fMin, fMax,
+                dBFloor, dBFloor + dBRange, isVectorised());
+        copy.setFastLog(fastLog);
+        return copy;
     }
 
+    /** The kernel in use, for benchmarking it apart from the FFT, or for other transforms. */
+    SpectrumKernel getKernel() { return kernel; }
+
+    /** The Hann window coefficients; do not modify. */
+    float[] getWindow() { return window; }
+
     /**
      * Number of audio samples consumed per {@link #process} call.
      *
@@ -164,4 +212,18 @@ public class FFTProcessor {
      * @return the frequency mapped to the last output bar
      */
     public float getFMax() { return fMax; }
+
+    /**
+     * dB level mapped to output 0.0, as passed at construction.
+     *
+     * @return the floor of the normalised range in dB
+     */
+    public float getDBFloor() { return dBFloor; }
+
+    /**
+     * dB level mapped to output 1.0, as passed at construction.
+     *
+     * @return the ceiling of the normalised range in dB
+     */
+    public float getDBCeiling() { return dBFloor + dBRange; }
 }
@@ -1,11 +1,18 @@
 package com.asteroid.duck.opengl.util.audio.analysis;
 
 import com.asteroid.duck.opengl.util.audio.AudioSink;
+import com.asteroid.duck.opengl.util.audio.CaptureTimestamped;
 import com.asteroid.duck.opengl.util.audio.ChannelMode;
-import com.asteroid.duck.opengl.util.audio.RollingAudioBuffer;
+import com.asteroid.duck.opengl.util.audio.DriftCompensator;
+import com.asteroid.duck.opengl.util.audio.FloatAudioBuffer;
+import com.asteroid.duck.opengl.util.audio.SilenceGate;
+import com.asteroid.duck.opengl.util.timer.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Bridges the raw-audio pipeline to the frequency domain: receives interleaved PCM bytes via
@@ -17,6 +24,37 @@ import java.util.List;
  * {@link FrequencySink}s (e.g. {@link BeatDetector}, {@link com.asteroid.duck.opengl.util.wave.SpectrumAnalyser}) share a single
  * FFT computation with no duplication of work.</p>
  *
+ * <h2>Clock drift</h2>
+ * By default each {@link #process} analyses the newest {@code fftSize} samples, so the window
+ * moves in whatever steps the capture thread delivers. After
+ * {@link #enableDriftCompensation(Clock, int)} the window instead ends at a
+ * {@link DriftCompensator} playhead that advances with the render clock, held a fixed latency
+ * behind the newest sample, and is resampled at the compensator's step so the capture line's
+ * clock drift is absorbed smoothly rather than building up.
+ *
+ * <h2>Silence</h2>
+ * With a {@link SilenceGate} set by {@link #setSilenceGate}, {@link #process} does no FFT and
+ * notifies no sinks while the gate is idle, so they keep the last spectrum they were given. Drift
+ * compensation keeps steering throughout, so the window resumes in step when sound returns.
+ *
+ * <h2>Streaming STFT</h2>
+ * By default there is one FFT per {@link #process}, so the analysis rate follows the frame rate
+ * and the audio between frames is never analysed. After {@link #enableStft(int, int)} the
+ * processor instead runs a short-time Fourier transform over the stream: every {@code hopSize}
+ * samples a window ends, and each window is analysed exactly once, by whichever
+ * {@link #process} call first finds it complete — however many that is per frame. Each spectrum
+ * is appended to a {@link SpectrogramRing} history, and the newest is passed to the sinks. A hop
+ * of a quarter of the FFT size gives the usual 75 % overlap.
+ *
+ * <h2>Analysis thread</h2>
+ * By default the FFT runs inside {@link #process}, on the render thread and within the frame
+ * budget. After {@link #startAnalysisThread(double)} it runs instead on a thread of its own at a
+ * fixed hop rate, publishing each spectrum through a {@link SpectrumTripleBuffer}; {@link #process}
+ * then only picks up the newest complete spectrum, never waiting for the analysis and never seeing
+ * one half-written, and passes it to the sinks if it is newer than the last. The array the sinks
+ * receive stays unchanged until the next spectrum is picked up. Drift compensation steers by the
+ * render clock, so it cannot be combined with the analysis thread; nor can the streaming STFT.
+ *
  * <h2>Threading model</h2>
  * <ul>
  *   <li>{@link #write} — called from the {@code AudioReader} background thread; safe to call
@@ -25,6 +63,9 @@ import java.util.List;
  *       any {@link FrequencySink} that reads the result in the same frame.</li>
  *   <li>{@link #addSink} / {@link #removeSink} — call on the render thread or before the render
  *       loop starts.</li>
+ *   <li>{@link #startAnalysisThread} / {@link #stopAnalysisThread} — call from any thread; the
+ *       analysis thread has its own FFT and sample buffers, so it never shares them with a
+ *       {@link #process} still running the FFT inline.</li>
  * </ul>
  *
  * <h2>Typical wiring</h2>
@@ -47,15 +88,47 @@ import java.util.List;
  * float kick = beats.getBeatStrength("bass");
  * }</pre>
  */
-public class FrequencyProcessor implements AudioSink {
+public class FrequencyProcessor implements AudioSink, CaptureTimestamped {
+    private static final Logger LOG = LoggerFactory.getLogger(FrequencyProcessor.class);
 
-    private final RollingAudioBuffer  audioBuffer;
+    private final FloatAudioBuffer    audioBuffer;
     private final FFTProcessor        fftProcessor;
-    private final ChannelMode         channelMode;
     private final float[]             sampleBuffer;
     private final float[]             magnitudes;
+    private final float               sampleRate;
     private final List<FrequencySink> sinks = new ArrayList<>();
 
+    /**
+     * Least capacity of the sample ring, in frames (~340 ms at 48 kHz): room for the FFT window,
+     * a drift compensator's latency, or a backlog of STFT hops after a slow frame.
+     */
+    static final int MIN_BUFFER_FRAMES = 1 << 14;
+
+    /** Render clock and steering loop when drift compensation is on; render thread only. */
+    private Clock renderClock;
+    private DriftCompensator drift;
+    /** Pauses analysis while the input is silent, or {@code null}; read by the analysis thread. */
+    private volatile SilenceGate silenceGate;
+
+    /** The running analysis thread and its output, or {@code null} when analysing in {@link #process}. */
+    private AnalysisThread analysisThread;
+    private volatile SpectrumTripleBuffer published;
+    /** Version of the spectrum last passed to the sinks; render thread only. */
+    private long spectrumVersion;
+
+    /** Streaming STFT history and position when enabled; render thread only. */
+    private SpectrogramRing spectrogram;
+    private int hopSize;
+    /** Index of the next hop to analyse: its window ends at {@code nextHop * hopSize + fftSize}. */
+    private long nextHop;
+    private long hops;
+    private long skippedHops;
+
+    /** Capture time of the newest sample in the window last analysed; render thread only. */
+    private long captureNanos = NONE;
+    /** When that window was analysed; render thread only. */
+    private long processedNanos = NONE;
+
     /**
      * Construct a processor with {@link ChannelMode#MONO_BLEND} channel mixing.
      *
@@ -88,16 +161,17 @@ public class FrequencyProcessor implements AudioSink {
                                float fMin, float fMax, float dBFloor, float dBCeiling,
                                ChannelMode channelMode) {
         this.fftProcessor = new FFTProcessor(fftSize, numBins, sampleRate, fMin, fMax, dBFloor, dBCeiling);
-        this.audioBuffer  = new RollingAudioBuffer(fftSize * 4);
-        this.channelMode  = channelMode;
+        this.audioBuffer  = new FloatAudioBuffer(Math.max(fftSize * 4, MIN_BUFFER_FRAMES), channelMode);
         this.sampleBuffer = new float[fftSize];
         this.magnitudes   = new float[numBins];
+        this.sampleRate   = sampleRate;
     }
 
     // ── AudioSink ────────────────────────────────────────────────────────────────
 
     /**
-     * Receive raw PCM bytes from the {@code AudioReader} background thread.
+     * Receive raw PCM bytes from the {@code AudioReader} background thread. The new frames are
+     * converted to mono floats here, so {@link #process} only has to copy the FFT window out.
      * Thread-safe with respect to {@link #process}.
      */
     @Override
@@ -105,6 +179,12 @@ public class FrequencyProcessor implements AudioSink {
         audioBuffer.write(data, offset, length);
     }
 
+    /** As {@link #write(byte[], int, int)}, keeping the capture stamp for {@link #process}. */
+    @Override
+    public void write(byte[] data, int offset, int length, long captureNanos) {
+        audioBuffer.write(data, offset, length, captureNanos);
+    }
+
     // ── Render-thread API ─────────────────────────────────────────────────────────
 
     /**
@@ -116,13 +196,390 @@ public class FrequencyProcessor implements AudioSink {
      *
      * <p>The shared {@code magnitudes} array is passed directly to each sink — sinks must not
      * modify it.</p>
+     *
+     * <p>The capture time of the newest sample in the analysed window, and the time the analysis
+     * finished, are then available from {@link #getCaptureNanos()} and
+     * {@link #getProcessedNanos()}.</p>
+     *
+     * <p>While a {@link SilenceGate} set with {@link #setSilenceGate} is idle, only the drift
+     * compensator (if any) is updated.</p>
+     *
+     * <p>With the {@linkplain #startAnalysisThread analysis thread} running, no FFT is done here:
+     * the newest spectrum it has published is passed to the sinks, unless they have had it
+     * already, and {@link #getProcessedNanos()} is when it was picked up.</p>
+     *
+     * <p>In {@linkplain #enableStft streaming STFT} mode every hop completed since the last call is
+     * analysed into the spectrogram, and the sinks are passed the newest, if there was one.</p>
      */
     public void process() {
-        audioBuffer.readSamples(sampleBuffer, fftProcessor.getFftSize(), channelMode);
+        SpectrumTripleBuffer spectra = published;
+        if (spectra != null) {
+            if (spectra.acquire()) {
+                captureNanos = spectra.getFrontCaptureNanos();
+                processedNanos = System.nanoTime();
+                spectrumVersion = spectra.getFrontVersion();
+                dispatch(spectra.front());
+            }
+            return;
+        }
+        if (spectrogram != null) {
+            processHops();
+            return;
+        }
+        SilenceGate gate = silenceGate;
+        if (gate != null && gate.isIdle()) {
+            if (drift != null) {
+                drift.update(audioBuffer.getFramesWritten(), renderClock.elapsed());
+            }
+            return;
+        }
+        // stamp first: the writer publishes it after the samples, so the window is at least this new
+        long captured = audioBuffer.getCaptureNanos();
+        if (drift == null) {
+            audioBuffer.readSamples(sampleBuffer, fftProcessor.getFftSize());
+        } else {
+            long received = audioBuffer.getFramesWritten();
+            double playhead = drift.update(received, renderClock.elapsed());
+            audioBuffer.readSamples(sampleBuffer, fftProcessor.getFftSize(), playhead, drift.getStep());
+            if (captured != NONE) {
+                // the window ends behind the newest sample, so it was captured that much earlier
+                captured -= Math.round((received - 1 - playhead) / sampleRate * 1e9);
+            }
+        }
         fftProcessor.process(sampleBuffer, magnitudes);
+        captureNanos = captured;
+        processedNanos = System.nanoTime();
+        spectrumVersion++;
+        dispatch(magnitudes);
+    }
+
+    /** Analyse every hop completed since the last call, oldest first. */
+    private void processHops() {
+        long captured = audioBuffer.getCaptureNanos();
+        long received = audioBuffer.getFramesWritten();
+        int fftSize = fftProcessor.getFftSize();
+        long newest = received < fftSize ? -1 : (received - fftSize) / hopSize;
+        SilenceGate gate = silenceGate;
+        if (gate != null && gate.isIdle()) {
+            nextHop = newest + 1; // silence is passed over, not counted as skipped
+            return;
+        }
+        long last = -1;
+        while (nextHop <= newest) {
+            // the writer keeps going while we work, so look again before every hop
+            long oldest = oldestHeldHop();
+            if (nextHop < oldest) {
+                skippedHops += oldest - nextHop;
+                nextHop = oldest;
+                continue;
+            }
+            if (!audioBuffer.tryReadSamples(sampleBuffer, fftSize, nextHop * hopSize + fftSize)) {
+                skippedHops++; // overwritten while it was copied
+                nextHop++;
+                continue;
+            }
+            fftProcessor.process(sampleBuffer, magnitudes);
+            spectrogram.append(magnitudes);
+            hops++;
+            last = nextHop++;
+        }
+        if (last < 0) {
+            return;
+        }
+        long end = last * hopSize + fftSize;
+        captureNanos = captured == NONE ? NONE : captured - Math.round((received - end) / sampleRate * 1e9);
+        processedNanos = System.nanoTime();
+        spectrumVersion++;
+        dispatch(magnitudes);
+    }
+
+    /** The first hop whose window the writer is not about to overwrite. */
+    private long oldestHeldHop() {
+        // it overwrites the oldest samples first, so keep a quarter of the ring clear of it
+        int capacity = audioBuffer.getCapacity();
+        long held = audioBuffer.getFramesWritten() - capacity + capacity / 4;
+        return held <= 0 ? 0 : Math.ceilDiv(held, hopSize);
+    }
+
+    private void dispatch(float[] spectrum) {
         for (FrequencySink sink : sinks) {
-            sink.onSpectrum(magnitudes);
+            sink.onSpectrum(spectrum);
+        }
+    }
+
+    /**
+     * Count of spectra passed to the sinks. With the analysis thread running this is the version
+     * of the {@link SpectrumTripleBuffer} spectrum last picked up, so it also counts spectra that
+     * were published but overtaken before a frame could show them. Render thread only.
+     *
+     * @return the version of the sinks' current spectrum, or 0 before the first
+     */
+    public long getSpectrumVersion() {
+        return spectrumVersion;
+    }
+
+    /**
+     * Switch to a streaming STFT: analyse every window of the FFT size that ends on a multiple of
+     * {@code hopSize} samples, starting with the first to complete from now, and keep the
+     * spectra in a history ring. Call on the render thread (or before the render loop starts).
+     *
+     * @param hopSize       samples between the ends of successive windows, at most the FFT
+     *                      size; {@code getFftSize() / 4} for 75 % overlap
+     * @param historyFrames number of spectra the history keeps
+     * @return the history, which {@link #process} appends to
+     * @throws IllegalArgumentException if {@code hopSize} or {@code historyFrames} is out of range
+     * @throws IllegalStateException    if drift compensation or the analysis thread is in use
+     */
+    public SpectrogramRing enableStft(int hopSize, int historyFrames) {
+        if (hopSize <= 0 || hopSize > fftProcessor.getFftSize()) {
+            throw new IllegalArgumentException("Hop " + hopSize + " for a " + fftProcessor.getFftSize() + " sample FFT");
+        }
+        if (drift != null || isAnalysisThreaded()) {
+            throw new IllegalStateException("The streaming STFT runs on the stream, not the render clock");
         }
+        SpectrogramRing history = new SpectrogramRing(magnitudes.length, historyFrames);
+        long received = audioBuffer.getFramesWritten();
+        int fftSize = fftProcessor.getFftSize();
+        this.hopSize = hopSize;
+        this.nextHop = received < fftSize ? 0 : (received - fftSize) / hopSize + 1;
+        this.spectrogram = history;
+        return history;
+    }
+
+    /**
+     * The history kept by the streaming STFT.
+     *
+     * @return the ring returned by {@link #enableStft}, or {@code null} if not enabled
+     */
+    public SpectrogramRing getSpectrogram() {
+        return spectrogram;
+    }
+
+    /**
+     * Samples between successive STFT windows.
+     *
+     * @return the hop size passed to {@link #enableStft}, or 0 if not enabled
+     */
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    /**
+     * STFT hops analysed so far. Render thread only.
+     *
+     * @return windows analysed into the spectrogram
+     */
+    public long getHops() {
+        return hops;
+    }
+
+    /**
+     * STFT hops never analysed because their audio was overwritten first: {@link #process} was
+     * not called in time, as after a long stall, or the writer overtook it while it worked
+     * through a backlog of hops. Render thread only.
+     *
+     * @return hops skipped
+     */
+    public long getSkippedHops() {
+        return skippedHops;
+    }
+
+    /**
+     * Move the FFT off the render thread: start a daemon thread that analyses the newest window
+     * {@code hopHz} times a second, whenever new audio has arrived, and publishes each spectrum
+     * for {@link #process} to pick up. Does nothing if the thread is already running.
+     *
+     * @param hopHz analyses per second, e.g. 120 to keep ahead of a 60 fps render loop
+     * @throws IllegalArgumentException if {@code hopHz} is not positive
+     * @throws IllegalStateException    if drift compensation or the streaming STFT is enabled
+     */
+    public synchronized void startAnalysisThread(double hopHz) {
+        if (!(hopHz > 0)) {
+            throw new IllegalArgumentException("Analysis hop rate " + hopHz);
+        }
+        if (drift != null) {
+            throw new IllegalStateException("Drift compensation runs on the render thread");
+        }
+        if (spectrogram != null) {
+            throw new IllegalStateException("The streaming STFT runs on the render thread");
+        }
+        if (analysisThread != null) {
+            return;
+        }
+        SpectrumTripleBuffer spectra = new SpectrumTripleBuffer(magnitudes.length);
+        analysisThread = new AnalysisThread(Math.max(1, Math.round(1e9 / hopHz)), spectra);
+        published = spectra;
+        analysisThread.start();
+    }
+
+    /**
+     * Stop the analysis thread, waiting for it to exit, and go back to analysing in
+     * {@link #process}. Does nothing if it is not running.
+     */
+    public synchronized void stopAnalysisThread() {
+        if (analysisThread != null) {
+            analysisThread.stop();
+            analysisThread = null;
+            published = null;
+        }
+    }
+
+    /**
+     * Whether the FFT runs on the analysis thread.
+     *
+     * @return {@code true} between {@link #startAnalysisThread} and {@link #stopAnalysisThread}
+     */
+    public synchronized boolean isAnalysisThreaded() {
+        return analysisThread != null;
+    }
+
+    /**
+     * Hops the analysis thread ran too late for, and skipped to stay on schedule.
+     *
+     * @return missed hops since the thread was started, or 0 if it is not running
+     */
+    public synchronized long getMissedHops() {
+        return analysisThread == null ? 0 : analysisThread.missedHops;
+    }
+
+    /**
+     * Runs the FFT at a fixed rate and publishes the result. Has its own FFT and sample buffers:
+     * a {@link #process} call already past its check of {@link #published} may still be running
+     * the inline FFT when the thread starts.
+     */
+    private final class AnalysisThread implements Runnable {
+        private final long hopNanos;
+        private final SpectrumTripleBuffer spectra;
+        private final FFTProcessor fft = fftProcessor.copy();
+        private final float[] samples = new float[fftProcessor.getFftSize()];
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile long missedHops;
+        private long analysedFrames = -1;
+
+        AnalysisThread(long hopNanos, SpectrumTripleBuffer spectra) {
+            this.hopNanos = hopNanos;
+            this.spectra = spectra;
+            this.thread = new Thread(this, "frequency-analysis");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            long next = System.nanoTime();
+            while (running) {
+                next += hopNanos;
+                long late = System.nanoTime() - next;
+                if (late > hopNanos) {
+                    // fell behind (a GC, a stall): skip the hops rather than run them back to back
+                    missedHops += late / hopNanos;
+                    next += late / hopNanos * hopNanos;
+                }
+                for (long wait = next - System.nanoTime(); wait > 0 && running; wait = next - System.nanoTime()) {
+                    LockSupport.parkNanos(this, wait);
+                }
+                if (running) {
+                    analyse();
+                }
+            }
+            LOG.debug("Frequency analysis stopped. missed hops={}", missedHops);
+        }
+
+        private void analyse() {
+            SilenceGate gate = silenceGate;
+            long received = audioBuffer.getFramesWritten();
+            if ((gate != null && gate.isIdle()) || received == analysedFrames) {
+                return;
+            }
+            analysedFrames = received;
+            long captured = audioBuffer.getCaptureNanos();
+            audioBuffer.readSamples(samples, samples.length);
+            fft.setFastLog(fftProcessor.isFastLog());
+            fft.process(samples, spectra.back());
+            spectra.publish(captured);
+        }
+    }
+
+    /**
+     * Capture time of the newest sample in the window analysed by the last {@link #process}.
+     * Render thread only.
+     */
+    @Override
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /** When the last {@link #process} finished its FFT. Render thread only. */
+    @Override
+    public long getProcessedNanos() {
+        return processedNanos;
+    }
+
+    /**
+     * Analyse a window that follows the render clock, a fixed latency behind the newest sample,
+     * instead of the newest window. Call on the render thread (or before the render loop starts).
+     *
+     * @param clock         the clock driving the render loop
+     * @param latencyFrames how far behind the newest sample the window ends; must exceed the
+     *                      largest chunk the capture thread writes at once
+     * @return the compensator, for its drift estimate
+     * @throws IllegalArgumentException if the window and latency do not fit in the sample ring
+     * @throws IllegalStateException    if the analysis thread or the streaming STFT is in use
+     */
+    public DriftCompensator enableDriftCompensation(Clock clock, int latencyFrames) {
+        if (isAnalysisThreaded() || spectrogram != null) {
+            throw new IllegalStateException("Drift compensation cannot steer the analysis thread or the streaming STFT");
+        }
+        if (latencyFrames + fftProcessor.getFftSize() > audioBuffer.getCapacity()) {
+            throw new IllegalArgumentException("Latency " + latencyFrames + " plus a " + fftProcessor.getFftSize()
+                    + " sample window exceeds the " + audioBuffer.getCapacity() + " sample ring");
+        }
+        this.renderClock = clock;
+        this.drift = new DriftCompensator(sampleRate, latencyFrames);
+        return drift;
+    }
+
+    /**
+     * The steering loop set up by {@link #enableDriftCompensation}.
+     *
+     * @return the compensator, or {@code null} if the newest window is analysed
+     */
+    public DriftCompensator getDriftCompensator() {
+        return drift;
+    }
+
+    /**
+     * Skip the analysis while a gate reports the input as silent. The gate must also be fed the
+     * captured audio, e.g. by the same {@code AudioReader}. Call on the render thread (or before
+     * the render loop starts).
+     *
+     * @param gate the gate to follow, or {@code null} to analyse every frame
+     */
+    public void setSilenceGate(SilenceGate gate) {
+        this.silenceGate = gate;
+    }
+
+    /**
+     * The gate set by {@link #setSilenceGate}.
+     *
+     * @return the gate, or {@code null} if every frame is analysed
+     */
+    public SilenceGate getSilenceGate() {
+        return silenceGate;
     }
 
     /**
@@ -153,4 +610,16 @@ public class FrequencyProcessor implements AudioSink {
 
     /** Highest frequency in the output range in Hz; matches {@code fMax} at construction. */
     public float getFMax() { return fftProcessor.getFMax(); }
+
+    /** dB level mapped to magnitude 0.0; matches {@code dBFloor} at construction. */
+    public float getDBFloor() { return fftProcessor.getDBFloor(); }
+
+    /** dB level mapped to magnitude 1.0; matches {@code dBCeiling} at construction. */
+    public float getDBCeiling() { return fftProcessor.getDBCeiling(); }
+
+    /** See {@link FFTProcessor#setFastLog(boolean)}; takes effect from the next analysis. */
+    public void setFastLog(boolean fastLog) { fftProcessor.setFastLog(fastLog); }
+
+    /** Whether the dB mapping uses the approximate logarithm. */
+    public boolean isFastLog() { return fftProcessor.isFastLog(); }
 }
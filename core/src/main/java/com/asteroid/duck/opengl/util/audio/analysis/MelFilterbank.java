@@ -0,0 +1,276 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+/**
+ * A triangular mel filterbank, and optionally a DCT to mel-frequency cepstral coefficients
+ * (MFCCs), over the normalised log-spaced bars that {@link FFTProcessor} and
+ * {@link FrequencyProcessor} hand to their {@link FrequencySink}s. The mel bands summarise
+ * timbre, the shape of the spectrum, in a couple of dozen numbers; the first few cepstral
+ * coefficients summarise that shape again as its overall level, tilt and curvature.
+ *
+ * <h2>Filters over bars</h2>
+ * The {@code numFilters} triangles have their corners evenly spaced on the HTK mel scale,
+ * {@code mel(f) = 2595 · log10(1 + f / 700)}, between {@code melFMin} and {@code melFMax}; each
+ * rises from zero at the centre of the filter below to one at its own centre and falls back to
+ * zero at the centre of the filter above. Bar {@code i} of {@code numBins} between {@code fMin}
+ * and {@code fMax} is taken at its geometric centre, {@code fMin · (fMax / fMin)^((i + ½) / numBins)},
+ * the same log mapping {@link BeatDetector} assumes. A triangle narrower than the bars around it
+ * would catch none of their centres, so it gets the bar its own centre falls in instead.
+ *
+ * <p>The bars are peak levels, not energies summed over a band, so each filter's weights are
+ * normalised to sum to one: a filter averages the linear power of its bars, and a flat spectrum
+ * reads the same level in every filter however many bars each covers. Filter outputs are mapped
+ * back to {@code [0, 1]} over the same dB range as the bars.</p>
+ *
+ * <h2>Cepstrum</h2>
+ * The first {@code numCoefficients} outputs of an orthonormal DCT-II of the filter levels in dB,
+ * {@code c[k] = s_k · Σ_m dB[m] · cos(π k (m + ½) / M)} with {@code s_0 = √(1/M)} and
+ * {@code s_k = √(2/M)}: the convention of {@code scipy.fft.dct(x, norm='ortho')}, so with dB
+ * filter levels these are the coefficients {@code librosa.feature.mfcc} computes. Zero
+ * coefficients skips the DCT.
+ *
+ * <p>The weights are computed once, at construction, and stored sparsely and contiguously, as
+ * {@link ConstantQTransform}'s kernels are: each filter touches only the handful of bars under its
+ * triangle. With the DCT table, the linear powers of the bars and nothing else,
+ * {@link #apply} allocates nothing and costs one {@code exp} per bar, one {@code log} per filter
+ * and {@code numFilters · numCoefficients} multiply-adds. Not thread-safe.</p>
+ */
+public class MelFilterbank {
+
+    /** Filters in the conventional speech and music MFCC front end. */
+    public static final int DEFAULT_FILTERS = 26;
+    /** Cepstral coefficients conventionally kept, the zeroth included. */
+    public static final int DEFAULT_COEFFICIENTS = 13;
+
+    private final int numBins;
+    private final int numFilters;
+    private final int numCoefficients;
+    private final float dBFloor;
+    private final float dBRange;
+    /** Natural log of a bar's linear power, relative to the ceiling, per unit of normalised level. */
+    private final float powerPerLevel;
+    /** Centre of each filter in Hz. */
+    private final float[] centres;
+
+    /** First bar under each filter. */
+    private final int[] filterStart;
+    /** Index of each filter's first weight in {@link #weights}; {@code numFilters + 1} long. */
+    private final int[] filterOffset;
+    /** The weights of every filter, normalised to sum to one, filter after filter. */
+    private final float[] weights;
+    /** The bars any filter reads, {@code [firstBar, lastBar)}; only these are converted to power. */
+    private final int firstBar;
+    private final int lastBar;
+    /** Linear power of each bar relative to the ceiling; scratch for {@link #filter}. */
+    private final float[] power;
+    /** {@code s_k · cos(π k (m + ½) / M)}, row {@code k} after row {@code k}. */
+    private final float[] dct;
+
+    /**
+     * Construct a filterbank with {@value #DEFAULT_FILTERS} filters and
+     * {@value #DEFAULT_COEFFICIENTS} coefficients over the whole range of the bars.
+     *
+     * @param numBins   number of bars per spectrum
+     * @param fMin      lower edge of the first bar in Hz
+     * @param fMax      upper edge of the last bar in Hz
+     * @param dBFloor   dB level the bars map to 0.0
+     * @param dBCeiling dB level the bars map to 1.0
+     */
+    public MelFilterbank(int numBins, float fMin, float fMax, float dBFloor, float dBCeiling) {
+        this(numBins, fMin, fMax, dBFloor, dBCeiling, DEFAULT_FILTERS, fMin, fMax, DEFAULT_COEFFICIENTS);
+    }
+
+    /**
+     * Construct a filterbank.
+     *
+     * @param numBins         number of bars per spectrum
+     * @param fMin            lower edge of the first bar in Hz
+     * @param fMax            upper edge of the last bar in Hz
+     * @param dBFloor         dB level the bars map to 0.0, and the filter levels too
+     * @param dBCeiling       dB level the bars map to 1.0, and the filter levels too
+     * @param numFilters      number of triangular filters
+     * @param melFMin         lower corner of the first filter in Hz
+     * @param melFMax         upper corner of the last filter in Hz
+     * @param numCoefficients cepstral coefficients to compute, at most {@code numFilters}; 0 to
+     *                        skip the DCT
+     * @throws IllegalArgumentException if a count is out of bounds, or the filters do not overlap
+     *                                  the bars
+     */
+    public MelFilterbank(int numBins, float fMin, float fMax, float dBFloor, float dBCeiling,
+                         int numFilters, float melFMin, float melFMax, int numCoefficients) {
+        if (numBins <= 0 || !(fMin > 0) || !(fMax > fMin)) {
+            throw new IllegalArgumentException(numBins + " bars over " + fMin + "–" + fMax + " Hz");
+        }
+        if (numFilters <= 0 || numCoefficients < 0 || numCoefficients > numFilters) {
+            throw new IllegalArgumentException(numFilters + " filters, " + numCoefficients + " coefficients");
+        }
+        if (!(melFMin >= 0) || !(melFMax > melFMin) || melFMax <= fMin || melFMin >= fMax) {
+            throw new IllegalArgumentException("Filters over " + melFMin + "–" + melFMax
+                    + " Hz miss the bars over " + fMin + "–" + fMax + " Hz");
+        }
+        if (!(dBCeiling > dBFloor)) {
+            throw new IllegalArgumentException("dB range " + dBFloor + " to " + dBCeiling);
+        }
+        this.numBins = numBins;
+        this.numFilters = numFilters;
+        this.numCoefficients = numCoefficients;
+        this.dBFloor = dBFloor;
+        this.dBRange = dBCeiling - dBFloor;
+        this.powerPerLevel = (float) (dBRange * Math.log(10) / 10);
+
+        // filter corners, evenly spaced in mel
+        double melLow = hzToMel(melFMin);
+        double melStep = (hzToMel(melFMax) - melLow) / (numFilters + 1);
+        double[] corners = new double[numFilters + 2];
+        for (int m = 0; m < corners.length; m++) {
+            corners[m] = melToHz(melLow + m * melStep);
+        }
+        this.centres = new float[numFilters];
+        double logRatio = Math.log((double) fMax / fMin);
+        double[] barCentre = new double[numBins];
+        for (int i = 0; i < numBins; i++) {
+            barCentre[i] = fMin * Math.exp(logRatio * (i + 0.5) / numBins);
+        }
+
+        // the bars strictly inside each triangle, weighted by its height at their centres
+        this.filterStart = new int[numFilters];
+        this.filterOffset = new int[numFilters + 1];
+        float[][] rows = new float[numFilters][];
+        for (int m = 0; m < numFilters; m++) {
+            double lower = corners[m];
+            double centre = corners[m + 1];
+            double upper = corners[m + 2];
+            centres[m] = (float) centre;
+            int lo = 0;
+            while (lo < numBins && barCentre[lo] <= lower) {
+                lo++;
+            }
+            int hi = lo;
+            while (hi < numBins && barCentre[hi] < upper) {
+                hi++;
+            }
+            float[] row;
+            if (hi > lo) {
+                row = new float[hi - lo];
+                double sum = 0;
+                for (int i = lo; i < hi; i++) {
+                    double c = barCentre[i];
+                    double w = c <= centre ? (c - lower) / (centre - lower) : (upper - c) / (upper - centre);
+                    row[i - lo] = (float) w;
+                    sum += w;
+                }
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = (float) (row[j] / sum);
+                }
+            } else {
+                // narrower than a bar: the bar holding its centre stands in for the filter
+                int nearest = (int) Math.floor(numBins * Math.log(centre / fMin) / logRatio);
+                lo = Math.max(0, Math.min(numBins - 1, nearest));
+                row = new float[]{1f};
+            }
+            rows[m] = row;
+            filterStart[m] = lo;
+            filterOffset[m + 1] = filterOffset[m] + row.length;
+        }
+        this.weights = new float[filterOffset[numFilters]];
+        int first = numBins;
+        int last = 0;
+        for (int m = 0; m < numFilters; m++) {
+            System.arraycopy(rows[m], 0, weights, filterOffset[m], rows[m].length);
+            first = Math.min(first, filterStart[m]);
+            last = Math.max(last, filterStart[m] + rows[m].length);
+        }
+        this.firstBar = first;
+        this.lastBar = last;
+        this.power = new float[numBins];
+
+        this.dct = new float[numCoefficients * numFilters];
+        for (int k = 0; k < numCoefficients; k++) {
+            double scale = Math.sqrt((k == 0 ? 1.0 : 2.0) / numFilters);
+            for (int m = 0; m < numFilters; m++) {
+                dct[k * numFilters + m] = (float) (scale * Math.cos(Math.PI * k * (m + 0.5) / numFilters));
+            }
+        }
+    }
+
+    /**
+     * Convert a frequency to the HTK mel scale.
+     *
+     * @param hz frequency in Hz
+     * @return {@code 2595 · log10(1 + hz / 700)}
+     */
+    public static double hzToMel(double hz) {
+        return 2595 * Math.log10(1 + hz / 700);
+    }
+
+    /**
+     * Convert an HTK mel value back to a frequency.
+     *
+     * @param mel pitch in mel
+     * @return frequency in Hz
+     */
+    public static double melToHz(double mel) {
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+
+    /**
+     * Filter a spectrum of bars and, if coefficients were asked for, take its cepstrum.
+     *
+     * @param magnitudes normalised bars in [0, 1], length >= {@link #getNumBins()}; not modified
+     * @param melLevels  destination of length {@link #getNumFilters()}; values written in [0, 1]
+     * @param mfcc       destination of length {@link #getNumCoefficients()}, in dB; may be
+     *                   {@code null} when there are none
+     */
+    public void apply(float[] magnitudes, float[] melLevels, float[] mfcc) {
+        filter(magnitudes, melLevels);
+        if (numCoefficients > 0) {
+            cepstrum(melLevels, mfcc);
+        }
+    }
+
+    /** The filterbank alone: normalised bars in, normalised filter levels out. */
+    void filter(float[] magnitudes, float[] melLevels) {
+        for (int i = firstBar; i < lastBar; i++) {
+            power[i] = (float) Math.exp(powerPerLevel * (magnitudes[i] - 1f));
+        }
+        for (int m = 0; m < numFilters; m++) {
+            float sum = 0f;
+            int i = filterStart[m];
+            for (int w = filterOffset[m], end = filterOffset[m + 1]; w < end; w++, i++) {
+                sum += weights[w] * power[i];
+            }
+            float level = 1f + (float) Math.log(sum) / powerPerLevel;
+            melLevels[m] = Math.max(0f, Math.min(1f, level));
+        }
+    }
+
+    /** The DCT alone: normalised filter levels in, cepstral coefficients of their dB levels out. */
+    void cepstrum(float[] melLevels, float[] mfcc) {
+        for (int k = 0, row = 0; k < numCoefficients; k++, row += numFilters) {
+            float sum = 0f;
+            for (int m = 0; m < numFilters; m++) {
+                sum += dct[row + m] * (dBFloor + dBRange * melLevels[m]);
+            }
+            mfcc[k] = sum;
+        }
+    }
+
+    /**
+     * Centre of a filter, where its weight peaks.
+     *
+     * @param filter filter index in [0, {@link #getNumFilters()})
+     * @return frequency in Hz
+     */
+    public float getFilterCentre(int filter) { return centres[filter]; }
+
+    /** Number of bars per spectrum, as passed at construction. */
+    public int getNumBins() { return numBins; }
+
+    /** Number of triangular filters, and filter levels per {@link #apply}. */
+    public int getNumFilters() { return numFilters; }
+
+    /** Number of cepstral coefficients per {@link #apply}; 0 if the DCT is skipped. */
+    public int getNumCoefficients() { return numCoefficients; }
+
+    /** Non-zero weights kept across all filters: the multiply-adds per filtering. */
+    public int getWeightCount() { return weights.length; }
+}
@@ -0,0 +1,124 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.resources.shader.vars.ValueSource;
+
+/**
+ * Timbre features for shows that should react to the character of the sound rather than to the
+ * energy in a band, as {@link BeatDetector} does: a {@link FrequencySink} that runs each spectrum
+ * through a {@link MelFilterbank} and keeps the mel levels and MFCCs of the latest frame.
+ *
+ * <p>Both results live in arrays allocated at construction and overwritten in place each frame.
+ * They can be read directly, or through {@link #melSource()} and {@link #mfccSource()}, which are
+ * {@link ValueSource}s and so plain {@code Supplier<float[]>}s, as a float-array uniform
+ * wants:</p>
+ * <pre>{@code
+ * MfccSink timbre = new MfccSink(freqProc);
+ * freqProc.addSink(timbre);
+ * renderer.addVariable(ShaderVariable.floatArrayVariable("mel", timbre.melSource()));
+ * renderer.addVariable(ShaderVariable.floatArrayVariable("mfcc", timbre.mfccSource()));
+ * }</pre>
+ *
+ * <p>Mel levels are in {@code [0, 1]} like the bars; MFCCs are in dB, the zeroth scaling with the
+ * overall level, so a shader will usually want to scale them. All calls on the render thread.</p>
+ */
+public class MfccSink implements FrequencySink {
+
+    private final MelFilterbank filterbank;
+    private final float[] melLevels;
+    private final float[] mfcc;
+    private final Source melSource;
+    private final Source mfccSource;
+    /** Spectra received so far. */
+    private long frames;
+
+    /**
+     * Construct a sink with {@value MelFilterbank#DEFAULT_FILTERS} filters and
+     * {@value MelFilterbank#DEFAULT_COEFFICIENTS} coefficients, taking the bar geometry and dB
+     * range from the processor it will be registered with.
+     *
+     * <p>The caller is still responsible for registering this sink:
+     * {@code processor.addSink(sink)}.</p>
+     *
+     * @param processor the {@link FrequencyProcessor} this sink will consume from
+     */
+    public MfccSink(FrequencyProcessor processor) {
+        this(new MelFilterbank(processor.getNumBins(), processor.getFMin(), processor.getFMax(),
+                processor.getDBFloor(), processor.getDBCeiling()));
+    }
+
+    /**
+     * Construct a sink around a configured filterbank, e.g. one over a {@link ConstantQProcessor}'s
+     * bins or with no DCT.
+     *
+     * @param filterbank the filterbank to apply to each spectrum
+     */
+    public MfccSink(MelFilterbank filterbank) {
+        this.filterbank = filterbank;
+        this.melLevels = new float[filterbank.getNumFilters()];
+        this.mfcc = new float[filterbank.getNumCoefficients()];
+        this.melSource = new Source(melLevels);
+        this.mfccSource = new Source(mfcc);
+    }
+
+    @Override
+    public void onSpectrum(float[] magnitudes) {
+        filterbank.apply(magnitudes, melLevels, mfcc);
+        frames++;
+    }
+
+    /**
+     * The mel levels of the latest frame; overwritten by the next. Do not modify.
+     *
+     * @return {@link MelFilterbank#getNumFilters()} values in [0, 1], lowest filter first
+     */
+    public float[] getMelLevels() { return melLevels; }
+
+    /**
+     * The cepstral coefficients of the latest frame; overwritten by the next. Do not modify.
+     *
+     * @return {@link MelFilterbank#getNumCoefficients()} values in dB, zeroth first; empty if the
+     *         filterbank skips the DCT
+     */
+    public float[] getMfcc() { return mfcc; }
+
+    /** Level of one mel filter in [0, 1]. */
+    public float getMelLevel(int filter) { return melLevels[filter]; }
+
+    /** One cepstral coefficient in dB. */
+    public float getCoefficient(int index) { return mfcc[index]; }
+
+    /** Spectra received since construction. */
+    public long getFrames() { return frames; }
+
+    /** The filterbank applied to each spectrum, for its filter centres and counts. */
+    public MelFilterbank getFilterbank() { return filterbank; }
+
+    /** The mel levels as a uniform source; {@link ValueSource#changeStatus()} tracks new frames. */
+    public ValueSource<float[]> melSource() { return melSource; }
+
+    /** The MFCCs as a uniform source; {@link ValueSource#changeStatus()} tracks new frames. */
+    public ValueSource<float[]> mfccSource() { return mfccSource; }
+
+    // ── Uniform sources ──────────────────────────────────────────────────────────
+
+    /** Hands out the live array; changed whenever a frame has arrived since the last {@link #get}. */
+    private final class Source implements ValueSource<float[]> {
+        private final float[] values;
+        private long seen = -1;
+
+        Source(float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public float[] get() {
+            seen = frames;
+            return values;
+        }
+
+        @Override
+        public ChangeStatus changeStatus() {
+            return seen == frames ? ChangeStatus.UNCHANGED : ChangeStatus.CHANGED;
+        }
+    }
+}
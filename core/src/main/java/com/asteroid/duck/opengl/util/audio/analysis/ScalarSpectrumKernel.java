@@ -0,0 +1,57 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+/**
+ * The {@link SpectrumKernel} in plain loops, for JVMs without the Vector API. These loops are
+ * simple enough for C2 to auto-vectorise the window and, mostly, the powers.
+ */
+final class ScalarSpectrumKernel extends SpectrumKernel {
+
+    /** Squared magnitude of FFT bins {@code 0..N/2}. */
+    private final float[] power;
+
+    ScalarSpectrumKernel(int fftSize, int[] binLow, int[] binHigh, float dBFloor, float dBRange) {
+        super(fftSize, binLow, binHigh, dBFloor, dBRange);
+        this.power = new float[fftSize / 2 + 1];
+    }
+
+    @Override
+    void window(float[] samples, float[] window, float[] work) {
+        for (int i = 0; i < fftSize; i++) {
+            work[i] = samples[i] * window[i];
+        }
+    }
+
+    @Override
+    void powers(float[] fft) {
+        int nyquist = fftSize / 2;
+        for (int k = 1; k < nyquist; k++) {
+            float re = fft[2 * k];
+            float im = fft[2 * k + 1];
+            power[k] = re * re + im * im;
+        }
+        power[0] = fft[0] * fft[0];
+        power[nyquist] = fft[1] * fft[1];
+    }
+
+    @Override
+    void binPeaks() {
+        for (int b = 0; b < numBins; b++) {
+            float peak = 0f;
+            for (int k = binLow[b]; k < binHigh[b]; k++) {
+                peak = Math.max(peak, power[k]);
+            }
+            peaks[b] = peak;
+        }
+    }
+
+    @Override
+    void levels(float[] output, boolean fastLog) {
+        for (int b = 0; b < numBins; b++) {
+            float p = Math.max(peaks[b], powerFloor);
+            float dB = fastLog
+                    ? DB_PER_LOG2 * fastLog2(p) + scaleDb
+                    : 10f * (float) Math.log10(p) + scaleDb;
+            output[b] = Math.max(0f, Math.min(1f, (dB - dBFloor) / dBRange));
+        }
+    }
+}
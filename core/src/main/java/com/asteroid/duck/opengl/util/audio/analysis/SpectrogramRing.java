@@ -0,0 +1,135 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A fixed-size history of spectra — a scrolling spectrogram — written one STFT frame at a time
+ * by {@link FrequencyProcessor} in streaming mode (see {@link FrequencyProcessor#enableStft}).
+ *
+ * <p>Frames are numbered from 0 in the order they were analysed; the ring keeps the newest
+ * {@link #getCapacity()} of them. Each frame is a row of {@link #getNumBins()} normalised
+ * magnitudes in {@code [0, 1]}, stored row-major in one flat array so that a renderer can upload
+ * the whole history as a texture and scroll it by {@link #rowOf(long) row offset}, or copy single
+ * frames out with {@link #getFrame}.</p>
+ *
+ * <pre>{@code
+ * SpectrogramRing history = freqProc.enableStft(freqProc.getFftSize() / 4, 512);
+ *
+ * // doRender(), after freqProc.process(): upload the rows added since the last frame
+ * for (long f = Math.max(uploaded, history.getOldestFrame()); f < history.getFrameCount(); f++) {
+ *     int row = history.rowOf(f);
+ *     texture.uploadRow(row, history.getData(), row * history.getNumBins());
+ * }
+ * uploaded = history.getFrameCount();
+ * }</pre>
+ *
+ * <p>Written and read on the render thread, like the rest of the processor's output.</p>
+ */
+public class SpectrogramRing {
+
+    private final int numBins;
+    private final int capacity;
+    private final float[] data;
+    private long frameCount;
+
+    /**
+     * @param numBins  length of each spectrum
+     * @param capacity number of frames kept
+     * @throws IllegalArgumentException if either is not positive
+     */
+    public SpectrogramRing(int numBins, int capacity) {
+        if (numBins <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Bad spectrogram: " + numBins + " bins × " + capacity + " frames");
+        }
+        this.numBins = numBins;
+        this.capacity = capacity;
+        this.data = new float[numBins * capacity];
+    }
+
+    /**
+     * Append a frame, overwriting the oldest once the ring is full.
+     *
+     * @param spectrum the frame; the first {@link #getNumBins()} values are copied
+     * @return the number of the frame written
+     */
+    public long append(float[] spectrum) {
+        System.arraycopy(spectrum, 0, data, rowOf(frameCount) * numBins, numBins);
+        return frameCount++;
+    }
+
+    /**
+     * Copy a frame out.
+     *
+     * @param frame frame number in [{@link #getOldestFrame()}, {@link #getFrameCount()})
+     * @param dest  destination; must have length >= {@link #getNumBins()}
+     * @throws IndexOutOfBoundsException if the frame is not held
+     */
+    public void getFrame(long frame, float[] dest) {
+        System.arraycopy(data, checkedRow(frame) * numBins, dest, 0, numBins);
+    }
+
+    /**
+     * One value of a frame.
+     *
+     * @param frame frame number in [{@link #getOldestFrame()}, {@link #getFrameCount()})
+     * @param bin   bin index in [0, {@link #getNumBins()})
+     * @return the normalised magnitude
+     * @throws IndexOutOfBoundsException if the frame is not held
+     */
+    public float get(long frame, int bin) {
+        return data[checkedRow(frame) * numBins + Objects.checkIndex(bin, numBins)];
+    }
+
+    /**
+     * Row of {@link #getData()} that holds, or will hold, a frame.
+     *
+     * @param frame any frame number
+     * @return {@code frame % capacity}
+     */
+    public int rowOf(long frame) {
+        return (int) (frame % capacity);
+    }
+
+    private int checkedRow(long frame) {
+        if (frame < getOldestFrame() || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " not in [" + getOldestFrame() + ", " + frameCount + ")");
+        }
+        return rowOf(frame);
+    }
+
+    /**
+     * The history in ring order, {@code capacity × numBins} row-major; do not modify.
+     *
+     * @return the backing array
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /** Frames ever appended; the newest is {@code getFrameCount() - 1}. */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /** Number of the oldest frame still held, or {@link #getFrameCount()} if empty. */
+    public long getOldestFrame() {
+        return Math.max(0, frameCount - capacity);
+    }
+
+    /** Frames held when full. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Length of each frame. */
+    public int getNumBins() {
+        return numBins;
+    }
+
+    /** Forget every frame; numbering starts again from 0. */
+    public void clear() {
+        Arrays.fill(data, 0f);
+        frameCount = 0;
+    }
+}
@@ -0,0 +1,152 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The per-sample work of {@link FFTProcessor} around the FFT itself: the Hann window before it,
+ * and after it the magnitude, peak-binning and dB mapping from the JTransforms output to the
+ * normalised bars.
+ *
+ * <p>Magnitudes are never square-rooted: each bar takes the peak <em>squared</em> magnitude of
+ * its FFT bins, and the one logarithm per bar folds in the square root and the {@code 1/N} scale,
+ * as {@code 20·log10(√p / N) = 10·log10(p) − 20·log10(N)}.</p>
+ *
+ * <p>{@link #create} can only pick {@code VectorSpectrumKernel} when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}; otherwise it falls back to
+ * {@link ScalarSpectrumKernel}. The vector kernel is compiled apart from the rest of the library,
+ * in the {@code vector} source set, as only it needs the module, and is loaded by name.</p>
+ *
+ * <h2>Fast log</h2>
+ * With {@code fastLog} the logarithm is {@link #fastLog2}, which needs no call into
+ * {@link Math} and vectorises. Its truncation error is under {@code 2e-6} in {@code log2}
+ * (under {@code 6e-6} dB); with float rounding the bars differ from the exact path by less than
+ * {@link #FAST_LOG_MAX_ERROR_DB}.
+ */
+abstract class SpectrumKernel {
+    private static final Logger LOG = LoggerFactory.getLogger(SpectrumKernel.class);
+
+    /** Largest difference between a bar's dB level with and without fast log. */
+    static final float FAST_LOG_MAX_ERROR_DB = 1e-4f;
+
+    /** {@code 10·log10(2)}: dB per octave of power. */
+    static final float DB_PER_LOG2 = 3.0102999566398120f;
+
+    static final float SQRT2 = 1.4142135f;
+    /** Coefficients of {@code log2(m) = 2/ln 2 · atanh(t)}, {@code t = (m − 1)/(m + 1)}. */
+    static final float C1 = 2.8853900817779268f;
+    static final float C3 = C1 / 3;
+    static final float C5 = C1 / 5;
+
+    final int fftSize;
+    final int numBins;
+    final int[] binLow;
+    final int[] binHigh;
+    final float dBFloor;
+    final float dBRange;
+    /** Peak squared magnitude of each bar. */
+    final float[] peaks;
+    /** Squared magnitude of the old {@code 1e-10} magnitude floor, before the {@code 1/N} scale. */
+    final float powerFloor;
+    /** {@code −20·log10(N)}, the {@code 1/N} scale in dB. */
+    final float scaleDb;
+
+    SpectrumKernel(int fftSize, int[] binLow, int[] binHigh, float dBFloor, float dBRange) {
+        this.fftSize = fftSize;
+        this.numBins = binLow.length;
+        this.binLow = binLow;
+        this.binHigh = binHigh;
+        this.dBFloor = dBFloor;
+        this.dBRange = dBRange;
+        this.peaks = new float[numBins];
+        this.powerFloor = (float) (1e-20 * fftSize * fftSize);
+        this.scaleDb = (float) (-20 * Math.log10(fftSize));
+    }
+
+    /**
+     * Whether the incubating Vector API was resolved at startup.
+     *
+     * @return true if {@code jdk.incubator.vector} is in the boot layer
+     */
+    static boolean vectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * A kernel for the given geometry.
+     *
+     * @param fftSize FFT size; a power of two
+     * @param binLow  first FFT bin of each bar
+     * @param binHigh FFT bin after the last of each bar
+     * @param dBFloor dB level mapped to 0
+     * @param dBRange dB from the floor to the level mapped to 1
+     * @param vector  whether to use the Vector API, if it is {@linkplain #vectorAvailable available}
+     * @return a kernel for this geometry
+     */
+    static SpectrumKernel create(int fftSize, int[] binLow, int[] binHigh, float dBFloor, float dBRange,
+                                 boolean vector) {
+        if (vector && vectorAvailable()) {
+            try {
+                return (SpectrumKernel) Class.forName(SpectrumKernel.class.getPackageName() + ".VectorSpectrumKernel")
+                        .getDeclaredConstructor(int.class, int[].class, int[].class, float.class, float.class)
+                        .newInstance(fftSize, binLow, binHigh, dBFloor, dBRange);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LOG.warn("Vector API present but unusable; using the scalar spectrum kernel", e);
+            }
+        }
+        return new ScalarSpectrumKernel(fftSize, binLow, binHigh, dBFloor, dBRange);
+    }
+
+    /**
+     * Multiply the first {@code fftSize} samples by the window.
+     *
+     * @param samples input samples
+     * @param window  window coefficients
+     * @param work    destination, the FFT's work buffer
+     */
+    abstract void window(float[] samples, float[] window, float[] work);
+
+    /**
+     * Turn a {@code realForward} output into normalised bars.
+     *
+     * @param fft     the FFT output in JTransforms' packed layout
+     * @param output  destination bars in {@code [0, 1]}
+     * @param fastLog whether to use {@link #fastLog2}
+     */
+    final void toSpectrum(float[] fft, float[] output, boolean fastLog) {
+        powers(fft);
+        binPeaks();
+        levels(output, fastLog);
+    }
+
+    /** Square the magnitude of every FFT bin, {@code 0..N/2}. */
+    abstract void powers(float[] fft);
+
+    /** Fill {@link #peaks} with the largest power in each bar's range. */
+    abstract void binPeaks();
+
+    /** Map {@link #peaks} to normalised dB. */
+    abstract void levels(float[] output, boolean fastLog);
+
+    /**
+     * {@code log2(x)} for positive, normal {@code x}, from its exponent and a short series in its
+     * mantissa: with {@code x = 2^e · m}, {@code m ∈ [√½, √2)}, {@code log2(x) = e + 2/ln 2 ·
+     * atanh(t)} for {@code t = (m − 1)/(m + 1)}, {@code |t| ≤ 0.1716}, and the series is cut after
+     * {@code t⁵}, leaving an error under {@code 0.1716⁷ · C1/7 / (1 − t²) < 2e-6}.
+     *
+     * @param x a positive, normal float
+     * @return its base-2 logarithm, within {@code 2e-6} plus rounding
+     */
+    static float fastLog2(float x) {
+        int bits = Float.floatToRawIntBits(x);
+        int e = (bits >>> 23) - 127;
+        float m = Float.intBitsToFloat((bits & 0x007FFFFF) | 0x3F800000);
+        if (m > SQRT2) {
+            m *= 0.5f;
+            e++;
+        }
+        float t = (m - 1) / (m + 1);
+        float t2 = t * t;
+        return e + t * (C1 + t2 * (C3 + t2 * C5));
+    }
+}
@@ -0,0 +1,135 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.CaptureTimestamped;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free hand-over of spectra from one writer thread to one reader thread, through three
+ * {@code float[]} slots with a version number on each.
+ *
+ * <p>At any moment the writer owns the <em>back</em> slot, the reader owns the <em>front</em>
+ * slot and the third, <em>middle</em> slot holds the newest complete spectrum. The writer fills
+ * its slot and {@link #publish}es it by swapping it with the middle; the reader
+ * {@link #acquire}s by swapping its front slot with the middle if the middle is newer. Neither
+ * side ever waits for the other, and since each slot belongs to exactly one side between swaps,
+ * the reader can never see a spectrum half-written: it either keeps the one it has or takes the
+ * newest whole one. Spectra published faster than the reader acquires them are overwritten
+ * unread — renderers want the newest, not every one.</p>
+ *
+ * <p>The middle index and a "fresh" flag share one {@link AtomicInteger}, so each swap is a
+ * single atomic {@code getAndSet}, whose ordering also publishes the slot's contents.</p>
+ *
+ * <pre>{@code
+ * // analysis thread
+ * float[] back = buffer.back();
+ * fft.process(samples, back);
+ * buffer.publish(captureNanos);
+ *
+ * // render thread
+ * if (buffer.acquire()) {
+ *     draw(buffer.front(), buffer.getFrontVersion());
+ * }
+ * }</pre>
+ */
+public class SpectrumTripleBuffer {
+
+    /** Set in {@link #middle} when the middle slot holds a spectrum the reader has not taken. */
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final float[][] slots;
+    private final long[] versions = new long[3];
+    private final long[] captureNanos = {CaptureTimestamped.NONE, CaptureTimestamped.NONE, CaptureTimestamped.NONE};
+
+    /** Index of the middle slot, with {@link #FRESH}. */
+    private final AtomicInteger middle = new AtomicInteger(1);
+    /** Writer thread only. */
+    private int back = 0;
+    private long version;
+    /** Reader thread only. */
+    private int front = 2;
+
+    /**
+     * @param length length of each spectrum, e.g. the processor's {@code numBins}
+     */
+    public SpectrumTripleBuffer(int length) {
+        this.slots = new float[3][length];
+    }
+
+    // ── Writer ───────────────────────────────────────────────────────────────────
+
+    /**
+     * The slot the writer fills next. Its contents are whatever was published two or more
+     * spectra ago; overwrite all of it. Writer thread only.
+     *
+     * @return the back slot, valid until the next {@link #publish}
+     */
+    public float[] back() {
+        return slots[back];
+    }
+
+    /**
+     * Make the back slot the newest spectrum, with the next version number, and take a fresh
+     * back slot. Writer thread only.
+     *
+     * @param captured capture time of the newest sample in the spectrum, or
+     *                 {@link CaptureTimestamped#NONE}
+     * @return the version given to the published spectrum, counting from 1
+     */
+    public long publish(long captured) {
+        versions[back] = ++version;
+        captureNanos[back] = captured;
+        back = middle.getAndSet(back | FRESH) & INDEX;
+        return version;
+    }
+
+    // ── Reader ───────────────────────────────────────────────────────────────────
+
+    /**
+     * Take the newest published spectrum as the front slot, if there is one the reader has not
+     * had yet. Reader thread only.
+     *
+     * @return whether the front slot changed
+     */
+    public boolean acquire() {
+        if ((middle.get() & FRESH) == 0) {
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX;
+        return true;
+    }
+
+    /**
+     * The spectrum last acquired; do not modify. Reader thread only.
+     *
+     * @return the front slot, valid and unchanging until the next {@link #acquire}
+     */
+    public float[] front() {
+        return slots[front];
+    }
+
+    /**
+     * Version of the front spectrum. Versions increase by one with each {@link #publish}, so a
+     * gap since the last acquired version counts the spectra overwritten unread.
+     *
+     * @return the version, or 0 before anything has been acquired
+     */
+    public long getFrontVersion() {
+        return versions[front];
+    }
+
+    /**
+     * Capture stamp published with the front spectrum.
+     *
+     * @return capture time of its newest sample, or {@link CaptureTimestamped#NONE}
+     */
+    public long getFrontCaptureNanos() {
+        return captureNanos[front];
+    }
+
+    /** Length of each spectrum. */
+    public int getLength() {
+        return slots[0].length;
+    }
+}
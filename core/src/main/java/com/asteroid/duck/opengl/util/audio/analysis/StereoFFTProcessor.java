@@ -0,0 +1,144 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.jtransforms.fft.FloatFFT_1D;
+
+/**
+ * {@link FFTProcessor} for both channels of a stereo window in one transform: the left samples
+ * go in the real parts and the right in the imaginary parts of a single complex FFT, and the two
+ * real spectra are separated afterwards by conjugate symmetry.
+ *
+ * <p>For real {@code l} and {@code r} and {@code Z = FFT(l + i·r)}, with {@code Z*} the complex
+ * conjugate and indices mod {@code N}:</p>
+ * <pre>
+ *   L[k] = (Z[k] + Z*[N−k]) / 2
+ *   R[k] = (Z[k] − Z*[N−k]) / 2i
+ * </pre>
+ * <p>Each is rebuilt in {@link FloatFFT_1D#realForward}'s packed layout and handed to the same
+ * {@link SpectrumKernel}, so the bars match two {@link FFTProcessor}s to within rounding. The
+ * mid spectrum, of {@code (l + r) / 2} as {@link com.asteroid.duck.opengl.util.audio.ChannelMode#MONO_BLEND}
+ * would mix it, is {@code (L + R) / 2} by linearity and costs no transform at all.</p>
+ *
+ * <p>Pre-allocates everything at construction; {@link #process} allocates nothing. Not
+ * thread-safe.</p>
+ */
+public class StereoFFTProcessor {
+
+    private final FFTProcessor mono;
+    private final SpectrumKernel kernel;
+    private final float[] window;
+    private final int fftSize;
+
+    private final FloatFFT_1D fft;
+    /** Windowed {@code l + i·r}, interleaved, transformed in place; length {@code 2·fftSize}. */
+    private final float[] complexBuffer;
+    /** Left and right spectra in {@code realForward}'s packed layout. */
+    private final float[] left;
+    private final float[] right;
+
+    /**
+     * Construct a stereo processor; the parameters are those of {@link FFTProcessor}.
+     *
+     * @param fftSize    number of samples per channel per call; must be a power of two
+     * @param numBins    number of output frequency bars per channel
+     * @param sampleRate audio sample rate in Hz (e.g. 48 000)
+     * @param fMin       lower frequency bound for the first bar, in Hz (e.g. 20)
+     * @param fMax       upper frequency bound for the last bar, in Hz (e.g. 20 000)
+     * @param dBFloor    dB level mapped to output 0.0 (e.g. −80)
+     * @param dBCeiling  dB level mapped to output 1.0 (e.g. 0)
+     */
+    public StereoFFTProcessor(int fftSize, int numBins, float sampleRate,
+                              float fMin, float fMax, float dBFloor, float dBCeiling) {
+        this(new FFTProcessor(fftSize, numBins, sampleRate, fMin, fMax, dBFloor, dBCeiling));
+    }
+
+    /** Share the window, bar mapping and kernel of a mono processor, which must not then be used. */
+    StereoFFTProcessor(FFTProcessor mono) {
+        this.mono = mono;
+        this.kernel = mono.getKernel();
+        this.window = mono.getWindow();
+        this.fftSize = mono.getFftSize();
+        this.fft = new FloatFFT_1D(fftSize);
+        this.complexBuffer = new float[2 * fftSize];
+        this.left = new float[fftSize];
+        this.right = new float[fftSize];
+    }
+
+    /**
+     * Analyse a stereo window into a spectrum per channel.
+     *
+     * @param leftSamples  left channel in [−1, 1], oldest first; length >= fftSize
+     * @param rightSamples right channel, the same frames
+     * @param leftOut      destination bars for the left channel, or {@code null}
+     * @param rightOut     destination bars for the right channel, or {@code null}
+     * @param midOut       destination bars for the average of both channels, or {@code null}
+     */
+    public void process(float[] leftSamples, float[] rightSamples,
+                        float[] leftOut, float[] rightOut, float[] midOut) {
+        float[] z = complexBuffer;
+        for (int n = 0; n < fftSize; n++) {
+            z[2 * n] = leftSamples[n] * window[n];
+            z[2 * n + 1] = rightSamples[n] * window[n];
+        }
+        fft.complexForward(z);
+
+        // DC and Nyquist are real in both channels: L takes the real part, R the imaginary
+        left[0] = z[0];
+        right[0] = z[1];
+        left[1] = z[fftSize];
+        right[1] = z[fftSize + 1];
+        for (int k = 1, j = fftSize - 1; k < fftSize / 2; k++, j--) {
+            float a = z[2 * k];
+            float b = z[2 * k + 1];
+            float c = z[2 * j];
+            float d = z[2 * j + 1];
+            left[2 * k] = 0.5f * (a + c);
+            left[2 * k + 1] = 0.5f * (b - d);
+            right[2 * k] = 0.5f * (b + d);
+            right[2 * k + 1] = 0.5f * (c - a);
+        }
+
+        boolean fastLog = mono.isFastLog();
+        if (leftOut != null) {
+            kernel.toSpectrum(left, leftOut, fastLog);
+        }
+        if (rightOut != null) {
+            kernel.toSpectrum(right, rightOut, fastLog);
+        }
+        if (midOut != null) {
+            for (int i = 0; i < fftSize; i++) {
+                left[i] = 0.5f * (left[i] + right[i]);
+            }
+            kernel.toSpectrum(left, midOut, fastLog);
+        }
+    }
+
+    /**
+     * Analyse a stereo window into a spectrum per channel.
+     *
+     * @param leftSamples  left channel in [−1, 1], oldest first; length >= fftSize
+     * @param rightSamples right channel, the same frames
+     * @param leftOut      destination bars for the left channel
+     * @param rightOut     destination bars for the right channel
+     */
+    public void process(float[] leftSamples, float[] rightSamples, float[] leftOut, float[] rightOut) {
+        process(leftSamples, rightSamples, leftOut, rightOut, null);
+    }
+
+    /** See {@link FFTProcessor#setFastLog(boolean)}. */
+    public void setFastLog(boolean fastLog) { mono.setFastLog(fastLog); }
+
+    /** Whether the dB mapping uses the approximate logarithm. */
+    public boolean isFastLog() { return mono.isFastLog(); }
+
+    /** Samples per channel consumed per {@link #process} call. */
+    public int getFftSize() { return fftSize; }
+
+    /** Bars written per channel. */
+    public int getNumBins() { return mono.getNumBins(); }
+
+    /** Frequency of the first bar in Hz. */
+    public float getFMin() { return mono.getFMin(); }
+
+    /** Frequency of the last bar in Hz. */
+    public float getFMax() { return mono.getFMax(); }
+}
@@ -0,0 +1,185 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.AudioSink;
+import com.asteroid.duck.opengl.util.audio.CaptureTimestamped;
+import com.asteroid.duck.opengl.util.audio.ChannelMode;
+import com.asteroid.duck.opengl.util.audio.FloatAudioBuffer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The stereo counterpart of {@link FrequencyProcessor}: keeps both channels of the captured PCM
+ * and, once per frame, analyses them in one {@link StereoFFTProcessor} transform, passing each
+ * {@link FrequencySink} the spectrum of the channel it was registered for.
+ *
+ * <p>Sinks are registered per {@link ChannelMode}: {@link ChannelMode#LEFT} and
+ * {@link ChannelMode#RIGHT} sinks get that channel's spectrum, and {@link ChannelMode#MONO_BLEND}
+ * sinks get the spectrum of the two averaged, as a mono {@link FrequencyProcessor} would give
+ * them. All three come out of the one transform; a channel with no sinks is not binned.</p>
+ *
+ * <pre>{@code
+ * StereoFrequencyProcessor stereo = new StereoFrequencyProcessor(
+ *     1024, 64, 48_000f, 20f, 20_000f, -80f, 0f);
+ * stereo.addSink(ChannelMode.LEFT, leftAnalyser);
+ * stereo.addSink(ChannelMode.RIGHT, rightAnalyser);
+ * stereo.addSink(ChannelMode.MONO_BLEND, beats);
+ *
+ * AudioReader audioReader = new AudioReader(List.of(stereo));
+ *
+ * // doRender():
+ * stereo.process();
+ * }</pre>
+ *
+ * <p>Threading is as for {@link FrequencyProcessor}: {@link #write} on the capture thread,
+ * everything else on the render thread.</p>
+ */
+public class StereoFrequencyProcessor implements AudioSink, CaptureTimestamped {
+
+    private final FloatAudioBuffer leftBuffer;
+    private final FloatAudioBuffer rightBuffer;
+    private final StereoFFTProcessor fftProcessor;
+    private final float[] leftSamples;
+    private final float[] rightSamples;
+    private final Map<ChannelMode, float[]> magnitudes = new EnumMap<>(ChannelMode.class);
+    private final Map<ChannelMode, List<FrequencySink>> sinks = new EnumMap<>(ChannelMode.class);
+
+    /** Capture time of the newest sample in the window last analysed; render thread only. */
+    private long captureNanos = NONE;
+    /** When that window was analysed; render thread only. */
+    private long processedNanos = NONE;
+
+    /**
+     * Construct a stereo processor; the parameters are those of {@link FrequencyProcessor}.
+     *
+     * @param fftSize    FFT window size in samples per channel; must be a power of two
+     * @param numBins    number of output frequency bars per channel
+     * @param sampleRate capture sample rate in Hz
+     * @param fMin       lowest displayed frequency in Hz
+     * @param fMax       highest displayed frequency in Hz
+     * @param dBFloor    dB level mapped to output 0.0
+     * @param dBCeiling  dB level mapped to output 1.0
+     */
+    public StereoFrequencyProcessor(int fftSize, int numBins, float sampleRate,
+                                    float fMin, float fMax, float dBFloor, float dBCeiling) {
+        this.fftProcessor = new StereoFFTProcessor(fftSize, numBins, sampleRate, fMin, fMax, dBFloor, dBCeiling);
+        int capacity = Math.max(fftSize * 4, FrequencyProcessor.MIN_BUFFER_FRAMES);
+        this.leftBuffer = new FloatAudioBuffer(capacity, ChannelMode.LEFT);
+        this.rightBuffer = new FloatAudioBuffer(capacity, ChannelMode.RIGHT);
+        this.leftSamples = new float[fftSize];
+        this.rightSamples = new float[fftSize];
+        for (ChannelMode channel : ChannelMode.values()) {
+            magnitudes.put(channel, new float[numBins]);
+            sinks.put(channel, new ArrayList<>());
+        }
+    }
+
+    // ── AudioSink ────────────────────────────────────────────────────────────────
+
+    /** Receive raw PCM bytes on the capture thread; each channel is converted as it arrives. */
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        leftBuffer.write(data, offset, length);
+        rightBuffer.write(data, offset, length);
+    }
+
+    /** As {@link #write(byte[], int, int)}, keeping the capture stamp for {@link #process}. */
+    @Override
+    public void write(byte[] data, int offset, int length, long captureNanos) {
+        leftBuffer.write(data, offset, length);
+        rightBuffer.write(data, offset, length, captureNanos);
+    }
+
+    // ── Render-thread API ─────────────────────────────────────────────────────────
+
+    /**
+     * Analyse the newest stereo window and dispatch each channel's spectrum to its sinks. Call
+     * once per frame on the render thread, as {@link FrequencyProcessor#process()}.
+     */
+    public void process() {
+        // the right channel is written second, so both hold every frame up to its count
+        long captured = rightBuffer.getCaptureNanos();
+        long end = rightBuffer.getFramesWritten();
+        int fftSize = fftProcessor.getFftSize();
+        if (end < fftSize
+                || !leftBuffer.tryReadSamples(leftSamples, fftSize, end)
+                || !rightBuffer.tryReadSamples(rightSamples, fftSize, end)) {
+            // too early, or the writer lapped the window during a stall: take the newest, as the
+            // mono processor does, at the cost of the channels being a write apart at worst
+            captured = rightBuffer.getCaptureNanos();
+            leftBuffer.readSamples(leftSamples, fftSize);
+            rightBuffer.readSamples(rightSamples, fftSize);
+        }
+        fftProcessor.process(leftSamples, rightSamples,
+                spectrumFor(ChannelMode.LEFT), spectrumFor(ChannelMode.RIGHT), spectrumFor(ChannelMode.MONO_BLEND));
+        captureNanos = captured;
+        processedNanos = System.nanoTime();
+        for (Map.Entry<ChannelMode, List<FrequencySink>> channel : sinks.entrySet()) {
+            float[] spectrum = magnitudes.get(channel.getKey());
+            for (FrequencySink sink : channel.getValue()) {
+                sink.onSpectrum(spectrum);
+            }
+        }
+    }
+
+    /** The channel's output array if anything will read it, else {@code null} to skip it. */
+    private float[] spectrumFor(ChannelMode channel) {
+        return sinks.get(channel).isEmpty() ? null : magnitudes.get(channel);
+    }
+
+    /**
+     * Register a sink for one channel's spectrum. Call on the render thread (or before the render
+     * loop starts).
+     *
+     * @param channel {@link ChannelMode#LEFT}, {@link ChannelMode#RIGHT}, or
+     *                {@link ChannelMode#MONO_BLEND} for both averaged
+     * @param sink    the sink
+     */
+    public void addSink(ChannelMode channel, FrequencySink sink) {
+        sinks.get(channel).add(sink);
+    }
+
+    /**
+     * Unregister a sink from one channel. No-op if it was not registered there.
+     *
+     * @param channel the channel it was registered for
+     * @param sink    the sink
+     */
+    public void removeSink(ChannelMode channel, FrequencySink sink) {
+        sinks.get(channel).remove(sink);
+    }
+
+    /**
+     * Capture time of the newest sample in the window analysed by the last {@link #process}.
+     * Render thread only.
+     */
+    @Override
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /** When the last {@link #process} finished its FFT. Render thread only. */
+    @Override
+    public long getProcessedNanos() {
+        return processedNanos;
+    }
+
+    /** See {@link FFTProcessor#setFastLog(boolean)}. */
+    public void setFastLog(boolean fastLog) { fftProcessor.setFastLog(fastLog); }
+
+    // ── Parameter accessors ───────────────────────────────────────────────────────
+
+    /** Number of output frequency bars per channel; matches {@code numBins} at construction. */
+    public int getNumBins() { return fftProcessor.getNumBins(); }
+
+    /** FFT window size in samples per channel; matches {@code fftSize} at construction. */
+    public int getFftSize() { return fftProcessor.getFftSize(); }
+
+    /** Lowest frequency in the output range in Hz; matches {@code fMin} at construction. */
+    public float getFMin() { return fftProcessor.getFMin(); }
+
+    /** Highest frequency in the output range in Hz; matches {@code fMax} at construction. */
+    public float getFMax() { return fftProcessor.getFMax(); }
+}
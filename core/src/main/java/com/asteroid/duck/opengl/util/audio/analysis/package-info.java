@@ -10,7 +10,8 @@
  *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.FFTProcessor}</dt>
  *   <dd>Core FFT pipeline: Hann window → JTransforms real FFT → log-frequency bin mapping →
  *       dB normalisation. Pre-allocates all buffers at construction; {@code process()} is
- *       allocation-free and safe to call at 60 fps on the render thread.</dd>
+ *       allocation-free and safe to call at 60 fps on the render thread. The steps around the
+ *       FFT run on the incubating Vector API when {@code jdk.incubator.vector} is added.</dd>
  *
  *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.FrequencyProcessor}</dt>
  *   <dd>Bridges the raw-audio pipeline to the frequency domain. Implements
@@ -21,6 +22,24 @@
  *       {@link com.asteroid.duck.opengl.util.audio.analysis.FrequencySink}s — one FFT for any
  *       number of consumers.</dd>
  *
+ *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.StereoFFTProcessor} /
+ *       {@link com.asteroid.duck.opengl.util.audio.analysis.StereoFrequencyProcessor}</dt>
+ *   <dd>Left and right spectra from one complex FFT, with left and right packed into its real
+ *       and imaginary parts; sinks register for the left, right or blended channel.</dd>
+ *
+ *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.ConstantQTransform} /
+ *       {@link com.asteroid.duck.opengl.util.audio.analysis.ConstantQProcessor}</dt>
+ *   <dd>Constant-Q spectrum, a fixed number of bins per octave, from precomputed sparse spectral
+ *       kernels applied to one FFT per frame; an alternative producer for the same sinks.</dd>
+ *
+ *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.SpectrogramRing}</dt>
+ *   <dd>Fixed-size spectrogram history, filled hop by hop when {@code FrequencyProcessor} runs
+ *       as a streaming STFT; stored row-major for upload as a scrolling texture.</dd>
+ *
+ *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.SpectrumTripleBuffer}</dt>
+ *   <dd>Lock-free, versioned hand-over of spectra between two threads; used by
+ *       {@code FrequencyProcessor} when its FFT runs on a dedicated analysis thread.</dd>
+ *
  *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.FrequencySink}</dt>
  *   <dd>Callback interface for objects that consume per-frame FFT magnitudes distributed by
  *       {@link com.asteroid.duck.opengl.util.audio.analysis.FrequencyProcessor}.</dd>
@@ -33,9 +52,20 @@
  *       (default: bass / snare / hi-hat) and publishes a {@code [0, 1]} beat strength per band
  *       that rises instantly on onset and decays at a tunable rate.</dd>
  *
+ *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.MelFilterbank} /
+ *       {@link com.asteroid.duck.opengl.util.audio.analysis.MfccSink}</dt>
+ *   <dd>Timbre features: a sparse triangular mel filterbank over the bars, then optionally a DCT
+ *       to MFCCs, in preallocated arrays; the sink publishes both as uniform sources.</dd>
+ *
  *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.FrequencyBand}</dt>
  *   <dd>Immutable record describing a named Hz range. Provides {@code BASS}, {@code SNARE}, and
  *       {@code HI_HAT} presets and a {@code defaults()} factory.</dd>
+ *
+ *   <dt>{@link com.asteroid.duck.opengl.util.audio.analysis.AnalysisRecorder} /
+ *       {@link com.asteroid.duck.opengl.util.audio.analysis.AnalysisReplay}</dt>
+ *   <dd>Record spectra and beat strengths frame by frame to a compact delta-encoded log, and
+ *       play it back into the same sinks at any speed — renderers can be profiled and
+ *       regression-tested without an audio line or an FFT.</dd>
  * </dl>
  *
  * <h2>Typical wiring</h2>
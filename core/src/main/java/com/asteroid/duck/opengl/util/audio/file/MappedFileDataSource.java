@@ -0,0 +1,286 @@
+package com.asteroid.duck.opengl.util.audio.file;
+
+import com.asteroid.duck.opengl.util.audio.AudioDataSource;
+import com.asteroid.duck.opengl.util.timer.Clock;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * An {@link AudioDataSource} that plays back a recorded WAV or raw PCM file, so production audio
+ * can be replayed through the same pipeline as a live line.
+ *
+ * <p>The PCM data is memory-mapped with {@link FileChannel#map} when the source is opened; a
+ * {@link #read} is a single bulk copy from the mapping into the caller's array (split only at a
+ * loop point or a mapping boundary), with no intermediate buffers, and {@link #readSegment}
+ * lends the mapping itself without copying at all. Files larger than 1 GiB are mapped in several
+ * frame-aligned segments.</p>
+ *
+ * <h2>Pacing</h2>
+ * Frames become available as a {@link Clock} passes their play time multiplied by
+ * {@code speed}: {@code 1.0} plays in real time like a capture line, {@code 4.0} at four times
+ * real time, and {@link #MAX_SPEED} ignores the clock entirely, offering a full line buffer on
+ * every call so a benchmark can replay identical input as fast as it is consumed. With
+ * {@code loop} set the file wraps back to its first frame, otherwise {@link #available()} drops
+ * to zero at the end of the data and {@link #isFinished()} becomes {@code true}.
+ *
+ * <p>Like a hardware line the file has one fixed format; {@link #open} fails with
+ * {@link LineUnavailableException} unless the requested format matches {@link #getFormat()}.</p>
+ */
+public class MappedFileDataSource implements AudioDataSource {
+
+    /** Pacing that ignores the clock and delivers a full buffer on every read. */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    /** Largest single mapping; rounded down to a whole number of frames. */
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    /** Fraction of a frame by which a frame may be released early, absorbing clock rounding. */
+    private static final double FRAME_EPSILON = 1e-3;
+
+    private final Path file;
+    private final AudioFormat format;
+    private final long dataOffset;
+    private final long dataLength;
+    private final Clock clock;
+    private final double speed;
+    private final boolean loop;
+    private final int frameSize;
+    private final long segmentBytes;
+
+    private MappedByteBuffer[] segments;
+    /** The same mappings as segments, for {@link #readSegment}. */
+    private MemorySegment[] views;
+    private int limit;
+    private boolean running;
+    /** Clock time of the first frame played since open or {@link #rewind()}. */
+    private double startedAt;
+    /** Frames delivered since open or {@link #rewind()}, counting loops. */
+    private long framesRead;
+    /** Byte offset of the next frame within the data. */
+    private long position;
+
+    private MappedFileDataSource(Path file, AudioFormat format, long dataOffset, long dataLength,
+                                 Clock clock, double speed, boolean loop) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        if (speed != MAX_SPEED) {
+            Objects.requireNonNull(clock, "clock is required unless playing at MAX_SPEED");
+        }
+        this.file = file;
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.clock = clock;
+        this.speed = speed;
+        this.loop = loop;
+        this.frameSize = format.getFrameSize();
+        this.dataLength = dataLength - dataLength % frameSize;
+        this.segmentBytes = SEGMENT_BYTES - SEGMENT_BYTES % frameSize;
+    }
+
+    /**
+     * A source playing the data chunk of a WAV file in the file's own format.
+     *
+     * @param file  the WAV file
+     * @param clock paces playback; may be {@code null} when {@code speed} is {@link #MAX_SPEED}
+     * @param speed multiple of real time, or {@link #MAX_SPEED}
+     * @param loop  whether to wrap to the start at the end of the data
+     * @return the source, not yet opened
+     * @throws IOException if the file cannot be read or is not a supported WAV file
+     */
+    public static MappedFileDataSource wav(Path file, Clock clock, double speed, boolean loop) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WavFile wav = WavFile.read(channel);
+            return new MappedFileDataSource(file, wav.format(), wav.dataOffset(), wav.dataLength(), clock, speed, loop);
+        }
+    }
+
+    /**
+     * A source playing a headerless file of interleaved PCM frames.
+     *
+     * @param file   the raw PCM file; a trailing partial frame is ignored
+     * @param format the layout of the frames in the file
+     * @param clock  paces playback; may be {@code null} when {@code speed} is {@link #MAX_SPEED}
+     * @param speed  multiple of real time, or {@link #MAX_SPEED}
+     * @param loop   whether to wrap to the start at the end of the data
+     * @return the source, not yet opened
+     * @throws IOException if the file cannot be read
+     */
+    public static MappedFileDataSource raw(Path file, AudioFormat format, Clock clock, double speed, boolean loop) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedFileDataSource(file, format, 0, channel.size(), clock, speed, loop);
+        }
+    }
+
+    @Override
+    public String getName() {
+        String pace = speed == MAX_SPEED ? "max speed" : speed + "x";
+        return "File: " + file.getFileName() + " (" + pace + (loop ? ", loop" : "") + ")";
+    }
+
+    /**
+     * The format of the frames in the file; {@link #open} must be called with a matching format.
+     *
+     * @return the file's sample format
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Number of whole frames in the file.
+     *
+     * @return frames of PCM data
+     */
+    public long getFrameLength() {
+        return dataLength / frameSize;
+    }
+
+    /**
+     * Frames delivered since the source was opened or {@link #rewind() rewound}, counting every
+     * pass of a looping file.
+     *
+     * @return frames read
+     */
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    /**
+     * Whether a non-looping source has delivered its last frame.
+     *
+     * @return {@code true} once the end of the data has been read
+     */
+    public boolean isFinished() {
+        return !loop && position == dataLength;
+    }
+
+    /**
+     * Return to the first frame and restart pacing from now, so the same input can be replayed.
+     */
+    public void rewind() {
+        position = 0;
+        framesRead = 0;
+        startedAt = now();
+    }
+
+    @Override
+    public void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
+        if (!this.format.matches(format)) {
+            throw new LineUnavailableException(file + " is " + this.format + ", not " + format);
+        }
+        int count = (int) ((dataLength + segmentBytes - 1) / segmentBytes);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        MemorySegment[] views = new MemorySegment[count];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < count; i++) {
+                long offset = i * segmentBytes;
+                mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + offset,
+                        Math.min(segmentBytes, dataLength - offset));
+                views[i] = MemorySegment.ofBuffer(mapped[i]);
+            }
+        } catch (IOException e) {
+            LineUnavailableException failure = new LineUnavailableException("Cannot map " + file);
+            failure.initCause(e);
+            throw failure;
+        }
+        this.segments = mapped;
+        this.views = views;
+        this.limit = bufferSize - bufferSize % frameSize;
+        rewind();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return segments != null;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public int available() {
+        if (!running || segments == null || dataLength == 0) {
+            return 0;
+        }
+        long frames = limit / frameSize;
+        if (speed != MAX_SPEED) {
+            double played = (now() - startedAt) * speed * format.getFrameRate();
+            frames = Math.min(frames, (long) Math.floor(played + FRAME_EPSILON) - framesRead);
+        }
+        if (!loop) {
+            frames = Math.min(frames, (dataLength - position) / frameSize);
+        }
+        return (int) Math.max(0, frames) * frameSize;
+    }
+
+    @Override
+    public int read(byte[] array, int start, int length) {
+        int toRead = Math.min(available(), length);
+        toRead -= toRead % frameSize;
+        int done = 0;
+        while (done < toRead) {
+            if (position == dataLength) {
+                position = 0; // only reachable when looping; available() stops at the end otherwise
+            }
+            int segment = (int) (position / segmentBytes);
+            int offset = (int) (position - segment * segmentBytes);
+            int chunk = (int) Math.min(toRead - done, segments[segment].capacity() - offset);
+            segments[segment].get(offset, array, start + done, chunk);
+            done += chunk;
+            position += chunk;
+        }
+        framesRead += done / frameSize;
+        return done;
+    }
+
+    /** Lend up to {@code length} bytes of the mapping, stopping short at a loop point or mapping boundary. */
+    @Override
+    public MemorySegment readSegment(int length) {
+        int toRead = Math.min(available(), length);
+        toRead -= toRead % frameSize;
+        if (toRead == 0) {
+            return MemorySegment.NULL;
+        }
+        if (position == dataLength) {
+            position = 0; // only reachable when looping; available() stops at the end otherwise
+        }
+        int segment = (int) (position / segmentBytes);
+        long offset = position - segment * segmentBytes;
+        long chunk = Math.min(toRead, views[segment].byteSize() - offset);
+        position += chunk;
+        framesRead += chunk / frameSize;
+        return views[segment].asSlice(offset, chunk);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        segments = null; // the mappings are released when collected
+        views = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private double now() {
+        return clock == null ? 0 : clock.elapsed();
+    }
+}
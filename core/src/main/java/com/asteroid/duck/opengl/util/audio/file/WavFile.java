@@ -0,0 +1,154 @@
+package com.asteroid.duck.opengl.util.audio.file;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * The parts of a RIFF/WAVE file the audio pipeline needs: the sample format and where the PCM
+ * data lies in the file.
+ *
+ * <p>Understands {@code WAVE_FORMAT_PCM}, {@code WAVE_FORMAT_IEEE_FLOAT} and
+ * {@code WAVE_FORMAT_EXTENSIBLE} wrapping either. Unknown chunks are skipped. A {@code data}
+ * chunk whose declared size runs past the end of the file — as left by a recorder that never
+ * finalised its header — is truncated to the whole frames actually present.</p>
+ *
+ * @param format     the sample format of the data chunk
+ * @param dataOffset byte offset of the first PCM frame in the file
+ * @param dataLength length of the PCM data in bytes; a whole number of frames
+ */
+public record WavFile(AudioFormat format, long dataOffset, long dataLength) {
+
+    static final int WAVE_FORMAT_PCM = 1;
+    static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+    static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    /** Size of the header written by {@link #header}; the data chunk starts at this offset. */
+    public static final int HEADER_SIZE = 44;
+
+    /** Declared data size for a recording still in progress; readers truncate it to the file. */
+    static final long UNKNOWN_LENGTH = 0xFFFF_FFFFL;
+
+    /**
+     * Parse the header of a WAV file.
+     *
+     * @param channel the open file; its position is not used or changed
+     * @return the format and data location
+     * @throws IOException if the file cannot be read or is not a WAV file this parser understands
+     */
+    public static WavFile read(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != fourCC("RIFF") || header.getInt(8) != fourCC("WAVE")) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+
+        AudioFormat format = null;
+        ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 12;
+        while (position + 8 <= fileSize) {
+            chunk.clear();
+            readFully(channel, chunk, position);
+            int id = chunk.getInt(0);
+            long size = Integer.toUnsignedLong(chunk.getInt(4));
+            long body = position + 8;
+            if (id == fourCC("fmt ")) {
+                ByteBuffer fmt = ByteBuffer.allocate((int) Math.min(size, 40)).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, fmt, body);
+                format = parseFormat(fmt);
+            } else if (id == fourCC("data")) {
+                if (format == null) {
+                    throw new IOException("data chunk before fmt chunk");
+                }
+                long length = Math.min(size, fileSize - body);
+                length -= length % format.getFrameSize();
+                return new WavFile(format, body, length);
+            }
+            position = body + size + (size & 1); // chunks are word aligned
+        }
+        throw new IOException(format == null ? "No fmt chunk" : "No data chunk");
+    }
+
+    /**
+     * A canonical 44-byte header for little-endian PCM or float data: a RIFF chunk containing a
+     * 16-byte {@code fmt } chunk and the {@code data} chunk header.
+     *
+     * @param format     the data format; must be little-endian signed/unsigned PCM or float
+     * @param dataLength bytes of PCM data that follow, or {@link #UNKNOWN_LENGTH}
+     * @return the header, positioned at 0 and ready to write
+     * @throws IllegalArgumentException if the format cannot be described by this header
+     */
+    public static ByteBuffer header(AudioFormat format, long dataLength) {
+        int tag;
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding())) {
+            tag = WAVE_FORMAT_IEEE_FLOAT;
+        } else if (AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+                || AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding())) {
+            tag = WAVE_FORMAT_PCM;
+        } else {
+            throw new IllegalArgumentException("Not PCM: " + format);
+        }
+        if (format.isBigEndian() && format.getSampleSizeInBits() > 8) {
+            throw new IllegalArgumentException("WAV data is little-endian: " + format);
+        }
+        int sampleRate = (int) format.getSampleRate();
+        int blockAlign = format.getFrameSize();
+        long riffLength = Math.min(UNKNOWN_LENGTH, HEADER_SIZE - 8 + dataLength);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(fourCC("RIFF")).putInt((int) riffLength).putInt(fourCC("WAVE"));
+        header.putInt(fourCC("fmt ")).putInt(16)
+                .putShort((short) tag)
+                .putShort((short) format.getChannels())
+                .putInt(sampleRate)
+                .putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign)
+                .putShort((short) format.getSampleSizeInBits());
+        header.putInt(fourCC("data")).putInt((int) Math.min(UNKNOWN_LENGTH, dataLength));
+        return header.flip();
+    }
+
+    private static AudioFormat parseFormat(ByteBuffer fmt) throws IOException {
+        if (fmt.capacity() < 16) {
+            throw new IOException("fmt chunk too short: " + fmt.capacity());
+        }
+        int tag = Short.toUnsignedInt(fmt.getShort(0));
+        int channels = Short.toUnsignedInt(fmt.getShort(2));
+        int sampleRate = fmt.getInt(4);
+        int blockAlign = Short.toUnsignedInt(fmt.getShort(12));
+        int bits = Short.toUnsignedInt(fmt.getShort(14));
+        if (tag == WAVE_FORMAT_EXTENSIBLE) {
+            if (fmt.capacity() < 26) {
+                throw new IOException("WAVE_FORMAT_EXTENSIBLE without a sub-format");
+            }
+            tag = Short.toUnsignedInt(fmt.getShort(24)); // first two bytes of the sub-format GUID
+        }
+        AudioFormat.Encoding encoding = switch (tag) {
+            case WAVE_FORMAT_PCM -> bits == 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+            case WAVE_FORMAT_IEEE_FLOAT -> AudioFormat.Encoding.PCM_FLOAT;
+            default -> throw new IOException("Unsupported WAV format tag 0x" + Integer.toHexString(tag));
+        };
+        if (channels == 0 || blockAlign == 0) {
+            throw new IOException("Invalid fmt chunk: " + channels + " channels, block align " + blockAlign);
+        }
+        return new AudioFormat(encoding, sampleRate, bits, channels, blockAlign, sampleRate, false);
+    }
+
+    /** Read until {@code buffer} is full, starting at the absolute file {@code position}. */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    /** A RIFF chunk id as read by a little-endian {@link ByteBuffer#getInt}. */
+    static int fourCC(String id) {
+        return (id.charAt(0)) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+    }
+}
@@ -0,0 +1,353 @@
+package com.asteroid.duck.opengl.util.audio.file;
+
+import com.asteroid.duck.opengl.util.audio.AudioSink;
+import com.asteroid.duck.opengl.util.audio.SegmentAudioSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link AudioSink} that records the PCM stream it is given to a sequence of WAV files, so a
+ * production session can be replayed later through {@link MappedFileDataSource}.
+ *
+ * <p>The capture thread never waits for the disk. Bytes are copied into one of two preallocated
+ * direct buffers; when a buffer fills it is handed to an {@link AsynchronousFileChannel} and the
+ * capture thread carries on filling the other. If the previous write has not completed by the
+ * time the second buffer is also full, the disk has fallen behind: that block is discarded and
+ * counted in {@link #getDroppedBlocks()} rather than stalling the line. A dropped block leaves a
+ * gap in the recording, never a blocked {@link com.asteroid.duck.opengl.util.audio.AudioReader}.
+ * As a {@link SegmentAudioSink} it copies lent chunks straight into the direct buffers, so a
+ * recording of a mapped file never touches the heap.</p>
+ *
+ * <h2>Segments</h2>
+ * Files are named {@code <prefix>-0000.wav}, {@code <prefix>-0001.wav}, … and a new one is
+ * started once a segment reaches {@code maxSegmentBytes}. Each segment is created with a header
+ * whose sizes are unknown ({@code 0xFFFFFFFF}), so a file left behind by a crash is still
+ * readable by {@link WavFile#read}; the real sizes are written when the segment is finished.
+ * Finishing one segment and opening the next happens on the I/O thread, in the completion of the
+ * last write to the old segment.
+ *
+ * <p>{@link #write} must be called from a single capture thread. {@link #close()} may block
+ * while the last write completes and should be called once capture has stopped.</p>
+ */
+public class WavRecordingSink implements SegmentAudioSink, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(WavRecordingSink.class);
+
+    /** A WAV data chunk cannot describe more than 4 GiB, less the rest of the RIFF chunk. */
+    private static final long MAX_DATA_BYTES = WavFile.UNKNOWN_LENGTH - (WavFile.HEADER_SIZE - 8);
+
+    private final Path directory;
+    private final String prefix;
+    private final AudioFormat format;
+    private final ExecutorService executor;
+    private final long maxSegmentData;
+
+    /** The double buffer; the capture thread fills {@code blocks[active]}. */
+    private final Block[] blocks = new Block[2];
+    private int active;
+
+    /** Set while a block is being written; whoever sets it owns the channel and segment state. */
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private final Object idle = new Object();
+    private final CompletionHandler<Integer, Block> onWritten = new Writer();
+
+    // segment state, handed between the capture and I/O threads by inFlight
+    private AsynchronousFileChannel channel;
+    private Path segment;
+    private long segmentData;
+
+    private final List<Path> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedBlocks = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile boolean failed;
+    private volatile boolean closed;
+
+    /** One half of the double buffer, and where in the segment it is being written. */
+    private static final class Block {
+        final ByteBuffer buffer;
+        /** The same memory as {@code buffer}. */
+        final MemorySegment memory;
+        long position;
+        boolean lastInSegment;
+
+        Block(int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+            this.memory = MemorySegment.ofBuffer(buffer);
+        }
+    }
+
+    /**
+     * Start recording to a new segment in {@code directory}, using the JVM's default I/O threads.
+     *
+     * @param directory       where segments are created; must exist
+     * @param prefix          file name prefix of each segment
+     * @param format          the capture format of the {@link com.asteroid.duck.opengl.util.audio.AudioReader}
+     *                        feeding this sink; must be little-endian PCM or float
+     * @param blockBytes      size of each half of the double buffer; rounded down to whole frames
+     * @param maxSegmentBytes size at which a new segment is started; at most 4 GiB
+     * @throws IOException if the first segment cannot be created
+     * @throws IllegalArgumentException if the format cannot be stored in a WAV file or the sizes
+     *                                  are out of range
+     */
+    public WavRecordingSink(Path directory, String prefix, AudioFormat format, int blockBytes, long maxSegmentBytes) throws IOException {
+        this(directory, prefix, format, blockBytes, maxSegmentBytes, null);
+    }
+
+    /**
+     * As {@link #WavRecordingSink(Path, String, AudioFormat, int, long)}, with completions run on
+     * the given executor.
+     *
+     * @param executor runs the channel's I/O and completion handlers; {@code null} for the
+     *                 default thread pool
+     */
+    WavRecordingSink(Path directory, String prefix, AudioFormat format, int blockBytes, long maxSegmentBytes,
+                     ExecutorService executor) throws IOException {
+        WavFile.header(format, 0); // validates the format
+        int frameSize = format.getFrameSize();
+        int capacity = blockBytes - blockBytes % frameSize;
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Block smaller than one frame: " + blockBytes);
+        }
+        if (maxSegmentBytes < WavFile.HEADER_SIZE + capacity || maxSegmentBytes - WavFile.HEADER_SIZE > MAX_DATA_BYTES) {
+            throw new IllegalArgumentException("Segment size out of range: " + maxSegmentBytes);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.format = format;
+        this.executor = executor;
+        this.maxSegmentData = maxSegmentBytes - WavFile.HEADER_SIZE;
+        this.blocks[0] = new Block(capacity);
+        this.blocks[1] = new Block(capacity);
+        startSegment();
+    }
+
+    /**
+     * Copy PCM bytes into the current block, handing each block to the disk as it fills. Never
+     * blocks; a full block that cannot be written yet is dropped.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        if (closed) {
+            return;
+        }
+        while (length > 0) {
+            ByteBuffer buffer = blocks[active].buffer;
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(data, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+            if (!buffer.hasRemaining()) {
+                submit(blocks[active]);
+            }
+        }
+    }
+
+    /** As {@link #write(byte[], int, int)}, copying from the segment into the current block. */
+    @Override
+    public void write(MemorySegment chunk, long captureNanos) {
+        if (closed) {
+            return;
+        }
+        long offset = 0;
+        long length = chunk.byteSize();
+        while (length > 0) {
+            Block block = blocks[active];
+            ByteBuffer buffer = block.buffer;
+            int count = (int) Math.min(length, buffer.remaining());
+            MemorySegment.copy(chunk, offset, block.memory, buffer.position(), count);
+            buffer.position(buffer.position() + count);
+            offset += count;
+            length -= count;
+            if (!buffer.hasRemaining()) {
+                submit(block);
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length, long captureNanos) {
+        write(data, offset, length);
+    }
+
+    private void submit(Block block) {
+        if (failed || !inFlight.compareAndSet(false, true)) {
+            droppedBlocks.incrementAndGet();
+            block.buffer.clear();
+            return;
+        }
+        block.buffer.flip();
+        block.position = WavFile.HEADER_SIZE + segmentData;
+        segmentData += block.buffer.remaining();
+        block.lastInSegment = segmentData + block.buffer.capacity() > maxSegmentData;
+        channel.write(block.buffer, block.position, block, onWritten);
+        active ^= 1;
+    }
+
+    /** Runs on the I/O thread when a block write finishes. */
+    private final class Writer implements CompletionHandler<Integer, Block> {
+        @Override
+        public void completed(Integer written, Block block) {
+            bytesWritten.addAndGet(written);
+            block.position += written;
+            if (block.buffer.hasRemaining()) {
+                channel.write(block.buffer, block.position, block, this);
+                return;
+            }
+            block.buffer.clear();
+            if (block.lastInSegment) {
+                try {
+                    finishSegment();
+                    startSegment();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            release();
+        }
+
+        @Override
+        public void failed(Throwable exc, Block block) {
+            fail(exc);
+            block.buffer.clear();
+            release();
+        }
+    }
+
+    private void fail(Throwable exc) {
+        if (!failed) {
+            LOG.error("Recording to {} failed; further blocks will be dropped", segment, exc);
+            failed = true;
+        }
+    }
+
+    private void release() {
+        synchronized (idle) {
+            inFlight.set(false);
+            idle.notifyAll();
+        }
+    }
+
+    /** Create the next segment with a provisional header and open it for asynchronous writes. */
+    private void startSegment() throws IOException {
+        Path next = directory.resolve(String.format("%s-%04d.wav", prefix, segments.size()));
+        try (FileChannel file = FileChannel.open(next, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(file, WavFile.header(format, WavFile.UNKNOWN_LENGTH), 0);
+        }
+        channel = AsynchronousFileChannel.open(next, Set.of(StandardOpenOption.WRITE), executor);
+        segment = next;
+        segmentData = 0;
+        segments.add(next);
+        LOG.info("Recording {} to {}", format, next);
+    }
+
+    /** Close the current segment and write its real sizes into the header. */
+    private void finishSegment() throws IOException {
+        channel.close();
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            writeFully(file, WavFile.header(format, segmentData), 0);
+        }
+    }
+
+    private static void writeFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += file.write(buffer, position);
+        }
+    }
+
+    /**
+     * Whether a block is currently being written. A block that fills while this is {@code true}
+     * will be dropped.
+     *
+     * @return {@code true} while the disk is busy with the previous block
+     */
+    public boolean isWriting() {
+        return inFlight.get();
+    }
+
+    /**
+     * Blocks discarded because the previous write had not completed, or because an earlier
+     * write failed.
+     *
+     * @return number of dropped blocks
+     */
+    public long getDroppedBlocks() {
+        return droppedBlocks.get();
+    }
+
+    /**
+     * PCM bytes written to disk so far, excluding headers.
+     *
+     * @return bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * The segment files created so far, oldest first; the last is the one being written.
+     *
+     * @return the segment paths
+     */
+    public List<Path> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Wait for the block in flight, write any partly filled block, finalise the current
+     * segment's header and close it. Later writes are ignored.
+     *
+     * @throws IOException if the final writes fail, or the thread is interrupted while waiting
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (idle) {
+            while (!inFlight.compareAndSet(false, true)) {
+                try {
+                    idle.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the last block");
+                }
+            }
+        }
+        ByteBuffer tail = blocks[active].buffer.flip();
+        try {
+            long position = WavFile.HEADER_SIZE + segmentData;
+            while (!failed && tail.hasRemaining()) {
+                int written = channel.write(tail, position).get();
+                position += written;
+                segmentData += written;
+                bytesWritten.addAndGet(written);
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot write " + segment, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted writing the last block");
+        } finally {
+            finishSegment();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.asteroid.duck.opengl.util.audio.simulated;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A {@link StereoDataSource} that mixes an arbitrary number of stereo sources by summing their
@@ -10,9 +11,16 @@ import java.util.ArrayList;
  * collection semantics. The mix is a simple additive blend — no normalisation is applied, so the
  * caller should ensure individual source amplitudes are scaled so the combined signal stays within
  * the expected [-1, 1] range.</p>
+ *
+ * <p>{@link #renderBlock} mixes through scratch buffers owned by the composite, which grow to the
+ * largest block requested and are then reused, so rendering must not be called concurrently from
+ * more than one thread.</p>
  */
 public class CompositeWaveform extends ArrayList<StereoDataSource> implements StereoDataSource {
 
+    private float[] scratchLeft = new float[0];
+    private float[] scratchRight = new float[0];
+
     /**
      * Create an empty composite with the given initial capacity.
      *
@@ -35,14 +43,27 @@ public class CompositeWaveform extends ArrayList<StereoDataSource> implements St
     }
 
     @Override
-    public double[] sample(double time) {
-        double[] sample = new double[2];
-        // combine all the waveforms for this sample
-        for(StereoDataSource w : this) {
-            double[] s = w.sample(time);
-            sample[0] += s[0];
-            sample[1] += s[1];
+    public void renderBlock(double t0, double dt, float[] left, float[] right, int frames) {
+        if (isEmpty()) {
+            Arrays.fill(left, 0, frames, 0f);
+            Arrays.fill(right, 0, frames, 0f);
+            return;
+        }
+        // the first source renders straight into the output, the rest are summed onto it
+        get(0).renderBlock(t0, dt, left, right, frames);
+        if (size() == 1) {
+            return;
+        }
+        if (scratchLeft.length < frames) {
+            scratchLeft = new float[frames];
+            scratchRight = new float[frames];
+        }
+        for (int w = 1; w < size(); w++) {
+            get(w).renderBlock(t0, dt, scratchLeft, scratchRight, frames);
+            for (int i = 0; i < frames; i++) {
+                left[i] += scratchLeft[i];
+                right[i] += scratchRight[i];
+            }
         }
-        return sample;
     }
 }
@@ -11,4 +11,20 @@ public interface MonoDataSource {
      * @return the sample value at the given time
      */
     double sample(double time);
+
+    /**
+     * Render a block of evenly spaced samples, {@code dest[i] = sample(t0 + i * dt)}.
+     * The default calls {@link #sample(double)} per frame; implementations override it when a
+     * whole block can be produced more cheaply. Must not allocate.
+     *
+     * @param t0     time of the first sample in seconds
+     * @param dt     time between samples in seconds (the sample period)
+     * @param dest   destination for the samples
+     * @param frames number of samples to render into {@code dest[0..frames-1]}
+     */
+    default void renderBlock(double t0, double dt, float[] dest, int frames) {
+        for (int i = 0; i < frames; i++) {
+            dest[i] = (float) sample(t0 + i * dt);
+        }
+    }
 }
@@ -75,16 +75,26 @@ public record Note(MonoDataSource source, StereoPositioner positioner, List<Bool
 		return Arrays.asList(barPattern);
 	}
 
+	/**
+	 * Renders the whole block through the positioner, then silences the frames that fall in an
+	 * "off" slot of the bar. The position in the bar is found once per block and then advanced
+	 * per frame, avoiding a floating-point remainder per sample.
+	 */
 	@Override
-	public double[] sample(double time) {
-		double timeInBar = time % barLength;
-		int index = (int)(timeInBar / barLength * barPattern.size());
-		if (barPattern.get(index)) {
-			var channelSample = source.sample(time);
-			return positioner.sample(channelSample, time);
-		}
-		else {
-			return NO_SOUND;
+	public void renderBlock(double t0, double dt, float[] left, float[] right, int frames) {
+		positioner.renderBlock(source, t0, dt, left, right, frames);
+		int slots = barPattern.size();
+		double slot = (t0 % barLength) / barLength * slots;
+		double slotStep = dt / barLength * slots;
+		for (int i = 0; i < frames; i++) {
+			if (!barPattern.get((int) slot)) {
+				left[i] = 0;
+				right[i] = 0;
+			}
+			slot += slotStep;
+			while (slot >= slots) {
+				slot -= slots;
+			}
 		}
 	}
 }
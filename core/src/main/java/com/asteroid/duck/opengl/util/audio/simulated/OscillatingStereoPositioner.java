@@ -50,15 +50,26 @@ public class OscillatingStereoPositioner implements StereoPositioner {
         return stereoPositionA * (1 - oscillation) + stereoPositionB * oscillation;
     }
 
+    /**
+     * Pans each frame by {@link #stereoPosition(double)} at that frame's time. The sweep sine is
+     * advanced by a rotation recurrence rather than calling {@link Math#sin} per frame.
+     */
     @Override
-    public double[] sample(double channelSample, double time) {
-        var stereoPosition = stereoPosition(time);
-        var amplitudes = StereoPositioner.amplitudes(stereoPosition);
-        return new double[]{
-                channelSample * amplitudes[0],
-                channelSample * amplitudes[1]
-        };
+    public void pan(float[] left, float[] right, double t0, double dt, int frames) {
+        double omega = 2 * Math.PI * frequency;
+        double sin = Math.sin(omega * t0);
+        double cos = Math.cos(omega * t0);
+        double stepSin = Math.sin(omega * dt);
+        double stepCos = Math.cos(omega * dt);
+        for (int i = 0; i < frames; i++) {
+            double oscillation = (sin + 1.0) / 2.0;
+            double stereoPosition = stereoPositionA * (1 - oscillation) + stereoPositionB * oscillation;
+            float mono = left[i];
+            left[i] = (float) (mono * (1.0 - stereoPosition) / 2.0);
+            right[i] = (float) (mono * (1.0 + stereoPosition) / 2.0);
+            double nextSin = sin * stepCos + cos * stepSin;
+            cos = cos * stepCos - sin * stepSin;
+            sin = nextSin;
+        }
     }
-
-
 }
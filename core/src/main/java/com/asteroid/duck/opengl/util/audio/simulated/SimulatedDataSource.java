@@ -4,6 +4,7 @@ import com.asteroid.duck.opengl.util.stats.Stats;
 import com.asteroid.duck.opengl.util.stats.StatsFactory;
 import com.asteroid.duck.opengl.util.audio.AudioDataSource;
 import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.PcmEncoding;
 import com.asteroid.duck.opengl.util.timer.TimeSource;
 import com.asteroid.duck.opengl.util.timer.Clock;
 import com.asteroid.duck.opengl.util.timer.ClockImpl;
@@ -12,28 +13,117 @@ import org.slf4j.LoggerFactory;
 
 import javax.sound.sampled.*;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.ShortBuffer;
+import java.util.Objects;
 
 import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
 
+/**
+ * An {@link AudioDataSource} that synthesises a {@link StereoDataSource} on a sample clock.
+ *
+ * <p>Frame {@code n} after the line is opened is always the source sampled at
+ * {@code openedAt + n / sampleRate}, so the audio is continuous however the reads fall. What
+ * varies is how many frames are available:</p>
+ * <ul>
+ *   <li><b>Real time</b> ({@link #SimulatedDataSource(Clock, StereoDataSource)}) — frames become
+ *       available as the {@link Clock} passes their sample time, like a capture line.</li>
+ *   <li><b>Deterministic</b> ({@link #deterministic(StereoDataSource)}) — a full buffer is always
+ *       available and time advances only as frames are read. Audio is produced as fast as it is
+ *       consumed, and the bytes are identical from run to run, so an analysis chain can be soak
+ *       tested or benchmarked over hours of audio in seconds. {@link #sampleClock()} exposes the
+ *       resulting audio time to anything that would otherwise read the wall clock.</li>
+ * </ul>
+ *
+ * <p>The line can be opened in any format {@link PcmEncoding} supports. The stereo source is
+ * produced in 16-bit sample units (as {@link LineAcquirer#getSampledWaveformData()} does) and
+ * scaled to the requested depth, so the same waveform has the same loudness in every encoding.
+ * A mono line carries the mean of left and right; with more than two channels the even channels
+ * carry left and the odd channels right.</p>
+ */
 public class SimulatedDataSource implements AudioDataSource {
 
 	private static final Logger LOG = LoggerFactory.getLogger(SimulatedDataSource.class);
 
+	/** Converts the source's 16-bit sample units to normalised floats. */
+	private static final float SAMPLE_SCALE = 1.0f / (1 << 15);
+
+	/**
+	 * Fraction of a frame by which a frame may be released early, so clock times accumulated in
+	 * float or double arithmetic never hold back a frame that is due.
+	 */
+	private static final double FRAME_EPSILON = 1e-3;
+
+	/** Wall clock in real-time mode; {@code null} in deterministic mode. */
 	private final Clock timer;
 	private final StereoDataSource source;
 	private AudioFormat format = null;
+	private PcmEncoding encoding;
+	/** One read's worth of each channel, rendered as a block. */
+	private float[] left;
+	private float[] right;
+	/** Interleaved normalised samples for one read, encoded in one pass. */
+	private float[] frames;
 	private int limit;
 	private boolean running;
-	private double lastRead;
+	/** Clock time of frame 0. */
+	private double openedAt;
+	/** Frames produced since the line was opened. */
+	private long framesRead;
 
+	/**
+	 * A real-time source: frames become available as {@code timer} passes their sample time.
+	 *
+	 * @param timer  the clock that paces the source
+	 * @param source the audio to synthesise
+	 */
 	public SimulatedDataSource(Clock timer, StereoDataSource source) {
-		this.timer = timer;
+		this.timer = Objects.requireNonNull(timer, "timer");
+		this.source = source;
+	}
+
+	private SimulatedDataSource(StereoDataSource source) {
+		this.timer = null;
 		this.source = source;
 	}
 
+	/**
+	 * A deterministic source that runs on its own sample counter: every read can fill the line
+	 * buffer, and the same source always yields the same bytes.
+	 *
+	 * @param source the audio to synthesise
+	 * @return a source that runs as fast as it is read
+	 */
+	public static SimulatedDataSource deterministic(StereoDataSource source) {
+		return new SimulatedDataSource(source);
+	}
+
+	/**
+	 * Whether this source runs on its sample counter rather than a wall clock.
+	 *
+	 * @return {@code true} if created by {@link #deterministic(StereoDataSource)}
+	 */
+	public boolean isDeterministic() {
+		return timer == null;
+	}
+
+	/**
+	 * Frames produced since the line was last opened.
+	 *
+	 * @return the sample counter
+	 */
+	public long getFramesRead() {
+		return framesRead;
+	}
+
+	/**
+	 * A clock reading the audio time of the next frame to be read, in seconds since the line
+	 * was opened. In deterministic mode this is the only notion of time the source has.
+	 *
+	 * @return a clock backed by the sample counter
+	 */
+	public Clock sampleClock() {
+		return () -> format == null ? 0 : framesRead / (double) format.getSampleRate();
+	}
+
 	@Override
 	public String getName() {
 		return "SimulatedDataSource: "+source.toString();
@@ -41,7 +131,8 @@ public class SimulatedDataSource implements AudioDataSource {
 
 	@Override
 	public int available() {
-		return samples(timer.elapsed()) * (bytesPerSample());
+		if (format == null) return 0;
+		return samples(now()) * (bytesPerSample());
 	}
 
 	int bytesPerSample() {
@@ -51,54 +142,67 @@ public class SimulatedDataSource implements AudioDataSource {
 	int samples(double now) {
 		if (!running) return 0;
 		int max = limit / bytesPerSample();
-		double elapsed = now - lastRead;
-		return Math.min((int) (elapsed * format.getSampleRate()), max);
+		if (isDeterministic()) return max;
+		long due = (long) Math.floor((now - openedAt) * format.getSampleRate() + FRAME_EPSILON) - framesRead;
+		return (int) Math.max(0, Math.min(due, max));
+	}
+
+	private double now() {
+		return isDeterministic() ? 0 : timer.elapsed();
 	}
 
 	@Override
 	public void open(AudioFormat format, int limit) throws LineUnavailableException {
-		if (!IDEAL.equals(format)) {
-			throw new LineUnavailableException("Not recognised format");
+		PcmEncoding encoding;
+		try {
+			encoding = PcmEncoding.of(format);
+		} catch (IllegalArgumentException e) {
+			throw new LineUnavailableException("Not recognised format: " + format);
+		}
+		if (format.getFrameSize() != encoding.bytesPerSample() * format.getChannels()) {
+			throw new LineUnavailableException("Not recognised format: " + format);
 		}
-		this.format = IDEAL;
+		this.format = format;
+		this.encoding = encoding;
 		this.limit = limit;
-		this.lastRead = timer.elapsed();
+		this.left = new float[limit / format.getFrameSize()];
+		this.right = new float[left.length];
+		this.frames = new float[left.length * format.getChannels()];
+		this.openedAt = now();
+		this.framesRead = 0;
 	}
 
 	@Override
 	public int read(byte[] array, int start, int length) {
-		double now = timer.elapsed();
+		if (format == null) return 0;
+		double now = now();
 		double samplePeriod = 1.0 / format.getSampleRate();
 		// this is the maximum number of samples we can read (respecting our buffer limit)
 		int samples = samples(now);
 		if (samples <= 0)
 			return 0;
 
-		// this buffer is a short view onto the array calibrated to the start and length given
-		ShortBuffer buffer = ByteBuffer.wrap(array, start, length).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
-
-		// Can the buffer take more than we can theoretically read
-		if (buffer.remaining() > samples) {
-			// limit it to what we can theoretically read
-			buffer.limit(samples * floatsPerSample());
-		}
-		// read the samples into the buffer
-		int samplesRead = 0;
-		while (buffer.remaining() >= 2) {
-			double time = now + (samplesRead * samplePeriod);
-			double[] sample = source.sample(time);
-			buffer.put((short)Math.round(sample[0]));
-			buffer.put((short)Math.round(sample[1]));
-			samplesRead++;
+		// limit it to what the caller's array can take
+		int samplesRead = Math.min(samples, length / bytesPerSample());
+		int channels = format.getChannels();
+		source.renderBlock(openedAt + framesRead * samplePeriod, samplePeriod, left, right, samplesRead);
+		for (int i = 0; i < samplesRead; i++) {
+			float l = left[i] * SAMPLE_SCALE;
+			float r = right[i] * SAMPLE_SCALE;
+			int base = i * channels;
+			if (channels == 1) {
+				frames[base] = (l + r) * 0.5f;
+			} else {
+				for (int c = 0; c < channels; c++) {
+					frames[base + c] = (c & 1) == 0 ? l : r;
+				}
+			}
 		}
-		lastRead = now + (samplesRead * samplePeriod);
+		encoding.encode(frames, 0, samplesRead * channels, array, start, encoding.bytesPerSample());
+		framesRead += samplesRead;
 		return samplesRead * bytesPerSample();
 	}
 
-	private int floatsPerSample() {
-		return format.getChannels();
-	}
-
 	@Override
 	public void start() {
 		this.running = true;
@@ -122,6 +226,10 @@ public class SimulatedDataSource implements AudioDataSource {
 	@Override
 	public void close() {
 		this.format = null;
+		this.encoding = null;
+		this.left = null;
+		this.right = null;
+		this.frames = null;
 	}
 
 	public static void main(String[] args) throws LineUnavailableException {
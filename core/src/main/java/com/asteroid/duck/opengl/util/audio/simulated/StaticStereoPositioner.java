@@ -24,18 +24,20 @@ public class StaticStereoPositioner implements StereoPositioner {
         this.rightChannelAmplitude = amplitudes[1];
     }
 
-    public double[] sample(double channelSample, double time) {
-        // Apply amplitudes to your signal sample
-        double leftSample = channelSample * leftChannelAmplitude;
-        double rightSample = channelSample * rightChannelAmplitude;
-
-        return new double[]{
-                leftSample, rightSample
-        };
+    @Override
+    public void pan(float[] left, float[] right, double t0, double dt, int frames) {
+        float leftGain = (float) leftChannelAmplitude;
+        float rightGain = (float) rightChannelAmplitude;
+        for (int i = 0; i < frames; i++) {
+            float mono = left[i];
+            left[i] = mono * leftGain;
+            right[i] = mono * rightGain;
+        }
     }
 
+    @Override
     public StereoDataSource wrap(MonoDataSource source) {
         Objects.requireNonNull(source, "Source must not be null");
-        return (time) -> sample(source.sample(time), time);
+        return StereoPositioner.super.wrap(source);
     }
 }
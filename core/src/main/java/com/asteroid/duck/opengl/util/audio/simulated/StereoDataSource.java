@@ -4,11 +4,29 @@ package com.asteroid.duck.opengl.util.audio.simulated;
  * A supplier of stereo sampled data
  */
 public interface StereoDataSource {
+	/**
+	 * Render a block of evenly spaced stereo samples: frame {@code i} is the sample at
+	 * {@code t0 + i * dt}. Implementations must not allocate per call, so a whole capture buffer
+	 * can be synthesised without producing garbage.
+	 * @param t0 time of the first frame in seconds
+	 * @param dt time between frames in seconds (the sample period)
+	 * @param left destination for the left channel
+	 * @param right destination for the right channel
+	 * @param frames number of frames to render into {@code left[0..frames-1]} and {@code right[0..frames-1]}
+	 */
+	void renderBlock(double t0, double dt, float[] left, float[] right, int frames);
+
 	/**
 	 * Get the sample of the waveform at the given time.
-	 * The returned array should have two elements, representing the left and right channels respectively.
+	 * The returned array has two elements, representing the left and right channels respectively.
+	 * This is a single frame {@link #renderBlock}; prefer that when sampling many frames.
 	 * @param time the global time the sample is for
 	 * @return the sample values (L/R) at the given time
 	 */
-	double[] sample(double time);
+	default double[] sample(double time) {
+		float[] left = new float[1];
+		float[] right = new float[1];
+		renderBlock(time, 0, left, right, 1);
+		return new double[] {left[0], right[0]};
+	}
 }
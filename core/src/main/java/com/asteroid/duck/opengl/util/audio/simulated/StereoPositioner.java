@@ -3,9 +3,10 @@ package com.asteroid.duck.opengl.util.audio.simulated;
 /**
  * Strategy for distributing a mono audio signal across the stereo image.
  *
- * <p>Implementations convert a single mono sample into a two-element {@code [left, right]}
- * pair by computing per-channel amplitudes from a stereo position value in [−1, +1]:
- * {@code −1} is hard-left, {@code 0} is centre, {@code +1} is hard-right.</p>
+ * <p>Implementations split a block of mono samples into left and right channels by computing
+ * per-channel amplitudes from a stereo position value in [−1, +1]: {@code −1} is hard-left,
+ * {@code 0} is centre, {@code +1} is hard-right. The per-sample methods are adapters over
+ * {@link #pan}.</p>
  */
 public interface StereoPositioner {
     /** Hard-left stereo position; all energy in the left channel. */
@@ -35,7 +36,40 @@ public interface StereoPositioner {
      * @param time       elapsed time in seconds, used by time-varying implementations
      * @return a two-element {@code [left, right]} sample array
      */
-    double[] sample(double monoSample, double time);
+    default double[] sample(double monoSample, double time) {
+        float[] left = {(float) monoSample};
+        float[] right = new float[1];
+        pan(left, right, time, 0, 1);
+        return new double[]{left[0], right[0]};
+    }
+
+    /**
+     * Place a block of mono samples into the stereo field, in place. On entry {@code left} holds
+     * the mono samples; on return {@code left} and {@code right} hold the two channels. Must not
+     * allocate.
+     *
+     * @param left   mono samples in, left channel out
+     * @param right  right channel out
+     * @param t0     time of the first frame in seconds, used by time-varying implementations
+     * @param dt     time between frames in seconds
+     * @param frames number of frames to pan
+     */
+    void pan(float[] left, float[] right, double t0, double dt, int frames);
+
+    /**
+     * Render a block of the given mono source and place it in the stereo field.
+     *
+     * @param source the mono audio source to read from
+     * @param t0     time of the first frame in seconds
+     * @param dt     time between frames in seconds
+     * @param left   destination for the left channel
+     * @param right  destination for the right channel
+     * @param frames number of frames to render
+     */
+    default void renderBlock(MonoDataSource source, double t0, double dt, float[] left, float[] right, int frames) {
+        source.renderBlock(t0, dt, left, frames);
+        pan(left, right, t0, dt, frames);
+    }
 
     /**
      * Compute per-channel amplitude coefficients from a stereo position.
@@ -58,15 +92,9 @@ public interface StereoPositioner {
      * Wrap a {@link MonoDataSource} with this positioner as a {@link StereoDataSource}.
      *
      * @param source the mono source to wrap
-     * @return a stereo source that delegates to {@link #sample(MonoDataSource, double)}
+     * @return a stereo source that delegates to {@link #renderBlock(MonoDataSource, double, double, float[], float[], int)}
      */
     default StereoDataSource wrap(MonoDataSource source) {
-        return new StereoDataSource() {
-            @Override
-            public double[] sample(double time) {
-                double channelSample = source.sample(time);
-                return StereoPositioner.this.sample(channelSample, time);
-            }
-        };
+        return (t0, dt, left, right, frames) -> renderBlock(source, t0, dt, left, right, frames);
     }
 }
@@ -0,0 +1,80 @@
+package com.asteroid.duck.opengl.util.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link Statistics} that also counts values into power-of-two buckets, so percentiles can be
+ * reported without keeping every sample.
+ *
+ * <p>Bucket {@code 0} holds values {@code <= 0}; bucket {@code b > 0} holds values in
+ * {@code [2^(b-1), 2^b)}. Percentiles are therefore accurate to within a factor of two, which
+ * is plenty for spotting latency tails.</p>
+ */
+public class Histogram extends Statistics {
+  private static final int BUCKETS = 64;
+
+  private final long[] buckets = new long[BUCKETS];
+  private long total;
+
+  @Override
+  public void add(long value) {
+    super.add(value);
+    buckets[bucket(value)]++;
+    total++;
+  }
+
+  static int bucket(long value) {
+    return value <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * An upper bound on the given percentile of the values added since the last {@link #reset()}.
+   *
+   * @param percentile in [0, 100]
+   * @return the exclusive upper edge of the bucket containing the percentile, or 0 if empty
+   */
+  public long percentile(double percentile) {
+    if (total == 0) return 0;
+    long rank = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += buckets[b];
+      if (seen >= rank && buckets[b] > 0) {
+        return b == 0 ? 0 : (b >= 63 ? Long.MAX_VALUE : 1L << b);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Number of values counted in a bucket; see the class description for bucket ranges.
+   *
+   * @param bucket bucket index in [0, 64)
+   * @return the count for that bucket
+   */
+  public long count(int bucket) {
+    return buckets[bucket];
+  }
+
+  @Override
+  public List<String> renderElements() {
+    List<String> superElements = super.renderElements();
+    List<String> renderElements = new ArrayList<>(superElements.size() + 3);
+    renderElements.addAll(superElements);
+    renderElements.add("p50<" + percentile(50));
+    renderElements.add("p90<" + percentile(90));
+    renderElements.add("p99<" + percentile(99));
+    return renderElements;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    if (buckets != null) {
+      Arrays.fill(buckets, 0);
+    }
+    total = 0;
+  }
+}
@@ -21,6 +21,18 @@ public class StatsFactory {
     return statistics.get(name);
   }
 
+  /**
+   * A named {@link Histogram}, for values whose distribution (not just average) matters.
+   */
+  public static Stats histogram(String name) {
+    if (!enabled) return new Stats() {};
+
+    if (!statistics.containsKey(name)) {
+      statistics.put(name, new Histogram());
+    }
+    return statistics.get(name);
+  }
+
   public static Stats deltaStats(String name) {
     return deltaStats(name, nanos);
   }
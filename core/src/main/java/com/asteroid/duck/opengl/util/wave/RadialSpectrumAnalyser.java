@@ -246,7 +246,23 @@ public class RadialSpectrumAnalyser extends FrequencyRenderer {
      */
     public RadialSpectrumAnalyser(FrequencyProcessor processor, int numRingVerts,
                                    float baseRadius, float outerHeight, float innerDepth) {
-        super(processor.getNumBins());
+        this(processor.getNumBins(), numRingVerts, baseRadius, outerHeight, innerDepth);
+    }
+
+    /**
+     * Constructs a radial spectrum renderer for spectra of a given length, for a source other
+     * than a {@link FrequencyProcessor} such as an
+     * {@link com.asteroid.duck.opengl.util.audio.analysis.AnalysisReplay}.
+     *
+     * @param numBins      length of the spectra that will be pushed to this renderer
+     * @param numRingVerts number of vertices tessellating the circle; higher = smoother curve
+     * @param baseRadius   base circle radius in NDC units
+     * @param outerHeight  maximum outward extension in NDC units at full magnitude
+     * @param innerDepth   maximum inward contraction in NDC units at full magnitude
+     */
+    public RadialSpectrumAnalyser(int numBins, int numRingVerts,
+                                   float baseRadius, float outerHeight, float innerDepth) {
+        super(numBins);
         this.numRingVerts = numRingVerts;
         this.baseRadius   = baseRadius;
         this.outerHeight  = outerHeight;
@@ -266,6 +282,16 @@ public class RadialSpectrumAnalyser extends FrequencyRenderer {
              DEFAULT_BASE_RADIUS, DEFAULT_OUTER_HEIGHT, DEFAULT_INNER_DEPTH);
     }
 
+    /**
+     * Constructs a radial spectrum renderer for spectra of a given length with default geometry.
+     *
+     * @param numBins length of the spectra that will be pushed to this renderer
+     */
+    public RadialSpectrumAnalyser(int numBins) {
+        this(numBins, DEFAULT_RING_VERTS,
+             DEFAULT_BASE_RADIUS, DEFAULT_OUTER_HEIGHT, DEFAULT_INNER_DEPTH);
+    }
+
     // ── Configuration ────────────────────────────────────────────────────────────
 
     /**
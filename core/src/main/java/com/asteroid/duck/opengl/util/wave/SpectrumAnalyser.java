@@ -373,7 +373,19 @@ public class SpectrumAnalyser extends FrequencyRenderer {
      *                    (only relevant in {@link RenderMode#BARS} mode)
      */
     public SpectrumAnalyser(FrequencyProcessor processor, float gapFraction) {
-        super(processor.getNumBins());
+        this(processor.getNumBins(), gapFraction);
+    }
+
+    /**
+     * Constructs a renderer for spectra of a given length, for a source other than a
+     * {@link FrequencyProcessor} such as an
+     * {@link com.asteroid.duck.opengl.util.audio.analysis.AnalysisReplay}.
+     *
+     * @param numBins     length of the spectra that will be pushed to this analyser
+     * @param gapFraction fraction [0, 1) of each bar slot used as a gap between bars
+     */
+    public SpectrumAnalyser(int numBins, float gapFraction) {
+        super(numBins);
         this.gapFraction = gapFraction;
         this.peakLineWidth = DEFAULT_PEAK_LINE_WIDTH;
     }
@@ -387,6 +399,15 @@ public class SpectrumAnalyser extends FrequencyRenderer {
         this(processor, DEFAULT_GAP);
     }
 
+    /**
+     * Constructs a renderer for spectra of a given length with {@link #DEFAULT_GAP} gap between bars.
+     *
+     * @param numBins length of the spectra that will be pushed to this analyser
+     */
+    public SpectrumAnalyser(int numBins) {
+        this(numBins, DEFAULT_GAP);
+    }
+
     // ── Configuration ────────────────────────────────────────────────────────────
 
     /**
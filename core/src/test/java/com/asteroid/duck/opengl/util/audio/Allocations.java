@@ -0,0 +1,42 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation checks for the audio path's steady state, which should allocate nothing per chunk.
+ */
+public final class Allocations {
+    /** Bytes a measured run may allocate: room for the odd JIT or profiler artefact, not a buffer. */
+    private static final long SLACK_BYTES = 1024;
+
+    private Allocations() {
+    }
+
+    /**
+     * Run {@code body} {@code warmup} times, so buffers are sized and the JIT has settled, then
+     * assert that {@code runs} more calls allocate almost nothing on this thread. Skipped on JVMs
+     * that cannot count a thread's allocations.
+     *
+     * @param body   one iteration of the code under test
+     * @param warmup iterations before measuring
+     * @param runs   iterations measured
+     */
+    public static void assertAllocationFree(Runnable body, int warmup, int runs) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < warmup; i++) {
+            body.run();
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            body.run();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < SLACK_BYTES, "allocated " + allocated + " bytes in " + runs + " runs");
+    }
+}
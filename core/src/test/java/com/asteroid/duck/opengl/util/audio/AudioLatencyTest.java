@@ -0,0 +1,82 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.stats.Histogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioLatencyTest {
+    private static final long MS = 1_000_000L;
+
+    /** A source whose stamps the test sets directly. */
+    static class FakeSource implements CaptureTimestamped {
+        long captureNanos = NONE;
+        long processedNanos = NONE;
+
+        @Override
+        public long getCaptureNanos() {
+            return captureNanos;
+        }
+
+        @Override
+        public long getProcessedNanos() {
+            return processedNanos;
+        }
+    }
+
+    private final FakeSource source = new FakeSource();
+    private final Histogram captureToAnalysis = new Histogram();
+    private final Histogram analysisToRender = new Histogram();
+    private final Histogram renderToSwap = new Histogram();
+    private final Histogram captureToSwap = new Histogram();
+    private final AudioLatency subject = new AudioLatency(source,
+            captureToAnalysis, analysisToRender, renderToSwap, captureToSwap, 1000 * MS);
+
+    @Test
+    void framesBeforeAnyAudioAreIgnored() {
+        subject.frame(10 * MS, 12 * MS);
+        assertEquals(0, captureToSwap.percentile(100));
+        assertEquals(0, renderToSwap.percentile(100));
+    }
+
+    @Test
+    void eachStageIsRecordedInMicroseconds() {
+        long base = 5_000 * MS; // any nanoTime origin
+        for (int frame = 0; frame < 100; frame++) {
+            long start = base + frame * 16 * MS;
+            source.captureNanos = start;
+            source.processedNanos = start + 3 * MS;
+            subject.frame(start + 5 * MS, start + 13 * MS);
+        }
+        assertEquals(3_000, captureToAnalysis.avg(), 1e-9);
+        assertEquals(2_000, analysisToRender.avg(), 1e-9);
+        assertEquals(8_000, renderToSwap.avg(), 1e-9);
+        assertEquals(13_000, captureToSwap.avg(), 1e-9);
+        // percentiles are bucket upper bounds: 13 ms lies in [8192, 16384) us
+        assertEquals(16_384, captureToSwap.percentile(50));
+        assertEquals(16_384, captureToSwap.percentile(99));
+    }
+
+    @Test
+    void sourceWithoutProcessingSkipsAnalysisStages() {
+        source.captureNanos = 100 * MS;
+        subject.frame(104 * MS, 110 * MS);
+        assertEquals(0, captureToAnalysis.percentile(100));
+        assertEquals(0, analysisToRender.percentile(100));
+        assertEquals(6_000, renderToSwap.avg(), 1e-9);
+        assertEquals(10_000, captureToSwap.avg(), 1e-9);
+    }
+
+    @Test
+    void staleAudioShowsAsGrowingLatency() {
+        source.captureNanos = 0;
+        source.processedNanos = 1 * MS;
+        // the line stalls: the same audio is drawn for three frames
+        for (int frame = 1; frame <= 3; frame++) {
+            subject.frame(frame * 16 * MS, frame * 16 * MS + MS);
+        }
+        assertEquals((17_000 + 33_000 + 49_000) / 3.0, captureToSwap.avg(), 1e-9);
+        assertEquals(65_536, captureToSwap.percentile(100));
+        assertEquals(1_024, renderToSwap.percentile(100)); // 1 ms lies in [512, 1024) us
+    }
+}
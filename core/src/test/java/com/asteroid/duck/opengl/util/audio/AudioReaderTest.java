@@ -0,0 +1,337 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.audio.file.MappedFileDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.StaticStereoPositioner;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import com.asteroid.duck.opengl.util.timer.Clock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioReaderTest {
+
+    private static final long RUN_MILLIS = 300;
+
+    @TempDir
+    Path tempDir;
+
+    /** Wall-clock time since construction, so the simulated source runs in real time. */
+    private final long startNanos = System.nanoTime();
+    private final Clock wallClock = () -> (System.nanoTime() - startNanos) / 1e9;
+
+    /** Counts every byte the reader pulls from the simulated line. */
+    static class CountingSource implements AudioDataSource {
+        final AudioDataSource delegate;
+        final AtomicLong bytesRead = new AtomicLong();
+
+        CountingSource(AudioDataSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override public String getName() { return delegate.getName(); }
+        @Override public void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
+            delegate.open(format, bufferSize);
+        }
+        @Override public boolean isOpen() { return delegate.isOpen(); }
+        @Override public void start() { delegate.start(); }
+        @Override public int available() { return delegate.available(); }
+        @Override public int read(byte[] array, int start, int length) {
+            int read = delegate.read(array, start, length);
+            bytesRead.addAndGet(read);
+            return read;
+        }
+        @Override public void stop() { delegate.stop(); }
+        @Override public void close() { delegate.close(); }
+        @Override public boolean isRunning() { return delegate.isRunning(); }
+    }
+
+    static class CountingSink implements AudioSink {
+        final AtomicLong bytesWritten = new AtomicLong();
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            bytesWritten.addAndGet(length);
+        }
+    }
+
+    /** A segment sink that keeps everything it is given and notes whether it was native memory. */
+    static class CollectingSegmentSink implements SegmentAudioSink {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int nativeChunks;
+        int heapChunks;
+
+        @Override
+        public void write(MemorySegment chunk, long captureNanos) {
+            bytes.writeBytes(chunk.toArray(ValueLayout.JAVA_BYTE));
+            if (chunk.isNative()) nativeChunks++; else heapChunks++;
+        }
+    }
+
+    /** Passes every idle call on to a real strategy, recording how the reader waited. */
+    static class RecordingStrategy implements WaitStrategy {
+        final WaitStrategy delegate;
+        final AtomicLong idles = new AtomicLong();
+        /** Idle calls with a count of 0: the reader had read something since its last wait. */
+        final AtomicLong waits = new AtomicLong();
+        volatile int longestWait;
+
+        RecordingStrategy(WaitStrategy delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void idle(int idleCount) throws InterruptedException {
+            idles.incrementAndGet();
+            if (idleCount == 0) {
+                waits.incrementAndGet();
+            }
+            longestWait = Math.max(longestWait, idleCount + 1);
+            delegate.idle(idleCount);
+        }
+
+        @Override
+        public void signalAll() {
+            delegate.signalAll();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /** Run a reader for {@link #RUN_MILLIS}, check it delivered everything and return how it waited. */
+    private RecordingStrategy runAndCheckDelivery(WaitStrategy waitStrategy) throws InterruptedException {
+        RecordingStrategy strategy = new RecordingStrategy(waitStrategy);
+        CountingSource source = new CountingSource(
+                new SimulatedDataSource(wallClock, StaticStereoPositioner.CENTER.wrap(Waveform.MIDDLE_C.amplify(1000))));
+        CountingSink sink = new CountingSink();
+        AudioReader reader = new AudioReader(List.of(sink), strategy);
+        Thread thread = new Thread(reader, "test-audio-reader-" + strategy);
+        thread.start();
+        reader.setLine(source);
+
+        Thread.sleep(RUN_MILLIS);
+        long cpuNanos = reader.getCpuTime();
+        reader.setRunning(false);
+        thread.join(1_000);
+
+        assertFalse(thread.isAlive(), strategy + " reader did not stop");
+        assertTrue(source.bytesRead.get() > 0, strategy + " read nothing");
+        assertEquals(source.bytesRead.get(), sink.bytesWritten.get(), strategy + " lost bytes");
+        assertTrue(cpuNanos >= 0);
+        return strategy;
+    }
+
+    @Test
+    void busySpinDeliversEveryByte() throws InterruptedException {
+        runAndCheckDelivery(WaitStrategy.busySpin());
+    }
+
+    @Test
+    void yieldingDeliversEveryByte() throws InterruptedException {
+        runAndCheckDelivery(WaitStrategy.yielding());
+    }
+
+    @Test
+    void parkingDeliversEveryByteAndParksBetweenChunks() throws InterruptedException {
+        RecordingStrategy strategy = runAndCheckDelivery(WaitStrategy.parking(Duration.ofNanos(50_000), Duration.ofMillis(1)));
+        assertTrue(strategy.waits.get() > 1, "the reader waited between chunks, " + strategy.waits + " time(s)");
+        // a wait only parks once it has outlasted the spins
+        assertTrue(strategy.longestWait > WaitStrategy.ParkingWaitStrategy.SPIN_TRIES,
+                "never got past spinning: " + strategy.longestWait + " idle calls at most");
+    }
+
+    @Test
+    void timedBlockingDeliversEveryByteAndBlocksBetweenChunks() throws InterruptedException {
+        RecordingStrategy strategy = runAndCheckDelivery(WaitStrategy.timedBlocking(Duration.ofMillis(1)));
+        // every idle call blocks, so waits between chunks are counted in calls, not spins
+        assertTrue(strategy.waits.get() > 1, "the reader waited between chunks, " + strategy.waits + " time(s)");
+        assertTrue(strategy.idles.get() >= strategy.waits.get());
+    }
+
+    @Test
+    void timedBlockingWakesOnSignal() throws InterruptedException {
+        WaitStrategy strategy = WaitStrategy.timedBlocking(Duration.ofSeconds(10));
+        Thread waiter = new Thread(() -> {
+            try {
+                strategy.idle(0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        strategy.signalAll();
+        waiter.join(1_000);
+        assertFalse(waiter.isAlive());
+    }
+
+    /** A line with a fixed backlog of bytes, counting every read call. */
+    static class BacklogSource extends CountingSource {
+        int backlog;
+        int reads;
+
+        BacklogSource(int backlog) {
+            super(null);
+            this.backlog = backlog;
+        }
+
+        @Override public int available() { return backlog; }
+        @Override public int read(byte[] array, int start, int length) {
+            int read = Math.min(length, backlog);
+            backlog -= read;
+            reads++;
+            bytesRead.addAndGet(read);
+            return read;
+        }
+    }
+
+    @Test
+    void pumpReadsWholeBacklogUpToCap() {
+        CountingSink sink = new CountingSink();
+        AudioReader reader = new AudioReader(List.of(sink), WaitStrategy.busySpin(), 128);
+        BacklogSource source = new BacklogSource(300 * 4 + 3); // 300 frames plus a partial frame
+
+        assertEquals(128 * 4, reader.pump(source));
+        assertEquals(128 * 4, reader.pump(source));
+        assertEquals(44 * 4, reader.pump(source));
+        assertEquals(0, reader.pump(source), "partial frame must not be read");
+
+        assertEquals(3, source.reads);
+        assertEquals(300, reader.getFramesRead());
+        assertEquals(3, reader.getDispatches());
+        assertEquals(300 * 4, sink.bytesWritten.get());
+    }
+
+    @Test
+    void pumpStampsChunksWithCaptureTime() {
+        RollingAudioBuffer buffer = new RollingAudioBuffer(4800);
+        AudioReader reader = new AudioReader(List.of(buffer), WaitStrategy.busySpin(), 2400);
+        BacklogSource source = new BacklogSource(4800 * 4); // 100 ms queued at 48 kHz
+
+        long before = System.nanoTime();
+        reader.pump(source);
+        long after = System.nanoTime();
+        // the newest frame read still has 50 ms of audio queued behind it
+        long queued = Duration.ofMillis(50).toNanos();
+        assertTrue(buffer.getCaptureNanos() >= before - queued && buffer.getCaptureNanos() <= after - queued,
+                "stamp " + (after - buffer.getCaptureNanos()) + " ns old");
+
+        reader.pump(source);
+        assertTrue(buffer.getCaptureNanos() >= after && buffer.getCaptureNanos() <= System.nanoTime());
+    }
+
+    @Test
+    void fixedChunkCapReproducesLegacyReadSize() {
+        CountingSink sink = new CountingSink();
+        AudioReader reader = new AudioReader(List.of(sink), WaitStrategy.busySpin(), AudioReader.CHUNK_SIZE / 4);
+        BacklogSource source = new BacklogSource(1024);
+
+        while (reader.pump(source) > 0) { }
+
+        assertEquals(1024 / AudioReader.CHUNK_SIZE, reader.getDispatches());
+    }
+
+    @Test
+    void pumpReadsWholeFramesOfCaptureFormat() {
+        CountingSink sink = new CountingSink();
+        AudioFormat quadFloat = PcmEncoding.F32_LE.format(48000f, 4); // 16-byte frames
+        AudioReader reader = new AudioReader(List.of(sink), WaitStrategy.busySpin(), 8, quadFloat);
+        BacklogSource source = new BacklogSource(10 * 16 + 15);
+
+        assertEquals(8 * 16, reader.pump(source));
+        assertEquals(2 * 16, reader.pump(source));
+        assertEquals(0, reader.pump(source), "partial frame must not be read");
+        assertEquals(10, reader.getFramesRead());
+        assertEquals(quadFloat, reader.getFormat());
+    }
+
+    @Test
+    void lentChunksReachSegmentSinksWithoutCopies() throws LineUnavailableException, IOException {
+        byte[] pcm = new byte[1000 * 4];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (byte) (i * 7);
+        }
+        Path file = Files.write(tempDir.resolve("lent.pcm"), pcm);
+        MappedFileDataSource source = MappedFileDataSource.raw(file, LineAcquirer.IDEAL, null, MappedFileDataSource.MAX_SPEED, false);
+        source.open(LineAcquirer.IDEAL, 256 * 4);
+        source.start();
+
+        CollectingSegmentSink segmentOnly = new CollectingSegmentSink();
+        AudioReader reader = new AudioReader(List.of(segmentOnly), WaitStrategy.busySpin(), 128);
+        while (reader.pump(source) > 0) { }
+        assertArrayEquals(pcm, segmentOnly.bytes.toByteArray());
+        assertEquals(0, segmentOnly.heapChunks);
+        assertEquals(0, reader.getCopiedBytes());
+
+        // byte[] sinks alongside: one copy per chunk, shared by both of them
+        source.rewind();
+        CollectingSegmentSink segment = new CollectingSegmentSink();
+        CountingSink first = new CountingSink();
+        CountingSink second = new CountingSink();
+        reader = new AudioReader(List.of(first, segment, second), WaitStrategy.busySpin(), 128);
+        while (reader.pump(source) > 0) { }
+        assertArrayEquals(pcm, segment.bytes.toByteArray());
+        assertEquals(pcm.length, first.bytesWritten.get());
+        assertEquals(pcm.length, second.bytesWritten.get());
+        assertEquals(pcm.length, reader.getCopiedBytes());
+    }
+
+    @Test
+    void copyingLinesHandSegmentSinksAViewOfTheChunk() {
+        CollectingSegmentSink sink = new CollectingSegmentSink();
+        AudioReader reader = new AudioReader(List.of(sink), WaitStrategy.busySpin(), 128);
+        BacklogSource source = new BacklogSource(300 * 4);
+        while (reader.pump(source) > 0) { }
+        assertEquals(300 * 4, sink.bytes.size());
+        assertEquals(3, sink.heapChunks);
+        assertEquals(0, reader.getCopiedBytes());
+    }
+
+    @Test
+    void adaptedByteSinksOnlyCopyNativeSegments() {
+        byte[] pcm = {1, 2, 3, 4, 5, 6, 7, 8};
+        byte[][] seen = new byte[1][];
+        SegmentAudioSink adapted = SegmentAudioSink.adapt(
+                (data, offset, length) -> seen[0] = Arrays.copyOfRange(data, offset, offset + length));
+        HeapSinkAdapter adapter = (HeapSinkAdapter) adapted;
+
+        adapted.write(MemorySegment.ofArray(pcm).asSlice(4, 4), CaptureTimestamped.NONE);
+        assertArrayEquals(new byte[] {5, 6, 7, 8}, seen[0]);
+        assertEquals(0, adapter.getCopiedBytes());
+
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment off = arena.allocate(pcm.length);
+            MemorySegment.copy(pcm, 0, off, ValueLayout.JAVA_BYTE, 0, pcm.length);
+            adapted.write(off, CaptureTimestamped.NONE);
+        }
+        assertArrayEquals(pcm, seen[0]);
+        assertEquals(pcm.length, adapter.getCopiedBytes());
+
+        CollectingSegmentSink segmentSink = new CollectingSegmentSink();
+        assertSame(segmentSink, SegmentAudioSink.adapt(segmentSink));
+    }
+
+    @Test
+    void parkingRejectsInvertedBounds() {
+        assertThrows(IllegalArgumentException.class,
+                () -> WaitStrategy.parking(Duration.ofMillis(2), Duration.ofMillis(1)));
+    }
+}
@@ -0,0 +1,133 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioRingTest {
+
+    /** Collects every byte written, in order. */
+    static class CaptureSink implements AudioSink {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(byte[] data, int offset, int length) {
+            received.write(data, offset, length);
+        }
+
+        synchronized byte[] bytes() {
+            return received.toByteArray();
+        }
+    }
+
+    static byte[] ramp(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    void rejectsNonPowerOfTwoSlotCount() {
+        assertThrows(IllegalArgumentException.class, () -> new AudioRing(3, 64));
+    }
+
+    @Test
+    void pollDeliversEveryChunkInOrder() {
+        AudioRing ring = new AudioRing(8, 16);
+        CaptureSink sink = new CaptureSink();
+        AudioRing.Consumer consumer = ring.addConsumer(sink, "capture");
+
+        byte[] audio = ramp(40); // splits into 16 + 16 + 8 byte slots
+        ring.write(audio, 0, audio.length);
+        assertEquals(2, ring.getCursor());
+        assertEquals(3, consumer.getLag());
+
+        while (consumer.poll()) { }
+
+        assertArrayEquals(audio, sink.bytes());
+        assertEquals(0, consumer.getLag());
+        assertEquals(0, consumer.getOverruns());
+    }
+
+    @Test
+    void captureStampTravelsWithEachSlot() {
+        AudioRing ring = new AudioRing(8, 16);
+        RollingAudioBuffer buffer = new RollingAudioBuffer(64);
+        AudioRing.Consumer consumer = ring.addConsumer(buffer, "stamped");
+        assertEquals(CaptureTimestamped.NONE, buffer.getCaptureNanos());
+
+        byte[] audio = ramp(40);
+        ring.write(audio, 0, 24, 1_000L);
+        ring.write(audio, 24, 16, 2_000L);
+        assertTrue(consumer.poll());
+        assertEquals(1_000L, buffer.getCaptureNanos());
+        assertTrue(consumer.poll());
+        assertEquals(1_000L, buffer.getCaptureNanos(), "both halves of a split chunk carry its stamp");
+        assertTrue(consumer.poll());
+        assertEquals(2_000L, buffer.getCaptureNanos());
+
+        ring.write(audio, 0, 4);
+        assertTrue(consumer.poll());
+        assertEquals(CaptureTimestamped.NONE, buffer.getCaptureNanos(), "unstamped writes clear the stamp");
+    }
+
+    @Test
+    void lappedConsumerCountsOverrunsAndResyncs() {
+        AudioRing ring = new AudioRing(4, 4);
+        CaptureSink sink = new CaptureSink();
+        AudioRing.Consumer consumer = ring.addConsumer(sink, "slow");
+
+        byte[] audio = ramp(40); // 10 slots into a 4-slot ring
+        ring.write(audio, 0, audio.length);
+
+        assertTrue(consumer.poll());
+        assertTrue(consumer.getOverruns() > 0);
+        while (consumer.poll()) { }
+
+        // only the newest chunk survives the overrun
+        assertArrayEquals(new byte[]{36, 37, 38, 39}, sink.bytes());
+    }
+
+    @Test
+    void slowSinkDoesNotDelayOtherConsumers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AudioSink blocked = (data, offset, length) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        CaptureSink fast = new CaptureSink();
+        AudioRing ring = new AudioRing(1024, 64);
+        ring.addConsumer(blocked, "blocked").start();
+        ring.addConsumer(fast, "fast").start();
+        try {
+            byte[] audio = ramp(64 * 100);
+            ring.write(audio, 0, audio.length);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fast.bytes().length < audio.length && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertArrayEquals(audio, fast.bytes());
+        } finally {
+            release.countDown();
+            ring.close();
+        }
+    }
+
+    @Test
+    void fanOutStartsOneConsumerPerSink() {
+        try (AudioRing ring = AudioRing.fanOut(List.of(new CaptureSink(), new CaptureSink()))) {
+            assertEquals(2, ring.getConsumers().size());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.StaticStereoPositioner;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriftCompensatorTest {
+    private static final float RATE = 48000f;
+    private static final double FPS = 60;
+    /** The simulated device delivers whole periods, like a real capture line. */
+    private static final int PERIOD_FRAMES = 256;
+    private static final int LATENCY_FRAMES = 4 * PERIOD_FRAMES;
+
+    /**
+     * Render ten minutes at 60 fps against a line whose sample clock runs {@code ppm} fast or
+     * slow. Uncorrected, the gap would change by 5 760 frames — over five times the latency.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {200, -200})
+    void tracksALineRunningOffNominalRate(int ppm) throws LineUnavailableException {
+        double[] renderSeconds = {0};
+        SimulatedDataSource line = new SimulatedDataSource(() -> renderSeconds[0] * (1 + ppm * 1e-6),
+                StaticStereoPositioner.CENTER.wrap(new Waveform(440).amplify(8000)));
+        AudioFormat format = PcmEncoding.S16_LE.format(RATE, 2);
+        byte[] period = new byte[PERIOD_FRAMES * format.getFrameSize()];
+        line.open(format, 4 * period.length);
+        line.start();
+
+        DriftCompensator subject = new DriftCompensator(RATE, LATENCY_FRAMES);
+        long received = 0;
+        double previous = Double.NaN;
+        double halfway = Double.NaN;
+        double nominalAdvance = RATE / FPS;
+        int frames = (int) (10 * 60 * FPS);
+        for (int frame = 0; frame < frames; frame++) {
+            renderSeconds[0] = frame / FPS;
+            while (line.available() >= period.length) {
+                received += line.read(period, 0, period.length) / format.getFrameSize();
+            }
+            double playhead = subject.update(received, renderSeconds[0]);
+            if (frame == frames / 2) {
+                halfway = playhead;
+            } else if (frame > frames / 2) {
+                // settled: steady, near-nominal steps and a gap that stays near the target
+                assertEquals(nominalAdvance, playhead - previous, 1, "advance at frame " + frame);
+                double gap = received - playhead;
+                assertEquals(LATENCY_FRAMES, gap, PERIOD_FRAMES, "gap at frame " + frame);
+                assertEquals(ppm, subject.getDriftPpm(), 10, "estimate at frame " + frame);
+            }
+            previous = playhead;
+        }
+        assertEquals(0, subject.getResyncs());
+        // on average the playhead moves at the line's true rate
+        double meanAdvance = (previous - halfway) / (frames - 1 - frames / 2);
+        assertEquals(nominalAdvance * (1 + ppm * 1e-6), meanAdvance, 0.02);
+    }
+
+    @Test
+    void resyncsWhenTheGapLeavesItsRange() {
+        DriftCompensator subject = new DriftCompensator(RATE, LATENCY_FRAMES);
+        assertEquals(10_000 - LATENCY_FRAMES, subject.update(10_000, 0), 0);
+        assertEquals(10_800 - LATENCY_FRAMES, subject.update(10_800, 1 / FPS), 1e-6);
+        assertEquals(0, subject.getResyncs());
+
+        // the line stalls for a second: the playhead would overtake the data, so it is held back
+        assertEquals(10_800 - LATENCY_FRAMES, subject.update(10_800, 1.0), 0);
+        assertEquals(1, subject.getResyncs());
+        // then delivers its backlog in one go: too far behind to catch up smoothly
+        double playhead = subject.update(10_800 + 48_000, 1.0 + 1 / FPS);
+        assertEquals(2, subject.getResyncs());
+        assertEquals(10_800 + 48_000 - LATENCY_FRAMES, playhead, 0);
+    }
+
+    @Test
+    void rejectsBadConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new DriftCompensator(0, LATENCY_FRAMES));
+        assertThrows(IllegalArgumentException.class, () -> new DriftCompensator(RATE, 0));
+    }
+}
@@ -0,0 +1,173 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static com.asteroid.duck.opengl.util.audio.RollingAudioBufferTest.generateAudio;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FloatAudioBufferTest {
+
+    /** Stereo PCM where L and R differ, so channel selection is observable. */
+    static byte[] stereoAudio(int stereoFrames) {
+        byte[] data = new byte[stereoFrames * 4];
+        for (int i = 0; i < stereoFrames; i++) {
+            short l = (short) (i * 1000 - 7000);
+            short r = (short) (-i * 333 + 11);
+            data[i * 4]     = (byte) (l & 0xFF);
+            data[i * 4 + 1] = (byte) ((l >> 8) & 0xFF);
+            data[i * 4 + 2] = (byte) (r & 0xFF);
+            data[i * 4 + 3] = (byte) ((r >> 8) & 0xFF);
+        }
+        return data;
+    }
+
+    @Test
+    void matchesRollingAudioBufferForEveryMode() {
+        byte[] audio = stereoAudio(23);
+        for (ChannelMode mode : ChannelMode.values()) {
+            RollingAudioBuffer expected = new RollingAudioBuffer(16);
+            FloatAudioBuffer subject = new FloatAudioBuffer(16, mode);
+            // uneven chunks so writes wrap mid-chunk
+            for (int offset = 0; offset < audio.length; offset += 12) {
+                int length = Math.min(12, audio.length - offset);
+                expected.write(audio, offset, length);
+                subject.write(audio, offset, length);
+            }
+
+            float[] want = new float[16];
+            float[] got  = new float[16];
+            expected.readSamples(want, 16, mode);
+            subject.readSamples(got, 16);
+            assertArrayEquals(want, got, 1e-6f, mode.name());
+        }
+    }
+
+    @Test
+    void bulkConversionMatchesTheScalarLoopsExactly() {
+        // extremes included, so the sign extension and the blend's carry are both exercised
+        byte[] pcm = new byte[4 * 300];
+        new Random(4).nextBytes(pcm);
+        pcm[0] = pcm[2] = 0;
+        pcm[1] = pcm[3] = (byte) 0x80;
+        pcm[5] = pcm[7] = 0x7F;
+        pcm[4] = pcm[6] = (byte) 0xFF;
+        for (ChannelMode mode : ChannelMode.values()) {
+            for (int frames : new int[]{0, 1, 7, 16, 17, 64, 299}) {
+                for (int offset : new int[]{0, 4}) {
+                    float[] want = new float[frames + 3];
+                    float[] got = new float[frames + 3];
+                    mode.toMonoScalar(pcm, offset, frames, want, 3);
+                    mode.toMono(pcm, offset, frames, got, 3);
+                    assertArrayEquals(want, got, mode + " " + frames + " frames at " + offset);
+                }
+            }
+        }
+    }
+
+    @Test
+    void readShorterThanCapacityReturnsNewestOldestFirst() {
+        FloatAudioBuffer subject = new FloatAudioBuffer(5, ChannelMode.LEFT);
+        byte[] audio = generateAudio(7, i -> i * 1000);
+        subject.write(audio, 0, audio.length);
+
+        float[] samples = new float[3];
+        subject.readSamples(samples, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(((i + 4) * 1000) / (float) Short.MAX_VALUE, samples[i], 1e-6f);
+        }
+    }
+
+    @Test
+    void readsAWindowEndingAtAnyHeldPosition() {
+        FloatAudioBuffer subject = new FloatAudioBuffer(8, ChannelMode.LEFT);
+        byte[] audio = generateAudio(13, i -> i * 1000);
+        subject.write(audio, 0, audio.length);
+
+        // frames 5..12 are held; the window 7..9 wraps the ring end
+        float[] samples = new float[3];
+        subject.readSamples(samples, 3, 10L);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(((i + 7) * 1000) / (float) Short.MAX_VALUE, samples[i], 1e-6f);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> subject.readSamples(samples, 3, 14L), "not written yet");
+        assertThrows(IllegalArgumentException.class, () -> subject.readSamples(samples, 3, 7L), "overwritten");
+        assertTrue(subject.tryReadSamples(samples, 3, 10L));
+        assertFalse(subject.tryReadSamples(samples, 3, 14L), "not written yet");
+        assertFalse(subject.tryReadSamples(samples, 3, 7L), "overwritten");
+    }
+
+    @Test
+    void writeLargerThanCapacityKeepsNewestFrames() {
+        FloatAudioBuffer subject = new FloatAudioBuffer(4, ChannelMode.MONO_BLEND);
+        byte[] audio = generateAudio(10, i -> i * 100);
+        subject.write(audio, 0, audio.length);
+
+        float[] samples = new float[4];
+        subject.readSamples(samples, 4);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(((i + 6) * 100) / (float) Short.MAX_VALUE, samples[i], 1e-6f);
+        }
+    }
+
+    @Test
+    void countsEveryFrameWrittenIncludingOverflow() {
+        FloatAudioBuffer subject = new FloatAudioBuffer(4, ChannelMode.LEFT);
+        byte[] audio = generateAudio(10, i -> i * 100);
+        subject.write(audio, 0, 12);
+        subject.write(audio, 0, audio.length);
+        assertEquals(13, subject.getFramesWritten());
+
+        // the overflowing write still lands at its absolute position
+        float[] samples = new float[4];
+        subject.readSamples(samples, 4);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(((i + 6) * 100) / (float) Short.MAX_VALUE, samples[i], 1e-6f);
+        }
+    }
+
+    @Test
+    void fractionalReadInterpolatesBetweenFrames() {
+        FloatAudioBuffer subject = new FloatAudioBuffer(8, ChannelMode.LEFT);
+        byte[] audio = generateAudio(13, i -> i * 1000);
+        for (int offset = 0; offset < audio.length; offset += 12) {
+            subject.write(audio, offset, Math.min(12, audio.length - offset));
+        }
+        float unit = 1000 / (float) Short.MAX_VALUE;
+
+        // whole positions at step 1 are the plain window
+        float[] plain = new float[4];
+        float[] resampled = new float[4];
+        subject.readSamples(plain, 4);
+        subject.readSamples(resampled, 4, 12, 1);
+        assertArrayEquals(plain, resampled, 1e-6f);
+
+        // a ramp interpolates exactly, across the wrap
+        subject.readSamples(resampled, 4, 10.25, 1.5);
+        for (int i = 0; i < 4; i++) {
+            assertEquals((10.25 - (3 - i) * 1.5) * unit, resampled[i], 1e-4f, "sample " + i);
+        }
+    }
+
+    @Test
+    void fractionalReadClampsToHeldFrames() {
+        FloatAudioBuffer subject = new FloatAudioBuffer(4, ChannelMode.LEFT);
+        float[] samples = new float[3];
+        subject.readSamples(samples, 3, 5, 1);
+        assertArrayEquals(new float[3], samples);
+
+        byte[] audio = generateAudio(10, i -> i * 1000);
+        subject.write(audio, 0, audio.length);
+        float unit = 1000 / (float) Short.MAX_VALUE;
+        // past the newest frame reads the newest frame
+        subject.readSamples(samples, 3, 11.5, 1);
+        assertArrayEquals(new float[]{9 * unit, 9 * unit, 9 * unit}, samples, 1e-6f);
+        // before the oldest held frame reads the oldest
+        subject.readSamples(samples, 3, 6.5, 1);
+        assertArrayEquals(new float[]{6 * unit, 6 * unit, 6.5f * unit}, samples, 1e-6f);
+    }
+}
@@ -0,0 +1,224 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.StaticStereoPositioner;
+import com.asteroid.duck.opengl.util.audio.simulated.StereoDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import com.asteroid.duck.opengl.util.timer.Clock;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.asteroid.duck.opengl.util.audio.Allocations.assertAllocationFree;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MixingDataSourceTest {
+    private static final AudioFormat FLOAT = PcmEncoding.F32_LE.format(48000f, 2);
+    private static final int BUFFER_FRAMES = 256;
+    private static final int BUFFER = BUFFER_FRAMES * FLOAT.getFrameSize();
+
+    private static final StereoDataSource MELODY = LineAcquirer.getSampledWaveformData();
+    private static final StereoDataSource CLICK = StaticStereoPositioner.CENTER.wrap(new Waveform(1000).amplify(8000));
+
+    /** The first {@code frames} frames of a source, read in one go from a fresh deterministic line. */
+    static float[] reference(StereoDataSource audio, int frames) throws LineUnavailableException {
+        SimulatedDataSource source = SimulatedDataSource.deterministic(audio);
+        source.open(FLOAT, frames * FLOAT.getFrameSize());
+        source.start();
+        byte[] pcm = new byte[frames * FLOAT.getFrameSize()];
+        assertEquals(pcm.length, source.read(pcm, 0, pcm.length));
+        float[] samples = new float[frames * 2];
+        PcmEncoding.F32_LE.decode(pcm, 0, 4, samples, 0, samples.length);
+        return samples;
+    }
+
+    /** Read {@code frames} frames from a running mixer, waiting for its pull threads as needed. */
+    static float[] drain(MixingDataSource mixer, int frames) throws InterruptedException {
+        return drain(mixer, frames, () -> { });
+    }
+
+    /** As {@link #drain(MixingDataSource, int)}, running {@code dry} each time nothing can be read. */
+    static float[] drain(MixingDataSource mixer, int frames, Runnable dry) throws InterruptedException {
+        byte[] pcm = new byte[frames * FLOAT.getFrameSize()];
+        int offset = 0;
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (offset < pcm.length) {
+            int read = mixer.read(pcm, offset, Math.min(BUFFER, pcm.length - offset));
+            if (read == 0) {
+                assertTrue(System.nanoTime() < deadline, "mixer stalled at byte " + offset);
+                dry.run();
+                Thread.sleep(1);
+            }
+            offset += read;
+        }
+        float[] samples = new float[frames * 2];
+        PcmEncoding.F32_LE.decode(pcm, 0, 4, samples, 0, samples.length);
+        return samples;
+    }
+
+    @Test
+    void mixesInputsFrameForFrameWithTheirGains() throws Exception {
+        int frames = 24000;
+        float[] melody = reference(MELODY, frames);
+        float[] click = reference(CLICK, frames);
+
+        // real-time lines on a shared clock, advanced whenever the mix runs dry
+        AtomicLong micros = new AtomicLong();
+        Clock clock = () -> micros.get() / 1e6;
+        MixingDataSource mixer = new MixingDataSource(List.of(
+                new SimulatedDataSource(clock, MELODY), new SimulatedDataSource(clock, CLICK)), 0.25f, 0.75f);
+        mixer.open(FLOAT, BUFFER);
+        mixer.start();
+        float[] mixed = drain(mixer, frames, () -> micros.addAndGet(1000));
+        mixer.close();
+
+        assertEquals(0, mixer.getSilencedFrames());
+        for (int i = 0; i < mixed.length; i++) {
+            assertEquals(0.25f * melody[i] + 0.75f * click[i], mixed[i], 1e-6f, "sample " + i);
+        }
+        assertEquals(frames, mixer.getFramesMixed());
+        assertFalse(mixer.isOpen());
+    }
+
+    @Test
+    void inputsAreAlignedBySampleCountNotArrivalTime() throws Exception {
+        // the second line runs on a clock the test controls and starts out silent
+        double[] time = {0};
+        SimulatedDataSource late = new SimulatedDataSource(() -> time[0], CLICK);
+        MixingDataSource mixer = new MixingDataSource(List.of(SimulatedDataSource.deterministic(MELODY), late),
+                new float[]{0.5f, 0.5f}, WaitStrategy.busySpin(), false);
+        mixer.open(FLOAT, BUFFER);
+        mixer.start();
+        MixingDataSource.Input first = mixer.getInput(0);
+        MixingDataSource.Input second = mixer.getInput(1);
+
+        first.pull();
+        assertEquals(0, mixer.available(), "frame 0 must wait for every input");
+        time[0] = 100.0 / 48000;
+        second.pull();
+        assertEquals(100 * FLOAT.getFrameSize(), mixer.available());
+
+        // the melody arrives in bursts, the click track trickles in; frames still pair up
+        for (int i = 0; i < 10; i++) {
+            if (i % 4 == 0) {
+                first.pull();
+            }
+            time[0] += 37.0 / 48000;
+            second.pull();
+        }
+        int frames = 400;
+        float[] mixed = drain(mixer, frames);
+        float[] melody = reference(MELODY, frames);
+        float[] click = reference(CLICK, frames);
+        for (int i = 0; i < mixed.length; i++) {
+            assertEquals(0.5f * melody[i] + 0.5f * click[i], mixed[i], 1e-6f, "sample " + i);
+        }
+        assertEquals(0, mixer.getSilencedFrames());
+    }
+
+    @Test
+    void stalledInputIsMixedAsSilenceThenRejoinsInStep() throws Exception {
+        double[] time = {0};
+        SimulatedDataSource stalled = new SimulatedDataSource(() -> time[0], CLICK);
+        MixingDataSource mixer = new MixingDataSource(List.of(SimulatedDataSource.deterministic(MELODY), stalled),
+                new float[]{1f, 1f}, WaitStrategy.busySpin(), false);
+        mixer.open(FLOAT, BUFFER);
+        mixer.start();
+        MixingDataSource.Input live = mixer.getInput(0);
+        MixingDataSource.Input dead = mixer.getInput(1);
+
+        // fill the live input past the skew limit while the other line delivers nothing
+        int skew = MixingDataSource.MAX_SKEW_BUFFERS * BUFFER_FRAMES;
+        while (live.written <= skew) {
+            live.pull();
+        }
+        assertTrue(mixer.available() > 0, "a dead input must not block the mix");
+        int silent = (int) live.written;
+        float[] mixed = drain(mixer, silent);
+        float[] melody = reference(MELODY, silent + 200);
+        for (int i = 0; i < mixed.length; i++) {
+            assertEquals(melody[i], mixed[i], 1e-6f, "sample " + i);
+        }
+        assertEquals(silent, mixer.getSilencedFrames());
+
+        // the line recovers with its backlog: the frames already mixed as silence are dropped
+        time[0] = (silent + 200) / 48000.0;
+        while (dead.written < silent + 200) {
+            dead.pull();
+        }
+        live.pull();
+        mixed = drain(mixer, 200);
+        float[] click = reference(CLICK, silent + 200);
+        for (int i = 0; i < mixed.length; i++) {
+            int n = 2 * silent + i;
+            assertEquals(melody[n] + click[n], mixed[i], 1e-6f, "sample " + n);
+        }
+        assertEquals(silent, mixer.getSilencedFrames());
+    }
+
+    @Test
+    void sixteenBitMixClampsAtFullScale() throws Exception {
+        AudioFormat cd = PcmEncoding.S16_LE.format(48000f, 2);
+        StereoDataSource loud = StaticStereoPositioner.CENTER.wrap(new Waveform(50).amplify(30000));
+        MixingDataSource mixer = new MixingDataSource(List.of(
+                SimulatedDataSource.deterministic(loud), SimulatedDataSource.deterministic(loud)),
+                new float[]{2f, 2f}, WaitStrategy.busySpin(), false);
+        mixer.open(cd, BUFFER_FRAMES * 4);
+        mixer.start();
+        mixer.getInput(0).pull();
+        mixer.getInput(1).pull();
+        byte[] pcm = new byte[BUFFER_FRAMES * 4];
+        int read = mixer.read(pcm, 0, pcm.length);
+        assertEquals(pcm.length, read);
+        mixer.close();
+        short max = 0;
+        for (int i = 0; i < read; i += 2) {
+            max = (short) Math.max(max, (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8)));
+        }
+        assertEquals(Short.MAX_VALUE, max);
+    }
+
+    @Test
+    void gainChangesApplyToTheNextRead() throws Exception {
+        MixingDataSource mixer = new MixingDataSource(List.of(SimulatedDataSource.deterministic(MELODY)),
+                new float[]{1f}, WaitStrategy.busySpin(), false);
+        mixer.open(FLOAT, BUFFER);
+        mixer.start();
+        mixer.getInput(0).pull();
+        mixer.setGain(0, 0f);
+        assertEquals(0f, mixer.getGain(0));
+        float[] mixed = drain(mixer, BUFFER_FRAMES);
+        for (float sample : mixed) {
+            assertEquals(0f, sample, 0f);
+        }
+    }
+
+    @Test
+    void rejectsBadConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new MixingDataSource(List.of()));
+        List<SimulatedDataSource> two = List.of(SimulatedDataSource.deterministic(MELODY), SimulatedDataSource.deterministic(CLICK));
+        assertThrows(IllegalArgumentException.class, () -> new MixingDataSource(two, 1f));
+        MixingDataSource mixer = new MixingDataSource(two);
+        assertEquals(0.5f, mixer.getGain(1));
+        assertThrows(LineUnavailableException.class, () -> mixer.open(new AudioFormat(48000f, 8, 2, true, false), BUFFER));
+        assertFalse(mixer.isOpen());
+    }
+
+    @Test
+    void pullAndReadDoNotAllocate() throws Exception {
+        MixingDataSource mixer = new MixingDataSource(List.of(
+                SimulatedDataSource.deterministic(MELODY), SimulatedDataSource.deterministic(CLICK)),
+                new float[]{0.5f, 0.5f}, WaitStrategy.busySpin(), false);
+        mixer.open(FLOAT, BUFFER);
+        mixer.start();
+        byte[] pcm = new byte[BUFFER];
+        assertAllocationFree(() -> {
+            mixer.getInput(0).pull();
+            mixer.getInput(1).pull();
+            mixer.read(pcm, 0, pcm.length);
+        }, 2000, 1000);
+    }
+}
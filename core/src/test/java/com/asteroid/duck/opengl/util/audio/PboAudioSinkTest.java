@@ -0,0 +1,143 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.RenderContext;
+import com.asteroid.duck.opengl.util.resources.manager.ResourceManager;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import org.mockito.MockedStatic;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.opengl.GL11.GL_SHORT;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_1D;
+import static org.lwjgl.opengl.GL30.GL_RG;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PboAudioSinkTest {
+    private static final int FRAMES = 256;
+    private static final int CAPACITY = FRAMES * 4;
+
+    private final int[] ranges = new int[4];
+
+    @Test
+    void nothingWrittenMeansNothingToUpload() {
+        assertEquals(0, PboAudioSink.dirtyRanges(400, 400, CAPACITY, ranges));
+    }
+
+    @Test
+    void contiguousRange() {
+        assertEquals(1, PboAudioSink.dirtyRanges(400, 1000, CAPACITY, ranges));
+        assertEquals(400, ranges[0]);
+        assertEquals(600, ranges[1]);
+    }
+
+    @Test
+    void rangeEndingAtTheEndOfTheRingDoesNotWrap() {
+        assertEquals(1, PboAudioSink.dirtyRanges(CAPACITY + 24, 2 * CAPACITY, CAPACITY, ranges));
+        assertEquals(24, ranges[0]);
+        assertEquals(CAPACITY - 24, ranges[1]);
+    }
+
+    @Test
+    void wrappingRangeIsSplitInTwo() {
+        assertEquals(2, PboAudioSink.dirtyRanges(3 * CAPACITY - 100, 3 * CAPACITY + 40, CAPACITY, ranges));
+        assertArrayEquals(new int[]{CAPACITY - 100, 100, 0, 40}, ranges);
+    }
+
+    @Test
+    void lappedRingUploadsEverything() {
+        assertEquals(1, PboAudioSink.dirtyRanges(100, 100 + CAPACITY, CAPACITY, ranges));
+        assertArrayEquals(new int[]{0, CAPACITY}, Arrays.copyOf(ranges, 2));
+        assertEquals(1, PboAudioSink.dirtyRanges(100, 100 + 5 * CAPACITY + 8, CAPACITY, ranges));
+        assertEquals(0, ranges[0]);
+        assertEquals(CAPACITY, ranges[1]);
+    }
+
+    @Test
+    void firstUploadCoversTheWholeRing() {
+        assertEquals(1, PboAudioSink.dirtyRanges(-CAPACITY, 0, CAPACITY, ranges));
+        assertEquals(0, ranges[0]);
+        assertEquals(CAPACITY, ranges[1]);
+    }
+
+    private static byte[] frames(int count, int seed) {
+        byte[] pcm = new byte[count * 4];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (byte) (seed + i);
+        }
+        return pcm;
+    }
+
+    @Test
+    void uploadsOnlyNewFramesBehindAFence() {
+        final int texture = 7;
+        final int pbo = 9;
+        ByteBuffer mapping = ByteBuffer.allocateDirect(CAPACITY);
+        RenderContext ctx = mock(RenderContext.class);
+        when(ctx.getResourceManager()).thenReturn(mock(ResourceManager.class));
+
+        try (MockedStatic<GL11> gl11 = mockStatic(GL11.class);
+             MockedStatic<GL15> gl15 = mockStatic(GL15.class);
+             MockedStatic<GL30> gl30 = mockStatic(GL30.class);
+             MockedStatic<GL32> gl32 = mockStatic(GL32.class);
+             MockedStatic<GL44> ignored = mockStatic(GL44.class)) {
+            gl11.when(GL11::glGenTextures).thenReturn(texture);
+            gl15.when(GL15::glGenBuffers).thenReturn(pbo);
+            gl30.when(() -> GL30.glMapBufferRange(anyInt(), anyLong(), anyLong(), anyInt())).thenReturn(mapping);
+            gl32.when(() -> GL32.glFenceSync(anyInt(), anyInt())).thenReturn(1L, 2L, 3L);
+            gl32.when(() -> GL32.glClientWaitSync(anyLong(), anyInt(), anyLong())).thenReturn(GL32.GL_ALREADY_SIGNALED);
+
+            PboAudioSink subject = PboAudioSink.create(FRAMES, ctx);
+
+            // the cleared ring is pushed once so the texture starts silent
+            subject.upload();
+            gl11.verify(() -> GL11.glTexSubImage1D(GL_TEXTURE_1D, 0, 0, FRAMES, GL_RG, GL_SHORT, 0L));
+            gl32.verify(() -> GL32.glFenceSync(anyInt(), anyInt()), times(1));
+
+            // no new audio: no GL work at all
+            subject.upload();
+            gl11.verify(() -> GL11.glTexSubImage1D(anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyLong()), times(1));
+            gl32.verify(() -> GL32.glClientWaitSync(anyLong(), anyInt(), anyLong()), never());
+
+            byte[] first = frames(100, 1);
+            subject.write(first, 0, first.length);
+            subject.upload();
+            gl32.verify(() -> GL32.glClientWaitSync(1L, 0, 0L));
+            gl32.verify(() -> GL32.glDeleteSync(1L));
+            gl11.verify(() -> GL11.glTexSubImage1D(GL_TEXTURE_1D, 0, 0, 100, GL_RG, GL_SHORT, 0L));
+            assertEquals(100, subject.getHead());
+
+            // 200 frames from texel 100 wrap: 156 to the end, then 44 from the start
+            byte[] second = frames(200, 50);
+            subject.write(second, 0, second.length);
+            gl32.when(() -> GL32.glClientWaitSync(2L, 0, 0L)).thenReturn(GL32.GL_TIMEOUT_EXPIRED);
+            subject.upload();
+            gl32.verify(() -> GL32.glClientWaitSync(2L, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, PboAudioSink.FENCE_TIMEOUT_NANOS));
+            gl32.verify(() -> GL32.glDeleteSync(2L));
+            gl11.verify(() -> GL11.glTexSubImage1D(GL_TEXTURE_1D, 0, 100, 156, GL_RG, GL_SHORT, 400L));
+            gl11.verify(() -> GL11.glTexSubImage1D(GL_TEXTURE_1D, 0, 0, 44, GL_RG, GL_SHORT, 0L));
+            gl11.verify(() -> GL11.glTexSubImage1D(anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyLong()), times(4));
+            assertEquals(44, subject.getHead());
+
+            for (int i = 0; i < 400; i++) {
+                assertEquals(first[i], mapping.get(i), "byte " + i);
+            }
+            for (int i = 0; i < second.length; i++) {
+                assertEquals(second[i], mapping.get((400 + i) % CAPACITY), "byte " + i);
+            }
+
+            subject.dispose();
+            gl32.verify(() -> GL32.glDeleteSync(3L));
+            gl15.verify(() -> GL15.glDeleteBuffers(eq(pbo)));
+        }
+    }
+}
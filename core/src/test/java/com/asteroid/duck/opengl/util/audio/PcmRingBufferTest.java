@@ -0,0 +1,149 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PcmRingBufferTest {
+
+    private static final int CAPACITY = 37;
+
+    /** Every supported encoding with mono, stereo, quad and 5.1 layouts. */
+    static Stream<Arguments> formats() {
+        return Arrays.stream(PcmEncoding.values())
+                .flatMap(encoding -> IntStream.of(1, 2, 4, 6)
+                        .mapToObj(channels -> Arguments.of(encoding, channels)));
+    }
+
+    /**
+     * Random frames encoded in the given format. Every value comes from encoding a float, so it
+     * is one the encoding can decode exactly.
+     */
+    static byte[] randomPcm(PcmEncoding encoding, int channels, int frames, long seed) {
+        Random random = new Random(seed);
+        float[] samples = new float[frames * channels];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextFloat() * 2 - 1;
+        }
+        samples[0] = -1.0f; // most negative code
+        byte[] pcm = new byte[samples.length * encoding.bytesPerSample()];
+        encoding.encode(samples, 0, samples.length, pcm, 0, encoding.bytesPerSample());
+        return pcm;
+    }
+
+    /** Write in uneven chunks so the ring wraps mid-chunk, more than once. */
+    static PcmRingBuffer fill(AudioFormat format, byte[] pcm) {
+        PcmRingBuffer subject = new PcmRingBuffer(format, CAPACITY);
+        int chunk = format.getFrameSize() * 5;
+        for (int offset = 0; offset < pcm.length; offset += chunk) {
+            subject.write(pcm, offset, Math.min(chunk, pcm.length - offset));
+        }
+        return subject;
+    }
+
+    @ParameterizedTest
+    @MethodSource("formats")
+    void framesRoundTripExactly(PcmEncoding encoding, int channels) {
+        AudioFormat format = encoding.format(48000f, channels);
+        int frames = CAPACITY * 2 + 3;
+        byte[] pcm = randomPcm(encoding, channels, frames, encoding.ordinal() * 31L + channels);
+        PcmRingBuffer subject = fill(format, pcm);
+
+        float[] decoded = new float[CAPACITY * channels];
+        subject.readFrames(decoded, CAPACITY);
+        byte[] reencoded = new byte[CAPACITY * format.getFrameSize()];
+        encoding.encode(decoded, 0, decoded.length, reencoded, 0, encoding.bytesPerSample());
+
+        byte[] newest = Arrays.copyOfRange(pcm, pcm.length - reencoded.length, pcm.length);
+        assertArrayEquals(newest, reencoded, encoding + " x" + channels);
+    }
+
+    @ParameterizedTest
+    @MethodSource("formats")
+    void channelsMatchInterleavedFrames(PcmEncoding encoding, int channels) {
+        AudioFormat format = encoding.format(48000f, channels);
+        PcmRingBuffer subject = fill(format, randomPcm(encoding, channels, CAPACITY + 11, channels));
+        int count = CAPACITY - 4;
+
+        float[] interleaved = new float[count * channels];
+        subject.readFrames(interleaved, count);
+        float[] mono = new float[count];
+        subject.readMono(mono, count);
+        float[] channel = new float[count];
+        for (int c = 0; c < channels; c++) {
+            subject.readChannel(c, channel, count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(interleaved[i * channels + c], channel[i], encoding + " x" + channels + " ch" + c);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            float sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += interleaved[i * channels + c];
+            }
+            assertEquals(sum / channels, mono[i], 1e-6f, encoding + " x" + channels);
+        }
+    }
+
+    @Test
+    void sixteenBitStereoMatchesRollingAudioBuffer() {
+        byte[] audio = FloatAudioBufferTest.stereoAudio(23);
+        RollingAudioBuffer expected = new RollingAudioBuffer(16);
+        PcmRingBuffer subject = new PcmRingBuffer(LineAcquirer.IDEAL, 16);
+        expected.write(audio, 0, audio.length);
+        subject.write(audio, 0, audio.length);
+
+        float[] want = new float[16];
+        float[] got  = new float[16];
+        expected.readSamples(want, 16, ChannelMode.RIGHT);
+        subject.readChannel(1, got, 16);
+        // RollingAudioBuffer scales by Short.MAX_VALUE rather than 2^15
+        for (int i = 0; i < 16; i++) {
+            assertEquals(want[i], got[i] * (1 << 15) / Short.MAX_VALUE, 1e-6f);
+        }
+    }
+
+    @Test
+    void twentyFourBitDecodesSignAndScale() {
+        byte[] pcm = {
+                (byte) 0x00, (byte) 0x00, (byte) 0x80, // -2^23 little-endian
+                (byte) 0xFF, (byte) 0xFF, (byte) 0x7F, //  2^23 - 1
+                (byte) 0x01, (byte) 0x00, (byte) 0x00, //  1
+        };
+        float[] decoded = new float[3];
+        PcmEncoding.S24_LE.decode(pcm, 0, 3, decoded, 0, 3);
+        assertEquals(-1.0f, decoded[0]);
+        assertEquals(1.0f - 1.0f / (1 << 23), decoded[1]);
+        assertEquals(1.0f / (1 << 23), decoded[2]);
+    }
+
+    @Test
+    void integerEncodingsClamp() {
+        float[] loud = {1.5f, -1.5f};
+        byte[] pcm = new byte[4];
+        PcmEncoding.S16_LE.encode(loud, 0, 2, pcm, 0, 2);
+        float[] decoded = new float[2];
+        PcmEncoding.S16_LE.decode(pcm, 0, 2, decoded, 0, 2);
+        assertEquals(Short.MAX_VALUE / 32768f, decoded[0]);
+        assertEquals(-1.0f, decoded[1]);
+    }
+
+    @Test
+    void encodingMatchesFormat() {
+        assertEquals(PcmEncoding.S16_LE, PcmEncoding.of(LineAcquirer.IDEAL));
+        for (PcmEncoding encoding : PcmEncoding.values()) {
+            assertEquals(encoding, PcmEncoding.of(encoding.format(44100f, 2)));
+        }
+        AudioFormat unsigned = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 48000f, 8, 1, 1, 48000f, false);
+        assertThrows(IllegalArgumentException.class, () -> PcmEncoding.of(unsigned));
+    }
+}
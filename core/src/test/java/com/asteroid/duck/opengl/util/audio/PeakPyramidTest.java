@@ -0,0 +1,175 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeakPyramidTest {
+    private static final int BLOCK = 8;
+    private static final int FACTOR = 3;
+    private static final int LEVELS = 4;
+    private static final int WIDTH = 50;
+
+    /** A random walk, so neighbouring blocks differ but are not independent noise. */
+    static float[] signal(int length, long seed) {
+        Random random = new Random(seed);
+        float[] samples = new float[length];
+        float value = 0;
+        for (int i = 0; i < length; i++) {
+            value = Math.max(-1, Math.min(1, value + (random.nextFloat() - 0.5f) * 0.2f));
+            samples[i] = value;
+        }
+        return samples;
+    }
+
+    /** Feed the samples in random-sized pieces, so blocks complete mid-write. */
+    static PeakPyramid build(float[] samples, long seed) {
+        PeakPyramid pyramid = new PeakPyramid(BLOCK, FACTOR, LEVELS, WIDTH, ChannelMode.LEFT);
+        Random random = new Random(seed);
+        for (int offset = 0; offset < samples.length; ) {
+            int count = Math.min(samples.length - offset, 1 + random.nextInt(40));
+            pyramid.add(samples, offset, count);
+            offset += count;
+        }
+        return pyramid;
+    }
+
+    static float[] bruteForce(float[] samples, long from, long to) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (long i = from; i < to; i++) {
+            min = Math.min(min, samples[(int) i]);
+            max = Math.max(max, samples[(int) i]);
+        }
+        return new float[]{min, max};
+    }
+
+    @Test
+    void everyHeldEntryMatchesBruteForce() {
+        float[] samples = signal(10_007, 1);
+        PeakPyramid subject = build(samples, 2);
+        assertEquals(samples.length, subject.getSamples());
+        float[] pairs = new float[2 * WIDTH];
+        for (int level = 0; level < LEVELS; level++) {
+            long size = subject.getBlockSize(level);
+            long entries = subject.getEntries(level);
+            assertEquals(samples.length / size, entries);
+            long first = Math.max(0, entries - WIDTH);
+            int held = (int) (entries - first);
+            subject.read(level, first, held, pairs, 0);
+            for (int i = 0; i < held; i++) {
+                long n = first + i;
+                float[] want = bruteForce(samples, n * size, (n + 1) * size);
+                assertEquals(want[0], pairs[2 * i], "level " + level + " entry " + n + " min");
+                assertEquals(want[1], pairs[2 * i + 1], "level " + level + " entry " + n + " max");
+            }
+        }
+    }
+
+    @Test
+    void randomSpansOfALevelMatchBruteForce() {
+        float[] samples = signal(20_000, 3);
+        PeakPyramid subject = build(samples, 4);
+        Random random = new Random(5);
+        float[] got = new float[2];
+        for (int trial = 0; trial < 2_000; trial++) {
+            int level = random.nextInt(LEVELS);
+            long entries = subject.getEntries(level);
+            long first = Math.max(0, entries - WIDTH);
+            long from = first + random.nextInt((int) (entries - first));
+            long to = from + 1 + random.nextInt((int) (entries - from));
+            subject.minMax(level, from, to, got);
+            long size = subject.getBlockSize(level);
+            assertArrayEquals(bruteForce(samples, from * size, to * size), got, "level " + level + " [" + from + ", " + to + ")");
+        }
+    }
+
+    @Test
+    void randomSampleSpansAreTiledAcrossLevels() {
+        float[] samples = signal(30_000, 6);
+        PeakPyramid subject = build(samples, 7);
+        Random random = new Random(8);
+        float[] got = new float[2];
+        for (int trial = 0; trial < 2_000; trial++) {
+            // align to a random level so older spans stay within what that level holds
+            int level = random.nextInt(LEVELS);
+            long size = subject.getBlockSize(level);
+            long entries = subject.getEntries(level);
+            long first = Math.max(0, entries - WIDTH);
+            long from = (first + random.nextInt((int) (entries - first))) * size;
+            long to = (from / size + 1 + random.nextInt((int) (entries - from / size))) * size;
+            if (level > 0 && random.nextBoolean()) {
+                // trim the end to a finer block when the finer level still holds it
+                long fine = subject.getBlockSize(level - 1);
+                long trimmed = to - fine;
+                if (trimmed > from && (to - size) / fine >= subject.getEntries(level - 1) - WIDTH) {
+                    to = trimmed;
+                }
+            }
+            subject.minMax(from, to, got);
+            assertArrayEquals(bruteForce(samples, from, to), got, "[" + from + ", " + to + ")");
+        }
+    }
+
+    @Test
+    void spansThatCannotBeTiledAreRejected() {
+        PeakPyramid subject = build(signal(30_000, 9), 10);
+        float[] out = new float[2];
+        long newest = subject.getEntries(0) * BLOCK;
+        // not on a block boundary
+        assertThrows(IllegalArgumentException.class, () -> subject.minMax(newest - 3 * BLOCK + 1, newest, out));
+        // extends into the incomplete block
+        assertThrows(IllegalArgumentException.class, () -> subject.minMax(newest - BLOCK, newest + BLOCK, out));
+        // older than level 0 holds, and not aligned to the coarser levels that do
+        assertThrows(IllegalArgumentException.class, () -> subject.minMax(BLOCK, 2 * BLOCK, out));
+        assertThrows(IllegalArgumentException.class, () -> subject.minMax(0, 0, 0, out));
+        assertThrows(IllegalArgumentException.class, () -> subject.read(0, 0, 1, new float[2], 0));
+    }
+
+    @Test
+    void pcmInputMatchesFloatInput() {
+        byte[] pcm = FloatAudioBufferTest.stereoAudio(23);
+        PeakPyramid fromPcm = new PeakPyramid(4, 2, 3, 8, ChannelMode.RIGHT);
+        for (int offset = 0; offset < pcm.length; offset += 12) {
+            fromPcm.write(pcm, offset, Math.min(12, pcm.length - offset));
+        }
+        float[] mono = new float[23];
+        ChannelMode.RIGHT.toMono(pcm, 0, 23, mono, 0);
+        PeakPyramid fromFloats = new PeakPyramid(4, 2, 3, 8, ChannelMode.RIGHT);
+        fromFloats.add(mono, 0, mono.length);
+
+        assertEquals(23, fromPcm.getSamples());
+        for (int level = 0; level < 3; level++) {
+            int entries = (int) fromPcm.getEntries(level);
+            float[] want = new float[2 * entries];
+            float[] got = new float[2 * entries];
+            fromFloats.read(level, 0, entries, want, 0);
+            fromPcm.read(level, 0, entries, got, 0);
+            assertArrayEquals(want, got, "level " + level);
+        }
+    }
+
+    @Test
+    void levelForDrawsAnySpanWithABoundedNumberOfTexels() {
+        PeakPyramid subject = new PeakPyramid();
+        int pixels = 256;
+        for (long span = 64L * pixels; span <= 60L * 60 * 48_000; span = span * 3 / 2) {
+            int level = subject.levelFor(span, pixels);
+            long texels = span / subject.getBlockSize(level);
+            assertTrue(texels >= pixels, span + " samples: " + texels + " texels");
+            if (level < subject.getLevels() - 1) {
+                assertTrue(texels < (long) PeakPyramid.DEFAULT_FACTOR * pixels, span + " samples: " + texels + " texels");
+            }
+        }
+        assertEquals(0, subject.levelFor(100, pixels));
+    }
+
+    @Test
+    void rejectsBadShapes() {
+        assertThrows(IllegalArgumentException.class, () -> new PeakPyramid(0, 2, 1, 1, ChannelMode.LEFT));
+        assertThrows(IllegalArgumentException.class, () -> new PeakPyramid(4, 1, 1, 1, ChannelMode.LEFT));
+        assertThrows(IllegalArgumentException.class, () -> new PeakPyramid(4, 2, 0, 1, ChannelMode.LEFT));
+    }
+}
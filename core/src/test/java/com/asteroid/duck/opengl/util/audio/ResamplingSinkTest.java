@@ -0,0 +1,241 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.asteroid.duck.opengl.util.audio.Allocations.assertAllocationFree;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResamplingSinkTest {
+    /** CRC32 of {@link #sixteenBitGoldenOutput()}, pinned from a reviewed run. */
+    private static final long GOLDEN_CRC = 0xf97f0b31L;
+
+    /** Collects everything written to it. */
+    static class CaptureSink implements AudioSink {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            bytes.write(data, offset, length);
+        }
+    }
+
+    static Stream<Arguments> rates() {
+        return Stream.of(
+                Arguments.of(44100, 48000),
+                Arguments.of(96000, 48000),
+                Arguments.of(48000, 44100));
+    }
+
+    /** Stereo float PCM: a sine per channel, from {@link StrictMath} so it is the same everywhere. */
+    static float[] stereoSine(int rate, double leftHz, double rightHz, double amplitude, int frames) {
+        float[] samples = new float[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            samples[2 * i] = (float) (amplitude * StrictMath.sin(2 * Math.PI * leftHz * i / rate));
+            samples[2 * i + 1] = (float) (amplitude * StrictMath.sin(2 * Math.PI * rightHz * i / rate));
+        }
+        return samples;
+    }
+
+    static byte[] encode(PcmEncoding encoding, float[] samples) {
+        byte[] pcm = new byte[samples.length * encoding.bytesPerSample()];
+        encoding.encode(samples, 0, samples.length, pcm, 0, encoding.bytesPerSample());
+        return pcm;
+    }
+
+    static float[] decode(PcmEncoding encoding, byte[] pcm) {
+        float[] samples = new float[pcm.length / encoding.bytesPerSample()];
+        encoding.decode(pcm, 0, encoding.bytesPerSample(), samples, 0, samples.length);
+        return samples;
+    }
+
+    /** Resample float stereo, writing in chunks that cycle through the given frame counts. */
+    static float[] resample(int inRate, int outRate, float[] input, int... chunkFrames) {
+        CaptureSink capture = new CaptureSink();
+        ResamplingSink subject = new ResamplingSink(
+                PcmEncoding.F32_LE.format(inRate, 2), PcmEncoding.F32_LE.format(outRate, 2), capture);
+        byte[] pcm = encode(PcmEncoding.F32_LE, input);
+        int offset = 0;
+        for (int i = 0; offset < pcm.length; i++) {
+            int length = Math.min(chunkFrames[i % chunkFrames.length] * 8, pcm.length - offset);
+            subject.write(pcm, offset, length);
+            offset += length;
+        }
+        return decode(PcmEncoding.F32_LE, capture.bytes.toByteArray());
+    }
+
+    /**
+     * The polyphase definition evaluated directly for every output frame: frame {@code k} sits
+     * at input position {@code k * down / up} and uses branch {@code k * down mod up}.
+     */
+    static double[] reference(int inRate, int outRate, float[] input, int channel) {
+        ResamplingSink sizes = new ResamplingSink(
+                PcmEncoding.F32_LE.format(inRate, 2), PcmEncoding.F32_LE.format(outRate, 2), (d, o, l) -> { });
+        int up = sizes.getUp();
+        int down = sizes.getDown();
+        int taps = ResamplingSink.DEFAULT_TAPS;
+        float[] table = ResamplingSink.design(up, down, taps);
+        int frames = input.length / 2;
+        int outputs = (int) (((long) frames * up + down - 1) / down);
+        double[] result = new double[outputs];
+        for (int k = 0; k < outputs; k++) {
+            long position = (long) k * down;
+            int n = (int) (position / up);
+            int p = (int) (position % up);
+            double sum = 0;
+            for (int t = 0; t < taps; t++) {
+                int i = n - (taps - 1) + t;
+                if (i >= 0) {
+                    sum += table[p * taps + t] * input[2 * i + channel];
+                }
+            }
+            result[k] = sum;
+        }
+        return result;
+    }
+
+    /**
+     * Least-squares fit of a sine of known frequency to one channel, ignoring the filter's
+     * start-up transient.
+     *
+     * @return {amplitude, residual RMS / amplitude RMS in dB}
+     */
+    static double[] fitSine(float[] samples, int channel, double hz, int rate, int skip) {
+        double ss = 0, sc = 0, cc = 0, ys = 0, yc = 0;
+        int frames = samples.length / 2;
+        for (int i = skip; i < frames; i++) {
+            double s = Math.sin(2 * Math.PI * hz * i / rate);
+            double c = Math.cos(2 * Math.PI * hz * i / rate);
+            double y = samples[2 * i + channel];
+            ss += s * s; sc += s * c; cc += c * c;
+            ys += y * s; yc += y * c;
+        }
+        double det = ss * cc - sc * sc;
+        double a = (ys * cc - yc * sc) / det;
+        double b = (yc * ss - ys * sc) / det;
+        double residual = 0;
+        for (int i = skip; i < frames; i++) {
+            double fit = a * Math.sin(2 * Math.PI * hz * i / rate) + b * Math.cos(2 * Math.PI * hz * i / rate);
+            double error = samples[2 * i + channel] - fit;
+            residual += error * error;
+        }
+        double amplitude = Math.hypot(a, b);
+        double signalPower = amplitude * amplitude / 2;
+        return new double[]{amplitude, 10 * Math.log10(residual / (frames - skip) / signalPower)};
+    }
+
+    static double rmsDb(float[] samples, int channel, int skip) {
+        double sum = 0;
+        int frames = samples.length / 2;
+        for (int i = skip; i < frames; i++) {
+            sum += samples[2 * i + channel] * samples[2 * i + channel];
+        }
+        return 10 * Math.log10(sum / (frames - skip));
+    }
+
+    @ParameterizedTest
+    @MethodSource("rates")
+    void matchesPolyphaseDefinition(int inRate, int outRate) {
+        float[] input = stereoSine(inRate, 997, 3001, 0.5, 5000);
+        float[] output = resample(inRate, outRate, input, 5000);
+        for (int channel = 0; channel < 2; channel++) {
+            double[] want = reference(inRate, outRate, input, channel);
+            assertEquals(want.length, output.length / 2);
+            for (int k = 0; k < want.length; k++) {
+                assertEquals(want[k], output[2 * k + channel], 1e-6, "frame " + k);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("rates")
+    void outputDoesNotDependOnChunking(int inRate, int outRate) {
+        float[] input = stereoSine(inRate, 440, 660, 0.8, 7000);
+        float[] whole = resample(inRate, outRate, input, 7000);
+        float[] pieces = resample(inRate, outRate, input, 1, 7, 333, 2049, 64);
+        assertArrayEquals(whole, pieces);
+    }
+
+    @Test
+    void sixteenBitGoldenOutput() {
+        AudioFormat cd = PcmEncoding.S16_LE.format(44100f, 2);
+        CaptureSink capture = new CaptureSink();
+        ResamplingSink subject = new ResamplingSink(cd, LineAcquirer.IDEAL, capture);
+        byte[] pcm = encode(PcmEncoding.S16_LE, stereoSine(44100, 261.63, 329.63, 0.5, 44100));
+        for (int offset = 0; offset < pcm.length; offset += 4 * 441) {
+            subject.write(pcm, offset, 4 * 441);
+        }
+        byte[] out = capture.bytes.toByteArray();
+        assertEquals(48000 * 4, out.length);
+        CRC32 crc = new CRC32();
+        crc.update(out);
+        // any change to the filter design or arithmetic shows here
+        assertEquals(GOLDEN_CRC, crc.getValue(), Long.toHexString(crc.getValue()));
+    }
+
+    @Test
+    void cdRateToneIsClean() {
+        float[] output = resample(44100, 48000, stereoSine(44100, 1000, 15000, 0.5, 44100), 441);
+        double[] tone = fitSine(output, 0, 1000, 48000, 256);
+        assertEquals(0.5, tone[0], 1e-4);
+        assertTrue(tone[1] < -80, "1 kHz residual " + tone[1] + " dB");
+        double[] high = fitSine(output, 1, 15000, 48000, 256);
+        assertEquals(0.5, high[0], 0.5 * 0.01, "15 kHz passband gain"); // within 0.1 dB
+        assertTrue(high[1] < -80, "15 kHz residual " + high[1] + " dB");
+    }
+
+    @Test
+    void highRateContentAboveNyquistIsRejected() {
+        // 30 kHz cannot be represented at 48 kHz and would alias to 18 kHz
+        float[] output = resample(96000, 48000, stereoSine(96000, 30000, 10000, 0.5, 96000), 960);
+        double alias = rmsDb(output, 0, 256) - 10 * Math.log10(0.5 * 0.5 / 2);
+        assertTrue(alias < -80, "alias at " + alias + " dB");
+        double[] tone = fitSine(output, 1, 10000, 48000, 256);
+        assertEquals(0.5, tone[0], 0.5 * 0.01);
+        assertTrue(tone[1] < -80, "10 kHz residual " + tone[1] + " dB");
+    }
+
+    @Test
+    void dcPassesExactly() {
+        float[] input = new float[2 * 4000];
+        Arrays.fill(input, 0.25f);
+        float[] output = resample(44100, 48000, input, 4000);
+        for (int i = 2 * ResamplingSink.DEFAULT_TAPS * 2; i < output.length; i++) {
+            assertEquals(0.25f, output[i], 1e-6f);
+        }
+    }
+
+    @Test
+    void reportsRatioAndDelay() {
+        ResamplingSink cd = new ResamplingSink(PcmEncoding.S16_LE.format(44100f, 2), LineAcquirer.IDEAL, (d, o, l) -> { });
+        assertEquals(160, cd.getUp());
+        assertEquals(147, cd.getDown());
+        ResamplingSink hires = new ResamplingSink(PcmEncoding.S24_LE.format(96000f, 2), LineAcquirer.IDEAL, (d, o, l) -> { });
+        assertEquals(1, hires.getUp());
+        assertEquals(2, hires.getDown());
+        assertEquals(31.5 / 96000, hires.getDelaySeconds(), 1e-12);
+    }
+
+    @Test
+    void rejectsUnsupportedConversions() {
+        AudioFormat mono = PcmEncoding.S16_LE.format(44100f, 1);
+        assertThrows(IllegalArgumentException.class, () -> new ResamplingSink(mono, LineAcquirer.IDEAL, (d, o, l) -> { }));
+        AudioFormat fractional = PcmEncoding.S16_LE.format(44100.5f, 2);
+        assertThrows(IllegalArgumentException.class, () -> new ResamplingSink(fractional, LineAcquirer.IDEAL, (d, o, l) -> { }));
+    }
+
+    @Test
+    void writeDoesNotAllocate() {
+        ResamplingSink subject = new ResamplingSink(PcmEncoding.S16_LE.format(44100f, 2), LineAcquirer.IDEAL, (d, o, l) -> { });
+        byte[] pcm = encode(PcmEncoding.S16_LE, stereoSine(44100, 440, 550, 0.5, 4410));
+        assertAllocationFree(() -> subject.write(pcm, 0, pcm.length), 200, 100);
+    }
+}
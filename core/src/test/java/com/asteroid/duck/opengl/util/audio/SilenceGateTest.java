@@ -0,0 +1,188 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import com.asteroid.duck.opengl.util.RenderContext;
+import com.asteroid.duck.opengl.util.audio.analysis.FrequencyProcessor;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.StereoDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.time.Duration;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SilenceGateTest {
+    private static final int RATE = (int) IDEAL.getSampleRate();
+    /** One 60 fps frame of audio per capture read. */
+    private static final int CHUNK = RATE / 60;
+    private static final double ACTIVE_PERIOD = 1.0 / 60;
+    private static final Duration HOLD = Duration.ofSeconds(5);
+    private static final double IDLE_HZ = 2.0;
+    /** Music until 10 s, a near-silent hiss until 40 s, then music again until 50 s. */
+    private static final double QUIET_FROM = 10;
+    private static final double QUIET_TO = 40;
+    private static final double END = 50;
+
+    /** A 440 Hz tone at about −12 dBFS, or ±20 units of hiss (about −64 dBFS) while quiet. */
+    private static final StereoDataSource EMPTY_ROOM = (t0, dt, left, right, frames) -> {
+        for (int i = 0; i < frames; i++) {
+            double t = t0 + i * dt;
+            boolean quiet = t >= QUIET_FROM && t < QUIET_TO;
+            float sample = quiet
+                    ? (i % 2 == 0 ? 20 : -20)
+                    : (float) (8000 * Math.sin(2 * Math.PI * 440 * t));
+            left[i] = sample;
+            right[i] = sample;
+        }
+    };
+
+    /** The context's desired update period, as a mocked {@link RenderContext} holds it. */
+    private Double period = ACTIVE_PERIOD;
+    private boolean woken;
+
+    private RenderContext context() {
+        RenderContext ctx = mock(RenderContext.class);
+        when(ctx.getDesiredUpdatePeriod()).thenAnswer(invocation -> period);
+        doAnswer(invocation -> {
+            period = invocation.getArgument(0);
+            return null;
+        }).when(ctx).setDesiredUpdatePeriod(any());
+        return ctx;
+    }
+
+    private static byte[] tone(int frames, double amplitude) {
+        byte[] pcm = new byte[frames * 4];
+        for (int i = 0; i < frames; i++) {
+            short sample = (short) Math.round(amplitude * Math.sin(2 * Math.PI * 440 * i / RATE));
+            for (int channel = 0; channel < 2; channel++) {
+                pcm[4 * i + 2 * channel] = (byte) sample;
+                pcm[4 * i + 2 * channel + 1] = (byte) (sample >> 8);
+            }
+        }
+        return pcm;
+    }
+
+    @Test
+    void idlesAfterTheHoldAndWakesWithinAFrame() throws LineUnavailableException {
+        SimulatedDataSource source = SimulatedDataSource.deterministic(EMPTY_ROOM);
+        source.open(IDEAL, CHUNK * IDEAL.getFrameSize());
+        source.start();
+        SilenceGate gate = new SilenceGate(RATE, SilenceGate.DEFAULT_PEAK_DB, SilenceGate.DEFAULT_RMS_DB, HOLD, IDLE_HZ);
+        gate.setWakeListener(() -> woken = true);
+        FrequencyProcessor processor = new FrequencyProcessor(1024, 32, RATE, 20f, 20_000f, -80f, 0f);
+        processor.setSilenceGate(gate);
+        long[] spectra = new long[1];
+        processor.addSink(magnitudes -> spectra[0]++);
+        RenderContext ctx = context();
+
+        byte[] pcm = new byte[CHUNK * IDEAL.getFrameSize()];
+        double idleAt = Double.NaN;
+        double wokenAt = Double.NaN;
+        double firstFrameAfterWake = Double.NaN;
+        int idleFrames = 0;
+        long idleSpectra = 0;
+        int frames = 0;
+        while (source.getFramesRead() < END * RATE) {
+            // sleep out the frame in audio time, cut short by a wake as GLWindow.requestFrame does
+            long frameEnd = source.getFramesRead() + Math.round(period * RATE);
+            woken = false;
+            while (source.getFramesRead() < frameEnd && !woken) {
+                int read = source.read(pcm, 0, pcm.length);
+                gate.write(pcm, 0, read);
+                processor.write(pcm, 0, read);
+                if (gate.isIdle() && Double.isNaN(idleAt)) {
+                    idleAt = (double) source.getFramesRead() / RATE;
+                }
+                if (woken) {
+                    wokenAt = (double) source.getFramesRead() / RATE;
+                }
+            }
+            double now = (double) source.getFramesRead() / RATE;
+            long before = spectra[0];
+            boolean idle = gate.apply(ctx);
+            processor.process();
+            frames++;
+            if (idle) {
+                idleFrames++;
+                idleSpectra += spectra[0] - before;
+            } else if (now > QUIET_TO && Double.isNaN(firstFrameAfterWake)) {
+                firstFrameAfterWake = now;
+                assertEquals(ACTIVE_PERIOD, period, 0.0, "full rate restored on the first frame");
+            }
+        }
+
+        // idle once the hiss has lasted the hold time, to the chunk
+        assertEquals(QUIET_FROM + HOLD.toSeconds(), idleAt, 1.0 / 60);
+        // woken by the first loud chunk, and the very next frame is back at full rate
+        assertEquals(QUIET_TO, wokenAt, 1.0 / 60 + 1e-9);
+        assertEquals(wokenAt, firstFrameAfterWake, 1e-9);
+        assertEquals(1, gate.getIdles());
+        assertEquals(1, gate.getWakes());
+
+        // the saving: 25 s idle at 2 fps with no FFTs, instead of 1 500 frames and FFTs
+        double idleSeconds = QUIET_TO - (QUIET_FROM + HOLD.toSeconds());
+        assertEquals(idleSeconds * IDLE_HZ, idleFrames, 1);
+        assertEquals(0, idleSpectra);
+        double activeSeconds = END - idleSeconds;
+        assertEquals(activeSeconds * 60, spectra[0], 2);
+        assertEquals(activeSeconds * 60 + idleSeconds * IDLE_HZ, frames, 2);
+    }
+
+    @Test
+    void steadyToneUnderThePeakThresholdIsStillLoudByItsRms() {
+        SilenceGate gate = new SilenceGate(RATE, -50f, -60f, Duration.ofMillis(100), IDLE_HZ);
+        // −55 dBFS peak is under the peak threshold, but its −58 dBFS RMS is over the RMS one
+        byte[] murmur = tone(CHUNK, Short.MAX_VALUE * Math.pow(10, -55 / 20.0));
+        for (int i = 0; i < 60; i++) {
+            gate.write(murmur, 0, murmur.length);
+        }
+        assertFalse(gate.isIdle());
+
+        byte[] hush = tone(CHUNK, Short.MAX_VALUE * Math.pow(10, -65 / 20.0));
+        for (int i = 0; i < 6; i++) {
+            gate.write(hush, 0, hush.length);
+        }
+        assertTrue(gate.isIdle());
+
+        // a single click wakes it
+        byte[] click = new byte[CHUNK * 4];
+        click[1] = 0x40;
+        gate.write(click, 0, click.length);
+        assertFalse(gate.isIdle());
+    }
+
+    @Test
+    void restoresWhateverRateWasSet() {
+        SilenceGate gate = new SilenceGate(RATE, -50f, -60f, Duration.ofMillis(100), IDLE_HZ);
+        RenderContext ctx = context();
+        byte[] hush = new byte[RATE / 5 * 4];
+        byte[] music = tone(CHUNK, 8000);
+
+        period = null;
+        gate.write(hush, 0, hush.length);
+        assertTrue(gate.apply(ctx));
+        assertEquals(1 / IDLE_HZ, period, 0.0);
+        gate.write(music, 0, music.length);
+        assertFalse(gate.apply(ctx));
+        assertNull(period, "uncapped again");
+
+        // a loop already slower than the idle rate is left alone
+        period = 2.0;
+        gate.write(hush, 0, hush.length);
+        assertTrue(gate.apply(ctx));
+        assertEquals(2.0, period, 0.0);
+        gate.write(music, 0, music.length);
+        assertFalse(gate.apply(ctx));
+        assertEquals(2.0, period, 0.0);
+    }
+
+    @Test
+    void rejectsBadSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new SilenceGate(0));
+        assertThrows(IllegalArgumentException.class, () -> new SilenceGate(RATE, -50f, -60f, Duration.ZERO, 2));
+        assertThrows(IllegalArgumentException.class, () -> new SilenceGate(RATE, -50f, -60f, HOLD, 0));
+    }
+}
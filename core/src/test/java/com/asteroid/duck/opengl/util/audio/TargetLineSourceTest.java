@@ -0,0 +1,247 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetLineSourceTest {
+    private static final AudioFormat FORMAT = LineAcquirer.IDEAL;
+    private static final int FRAME = FORMAT.getFrameSize();
+    private static final int PERIOD = 128;
+    /** 128 to 1024 frames, shrinking after 100 ms (4 800 frames) without an overrun. */
+    private static final LineBufferPolicy POLICY = new LineBufferPolicy(PERIOD, 8 * PERIOD, Duration.ofMillis(100));
+
+    /**
+     * A capture line driven by the test: {@link #capture} plays the device's part, and a line
+     * left unread for too long discards the oldest frames, as a real one does.
+     */
+    static class StallingLine implements TargetDataLine {
+        int bufferFrames;
+        long position;
+        int buffered;
+        int opens;
+        /** A buffer size, in frames, the device cannot be opened with. */
+        int unavailableFrames;
+        boolean open;
+        boolean running;
+
+        /** The device captures {@code frames} more frames; any that do not fit are lost. */
+        void capture(int frames) {
+            if (!running) {
+                return;
+            }
+            position += frames;
+            buffered = Math.min(bufferFrames, buffered + frames);
+        }
+
+        @Override public void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
+            if (bufferSize / format.getFrameSize() == unavailableFrames) {
+                throw new LineUnavailableException("no " + unavailableFrames + " frame buffer");
+            }
+            bufferFrames = bufferSize / format.getFrameSize();
+            position = 0;
+            buffered = 0;
+            open = true;
+            opens++;
+        }
+        @Override public void open(AudioFormat format) throws LineUnavailableException { open(format, PERIOD * FRAME); }
+        @Override public void open() throws LineUnavailableException { open(FORMAT); }
+        @Override public int read(byte[] b, int off, int len) {
+            int frames = Math.min(buffered, len / FRAME);
+            buffered -= frames;
+            return frames * FRAME;
+        }
+        @Override public void drain() { }
+        @Override public void flush() { buffered = 0; }
+        @Override public void start() { running = true; }
+        @Override public void stop() { running = false; }
+        @Override public boolean isRunning() { return running; }
+        @Override public boolean isActive() { return running; }
+        @Override public AudioFormat getFormat() { return FORMAT; }
+        @Override public int getBufferSize() { return bufferFrames * FRAME; }
+        @Override public int available() { return buffered * FRAME; }
+        @Override public int getFramePosition() { return (int) position; }
+        @Override public long getLongFramePosition() { return position; }
+        @Override public long getMicrosecondPosition() { return position * 1_000_000 / 48_000; }
+        @Override public float getLevel() { return AudioSystem.NOT_SPECIFIED; }
+        @Override public Line.Info getLineInfo() { return new DataLine.Info(TargetDataLine.class, FORMAT); }
+        @Override public void close() { open = false; running = false; }
+        @Override public boolean isOpen() { return open; }
+        @Override public Control[] getControls() { return new Control[0]; }
+        @Override public boolean isControlSupported(Control.Type control) { return false; }
+        @Override public Control getControl(Control.Type control) { throw new IllegalArgumentException(); }
+        @Override public void addLineListener(LineListener listener) { }
+        @Override public void removeLineListener(LineListener listener) { }
+    }
+
+    private final StallingLine line = new StallingLine();
+    private final TargetLineSource subject = new TargetLineSource("stalling", line, POLICY);
+    private final byte[] chunk = new byte[16 * PERIOD * FRAME];
+
+    private void start(int bufferBytes) throws LineUnavailableException {
+        subject.open(FORMAT, bufferBytes);
+        subject.start();
+    }
+
+    /** The device captures one period and the reader keeps up. */
+    private int period() {
+        line.capture(PERIOD);
+        return subject.read(chunk, 0, chunk.length);
+    }
+
+    @Test
+    void opensWithinThePolicyLimits() throws LineUnavailableException {
+        start(16 * FRAME);
+        assertEquals(PERIOD, subject.getBufferFrames());
+        assertEquals(PERIOD, line.bufferFrames);
+        subject.close();
+        subject.open(FORMAT, 100 * PERIOD * FRAME);
+        assertEquals(8 * PERIOD, subject.getBufferFrames());
+        assertEquals(0, subject.getResizes());
+    }
+
+    @Test
+    void keepingUpIsNotAnOverrun() throws LineUnavailableException {
+        start(PERIOD * FRAME);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(PERIOD * FRAME, period());
+        }
+        assertEquals(0, subject.getOverruns());
+        assertEquals(1, line.opens);
+    }
+
+    @Test
+    void stallIsCountedAndGrowsTheBuffer() throws LineUnavailableException {
+        start(PERIOD * FRAME);
+        period();
+        // the reader stalls for three periods: only one fits in the line
+        line.capture(3 * PERIOD);
+        assertEquals(PERIOD * FRAME, subject.read(chunk, 0, chunk.length));
+        assertEquals(1, subject.getOverruns());
+        assertEquals(2 * PERIOD, subject.getLostFrames());
+
+        // the read drained the line, so it was reopened, still running, with twice the room
+        assertEquals(2, line.opens);
+        assertTrue(line.isRunning());
+        assertEquals(2 * PERIOD, subject.getBufferFrames());
+        assertEquals(1, subject.getResizes());
+
+        // the same stall now only loses one period, and the count restarts with the new line
+        line.capture(3 * PERIOD);
+        subject.read(chunk, 0, chunk.length);
+        assertEquals(2, subject.getOverruns());
+        assertEquals(3 * PERIOD, subject.getLostFrames());
+        assertEquals(4 * PERIOD, subject.getBufferFrames());
+    }
+
+    @Test
+    void aFailedResizeKeepsTheOldBufferAndIsNotCounted() throws LineUnavailableException {
+        start(PERIOD * FRAME);
+        line.unavailableFrames = 2 * PERIOD;
+        line.capture(3 * PERIOD);
+        subject.read(chunk, 0, chunk.length);
+        assertEquals(1, subject.getOverruns());
+
+        // reopened with the old buffer, still running, and no resize to show for it
+        assertEquals(2, line.opens);
+        assertTrue(line.isRunning());
+        assertEquals(PERIOD, subject.getBufferFrames());
+        assertEquals(0, subject.getResizes());
+
+        line.unavailableFrames = 0;
+        line.capture(3 * PERIOD);
+        subject.read(chunk, 0, chunk.length);
+        assertEquals(2 * PERIOD, subject.getBufferFrames());
+        assertEquals(1, subject.getResizes());
+    }
+
+    @Test
+    void growthStopsAtTheLimit() throws LineUnavailableException {
+        start(PERIOD * FRAME);
+        for (int i = 0; i < 10; i++) {
+            line.capture(100 * PERIOD);
+            subject.read(chunk, 0, chunk.length);
+        }
+        assertEquals(10, subject.getOverruns());
+        assertEquals(8 * PERIOD, subject.getBufferFrames());
+        assertEquals(3, subject.getResizes());
+    }
+
+    @Test
+    void resizeWaitsUntilTheLineIsDrained() throws LineUnavailableException {
+        start(PERIOD * FRAME);
+        line.capture(2 * PERIOD);
+        // a small read leaves audio in the line: reopening now would throw it away
+        assertEquals(32 * FRAME, subject.read(chunk, 0, 32 * FRAME));
+        assertEquals(1, subject.getOverruns());
+        assertEquals(1, line.opens);
+        assertEquals(PERIOD - 32, line.buffered);
+
+        assertEquals((PERIOD - 32) * FRAME, subject.read(chunk, 0, chunk.length));
+        assertEquals(2, line.opens);
+        assertEquals(2 * PERIOD, subject.getBufferFrames());
+        assertEquals(1, subject.getOverruns(), "reading what was buffered is not an overrun");
+    }
+
+    @Test
+    void shrinksAfterACalmPeriod() throws LineUnavailableException {
+        start(4 * PERIOD * FRAME);
+        long calm = POLICY.calmFrames(FORMAT.getFrameRate());
+        long read = 0;
+        while (read < calm - PERIOD) {
+            read += period() / FRAME;
+        }
+        assertEquals(4 * PERIOD, subject.getBufferFrames());
+        period();
+        assertEquals(2 * PERIOD, subject.getBufferFrames());
+        assertTrue(line.isRunning());
+
+        // another calm period halves it again, then the floor holds
+        for (int i = 0; i < 4 * calm / PERIOD; i++) {
+            period();
+        }
+        assertEquals(PERIOD, subject.getBufferFrames());
+        assertEquals(2, subject.getResizes());
+        assertEquals(0, subject.getOverruns());
+    }
+
+    @Test
+    void readerCountsOverrunsOfItsLine() throws LineUnavailableException {
+        AudioReader reader = new AudioReader(List.of((data, offset, length) -> { }));
+        start(PERIOD * FRAME);
+        line.capture(PERIOD);
+        reader.pump(subject);
+        line.capture(5 * PERIOD);
+        reader.pump(subject);
+        assertEquals(1, reader.getOverruns());
+        line.capture(PERIOD);
+        reader.pump(subject);
+        assertEquals(1, reader.getOverruns());
+    }
+
+    @Test
+    void rejectsBadPolicies() {
+        assertThrows(IllegalArgumentException.class, () -> new LineBufferPolicy(0, 10, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new LineBufferPolicy(20, 10, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new LineBufferPolicy(10, 20, Duration.ZERO));
+        assertEquals(64, LineBufferPolicy.fixed(64).grow(64));
+        assertEquals(64, LineBufferPolicy.fixed(64).shrink(64));
+        assertEquals(Long.MAX_VALUE, LineBufferPolicy.fixed(64).calmFrames(48_000));
+        LineBufferPolicy neverShrinks = new LineBufferPolicy(10, 40, LineBufferPolicy.NEVER);
+        assertFalse(neverShrinks.shrinks());
+        assertEquals(40, neverShrinks.grow(20));
+        assertEquals(20, neverShrinks.shrink(20));
+        assertTrue(POLICY.shrinks());
+    }
+}
@@ -0,0 +1,201 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.simulated.CompositeWaveform;
+import com.asteroid.duck.opengl.util.audio.simulated.Note;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import com.asteroid.duck.opengl.util.timer.Clock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Records ten seconds of real analysis of a deterministic simulated source at a virtual 60 fps,
+ * then replays the log.
+ */
+class AnalysisReplayTest {
+    private static final int SAMPLE_RATE = (int) IDEAL.getSampleRate();
+    private static final int FRAMES = 600;
+    private static final int NUM_BINS = 128;
+    private static final int KEY_INTERVAL = 60;
+    /** Half a quantisation step, plus float rounding. */
+    private static final float TOLERANCE = 0.5f / 0xFFFF + 1e-6f;
+
+    @TempDir
+    Path tempDir;
+
+    private Path log;
+    private double elapsed;
+    private final Clock clock = () -> elapsed;
+    private final List<float[]> spectra = new ArrayList<>();
+    private final List<float[]> strengths = new ArrayList<>();
+    private long bytesWritten;
+
+    @BeforeEach
+    void record() throws Exception {
+        CompositeWaveform music = new CompositeWaveform(2);
+        music.add(LineAcquirer.getSampledWaveformData());
+        music.add(new Note(new Waveform(55).amplify(8000), 0.5, "1000"));
+        SimulatedDataSource source = SimulatedDataSource.deterministic(music);
+        int chunk = SAMPLE_RATE / 60 * IDEAL.getFrameSize();
+        source.open(IDEAL, chunk);
+        source.start();
+
+        FrequencyProcessor processor = new FrequencyProcessor(1024, NUM_BINS, SAMPLE_RATE, 20f, 20_000f, -80f, 0f);
+        BeatDetector beats = new BeatDetector(processor);
+        processor.addSink(beats);
+        log = tempDir.resolve("analysis.dal");
+        try (AnalysisRecorder recorder = new AnalysisRecorder(log, NUM_BINS, beats, KEY_INTERVAL, clock)) {
+            processor.addSink(recorder);
+            processor.addSink(magnitudes -> {
+                spectra.add(magnitudes.clone());
+                strengths.add(beats.getBeatStrengths());
+            });
+            byte[] pcm = new byte[chunk];
+            for (int frame = 0; frame < FRAMES; frame++) {
+                elapsed = frame / 60.0;
+                int read = source.read(pcm, 0, pcm.length);
+                processor.write(pcm, 0, read);
+                processor.process();
+            }
+            assertEquals(FRAMES, recorder.getFrameCount());
+            bytesWritten = recorder.getBytesWritten();
+        }
+        elapsed = 0;
+    }
+
+    private void assertFrame(int frame, float[] magnitudes, AnalysisReplay replay) {
+        assertEquals(frame, replay.getFrame());
+        assertArrayEquals(spectra.get(frame), magnitudes, TOLERANCE, "spectrum " + frame);
+        assertArrayEquals(strengths.get(frame), replay.getBeatStrengths(), TOLERANCE, "beats " + frame);
+        assertEquals(Math.round(frame / 60.0 * 1e9), replay.getFrameNanos(), "time of " + frame);
+    }
+
+    @Test
+    void roundTripsEveryFrameWithinQuantisation() throws IOException {
+        try (AnalysisReplay replay = new AnalysisReplay(log)) {
+            assertEquals(FRAMES, replay.getFrameCount());
+            assertEquals(NUM_BINS, replay.getNumBins());
+            assertEquals(FrequencyBand.defaults(), replay.getBands());
+            float[][] shown = new float[1][];
+            replay.addSink(magnitudes -> shown[0] = magnitudes);
+
+            int frames = 0;
+            while (replay.next()) {
+                assertFrame(frames, shown[0], replay);
+                frames++;
+            }
+            assertEquals(FRAMES, frames);
+            assertTrue(replay.isFinished());
+            assertTrue(strengths.stream().anyMatch(s -> s[0] > 0.5f), "the bass note should register as beats");
+            assertEquals(strengths.get(FRAMES - 1)[0], replay.getBeatStrength("bass"), TOLERANCE);
+
+            replay.rewind();
+            assertTrue(replay.next());
+            assertFrame(0, shown[0], replay);
+        }
+    }
+
+    @Test
+    void deltaEncodingIsCompact() throws IOException {
+        long raw = (long) FRAMES * (NUM_BINS + 3) * Float.BYTES;
+        assertTrue(bytesWritten < raw / 2, bytesWritten + " bytes against " + raw + " as floats");
+        // the index and trailer are all the close adds
+        long index = (FRAMES / KEY_INTERVAL) * 16L;
+        assertEquals(bytesWritten + index + 16, Files.size(log));
+    }
+
+    @Test
+    void seeksToAnyFrameInAnyOrder() throws IOException {
+        try (AnalysisReplay replay = new AnalysisReplay(log)) {
+            float[][] shown = new float[1][];
+            replay.addSink(magnitudes -> shown[0] = magnitudes);
+            for (int frame : new int[]{137, 59, 60, 61, 599, 0, 300, 301, 119}) {
+                replay.seek(frame);
+                assertFrame(frame, shown[0], replay);
+            }
+            assertTrue(replay.next());
+            assertFrame(120, shown[0], replay);
+            assertThrows(IndexOutOfBoundsException.class, () -> replay.seek(FRAMES));
+        }
+    }
+
+    @Test
+    void followsTheClockAtAnySpeed() throws IOException {
+        try (AnalysisReplay replay = new AnalysisReplay(log)) {
+            float[][] shown = new float[1][];
+            replay.addSink(magnitudes -> shown[0] = magnitudes);
+            assertThrows(IllegalStateException.class, replay::process);
+
+            // double speed: every other recorded frame
+            replay.play(clock, 2.0);
+            for (int step = 0; step < 100; step++) {
+                elapsed = step / 60.0;
+                assertTrue(replay.process());
+                assertFrame(2 * step, shown[0], replay);
+            }
+
+            // half speed from frame 300: a new frame every other render frame
+            replay.seek(300);
+            replay.play(clock, 0.5);
+            double start = elapsed;
+            int shownCount = 0;
+            for (int step = 1; step <= 20; step++) {
+                elapsed = start + step / 60.0;
+                if (replay.process()) {
+                    shownCount++;
+                }
+            }
+            assertEquals(10, shownCount);
+            assertFrame(310, shown[0], replay);
+
+            // a long jump goes through the index and lands on the same state
+            elapsed += 4.0;
+            assertTrue(replay.process());
+            assertFrame(430, shown[0], replay);
+
+            // past the end: the last frame stays
+            elapsed += 60.0;
+            assertTrue(replay.process());
+            assertFrame(FRAMES - 1, shown[0], replay);
+            assertFalse(replay.process());
+        }
+    }
+
+    @Test
+    void replayedSpectraDriveADetectorLikeTheLiveOnes() throws IOException {
+        try (AnalysisReplay replay = new AnalysisReplay(log)) {
+            BeatDetector beats = new BeatDetector(NUM_BINS, 20f, 20_000f);
+            replay.addSink(beats);
+            replay.play(clock, 1.0);
+            for (int frame = 0; frame < FRAMES; frame++) {
+                elapsed = frame / 60.0;
+                assertTrue(replay.process());
+                assertArrayEquals(strengths.get(frame), beats.getBeatStrengths(), 1e-3f, "beats " + frame);
+            }
+        }
+    }
+
+    @Test
+    void rejectsForeignAndUnfinishedLogs() throws IOException {
+        Path foreign = tempDir.resolve("foreign.dal");
+        Files.write(foreign, new byte[64]);
+        assertThrows(IOException.class, () -> new AnalysisReplay(foreign));
+
+        byte[] bytes = Files.readAllBytes(log);
+        Path truncated = tempDir.resolve("truncated.dal");
+        Files.write(truncated, Arrays.copyOf(bytes, (int) bytesWritten));
+        assertThrows(IOException.class, () -> new AnalysisReplay(truncated));
+    }
+}
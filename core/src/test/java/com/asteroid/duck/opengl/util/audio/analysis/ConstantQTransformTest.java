@@ -0,0 +1,120 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.ChannelMode;
+import com.asteroid.duck.opengl.util.audio.simulated.CompositeWaveform;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.sound.sampled.LineUnavailableException;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantQTransformTest {
+    private static final float RATE = IDEAL.getSampleRate();
+    private static final float DB_FLOOR = -80f;
+    private static final float DB_RANGE = 80f;
+
+    /** Semitones from A1 to A8. */
+    private static ConstantQProcessor semitones() {
+        return new ConstantQProcessor(RATE, 55f, 7040f, 12, DB_FLOOR, 0f);
+    }
+
+    /** Stream a second of the tones into the processor, then analyse the newest window once. */
+    private static float[] analyse(ConstantQProcessor processor, Waveform... tones) throws LineUnavailableException {
+        CompositeWaveform music = new CompositeWaveform(tones.length);
+        for (Waveform tone : tones) {
+            music.add(tone);
+        }
+        SimulatedDataSource source = SimulatedDataSource.deterministic(music);
+        int chunk = 480 * IDEAL.getFrameSize();
+        source.open(IDEAL, chunk);
+        source.start();
+        byte[] pcm = new byte[chunk];
+        while (source.getFramesRead() < RATE) {
+            int read = source.read(pcm, 0, pcm.length);
+            processor.write(pcm, 0, read);
+        }
+        float[] levels = new float[processor.getNumBins()];
+        processor.addSink(spectrum -> System.arraycopy(spectrum, 0, levels, 0, levels.length));
+        processor.process();
+        return levels;
+    }
+
+    private static int peak(float[] levels) {
+        int peak = 0;
+        for (int i = 1; i < levels.length; i++) {
+            if (levels[i] > levels[peak]) {
+                peak = i;
+            }
+        }
+        return peak;
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {55, 110, 261.63, 440, 1760, 7040})
+    void aSinePeaksInItsSemitone(double hz) throws LineUnavailableException {
+        ConstantQProcessor processor = semitones();
+        float[] levels = analyse(processor, new Waveform(hz).amplify(8000));
+        int expected = (int) Math.round(12 * Math.log(hz / 55) / Math.log(2));
+        assertEquals(expected, peak(levels), "peak bin for " + hz + " Hz");
+        assertEquals(hz, processor.getTransform().getBinFrequency(expected), 0.01 * hz);
+        // a whole tone away is at least 20 dB down
+        for (int neighbour : new int[]{expected - 2, expected + 2}) {
+            if (neighbour >= 0 && neighbour < levels.length) {
+                assertTrue(levels[expected] - levels[neighbour] > 20 / DB_RANGE,
+                        "bin " + neighbour + " at " + levels[neighbour] + " against " + levels[expected]);
+            }
+        }
+    }
+
+    @Test
+    void readsTheSameLevelAsTheFftProcessor() {
+        // 1500 Hz is FFT bin 128 of 4096 and constant-Q bin 36 from 187.5 Hz: both centred
+        ConstantQTransform cqt = new ConstantQTransform(RATE, 187.5f, 6000f, 12, DB_FLOOR, 0f);
+        assertEquals(1500f, cqt.getBinFrequency(36), 1e-3f);
+        float[] samples = new float[Math.max(cqt.getFftSize(), 4096)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) (0.1 * Math.sin(2 * Math.PI * 1500 * i / RATE));
+        }
+        float[] cq = new float[cqt.getNumBins()];
+        cqt.process(samples, cq);
+        FFTProcessor fft = new FFTProcessor(4096, 64, RATE, 20f, 20_000f, DB_FLOOR, 0f);
+        float[] bars = new float[64];
+        fft.process(samples, bars);
+        assertEquals(36, peak(cq));
+        assertEquals(bars[peak(bars)], cq[36], 0.5f / DB_RANGE, "within half a dB");
+    }
+
+    @Test
+    void kernelsAreSparseAndBinsLineUpWithTheirEdges() {
+        ConstantQTransform cqt = new ConstantQTransform(RATE, 55f, 14_080f, 24, DB_FLOOR, 0f);
+        assertEquals(193, cqt.getNumBins());
+        assertEquals(32768, cqt.getFftSize());
+        long dense = (long) cqt.getNumBins() * (cqt.getFftSize() / 2);
+        assertTrue(cqt.getKernelEntries() * 20L < dense,
+                cqt.getKernelEntries() + " entries of " + dense);
+        assertEquals(4L * (2 * cqt.getKernelEntries() + 2 * cqt.getNumBins() + 1), cqt.getKernelBytes());
+        assertTrue(cqt.toString().contains(cqt.getKernelEntries() + " kernel entries, " + cqt.getKernelBytes() + " bytes"),
+                cqt.toString());
+        assertEquals(1 / (Math.pow(2, 1 / 24.0) - 1), cqt.getQ(), 1e-9);
+
+        // the bar edges a BeatDetector assumes are half a bin either side of the centres
+        ConstantQProcessor processor = new ConstantQProcessor(cqt, ChannelMode.MONO_BLEND);
+        double ratio = Math.pow(processor.getFMax() / processor.getFMin(), 1.0 / processor.getNumBins());
+        assertEquals(Math.pow(2, 1 / 24.0), ratio, 1e-6);
+        assertEquals(55 * Math.pow(2, -1 / 48.0), processor.getFMin(), 1e-3);
+    }
+
+    @Test
+    void rejectsImpossibleConfigurations() {
+        assertThrows(IllegalArgumentException.class, () -> new ConstantQTransform(RATE, 0f, 1000f, 12, -80f, 0f));
+        assertThrows(IllegalArgumentException.class, () -> new ConstantQTransform(RATE, 100f, 50f, 12, -80f, 0f));
+        assertThrows(IllegalArgumentException.class, () -> new ConstantQTransform(RATE, 100f, RATE, 12, -80f, 0f));
+        assertThrows(IllegalArgumentException.class, () -> new ConstantQTransform(RATE, 100f, 1000f, 0, -80f, 0f));
+        assertThrows(IllegalArgumentException.class, () -> new ConstantQTransform(RATE, 100f, 1000f, 12, -80f, 0f, 1f));
+    }
+}
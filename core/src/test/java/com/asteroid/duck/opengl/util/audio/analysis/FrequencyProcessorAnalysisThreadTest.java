@@ -0,0 +1,188 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrequencyProcessorAnalysisThreadTest {
+    private static final int RATE = (int) IDEAL.getSampleRate();
+    private static final int FFT_SIZE = 1024;
+    private static final int NUM_BINS = 64;
+
+    private static FrequencyProcessor processor() {
+        return new FrequencyProcessor(FFT_SIZE, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f);
+    }
+
+    /** Stereo 16-bit PCM of a tone, starting at frame {@code start}. */
+    private static byte[] tone(double hz, long start, int frames) {
+        byte[] pcm = new byte[frames * 4];
+        for (int i = 0; i < frames; i++) {
+            short sample = (short) Math.round(8000 * Math.sin(2 * Math.PI * hz * (start + i) / RATE));
+            for (int channel = 0; channel < 2; channel++) {
+                pcm[4 * i + 2 * channel] = (byte) sample;
+                pcm[4 * i + 2 * channel + 1] = (byte) (sample >> 8);
+            }
+        }
+        return pcm;
+    }
+
+    /** Call {@link FrequencyProcessor#process()} until the sinks' spectrum reaches a version. */
+    private static void processUntil(FrequencyProcessor processor, long version) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (processor.getSpectrumVersion() < version) {
+            assertTrue(System.nanoTime() < deadline, "no spectrum " + version + " from the analysis thread");
+            processor.process();
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void threadedSpectrumMatchesTheInlineOne() throws InterruptedException {
+        byte[] pcm = tone(440, 0, 2 * FFT_SIZE);
+        FrequencyProcessor inline = processor();
+        inline.write(pcm, 0, pcm.length);
+        float[] expected = new float[NUM_BINS];
+        inline.addSink(magnitudes -> System.arraycopy(magnitudes, 0, expected, 0, NUM_BINS));
+        inline.process();
+        assertEquals(1, inline.getSpectrumVersion());
+
+        FrequencyProcessor threaded = processor();
+        int[] notified = new int[1];
+        float[] received = new float[NUM_BINS];
+        threaded.addSink(magnitudes -> {
+            notified[0]++;
+            System.arraycopy(magnitudes, 0, received, 0, NUM_BINS);
+        });
+        threaded.write(pcm, 0, pcm.length);
+        threaded.startAnalysisThread(1000);
+        try {
+            assertTrue(threaded.isAnalysisThreaded());
+            processUntil(threaded, 1);
+            assertArrayEquals(expected, received);
+            assertEquals(1, notified[0]);
+
+            // no new audio, no new spectrum: the sinks are not told twice
+            Thread.sleep(20);
+            for (int i = 0; i < 10; i++) {
+                threaded.process();
+            }
+            assertEquals(1, threaded.getSpectrumVersion());
+            assertEquals(1, notified[0]);
+
+            byte[] more = tone(3000, 2 * FFT_SIZE, FFT_SIZE);
+            threaded.write(more, 0, more.length);
+            processUntil(threaded, 2);
+            assertEquals(2, notified[0]);
+            assertFalse(Arrays.equals(expected, received), "the new window was analysed");
+        } finally {
+            threaded.stopAnalysisThread();
+        }
+        assertFalse(threaded.isAnalysisThreaded());
+
+        // back on the render thread
+        threaded.process();
+        assertEquals(3, notified[0]);
+    }
+
+    @Test
+    void sinksNeverSeeTheirSpectrumChangeUnderThem() throws InterruptedException {
+        FrequencyProcessor processor = processor();
+        float[] copy = new float[NUM_BINS];
+        long[] changed = new long[1];
+        long[] spectra = new long[1];
+        processor.addSink(magnitudes -> {
+            spectra[0]++;
+            System.arraycopy(magnitudes, 0, copy, 0, NUM_BINS);
+            // a frame's worth of drawing, while the analysis thread carries on
+            LockSupport.parkNanos(200_000);
+            if (!Arrays.equals(copy, magnitudes)) {
+                changed[0]++;
+            }
+        });
+
+        AtomicBoolean capturing = new AtomicBoolean(true);
+        Thread capture = new Thread(() -> {
+            long frame = 0;
+            while (capturing.get()) {
+                // a sweep, so every window differs from the last
+                byte[] chunk = tone(200 + (frame / 64) % 5000, frame, 64);
+                processor.write(chunk, 0, chunk.length);
+                frame += 64;
+                Thread.onSpinWait();
+            }
+        }, "test-capture");
+        capture.start();
+        processor.startAnalysisThread(5000);
+        try {
+            long end = System.nanoTime() + 500_000_000L;
+            while (System.nanoTime() < end) {
+                processor.process();
+            }
+        } finally {
+            processor.stopAnalysisThread();
+            capturing.set(false);
+            capture.join();
+        }
+        assertTrue(spectra[0] > 10, "only " + spectra[0] + " spectra");
+        assertEquals(0, changed[0], "spectra changed during their frame");
+        assertTrue(processor.getSpectrumVersion() >= spectra[0], "versions count the spectra published");
+    }
+
+    @Test
+    void startingFromAnotherThreadNeverCorruptsAnInlineAnalysis() throws InterruptedException {
+        // one fixed window, so every spectrum, inline or threaded, must be the same
+        byte[] pcm = tone(440, 0, 2 * FFT_SIZE);
+        FrequencyProcessor processor = processor();
+        processor.write(pcm, 0, pcm.length);
+        float[] expected = new float[NUM_BINS];
+        FrequencySink first = magnitudes -> System.arraycopy(magnitudes, 0, expected, 0, NUM_BINS);
+        processor.addSink(first);
+        processor.process();
+        processor.removeSink(first);
+
+        long[] corrupted = new long[1];
+        processor.addSink(magnitudes -> {
+            if (!Arrays.equals(expected, magnitudes)) {
+                corrupted[0]++;
+            }
+        });
+        AtomicBoolean toggling = new AtomicBoolean(true);
+        Thread control = new Thread(() -> {
+            while (toggling.get()) {
+                processor.startAnalysisThread(20_000);
+                LockSupport.parkNanos(50_000);
+                processor.stopAnalysisThread();
+            }
+        }, "test-control");
+        control.start();
+        try {
+            long end = System.nanoTime() + 300_000_000L;
+            while (System.nanoTime() < end) {
+                processor.process();
+            }
+        } finally {
+            toggling.set(false);
+            control.join();
+        }
+        assertEquals(0, corrupted[0], "spectra from a window shared between threads");
+    }
+
+    @Test
+    void driftCompensationStaysOnTheRenderThread() {
+        FrequencyProcessor processor = processor();
+        processor.startAnalysisThread(120);
+        try {
+            assertThrows(IllegalStateException.class, () -> processor.enableDriftCompensation(() -> 0, 2048));
+        } finally {
+            processor.stopAnalysisThread();
+        }
+        processor.enableDriftCompensation(() -> 0, 2048);
+        assertThrows(IllegalStateException.class, () -> processor.startAnalysisThread(120));
+        assertThrows(IllegalArgumentException.class, () -> processor().startAnalysisThread(0));
+    }
+}
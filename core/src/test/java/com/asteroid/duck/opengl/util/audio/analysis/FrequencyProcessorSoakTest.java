@@ -0,0 +1,98 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.simulated.CompositeWaveform;
+import com.asteroid.duck.opengl.util.audio.simulated.Note;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.LineUnavailableException;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the analysis chain from a deterministic simulated source as fast as it will go, one
+ * 60 fps video frame's worth of audio per {@link FrequencyProcessor#process()}. The same chain
+ * is timed by {@code AnalysisChainBenchmark}.
+ */
+class FrequencyProcessorSoakTest {
+	private static final int SAMPLE_RATE = (int) IDEAL.getSampleRate();
+	private static final int FRAMES_PER_PROCESS = SAMPLE_RATE / 60;
+
+	/** Folds every spectrum and beat strength into a running digest. */
+	static class DigestSink implements FrequencySink {
+		final BeatDetector beats;
+		long digest = 1125899906842597L;
+		long spectra;
+		long beatFrames;
+
+		DigestSink(BeatDetector beats) {
+			this.beats = beats;
+		}
+
+		@Override
+		public void onSpectrum(float[] magnitudes) {
+			for (float magnitude : magnitudes) {
+				digest = 31 * digest + Float.floatToIntBits(magnitude);
+			}
+			float kick = beats.getBeatStrength("bass");
+			digest = 31 * digest + Float.floatToIntBits(kick);
+			if (kick > 0) beatFrames++;
+			spectra++;
+		}
+	}
+
+	/** A gated bass note over the standard panned middle C, so there are beats to detect. */
+	private static SimulatedDataSource source() throws LineUnavailableException {
+		CompositeWaveform music = new CompositeWaveform(2);
+		music.add(LineAcquirer.getSampledWaveformData());
+		music.add(new Note(new Waveform(55).amplify(8000), 0.5, "1000"));
+		SimulatedDataSource source = SimulatedDataSource.deterministic(music);
+		source.open(IDEAL, FRAMES_PER_PROCESS * IDEAL.getFrameSize());
+		source.start();
+		return source;
+	}
+
+	/** Run the chain over {@code seconds} of audio, returning the digest at each checkpoint. */
+	private static long[] run(int seconds, int... checkpoints) throws LineUnavailableException {
+		SimulatedDataSource source = source();
+		FrequencyProcessor processor = new FrequencyProcessor(1024, 128, SAMPLE_RATE, 20f, 20_000f, -80f, 0f);
+		BeatDetector beats = new BeatDetector(processor);
+		DigestSink digest = new DigestSink(beats);
+		processor.addSink(beats);
+		processor.addSink(digest);
+
+		byte[] pcm = new byte[FRAMES_PER_PROCESS * IDEAL.getFrameSize()];
+		long[] result = new long[checkpoints.length + 1];
+		int next = 0;
+		long total = (long) seconds * SAMPLE_RATE;
+		while (source.getFramesRead() < total) {
+			int read = source.read(pcm, 0, pcm.length);
+			assertEquals(pcm.length, read);
+			processor.write(pcm, 0, read);
+			processor.process();
+			if (next < checkpoints.length && source.getFramesRead() == (long) checkpoints[next] * SAMPLE_RATE) {
+				result[next++] = digest.digest;
+			}
+		}
+		assertEquals(total / FRAMES_PER_PROCESS, digest.spectra);
+		assertTrue(digest.beatFrames > 0, "no beats detected");
+		result[next] = digest.digest;
+		return result;
+	}
+
+	@Test
+	void oneHourOfAudioStaysDeterministic() throws LineUnavailableException {
+		// how fast it goes is AnalysisChainBenchmark's business, not a unit test's
+		long[] digests = run(3600, 60);
+		// the first minute of the hour is bit-identical to a separate one-minute run
+		assertEquals(run(60)[0], digests[0]);
+	}
+
+	@Test
+	void spectraAreReproducible() throws LineUnavailableException {
+		assertArrayEquals(run(30, 10, 20), run(30, 10, 20));
+	}
+}
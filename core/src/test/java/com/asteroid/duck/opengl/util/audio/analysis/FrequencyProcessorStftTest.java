@@ -0,0 +1,224 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.ChannelMode;
+import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.simulated.CompositeWaveform;
+import com.asteroid.duck.opengl.util.audio.simulated.Note;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.audio.simulated.Waveform;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams a deterministic simulated source through the STFT, calling
+ * {@link FrequencyProcessor#process()} at different render rates.
+ */
+class FrequencyProcessorStftTest {
+    private static final int RATE = (int) IDEAL.getSampleRate();
+    private static final int FFT_SIZE = 1024;
+    private static final int HOP = FFT_SIZE / 4;
+    private static final int NUM_BINS = 64;
+    /** The capture thread delivers 10 ms chunks. */
+    private static final int CHUNK_FRAMES = RATE / 100;
+    private static final int SECONDS = 10;
+
+    private static SimulatedDataSource source() throws LineUnavailableException {
+        CompositeWaveform music = new CompositeWaveform(2);
+        music.add(LineAcquirer.getSampledWaveformData());
+        music.add(new Note(new Waveform(55).amplify(8000), 0.5, "1000"));
+        SimulatedDataSource source = SimulatedDataSource.deterministic(music);
+        source.open(IDEAL, CHUNK_FRAMES * IDEAL.getFrameSize());
+        source.start();
+        return source;
+    }
+
+    private static FrequencyProcessor processor() {
+        return new FrequencyProcessor(FFT_SIZE, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f);
+    }
+
+    /**
+     * Stream {@link #SECONDS} of audio, rendering {@code renderHz} times a second of audio time.
+     *
+     * @return the processor, with the PCM that was streamed in {@code pcm}
+     */
+    private static FrequencyProcessor stream(double renderHz, int history, ByteArrayOutputStream pcm)
+            throws LineUnavailableException {
+        SimulatedDataSource source = source();
+        FrequencyProcessor processor = processor();
+        processor.enableStft(HOP, history);
+        byte[] chunk = new byte[CHUNK_FRAMES * IDEAL.getFrameSize()];
+        long rendered = 0;
+        while (source.getFramesRead() < (long) SECONDS * RATE) {
+            int read = source.read(chunk, 0, chunk.length);
+            processor.write(chunk, 0, read);
+            if (pcm != null) {
+                pcm.write(chunk, 0, read);
+            }
+            long due = (long) (source.getFramesRead() * renderHz / RATE);
+            for (; rendered < due; rendered++) {
+                processor.process();
+            }
+        }
+        return processor;
+    }
+
+    private static long expectedHops() {
+        return ((long) SECONDS * RATE - FFT_SIZE) / HOP + 1;
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {24, 59.94, 60, 144, 500})
+    void everyHopIsAnalysedExactlyOnceWhateverTheRenderRate(double renderHz) throws LineUnavailableException {
+        FrequencyProcessor processor = stream(renderHz, 4096, null);
+        processor.process(); // catch up with the last chunk
+        assertEquals(expectedHops(), processor.getHops());
+        assertEquals(0, processor.getSkippedHops());
+        assertEquals(processor.getHops(), processor.getSpectrogram().getFrameCount());
+        assertEquals(HOP, processor.getHopSize());
+
+        // nothing new, nothing analysed
+        processor.process();
+        assertEquals(expectedHops(), processor.getHops());
+    }
+
+    @Test
+    void spectrogramMatchesAnOfflineStft() throws LineUnavailableException {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        FrequencyProcessor slow = stream(24, 4096, pcm);
+        FrequencyProcessor fast = stream(144, 4096, null);
+        slow.process();
+        fast.process();
+        SpectrogramRing slowHistory = slow.getSpectrogram();
+        SpectrogramRing fastHistory = fast.getSpectrogram();
+
+        byte[] bytes = pcm.toByteArray();
+        int frames = bytes.length / 4;
+        float[] mono = new float[frames];
+        ChannelMode.MONO_BLEND.toMono(bytes, 0, frames, mono, 0);
+        FFTProcessor offline = new FFTProcessor(FFT_SIZE, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f);
+        float[] window = new float[FFT_SIZE];
+        float[] expected = new float[NUM_BINS];
+        float[] actual = new float[NUM_BINS];
+        for (long hop = slowHistory.getOldestFrame(); hop < slowHistory.getFrameCount(); hop++) {
+            System.arraycopy(mono, (int) hop * HOP, window, 0, FFT_SIZE);
+            offline.process(window, expected);
+            slowHistory.getFrame(hop, actual);
+            assertArrayEquals(expected, actual, "hop " + hop + " at 24 Hz");
+            fastHistory.getFrame(hop, actual);
+            assertArrayEquals(expected, actual, "hop " + hop + " at 144 Hz");
+        }
+    }
+
+    @Test
+    void sinksGetTheNewestHopOncePerFrame() throws LineUnavailableException {
+        SimulatedDataSource source = source();
+        FrequencyProcessor processor = processor();
+        SpectrogramRing history = processor.enableStft(HOP, 16);
+        float[] received = new float[NUM_BINS];
+        int[] calls = new int[1];
+        processor.addSink(magnitudes -> {
+            calls[0]++;
+            System.arraycopy(magnitudes, 0, received, 0, NUM_BINS);
+        });
+        byte[] chunk = new byte[CHUNK_FRAMES * IDEAL.getFrameSize()];
+        for (int i = 0; i < 20; i++) {
+            int read = source.read(chunk, 0, chunk.length);
+            processor.write(chunk, 0, read);
+        }
+        processor.process();
+        assertEquals(1, calls[0]);
+        assertEquals((20 * CHUNK_FRAMES - FFT_SIZE) / HOP + 1, history.getFrameCount());
+        float[] newest = new float[NUM_BINS];
+        history.getFrame(history.getFrameCount() - 1, newest);
+        assertArrayEquals(newest, received);
+        assertEquals(16, history.getFrameCount() - history.getOldestFrame(), "only the history is kept");
+
+        processor.process();
+        assertEquals(1, calls[0], "no new hop, no call");
+    }
+
+    @Test
+    void aStallSkipsOverwrittenHopsAndCountsThem() throws LineUnavailableException {
+        SimulatedDataSource source = source();
+        FrequencyProcessor processor = processor();
+        processor.enableStft(HOP, 64);
+        byte[] chunk = new byte[CHUNK_FRAMES * IDEAL.getFrameSize()];
+        // a second without a frame is far more than the sample ring holds
+        while (source.getFramesRead() < RATE) {
+            int read = source.read(chunk, 0, chunk.length);
+            processor.write(chunk, 0, read);
+        }
+        processor.process();
+        long total = ((long) RATE - FFT_SIZE) / HOP + 1;
+        assertTrue(processor.getSkippedHops() > 0);
+        assertTrue(processor.getHops() > 0);
+        assertEquals(total, processor.getHops() + processor.getSkippedHops());
+    }
+
+    @Test
+    void aWriterOvertakingTheHopsMidCallSkipsThemWithoutThrowing() throws InterruptedException {
+        FrequencyProcessor processor = processor();
+        processor.enableStft(HOP, 64);
+        // a writer with no pacing laps the ring while a single call works through its hops
+        byte[] chunk = new byte[FrequencyProcessor.MIN_BUFFER_FRAMES / 2 * 4];
+        AtomicBoolean writing = new AtomicBoolean(true);
+        long[] written = new long[1];
+        Thread capture = new Thread(() -> {
+            while (writing.get()) {
+                processor.write(chunk, 0, chunk.length);
+                written[0] += chunk.length / 4;
+            }
+        }, "test-capture");
+        capture.start();
+        try {
+            long end = System.nanoTime() + 300_000_000L;
+            while (System.nanoTime() < end) {
+                processor.process();
+            }
+        } finally {
+            writing.set(false);
+            capture.join();
+        }
+        processor.process();
+        assertTrue(processor.getSkippedHops() > 0);
+        assertEquals((written[0] - FFT_SIZE) / HOP + 1, processor.getHops() + processor.getSkippedHops());
+    }
+
+    @Test
+    void streamsFromWhenItIsEnabled() {
+        FrequencyProcessor processor = processor();
+        byte[] silence = new byte[3000 * 4];
+        processor.write(silence, 0, silence.length);
+        processor.enableStft(HOP, 8);
+        processor.process();
+        assertEquals(0, processor.getHops(), "hops completed before enabling are not analysed");
+        processor.write(silence, 0, HOP * 4);
+        processor.process();
+        assertEquals(1, processor.getHops());
+        assertEquals(0, processor.getSkippedHops());
+    }
+
+    @Test
+    void rejectsBadHopsAndOtherModes() {
+        assertThrows(IllegalArgumentException.class, () -> processor().enableStft(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> processor().enableStft(FFT_SIZE + 1, 8));
+        assertThrows(IllegalArgumentException.class, () -> processor().enableStft(HOP, 0));
+
+        FrequencyProcessor stft = processor();
+        stft.enableStft(HOP, 8);
+        assertThrows(IllegalStateException.class, () -> stft.startAnalysisThread(120));
+        assertThrows(IllegalStateException.class, () -> stft.enableDriftCompensation(() -> 0, 2048));
+
+        FrequencyProcessor steered = processor();
+        steered.enableDriftCompensation(() -> 0, 2048);
+        assertThrows(IllegalStateException.class, () -> steered.enableStft(HOP, 8));
+    }
+}
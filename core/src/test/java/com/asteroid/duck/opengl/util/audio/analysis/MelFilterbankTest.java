@@ -0,0 +1,164 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.resources.shader.vars.ValueSource.ChangeStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MelFilterbankTest {
+    private static final float RATE = IDEAL.getSampleRate();
+    private static final float DB_FLOOR = -80f;
+    private static final float DB_RANGE = 80f;
+
+    private static MelFilterbank bank(int numBins) {
+        return new MelFilterbank(numBins, 20f, 20_000f, DB_FLOOR, 0f);
+    }
+
+    private static float level(float dB) {
+        return (dB - DB_FLOOR) / DB_RANGE;
+    }
+
+    @Test
+    void melScaleMatchesHtkReferencePoints() {
+        assertEquals(0.0, MelFilterbank.hzToMel(0), 1e-9);
+        assertEquals(999.99, MelFilterbank.hzToMel(1000), 0.01);
+        assertEquals(2840.02, MelFilterbank.hzToMel(8000), 0.01);
+        assertEquals(440.0, MelFilterbank.melToHz(MelFilterbank.hzToMel(440)), 1e-9);
+    }
+
+    @Test
+    void cepstrumIsTheOrthonormalDct() {
+        // scipy.fft.dct([-10, -20, -30, -40], norm='ortho')
+        MelFilterbank bank = new MelFilterbank(64, 20f, 20_000f, DB_FLOOR, 0f, 4, 20f, 20_000f, 4);
+        float[] mfcc = new float[4];
+        bank.cepstrum(new float[]{level(-10), level(-20), level(-30), level(-40)}, mfcc);
+        assertArrayEquals(new float[]{-50f, 22.304425f, 0f, 1.5851267f}, mfcc, 1e-4f);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {16, 64, 128, 512})
+    void aFlatSpectrumIsFlatInEveryFilter(int numBins) {
+        // with 16 bars most filters are narrower than a bar and fall back to the one they sit in
+        MelFilterbank bank = bank(numBins);
+        float[] bars = new float[numBins];
+        Arrays.fill(bars, level(-32));
+        float[] mel = new float[bank.getNumFilters()];
+        float[] mfcc = new float[bank.getNumCoefficients()];
+        bank.apply(bars, mel, mfcc);
+        for (float v : mel) {
+            assertEquals(level(-32), v, 1e-5f);
+        }
+        assertEquals(-32 * Math.sqrt(bank.getNumFilters()), mfcc[0], 1e-3);
+        for (int k = 1; k < mfcc.length; k++) {
+            assertEquals(0f, mfcc[k], 1e-3f, "c" + k);
+        }
+    }
+
+    @Test
+    void aSpectralTiltShowsInTheFirstCoefficientsOnly() {
+        // bars falling 6 dB an octave, as a sawtooth's harmonics do
+        int numBins = 256;
+        MelFilterbank bank = bank(numBins);
+        float[] bars = new float[numBins];
+        for (int i = 0; i < numBins; i++) {
+            double octaves = Math.log(1000.0) / Math.log(2) * (i + 0.5) / numBins;
+            bars[i] = level((float) (-6 * octaves));
+        }
+        float[] mel = new float[bank.getNumFilters()];
+        float[] mfcc = new float[bank.getNumCoefficients()];
+        bank.apply(bars, mel, mfcc);
+        for (int m = 1; m < mel.length; m++) {
+            assertTrue(mel[m] < mel[m - 1], "filter " + m + " below " + (m - 1));
+        }
+        int numFilters = mel.length;
+        for (int k = 0; k < mfcc.length; k++) {
+            double expected = 0;
+            for (int m = 0; m < numFilters; m++) {
+                expected += (DB_FLOOR + DB_RANGE * mel[m]) * Math.cos(Math.PI * k * (m + 0.5) / numFilters);
+            }
+            expected *= Math.sqrt((k == 0 ? 1.0 : 2.0) / numFilters);
+            assertEquals(expected, mfcc[k], 1e-3, "c" + k);
+        }
+        assertTrue(mfcc[1] > 20, "falling spectrum has a large positive c1, was " + mfcc[1]);
+        for (int k = 2; k < mfcc.length; k++) {
+            assertTrue(Math.abs(mfcc[k]) < mfcc[1] / 4, "c" + k + " = " + mfcc[k]);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {150, 440, 1000, 3000, 8000})
+    void aSinePeaksInAFilterWhoseTriangleHoldsIt(double hz) {
+        int numBins = 128;
+        FFTProcessor fft = new FFTProcessor(4096, numBins, RATE, 20f, 20_000f, DB_FLOOR, 0f);
+        float[] samples = new float[4096];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) (0.25 * Math.sin(2 * Math.PI * hz * i / RATE));
+        }
+        float[] bars = new float[numBins];
+        fft.process(samples, bars);
+        MelFilterbank bank = bank(numBins);
+        float[] mel = new float[bank.getNumFilters()];
+        bank.apply(bars, mel, new float[bank.getNumCoefficients()]);
+
+        int peak = 0;
+        for (int m = 1; m < mel.length; m++) {
+            if (mel[m] > mel[peak]) {
+                peak = m;
+            }
+        }
+        // a triangle spans one centre spacing either side of its own centre
+        double spacing = MelFilterbank.hzToMel(bank.getFilterCentre(1)) - MelFilterbank.hzToMel(bank.getFilterCentre(0));
+        double offset = MelFilterbank.hzToMel(hz) - MelFilterbank.hzToMel(bank.getFilterCentre(peak));
+        assertTrue(Math.abs(offset) < spacing, "peak filter " + peak + " is " + offset + " mel from " + hz + " Hz");
+        assertTrue(mel[peak] > level(-60), "and reads well above the floor, " + mel[peak]);
+    }
+
+    @Test
+    void filtersAreSparse() {
+        MelFilterbank bank = bank(128);
+        assertTrue(bank.getWeightCount() * 4 < 128 * bank.getNumFilters(), bank.getWeightCount() + " weights");
+        MelFilterbank noDct = new MelFilterbank(128, 20f, 20_000f, DB_FLOOR, 0f, 40, 20f, 8000f, 0);
+        float[] mel = new float[40];
+        noDct.apply(new float[128], mel, null);
+        for (float v : mel) {
+            assertEquals(0f, v, 1e-6f);
+        }
+    }
+
+    @Test
+    void sinkPublishesEachFrameToItsSources() {
+        FrequencyProcessor processor = new FrequencyProcessor(1024, 128, RATE, 20f, 20_000f, DB_FLOOR, 0f);
+        MfccSink sink = new MfccSink(processor);
+        assertEquals(MelFilterbank.DEFAULT_FILTERS, sink.getMelLevels().length);
+        assertEquals(MelFilterbank.DEFAULT_COEFFICIENTS, sink.getMfcc().length);
+        assertEquals(ChangeStatus.CHANGED, sink.mfccSource().changeStatus());
+        assertSame(sink.getMfcc(), sink.mfccSource().get());
+        assertEquals(ChangeStatus.UNCHANGED, sink.mfccSource().changeStatus());
+
+        float[] bars = new float[128];
+        Arrays.fill(bars, level(-20));
+        sink.onSpectrum(bars);
+        assertEquals(1, sink.getFrames());
+        assertEquals(ChangeStatus.CHANGED, sink.mfccSource().changeStatus());
+        assertEquals(ChangeStatus.CHANGED, sink.melSource().changeStatus());
+        assertEquals(level(-20), sink.melSource().get()[3], 1e-5f);
+        assertEquals(ChangeStatus.UNCHANGED, sink.melSource().changeStatus());
+        assertEquals(-20 * Math.sqrt(MelFilterbank.DEFAULT_FILTERS), sink.mfccSource().get()[0], 1e-3);
+    }
+
+    @Test
+    void rejectsImpossibleConfigurations() {
+        assertThrows(IllegalArgumentException.class, () -> new MelFilterbank(0, 20f, 20_000f, -80f, 0f));
+        assertThrows(IllegalArgumentException.class, () -> new MelFilterbank(128, 0f, 20_000f, -80f, 0f));
+        assertThrows(IllegalArgumentException.class, () -> new MelFilterbank(128, 20f, 20_000f, 0f, 0f));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MelFilterbank(128, 20f, 20_000f, -80f, 0f, 26, 20f, 8000f, 27));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MelFilterbank(128, 20f, 20_000f, -80f, 0f, 26, 20_000f, 24_000f, 13));
+    }
+}
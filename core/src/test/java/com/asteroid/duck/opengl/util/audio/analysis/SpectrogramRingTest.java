@@ -0,0 +1,42 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectrogramRingTest {
+
+    @Test
+    void keepsTheNewestFramesInRingOrder() {
+        SpectrogramRing ring = new SpectrogramRing(2, 3);
+        assertEquals(0, ring.getFrameCount());
+        assertEquals(0, ring.getOldestFrame());
+        for (int f = 0; f < 5; f++) {
+            assertEquals(f, ring.append(new float[]{f, f + 0.5f}));
+        }
+        assertEquals(5, ring.getFrameCount());
+        assertEquals(2, ring.getOldestFrame());
+
+        float[] frame = new float[2];
+        ring.getFrame(4, frame);
+        assertArrayEquals(new float[]{4, 4.5f}, frame);
+        assertEquals(2.5f, ring.get(2, 1));
+        assertEquals(1, ring.rowOf(4));
+        // rows 0..2 hold frames 3, 4, 2
+        assertArrayEquals(new float[]{3, 3.5f, 4, 4.5f, 2, 2.5f}, ring.getData());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.getFrame(1, frame));
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.getFrame(5, frame));
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.get(4, 2));
+
+        ring.clear();
+        assertEquals(0, ring.getFrameCount());
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.getFrame(0, frame));
+    }
+
+    @Test
+    void rejectsEmptyGeometry() {
+        assertThrows(IllegalArgumentException.class, () -> new SpectrogramRing(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new SpectrogramRing(4, 0));
+    }
+}
@@ -0,0 +1,136 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.jtransforms.fft.FloatFFT_1D;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks both spectrum kernels, exact and fast log, against the original scalar algorithm:
+ * a square root per FFT bin and a {@code log10} of the peak magnitude.
+ */
+class SpectrumKernelTest {
+    private static final float RATE = 48_000f;
+    private static final int NUM_BINS = 128;
+    private static final float DB_FLOOR = -100f;
+    private static final float DB_CEILING = 0f;
+    /** Float rounding differs between the paths; this is far below a visible step. */
+    private static final float EXACT_TOLERANCE = 2e-6f;
+    private static final float FAST_TOLERANCE =
+            SpectrumKernel.FAST_LOG_MAX_ERROR_DB / (DB_CEILING - DB_FLOOR) + EXACT_TOLERANCE;
+
+    /** Tones from bass to treble over low-level noise, and some silence at the start. */
+    private static float[] signal(int fftSize, long seed) {
+        Random random = new Random(seed);
+        float[] samples = new float[fftSize];
+        for (int i = fftSize / 16; i < fftSize; i++) {
+            double t = i / (double) RATE;
+            samples[i] = (float) (0.4 * Math.sin(2 * Math.PI * 55 * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 1234.5 * t)
+                    + 0.05 * Math.sin(2 * Math.PI * 15_000 * t)
+                    + 1e-4 * random.nextGaussian());
+        }
+        return samples;
+    }
+
+    /** The original {@code FFTProcessor.process}, a square root per bin. */
+    private static float[] reference(FFTProcessor processor, float[] samples) {
+        int fftSize = processor.getFftSize();
+        float[] work = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            float w = 0.5f * (1.0f - (float) Math.cos(2.0 * Math.PI * i / (fftSize - 1)));
+            work[i] = samples[i] * w;
+        }
+        new FloatFFT_1D(fftSize).realForward(work);
+        float fMin = processor.getFMin();
+        float fMax = processor.getFMax();
+        int nyquistBin = fftSize / 2;
+        float[] output = new float[NUM_BINS];
+        for (int b = 0; b < NUM_BINS; b++) {
+            double fLow  = fMin * Math.pow((double) fMax / fMin, (double)  b      / NUM_BINS);
+            double fHigh = fMin * Math.pow((double) fMax / fMin, (double) (b + 1) / NUM_BINS);
+            int lo = Math.max(1, (int) Math.round(fLow  * fftSize / RATE));
+            int hi = Math.max(lo + 1, (int) Math.round(fHigh * fftSize / RATE));
+            lo = Math.min(lo, nyquistBin - 1);
+            hi = Math.min(hi, nyquistBin);
+            float peakMag = 0f;
+            for (int k = lo; k < hi; k++) {
+                float re = k == nyquistBin ? work[1] : work[2 * k];
+                float im = k == nyquistBin ? 0f : work[2 * k + 1];
+                peakMag = Math.max(peakMag, (float) Math.sqrt(re * re + im * im) / fftSize);
+            }
+            float dB = 20.0f * (float) Math.log10(Math.max(peakMag, 1e-10f));
+            output[b] = Math.max(0.0f, Math.min(1.0f, (dB - DB_FLOOR) / (DB_CEILING - DB_FLOOR)));
+        }
+        return output;
+    }
+
+    private static FFTProcessor processor(int fftSize, boolean vectorise, boolean fastLog) {
+        FFTProcessor processor = new FFTProcessor(fftSize, NUM_BINS, RATE, 20f, 24_000f,
+                DB_FLOOR, DB_CEILING, vectorise);
+        processor.setFastLog(fastLog);
+        return processor;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1024, 2048, 4096, 8192, 16384})
+    void everyKernelMatchesTheSqrtPerBinPath(int fftSize) {
+        assertEquals(SpectrumKernel.vectorAvailable(), processor(fftSize, true, false).isVectorised());
+        assertFalse(processor(fftSize, false, false).isVectorised());
+        for (long seed = 0; seed < 4; seed++) {
+            float[] samples = signal(fftSize, seed);
+            float[] expected = reference(processor(fftSize, false, false), samples);
+            for (boolean vectorise : new boolean[]{false, true}) {
+                for (boolean fastLog : new boolean[]{false, true}) {
+                    float[] actual = new float[NUM_BINS];
+                    processor(fftSize, vectorise, fastLog).process(samples, actual);
+                    String path = (vectorise ? "vector" : "scalar") + (fastLog ? ", fast log" : "") + ", seed " + seed;
+                    assertArrayEquals(expected, actual, fastLog ? FAST_TOLERANCE : EXACT_TOLERANCE, path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void silenceSitsOnTheFloorAndFullScaleAtTheCeiling() {
+        int fftSize = 1024;
+        float[] output = new float[NUM_BINS];
+        for (boolean vectorise : new boolean[]{false, true}) {
+            FFTProcessor processor = processor(fftSize, vectorise, true);
+            processor.process(new float[fftSize], output);
+            for (float v : output) {
+                assertEquals(0f, v);
+            }
+            // well over 0 dB after the window's gain of ½: clipped at the ceiling
+            float[] loud = new float[fftSize];
+            for (int i = 0; i < fftSize; i++) {
+                loud[i] = (float) (8 * Math.sin(2 * Math.PI * 1000 * i / RATE));
+            }
+            processor.process(loud, output);
+            float max = 0f;
+            for (float v : output) {
+                max = Math.max(max, v);
+            }
+            assertEquals(1f, max);
+        }
+    }
+
+    @Test
+    void fastLogStaysWithinItsBound() {
+        double worst = 0;
+        // every power of two an FFT bin's power can take, at 4096 steps per octave
+        for (int e = -50; e < 50; e++) {
+            for (int i = 0; i < 4096; i++) {
+                float x = (float) Math.scalb(1 + i / 4096.0, e);
+                double exact = Math.log(x) / Math.log(2);
+                worst = Math.max(worst, Math.abs(SpectrumKernel.fastLog2(x) - exact));
+            }
+        }
+        assertTrue(worst * SpectrumKernel.DB_PER_LOG2 < SpectrumKernel.FAST_LOG_MAX_ERROR_DB,
+                "worst error " + worst * SpectrumKernel.DB_PER_LOG2 + " dB");
+    }
+}
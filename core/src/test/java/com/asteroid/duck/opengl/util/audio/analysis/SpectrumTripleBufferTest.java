@@ -0,0 +1,94 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.asteroid.duck.opengl.util.audio.CaptureTimestamped.NONE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectrumTripleBufferTest {
+
+    @Test
+    void readerTakesOnlyTheNewestSpectrum() {
+        SpectrumTripleBuffer buffer = new SpectrumTripleBuffer(4);
+        assertFalse(buffer.acquire());
+        assertEquals(0, buffer.getFrontVersion());
+        assertEquals(NONE, buffer.getFrontCaptureNanos());
+
+        Arrays.fill(buffer.back(), 1f);
+        assertEquals(1, buffer.publish(100));
+        assertTrue(buffer.acquire());
+        assertArrayEquals(new float[]{1, 1, 1, 1}, buffer.front());
+        assertEquals(1, buffer.getFrontVersion());
+        assertEquals(100, buffer.getFrontCaptureNanos());
+        assertFalse(buffer.acquire(), "nothing newer");
+        assertEquals(1, buffer.getFrontVersion());
+
+        for (int v = 2; v <= 5; v++) {
+            Arrays.fill(buffer.back(), v);
+            buffer.publish(100L * v);
+        }
+        assertTrue(buffer.acquire());
+        assertArrayEquals(new float[]{5, 5, 5, 5}, buffer.front(), "the newest wins; 2 to 4 were overwritten");
+        assertEquals(5, buffer.getFrontVersion());
+        assertEquals(500, buffer.getFrontCaptureNanos());
+    }
+
+    @Test
+    void writerNeverTouchesTheFrontSlot() {
+        SpectrumTripleBuffer buffer = new SpectrumTripleBuffer(2);
+        Arrays.fill(buffer.back(), 1f);
+        buffer.publish(NONE);
+        buffer.acquire();
+        float[] front = buffer.front();
+        for (int v = 2; v < 100; v++) {
+            assertNotSame(front, buffer.back());
+            Arrays.fill(buffer.back(), v);
+            buffer.publish(NONE);
+        }
+        assertArrayEquals(new float[]{1, 1}, front);
+    }
+
+    @Test
+    void noTornSpectraUnderStress() throws InterruptedException {
+        int length = 512;
+        int spectra = 200_000;
+        SpectrumTripleBuffer buffer = new SpectrumTripleBuffer(length);
+        Thread writer = new Thread(() -> {
+            for (int v = 1; v <= spectra; v++) {
+                // every element carries the version it was written for
+                Arrays.fill(buffer.back(), v);
+                buffer.publish(v);
+            }
+        }, "triple-buffer-writer");
+        writer.start();
+
+        long acquired = 0;
+        long torn = 0;
+        long lastVersion = 0;
+        while (lastVersion < spectra) {
+            if (!buffer.acquire()) {
+                Thread.onSpinWait();
+                continue;
+            }
+            acquired++;
+            long version = buffer.getFrontVersion();
+            assertTrue(version > lastVersion, "versions only move forward: " + version + " after " + lastVersion);
+            assertEquals(version, buffer.getFrontCaptureNanos());
+            float[] front = buffer.front();
+            for (float value : front) {
+                if (value != version) {
+                    torn++;
+                    break;
+                }
+            }
+            lastVersion = version;
+        }
+        writer.join();
+
+        assertEquals(0, torn, "torn spectra in " + acquired + " acquired");
+        assertEquals(spectra, lastVersion);
+        assertTrue(acquired > 1, "the reader should have overlapped the writer");
+    }
+}
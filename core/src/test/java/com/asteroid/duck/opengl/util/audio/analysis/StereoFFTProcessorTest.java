@@ -0,0 +1,152 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import com.asteroid.duck.opengl.util.audio.ChannelMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the one-transform stereo analysis against a separate real FFT per channel.
+ */
+class StereoFFTProcessorTest {
+    private static final int RATE = (int) IDEAL.getSampleRate();
+    private static final int NUM_BINS = 96;
+    /** One transform of both channels rounds differently from two; a hundredth of a dB. */
+    private static final float TOLERANCE = 1e-4f;
+
+    private static FFTProcessor mono(int fftSize) {
+        return new FFTProcessor(fftSize, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f);
+    }
+
+    private static StereoFFTProcessor stereo(int fftSize) {
+        return new StereoFFTProcessor(fftSize, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f);
+    }
+
+    private static float[] tones(int fftSize, long seed, double... hz) {
+        Random random = new Random(seed);
+        float[] samples = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            double sum = 1e-3 * random.nextGaussian();
+            for (double f : hz) {
+                sum += 0.25 * Math.sin(2 * Math.PI * f * i / RATE);
+            }
+            samples[i] = (float) sum;
+        }
+        return samples;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1024, 4096, 16384})
+    void eachChannelMatchesItsOwnRealTransform(int fftSize) {
+        float[] left = tones(fftSize, 1, 60, 440, 5000);
+        float[] right = tones(fftSize, 2, 110, 2500, 12_000);
+        float[] expectedLeft = new float[NUM_BINS];
+        float[] expectedRight = new float[NUM_BINS];
+        float[] expectedMid = new float[NUM_BINS];
+        FFTProcessor mono = mono(fftSize);
+        mono.process(left, expectedLeft);
+        mono.process(right, expectedRight);
+        float[] blend = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            blend[i] = (left[i] + right[i]) / 2;
+        }
+        mono.process(blend, expectedMid);
+
+        float[] actualLeft = new float[NUM_BINS];
+        float[] actualRight = new float[NUM_BINS];
+        float[] actualMid = new float[NUM_BINS];
+        stereo(fftSize).process(left, right, actualLeft, actualRight, actualMid);
+        assertArrayEquals(expectedLeft, actualLeft, TOLERANCE, "left");
+        assertArrayEquals(expectedRight, actualRight, TOLERANCE, "right");
+        assertArrayEquals(expectedMid, actualMid, TOLERANCE, "mid");
+    }
+
+    @Test
+    void aSilentChannelStaysSilent() {
+        int fftSize = 2048;
+        float[] left = tones(fftSize, 3, 440, 880);
+        float[] leftOut = new float[NUM_BINS];
+        float[] rightOut = new float[NUM_BINS];
+        stereo(fftSize).process(left, new float[fftSize], leftOut, rightOut);
+        for (float v : rightOut) {
+            assertEquals(0f, v, 1e-3f, "no left signal leaks into the right spectrum");
+        }
+        float peak = 0f;
+        for (float v : leftOut) {
+            peak = Math.max(peak, v);
+        }
+        assertTrue(peak > 0.5f);
+    }
+
+    @Test
+    void sinksGetTheChannelTheyAskedFor() {
+        int fftSize = 1024;
+        int frames = 3 * fftSize;
+        byte[] pcm = new byte[frames * 4];
+        for (int i = 0; i < frames; i++) {
+            short l = (short) Math.round(8000 * Math.sin(2 * Math.PI * 440 * i / RATE));
+            short r = (short) Math.round(8000 * Math.sin(2 * Math.PI * 3000 * i / RATE));
+            pcm[4 * i] = (byte) l;
+            pcm[4 * i + 1] = (byte) (l >> 8);
+            pcm[4 * i + 2] = (byte) r;
+            pcm[4 * i + 3] = (byte) (r >> 8);
+        }
+        StereoFrequencyProcessor stereo = new StereoFrequencyProcessor(fftSize, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f);
+        stereo.write(pcm, 0, pcm.length);
+        for (ChannelMode channel : ChannelMode.values()) {
+            FrequencyProcessor expected = new FrequencyProcessor(fftSize, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f, channel);
+            expected.write(pcm, 0, pcm.length);
+            float[] want = new float[NUM_BINS];
+            expected.addSink(magnitudes -> System.arraycopy(magnitudes, 0, want, 0, NUM_BINS));
+            expected.process();
+
+            float[] got = new float[NUM_BINS];
+            int[] calls = new int[1];
+            FrequencySink sink = magnitudes -> {
+                calls[0]++;
+                System.arraycopy(magnitudes, 0, got, 0, NUM_BINS);
+            };
+            stereo.addSink(channel, sink);
+            stereo.process();
+            stereo.removeSink(channel, sink);
+            assertEquals(1, calls[0]);
+            assertArrayEquals(want, got, TOLERANCE, channel.name());
+        }
+    }
+
+    @Test
+    void aWriterLappingTheWindowDuringTheReadFallsBackToTheNewest() throws InterruptedException {
+        StereoFrequencyProcessor stereo = new StereoFrequencyProcessor(1024, NUM_BINS, RATE, 20f, 20_000f, -80f, 0f);
+        long[] spectra = new long[1];
+        stereo.addSink(ChannelMode.LEFT, magnitudes -> spectra[0]++);
+        // every write laps the whole ring, so any write landing between the snapshot of the
+        // newest frame and the copy overwrites the window it names
+        byte[] lap = new byte[FrequencyProcessor.MIN_BUFFER_FRAMES * 4];
+        stereo.write(lap, 0, lap.length);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread capture = new Thread(() -> {
+            while (writing.get()) {
+                stereo.write(lap, 0, lap.length);
+            }
+        }, "test-capture");
+        capture.start();
+        long calls = 0;
+        try {
+            long end = System.nanoTime() + 300_000_000L;
+            while (System.nanoTime() < end) {
+                stereo.process();
+                calls++;
+            }
+        } finally {
+            writing.set(false);
+            capture.join();
+        }
+        assertEquals(calls, spectra[0], "every call analysed a window");
+    }
+}
@@ -0,0 +1,174 @@
+package com.asteroid.duck.opengl.util.audio.file;
+
+import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.PcmEncoding;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import com.asteroid.duck.opengl.util.timer.Clock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileDataSourceTest {
+    @TempDir
+    Path tempDir;
+
+    private double elapsedTime = 0;
+    private final Clock clock = () -> elapsedTime;
+
+    /** {@code frames} of simulated audio in the given format. */
+    static byte[] simulatedPcm(AudioFormat format, int frames) throws LineUnavailableException {
+        SimulatedDataSource source = SimulatedDataSource.deterministic(LineAcquirer.getSampledWaveformData());
+        byte[] pcm = new byte[frames * format.getFrameSize()];
+        source.open(format, pcm.length);
+        source.start();
+        assertEquals(pcm.length, source.read(pcm, 0, pcm.length));
+        return pcm;
+    }
+
+    /** Write a WAV file with the JDK's own writer, so parsing is checked against a reference. */
+    private Path writeWav(AudioFormat format, byte[] pcm) throws IOException {
+        Path file = tempDir.resolve("test-" + System.nanoTime() + ".wav");
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / format.getFrameSize())) {
+            AudioSystem.write(in, AudioFileFormat.Type.WAVE, file.toFile());
+        }
+        return file;
+    }
+
+    /** Read everything a max-speed source offers, in reads of at most {@code chunk} bytes. */
+    private static byte[] drain(MappedFileDataSource source, int chunk, int total) {
+        byte[] out = new byte[total];
+        int offset = 0;
+        int read;
+        while (offset < total && (read = source.read(out, offset, Math.min(chunk, total - offset))) > 0) {
+            offset += read;
+        }
+        return Arrays.copyOf(out, offset);
+    }
+
+    @Test
+    void wavPlaysBackExactBytesInEveryFormat() throws Exception {
+        for (AudioFormat format : new AudioFormat[] {
+                IDEAL,
+                PcmEncoding.S24_LE.format(44100f, 2),
+                PcmEncoding.F32_LE.format(48000f, 4)}) {
+            byte[] pcm = simulatedPcm(format, 1000);
+            MappedFileDataSource subject = MappedFileDataSource.wav(writeWav(format, pcm), null, MappedFileDataSource.MAX_SPEED, false);
+            assertTrue(format.matches(subject.getFormat()), subject.getFormat().toString());
+            assertEquals(1000, subject.getFrameLength());
+
+            subject.open(format, 256 * format.getFrameSize());
+            subject.start();
+            assertArrayEquals(pcm, drain(subject, 300, pcm.length * 2), format.toString());
+            assertTrue(subject.isFinished());
+            assertEquals(0, subject.available());
+            subject.close();
+        }
+    }
+
+    @Test
+    void rawFileWithLoopWrapsToStart() throws Exception {
+        byte[] pcm = simulatedPcm(IDEAL, 100);
+        Path file = tempDir.resolve("test.pcm");
+        Files.write(file, Arrays.copyOf(pcm, pcm.length + 3)); // trailing partial frame is ignored
+        MappedFileDataSource subject = MappedFileDataSource.raw(file, IDEAL, null, MappedFileDataSource.MAX_SPEED, true);
+        subject.open(IDEAL, 64 * 4);
+        subject.start();
+
+        byte[] played = drain(subject, 60 * 4, pcm.length * 3);
+        assertEquals(pcm.length * 3, played.length);
+        for (int pass = 0; pass < 3; pass++) {
+            assertArrayEquals(pcm, Arrays.copyOfRange(played, pass * pcm.length, (pass + 1) * pcm.length));
+        }
+        assertEquals(300, subject.getFramesRead());
+        assertFalse(subject.isFinished());
+    }
+
+    @Test
+    void lentSegmentsViewTheMappingWithoutCopying() throws Exception {
+        byte[] pcm = simulatedPcm(IDEAL, 100);
+        Path file = tempDir.resolve("lent.pcm");
+        Files.write(file, pcm);
+        MappedFileDataSource subject = MappedFileDataSource.raw(file, IDEAL, null, MappedFileDataSource.MAX_SPEED, true);
+        subject.open(IDEAL, 64 * 4);
+        subject.start();
+
+        byte[] played = new byte[pcm.length * 2];
+        int offset = 0;
+        while (offset < played.length) {
+            MemorySegment lent = subject.readSegment(Math.min(60 * 4, played.length - offset));
+            assertTrue(lent.isNative() && lent.isReadOnly());
+            assertEquals(0, lent.byteSize() % 4);
+            assertTrue(lent.byteSize() > 0);
+            MemorySegment.copy(lent, ValueLayout.JAVA_BYTE, 0, played, offset, (int) lent.byteSize());
+            offset += (int) lent.byteSize();
+        }
+        // a lent view stops at the loop point, where a copying read would wrap
+        assertArrayEquals(pcm, Arrays.copyOf(played, pcm.length));
+        assertArrayEquals(pcm, Arrays.copyOfRange(played, pcm.length, played.length));
+        assertEquals(200, subject.getFramesRead());
+
+        subject.stop();
+        assertEquals(0, subject.readSegment(64).byteSize());
+    }
+
+    @Test
+    void pacedByClockAndSpeed() throws Exception {
+        Path file = writeWav(IDEAL, simulatedPcm(IDEAL, 48_000));
+        for (double speed : new double[] {1.0, 4.0}) {
+            elapsedTime = 5;
+            MappedFileDataSource subject = MappedFileDataSource.wav(file, clock, speed, false);
+            subject.open(IDEAL, 4096 * 4);
+            subject.start();
+            assertEquals(0, subject.available());
+
+            elapsedTime += 0.01; // 10 ms = 480 frames of real time
+            assertEquals((int) (480 * speed) * 4, subject.available(), "speed " + speed);
+            byte[] buffer = new byte[4096 * 4];
+            assertEquals((int) (480 * speed) * 4, subject.read(buffer, 0, buffer.length));
+            assertEquals(0, subject.available());
+
+            elapsedTime += 1.0; // a second's worth is due but the line only buffers 4096 frames
+            assertEquals(4096 * 4, subject.available());
+        }
+    }
+
+    @Test
+    void rewindReplaysIdenticalInput() throws Exception {
+        Path file = writeWav(IDEAL, simulatedPcm(IDEAL, 500));
+        MappedFileDataSource subject = MappedFileDataSource.wav(file, null, MappedFileDataSource.MAX_SPEED, false);
+        subject.open(IDEAL, 128 * 4);
+        subject.start();
+        byte[] first = drain(subject, 1000, 2000);
+        subject.rewind();
+        assertArrayEquals(first, drain(subject, 1000, 2000));
+    }
+
+    @Test
+    void openRejectsOtherFormats() throws Exception {
+        MappedFileDataSource subject = MappedFileDataSource.wav(writeWav(IDEAL, simulatedPcm(IDEAL, 10)), null, MappedFileDataSource.MAX_SPEED, false);
+        assertThrows(LineUnavailableException.class, () -> subject.open(PcmEncoding.S24_LE.format(48000f, 2), 1024));
+        assertFalse(subject.isOpen());
+    }
+
+    @Test
+    void notAWavFile() throws IOException {
+        Path file = tempDir.resolve("bogus.wav");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> MappedFileDataSource.wav(file, null, MappedFileDataSource.MAX_SPEED, false));
+    }
+}
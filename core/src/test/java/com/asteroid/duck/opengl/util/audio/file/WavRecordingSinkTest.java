@@ -0,0 +1,191 @@
+package com.asteroid.duck.opengl.util.audio.file;
+
+import com.asteroid.duck.opengl.util.audio.CaptureTimestamped;
+import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.simulated.SimulatedDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WavRecordingSinkTest {
+    private static final int FRAMES_PER_READ = 800;
+    private static final int BLOCK = 1 << 16;
+
+    @TempDir
+    Path tempDir;
+
+    private static SimulatedDataSource source() throws LineUnavailableException {
+        SimulatedDataSource source = SimulatedDataSource.deterministic(LineAcquirer.getSampledWaveformData());
+        source.open(IDEAL, FRAMES_PER_READ * IDEAL.getFrameSize());
+        source.start();
+        return source;
+    }
+
+    /** Check a segment's header and fold its PCM data into the checksum. */
+    private static long readSegment(Path file, CRC32 crc, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WavFile wav = WavFile.read(channel);
+            assertTrue(IDEAL.matches(wav.format()), file + " is " + wav.format());
+            assertEquals(WavFile.HEADER_SIZE, wav.dataOffset());
+            assertEquals(channel.size() - WavFile.HEADER_SIZE, wav.dataLength(), file + " header not finalised");
+            long position = wav.dataOffset();
+            long end = position + wav.dataLength();
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                WavFile.readFully(channel, buffer, position);
+                position += buffer.flip().remaining();
+                crc.update(buffer);
+            }
+            return wav.dataLength();
+        }
+    }
+
+    @Test
+    void anHourRoundTripsThroughRotatingSegments() throws Exception {
+        SimulatedDataSource source = source();
+        byte[] pcm = new byte[FRAMES_PER_READ * IDEAL.getFrameSize()];
+        long total = 3600L * (long) IDEAL.getFrameRate() * IDEAL.getFrameSize();
+        CRC32 written = new CRC32();
+
+        WavRecordingSink subject = new WavRecordingSink(tempDir, "session", IDEAL, BLOCK, 64L << 20);
+        long copied = 0;
+        while (copied < total) {
+            int read = source.read(pcm, 0, pcm.length);
+            written.update(pcm, 0, read);
+            // pace like a real line: never hand over a block faster than the disk completes them
+            while (subject.isWriting()) {
+                Thread.yield();
+            }
+            subject.write(pcm, 0, read);
+            copied += read;
+        }
+        subject.close();
+        assertEquals(0, subject.getDroppedBlocks());
+        assertEquals(total, subject.getBytesWritten());
+
+        List<Path> segments = subject.getSegments();
+        assertEquals(11, segments.size()); // 691.2 MB in 64 MiB segments
+        CRC32 reread = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long length = 0;
+        for (Path segment : segments) {
+            assertTrue(Files.size(segment) <= 64L << 20, segment + " too large");
+            length += readSegment(segment, reread, buffer);
+        }
+        assertEquals(total, length);
+        assertEquals(written.getValue(), reread.getValue());
+    }
+
+    @Test
+    void slowDiskDropsBlocksWithoutBlockingCapture() throws Exception {
+        CountDownLatch disk = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.execute(() -> {
+                try {
+                    disk.await(); // every write queues behind this until the test releases it
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            WavRecordingSink subject = new WavRecordingSink(tempDir, "slow", IDEAL, BLOCK, 64L << 20, executor);
+            byte[] pcm = new byte[BLOCK * 10 + 400];
+            Arrays.fill(pcm, (byte) 7);
+
+            long start = System.nanoTime();
+            subject.write(pcm, 0, pcm.length);
+            assertTrue(System.nanoTime() - start < 1_000_000_000L, "write waited for the disk");
+            assertTrue(subject.isWriting());
+            assertEquals(9, subject.getDroppedBlocks()); // the first block is in flight
+
+            disk.countDown();
+            subject.close();
+            assertEquals(BLOCK + 400, subject.getBytesWritten());
+            Path segment = subject.getSegments().get(0);
+            assertEquals(WavFile.HEADER_SIZE + BLOCK + 400, Files.size(segment));
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                assertEquals(BLOCK + 400, WavFile.read(channel).dataLength());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void mappedFileIsRecordedFromLentSegments() throws Exception {
+        SimulatedDataSource simulated = source();
+        byte[] pcm = new byte[10 * FRAMES_PER_READ * IDEAL.getFrameSize()];
+        for (int offset = 0; offset < pcm.length; ) {
+            offset += simulated.read(pcm, offset, pcm.length - offset);
+        }
+        Path file = Files.write(tempDir.resolve("replay.pcm"), pcm);
+        MappedFileDataSource replay = MappedFileDataSource.raw(file, IDEAL, null, MappedFileDataSource.MAX_SPEED, false);
+        replay.open(IDEAL, 1024 * IDEAL.getFrameSize());
+        replay.start();
+
+        WavRecordingSink subject = new WavRecordingSink(tempDir, "lent", IDEAL, 4096, 64L << 20);
+        MemorySegment lent;
+        while ((lent = replay.readSegment(1024 * IDEAL.getFrameSize())).byteSize() > 0) {
+            while (subject.isWriting()) {
+                Thread.yield();
+            }
+            subject.write(lent, CaptureTimestamped.NONE);
+        }
+        subject.close();
+        assertEquals(0, subject.getDroppedBlocks());
+
+        CRC32 expected = new CRC32();
+        expected.update(pcm);
+        CRC32 recorded = new CRC32();
+        assertEquals(pcm.length, readSegment(subject.getSegments().get(0), recorded, ByteBuffer.allocateDirect(1 << 16)));
+        assertEquals(expected.getValue(), recorded.getValue());
+    }
+
+    @Test
+    void unfinishedSegmentIsReadable() throws Exception {
+        WavRecordingSink subject = new WavRecordingSink(tempDir, "crash", IDEAL, BLOCK, 64L << 20);
+        byte[] pcm = new byte[BLOCK + 100];
+        subject.write(pcm, 0, pcm.length);
+        while (subject.isWriting()) {
+            Thread.yield();
+        }
+        // as if the process died here: the header still claims an unknown length
+        Path segment = subject.getSegments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            WavFile wav = WavFile.read(channel);
+            assertTrue(IDEAL.matches(wav.format()));
+            assertEquals(BLOCK, wav.dataLength());
+        }
+        subject.close();
+    }
+
+    @Test
+    void rejectsUnrecordableFormatsAndSizes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new WavRecordingSink(tempDir, "be", new AudioFormat(48000f, 16, 2, true, true), BLOCK, 1 << 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> new WavRecordingSink(tempDir, "tiny", IDEAL, 3, 1 << 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> new WavRecordingSink(tempDir, "small", IDEAL, BLOCK, BLOCK));
+        assertThrows(IllegalArgumentException.class,
+                () -> new WavRecordingSink(tempDir, "huge", IDEAL, BLOCK, 1L << 33));
+    }
+}
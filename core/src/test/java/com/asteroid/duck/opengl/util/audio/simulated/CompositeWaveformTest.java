@@ -0,0 +1,87 @@
+package com.asteroid.duck.opengl.util.audio.simulated;
+
+import org.junit.jupiter.api.Test;
+
+import static com.asteroid.duck.opengl.util.audio.Allocations.assertAllocationFree;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompositeWaveformTest {
+	private static final double SAMPLE_PERIOD = 1.0 / 48000;
+	private static final int FRAMES = 4096;
+	/** Not a whole number of frames, so no frame lands exactly on a slot boundary. */
+	private static final double BAR = 0.01013;
+
+	/** A chord of gated, panned and auto-panned notes, like a busy simulated source. */
+	private static CompositeWaveform chord() {
+		CompositeWaveform subject = new CompositeWaveform(3);
+		subject.add(Waveform.MIDDLE_C.amplify(0.3));
+		subject.add(new Note(Waveform.MIDDLE_C.transpose(4).amplify(0.3), new StaticStereoPositioner(-0.5), BAR, "1101"));
+		subject.add(new Note(Waveform.MIDDLE_C.transpose(7).amplify(0.3), OscillatingStereoPositioner.fullScale(3.0), 0.02, ""));
+		return subject;
+	}
+
+	/** The per-sample value computed directly from the definitions, in double precision. */
+	private static double[] expected(double time) {
+		double[] sample = new double[2];
+		double c = Waveform.MIDDLE_C.amplify(0.3).sample(time);
+		sample[0] += c * 0.5;
+		sample[1] += c * 0.5;
+		double timeInBar = time % BAR;
+		if ((int) (timeInBar / BAR * 4) != 2) {
+			double e = Waveform.MIDDLE_C.transpose(4).amplify(0.3).sample(time);
+			sample[0] += e * 0.75;
+			sample[1] += e * 0.25;
+		}
+		double g = Waveform.MIDDLE_C.transpose(7).amplify(0.3).sample(time);
+		double[] amplitudes = StereoPositioner.amplitudes(OscillatingStereoPositioner.fullScale(3.0).stereoPosition(time));
+		sample[0] += g * amplitudes[0];
+		sample[1] += g * amplitudes[1];
+		return sample;
+	}
+
+	@Test
+	void renderBlockMatchesPerSampleDefinition() {
+		CompositeWaveform subject = chord();
+		float[] left = new float[FRAMES];
+		float[] right = new float[FRAMES];
+		double t0 = 12.3456;
+		subject.renderBlock(t0, SAMPLE_PERIOD, left, right, FRAMES);
+
+		for (int i = 0; i < FRAMES; i++) {
+			double[] want = expected(t0 + i * SAMPLE_PERIOD);
+			assertEquals(want[0], left[i], 1e-5, "left " + i);
+			assertEquals(want[1], right[i], 1e-5, "right " + i);
+		}
+	}
+
+	@Test
+	void sampleIsSingleFrameBlock() {
+		CompositeWaveform subject = chord();
+		for (double time = 0; time < 0.05; time += 0.0013) {
+			assertArrayEquals(expected(time), subject.sample(time), 1e-5);
+		}
+	}
+
+	@Test
+	void emptyCompositeIsSilent() {
+		float[] left = {1, 1, 1};
+		float[] right = {1, 1, 1};
+		new CompositeWaveform(0).renderBlock(0, SAMPLE_PERIOD, left, right, 3);
+		assertArrayEquals(new float[3], left);
+		assertArrayEquals(new float[3], right);
+	}
+
+	@Test
+	void renderBlockDoesNotAllocate() {
+		CompositeWaveform subject = chord();
+		float[] left = new float[FRAMES];
+		float[] right = new float[FRAMES];
+		int[] block = new int[1];
+		// the first block sizes the scratch buffers; 409,600 frames are then measured, where the
+		// per-sample path allocated several arrays per frame
+		assertAllocationFree(() -> {
+			int i = block[0]++;
+			subject.renderBlock(i * FRAMES * SAMPLE_PERIOD, SAMPLE_PERIOD, left, right, FRAMES);
+		}, 200, 100);
+	}
+}
@@ -1,15 +1,22 @@
 package com.asteroid.duck.opengl.util.audio.simulated;
 
+import com.asteroid.duck.opengl.util.audio.PcmEncoding;
 import com.asteroid.duck.opengl.util.timer.Clock;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.LineUnavailableException;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
+import java.util.Arrays;
 import java.util.IntSummaryStatistics;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static com.asteroid.duck.opengl.util.audio.LineAcquirer.IDEAL;
 import static org.junit.jupiter.api.Assertions.*;
@@ -52,9 +59,10 @@ class SimulatedDataSourceTest {
 
 		elapsedTime += 256 * (1 / IDEAL.getSampleRate());
 		bytesRead = subject.read(readBuffer, 0, readBuffer.length);
-		assertEquals(980, bytesRead);
+		// all 256 frames that fell due since the first read
+		assertEquals(1024, bytesRead);
 		final ShortBuffer secondBuffer = ByteBuffer.wrap(readBuffer, 0, bytesRead).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
-		assertEquals(490, secondBuffer.limit());
+		assertEquals(512, secondBuffer.limit());
 		IntStream intStream = IntStream.range(0, secondBuffer.capacity())
 						.map(secondBuffer::get);
 		IntSummaryStatistics summary = intStream.summaryStatistics();
@@ -67,4 +75,102 @@ class SimulatedDataSourceTest {
 		subject.close();
 	}
 
+	@Test
+	public void testRealTimeReadsDoNotDrift() throws LineUnavailableException {
+		byte[] readBuffer = new byte[4096];
+		elapsedTime = 0;
+		subject.open(IDEAL, readBuffer.length);
+		subject.start();
+
+		long bytes = 0;
+		for (int i = 1; i <= 1000; i++) {
+			elapsedTime = i * 0.000737; // deliberately not a whole number of frames
+			bytes += subject.read(readBuffer, 0, readBuffer.length);
+		}
+		assertEquals((long) Math.floor(elapsedTime * IDEAL.getSampleRate()), bytes / 4);
+		assertEquals(bytes / 4, subject.getFramesRead());
+	}
+
+	@Test
+	public void testDeterministicIsRepeatableAndUnpaced() throws LineUnavailableException {
+		byte[] first = readDeterministic(100);
+		byte[] second = readDeterministic(100);
+		assertArrayEquals(first, second);
+
+		// the same frames a real-time source yields, but without waiting for the clock
+		elapsedTime = 0;
+		subject.open(IDEAL, 1024);
+		subject.start();
+		byte[] realTime = new byte[first.length];
+		for (int offset = 0; offset < realTime.length; ) {
+			elapsedTime += 0.001;
+			offset += subject.read(realTime, offset, Math.min(1024, realTime.length - offset));
+		}
+		assertArrayEquals(first, realTime);
+	}
+
+	@Test
+	public void testSampleClockFollowsFramesRead() throws LineUnavailableException {
+		SimulatedDataSource deterministic = SimulatedDataSource.deterministic(StaticStereoPositioner.CENTER.wrap(Waveform.MIDDLE_C));
+		assertTrue(deterministic.isDeterministic());
+		deterministic.open(IDEAL, 4800 * 4);
+		deterministic.start();
+		assertEquals(4800 * 4, deterministic.available());
+		byte[] buffer = new byte[4800 * 4];
+		for (int i = 0; i < 10; i++) {
+			assertEquals(buffer.length, deterministic.read(buffer, 0, buffer.length));
+		}
+		assertEquals(48_000, deterministic.getFramesRead());
+		assertEquals(1.0, deterministic.sampleClock().elapsed(), 1e-12);
+	}
+
+	private byte[] readDeterministic(int reads) throws LineUnavailableException {
+		SimulatedDataSource deterministic = SimulatedDataSource.deterministic(StaticStereoPositioner.CENTER.wrap(Waveform.MIDDLE_C.amplify(1000)));
+		deterministic.open(IDEAL, 1024);
+		deterministic.start();
+		byte[] all = new byte[reads * 1024];
+		for (int i = 0; i < reads; i++) {
+			assertEquals(1024, deterministic.read(all, i * 1024, 1024));
+		}
+		return all;
+	}
+
+	static Stream<Arguments> formats() {
+		return Arrays.stream(PcmEncoding.values())
+						.flatMap(encoding -> IntStream.of(1, 2, 4, 6)
+										.mapToObj(channels -> Arguments.of(encoding, channels)));
+	}
+
+	/** Every format carries the same waveform as {@code IDEAL}, to within 16-bit quantisation. */
+	@ParameterizedTest
+	@MethodSource("formats")
+	public void testEveryFormat(PcmEncoding encoding, int channels) throws LineUnavailableException {
+		int frames = 64;
+		float[] expected = readFloats(IDEAL, frames);
+		AudioFormat format = encoding.format(IDEAL.getSampleRate(), channels);
+		float[] actual = readFloats(format, frames);
+
+		for (int i = 0; i < frames; i++) {
+			float left = expected[i * 2];
+			float right = expected[i * 2 + 1];
+			for (int c = 0; c < channels; c++) {
+				float want = channels == 1 ? (left + right) / 2 : (c % 2 == 0 ? left : right);
+				assertEquals(want, actual[i * channels + c], 1.0f / (1 << 15), encoding + " x" + channels);
+			}
+		}
+	}
+
+	private float[] readFloats(AudioFormat format, int frames) throws LineUnavailableException {
+		SimulatedDataSource source = new SimulatedDataSource(simulatedTimer, new StaticStereoPositioner(-0.5).wrap(Waveform.MIDDLE_C.amplify(1000)));
+		byte[] pcm = new byte[frames * format.getFrameSize()];
+		elapsedTime = 0;
+		source.open(format, pcm.length);
+		source.start();
+		elapsedTime = (frames + 0.5) / format.getSampleRate();
+		assertEquals(pcm.length, source.read(pcm, 0, pcm.length));
+		float[] samples = new float[frames * format.getChannels()];
+		PcmEncoding encoding = PcmEncoding.of(format);
+		encoding.decode(pcm, 0, encoding.bytesPerSample(), samples, 0, samples.length);
+		return samples;
+	}
 }
@@ -0,0 +1,58 @@
+package com.asteroid.duck.opengl.util.audio;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+
+/**
+ * {@link ChannelMode#toMono} on the incubating Vector API, at the platform's preferred width.
+ *
+ * <p>Each 16-bit little-endian stereo frame is loaded as one 32-bit lane, right channel in the
+ * high half, so no de-interleaving shuffle is needed: the left sample is the lane shifted up and
+ * arithmetically back down, the right sample the lane shifted down, and the blend their integer
+ * sum. The int-to-float conversion and scale then run lane for lane, exactly as the scalar loops
+ * do, so both paths produce identical floats.</p>
+ *
+ * <p>Only loaded, by {@link ChannelMode}, when {@code jdk.incubator.vector} is in the boot layer.</p>
+ */
+final class VectorMonoConverter implements ChannelMode.BulkConverter {
+    private static final VectorSpecies<Integer> FRAMES = IntVector.SPECIES_PREFERRED;
+    /** Same shape as {@link #FRAMES}, so the same number of lanes. */
+    private static final VectorSpecies<Float> SAMPLES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = FRAMES.length();
+
+    /** Touches the Vector API, so a broken module fails at loading rather than mid-conversion. */
+    VectorMonoConverter() {
+        if (LANES < 1) {
+            throw new IllegalStateException("No lanes in " + FRAMES);
+        }
+    }
+
+    /** {@inheritDoc} The count is a multiple of the lane count. */
+    @Override
+    public int toMono(ChannelMode mode, byte[] pcm, int offset, int frames, float[] dest, int destPos,
+                      float scale) {
+        int upper = FRAMES.loopBound(frames);
+        if (upper == 0) {
+            return 0;
+        }
+        MemorySegment bytes = MemorySegment.ofArray(pcm);
+        for (int i = 0; i < upper; i += LANES) {
+            IntVector frame = IntVector.fromMemorySegment(FRAMES, bytes, offset + 4L * i, ByteOrder.LITTLE_ENDIAN);
+            IntVector mono = switch (mode) {
+                case LEFT -> frame.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16);
+                case RIGHT -> frame.lanewise(VectorOperators.ASHR, 16);
+                case MONO_BLEND -> frame.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16)
+                        .add(frame.lanewise(VectorOperators.ASHR, 16));
+            };
+            ((FloatVector) mono.convertShape(VectorOperators.I2F, SAMPLES, 0))
+                    .mul(scale)
+                    .intoArray(dest, destPos + i);
+        }
+        return upper;
+    }
+}
@@ -0,0 +1,119 @@
+package com.asteroid.duck.opengl.util.audio.analysis;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link SpectrumKernel} on the incubating Vector API, at the platform's preferred width.
+ *
+ * <p>Rather than de-interleave the {@code re, im} pairs, which costs two-input shuffles, the
+ * squares are added to their pair-swapped selves, leaving each bin's power in both lanes of its
+ * pair; a bar's peak over those pairs is the same. Bars at least a vector wide take their peak
+ * with lane-wise max and one reduction, narrower (low-frequency) bars are scalar; with fast log
+ * the dB mapping is vectorised across bars.
+ * Only loaded, by {@link SpectrumKernel#create}, when {@code jdk.incubator.vector} is in the boot layer.</p>
+ */
+final class VectorSpectrumKernel extends SpectrumKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    /** Swaps each {@code re, im} pair. */
+    private static final VectorShuffle<Float> SWAP_PAIRS = VectorShuffle.fromOp(SPECIES, i -> i ^ 1);
+
+    /** Squared magnitude of FFT bins {@code 0..N/2}, each written to both lanes of its pair. */
+    private final float[] pairs;
+
+    VectorSpectrumKernel(int fftSize, int[] binLow, int[] binHigh, float dBFloor, float dBRange) {
+        super(fftSize, binLow, binHigh, dBFloor, dBRange);
+        this.pairs = new float[fftSize + 2];
+    }
+
+    @Override
+    void window(float[] samples, float[] window, float[] work) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(fftSize); i < upper; i += LANES) {
+            FloatVector.fromArray(SPECIES, samples, i)
+                    .mul(FloatVector.fromArray(SPECIES, window, i))
+                    .intoArray(work, i);
+        }
+        for (; i < fftSize; i++) {
+            work[i] = samples[i] * window[i];
+        }
+    }
+
+    @Override
+    void powers(float[] fft) {
+        // pairs[2k] = pairs[2k + 1] = re² + im² of bin k; pairs 0 and N/2 are fixed up after
+        int i = 0;
+        for (int upper = SPECIES.loopBound(fftSize); i < upper; i += LANES) {
+            FloatVector squares = FloatVector.fromArray(SPECIES, fft, i);
+            squares = squares.mul(squares);
+            squares.add(squares.rearrange(SWAP_PAIRS)).intoArray(pairs, i);
+        }
+        for (; i < fftSize; i += 2) {
+            float p = fft[i] * fft[i] + fft[i + 1] * fft[i + 1];
+            pairs[i] = p;
+            pairs[i + 1] = p;
+        }
+        pairs[0] = pairs[1] = fft[0] * fft[0];
+        pairs[fftSize] = pairs[fftSize + 1] = fft[1] * fft[1];
+    }
+
+    @Override
+    void binPeaks() {
+        for (int b = 0; b < numBins; b++) {
+            int lo = 2 * binLow[b];
+            int hi = 2 * binHigh[b];
+            float peak = 0f;
+            int i = lo;
+            if (hi - lo >= LANES) {
+                FloatVector max = FloatVector.fromArray(SPECIES, pairs, i);
+                for (i += LANES; i + LANES <= hi; i += LANES) {
+                    max = max.max(FloatVector.fromArray(SPECIES, pairs, i));
+                }
+                peak = max.reduceLanes(VectorOperators.MAX);
+            }
+            for (; i < hi; i += 2) {
+                peak = Math.max(peak, pairs[i]);
+            }
+            peaks[b] = peak;
+        }
+    }
+
+    @Override
+    void levels(float[] output, boolean fastLog) {
+        int b = 0;
+        if (fastLog) {
+            for (int upper = SPECIES.loopBound(numBins); b < upper; b += LANES) {
+                FloatVector p = FloatVector.fromArray(SPECIES, peaks, b).max(powerFloor);
+                fastLog2(p).fma(DB_PER_LOG2, scaleDb - dBFloor)
+                        .div(dBRange)
+                        .max(0f).min(1f)
+                        .intoArray(output, b);
+            }
+        }
+        for (; b < numBins; b++) {
+            float p = Math.max(peaks[b], powerFloor);
+            float dB = fastLog
+                    ? DB_PER_LOG2 * fastLog2(p) + scaleDb
+                    : 10f * (float) Math.log10(p) + scaleDb;
+            output[b] = Math.max(0f, Math.min(1f, (dB - dBFloor) / dBRange));
+        }
+    }
+
+    /** {@link SpectrumKernel#fastLog2(float)} lane-wise. */
+    static FloatVector fastLog2(FloatVector x) {
+        IntVector bits = x.reinterpretAsInts();
+        IntVector e = bits.lanewise(VectorOperators.LSHR, 23).sub(127);
+        FloatVector m = bits.and(0x007FFFFF).or(0x3F800000).reinterpretAsFloats();
+        VectorMask<Float> high = m.compare(VectorOperators.GT, SQRT2);
+        m = m.blend(m.mul(0.5f), high);
+        FloatVector exponent = ((FloatVector) e.convert(VectorOperators.I2F, 0)).add(1f, high);
+        FloatVector t = m.sub(1f).div(m.add(1f));
+        FloatVector t2 = t.mul(t);
+        return t2.fma(C5, C3).mul(t2).add(C1).fma(t, exponent);
+    }
+}
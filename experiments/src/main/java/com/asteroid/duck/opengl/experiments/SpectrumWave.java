@@ -1,8 +1,10 @@
 package com.asteroid.duck.opengl.experiments;
 
 import com.asteroid.duck.opengl.util.RenderContext;
+import com.asteroid.duck.opengl.util.audio.AudioLatency;
 import com.asteroid.duck.opengl.util.audio.AudioReader;
 import com.asteroid.duck.opengl.util.audio.LineAcquirer;
+import com.asteroid.duck.opengl.util.audio.SilenceGate;
 import com.asteroid.duck.opengl.util.color.StandardColors;
 import com.asteroid.duck.opengl.util.keys.KeyCombination;
 import com.asteroid.duck.opengl.util.resources.font.FontTexture;
@@ -30,6 +32,9 @@ import static org.lwjgl.opengl.GL11.*;
  * bass / mid / treble bands the corresponding letter (B / M / T) flashes at full brightness over
  * the spectrum bars; between beats each letter stays visible at {@value #LETTER_DIM_ALPHA} alpha.</p>
  *
+ * <p>After {@link SilenceGate#DEFAULT_HOLD} of silence a {@link SilenceGate} drops the frame rate to
+ * {@link SilenceGate#DEFAULT_IDLE_HZ} Hz and pauses both FFTs until sound returns.</p>
+ *
  * <p>Key bindings: <kbd>J</kbd> / <kbd>H</kbd> step through audio inputs; <kbd>P</kbd> saves a
  * screenshot.</p>
  */
@@ -83,6 +88,9 @@ public class SpectrumWave implements Experiment {
 			1f/20f  // fast decay — clears in ~0.3 s so next kick can re-trigger
 	);
 
+	// Idles rendering and analysis while the input is silent
+	private final SilenceGate silenceGate = new SilenceGate(SAMPLE_RATE);
+
 	private final LineAcquirer lineAcquirer = new LineAcquirer();
 
 	private AudioReader audioReader;
@@ -105,13 +113,18 @@ public class SpectrumWave implements Experiment {
 		freqProc.addSink(beats);
 		analyser.init(ctx);
 
-		audioReader = new AudioReader(List.of(freqProc, displayProc));
+		freqProc.setSilenceGate(silenceGate);
+		displayProc.setSilenceGate(silenceGate);
+		silenceGate.setWakeListener(ctx::requestFrame);
+
+		audioReader = new AudioReader(List.of(silenceGate, freqProc, displayProc));
 		audioReaderThread = new Thread(audioReader, "spectrum-audio-reader");
 		audioReaderThread.setDaemon(true);
 		audioReaderThread.start();
 
 		lineAcquirer.init(ctx, LineAcquirer.IDEAL);
 		audioReader.setLine(lineAcquirer.getSelectedSource());
+		ctx.setAudioLatency(new AudioLatency(displayProc));
 
 		initBeatLabels(ctx);
 
@@ -177,6 +190,7 @@ public class SpectrumWave implements Experiment {
 
 	@Override
 	public void doRender(RenderContext ctx) {
+		silenceGate.apply(ctx);
 		freqProc.process();
 		displayProc.process();
 		analyser.doRender(ctx);